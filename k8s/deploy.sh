@@ -52,6 +52,11 @@ kubectl apply -f grafana/
 
 # Deploy Applications
 echo "☕ Deploying Java Application..."
+# Shared secret for pod-to-pod forwarding and gossip; created once so restarts keep it
+if ! kubectl get secret java-app-peer-secret -n otel-system &> /dev/null; then
+    kubectl create secret generic java-app-peer-secret -n otel-system \
+        --from-literal=secret="$(openssl rand -hex 32)"
+fi
 kubectl apply -f apps/java-app.yaml
 
 echo "🔷 Deploying .NET Application..."
@@ -1,5 +1,6 @@
 package hello;
 
+import hello.cache.CacheFrames;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -8,6 +9,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.nio.charset.StandardCharsets;
 
 public class LocalRestClient {
@@ -41,6 +45,31 @@ public class LocalRestClient {
     return responseEntity.getBody();
   }
 
+  /**
+   * Batch read in the binary cache frames format; missing IDs map to null
+   */
+  public Map<String, byte[]> getObjects(List<String> ids) {
+    HttpHeaders framed = new HttpHeaders();
+    framed.addAll(headers);
+    framed.set("Accept", CacheFrames.MEDIA_TYPE);
+    HttpEntity<List<String>> requestEntity = new HttpEntity<>(ids, framed);
+    ResponseEntity<byte[]> responseEntity = rest.exchange(server + "/api/v1/cacheServices/objects/batch-get",
+        HttpMethod.POST, requestEntity, byte[].class);
+    this.setStatusCode(responseEntity.getStatusCode());
+    return decode(ids, responseEntity.getBody());
+  }
+
+  static Map<String, byte[]> decode(List<String> ids, byte[] body) {
+    List<CacheFrames.Frame> frames = CacheFrames.read(body);
+    if (frames.size() != ids.size()) {
+      throw new IllegalArgumentException("Expected " + ids.size() + " frames, got " + frames.size());
+    }
+    Map<String, byte[]> objects = new LinkedHashMap<>();
+    for (int i = 0; i < ids.size(); i++) {
+      objects.put(ids.get(i), frames.get(i).value());
+    }
+    return objects;
+  }
 
   public HttpStatusCode getStatus() {
     return status;
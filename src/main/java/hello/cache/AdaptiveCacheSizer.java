@@ -0,0 +1,181 @@
+package hello.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Adapts the {@link TenantPartitionedStore}'s target size to heap pressure.
+ *
+ * <p>After every garbage collection the old generation's occupancy after collection is
+ * read, relative to its maximum, and smoothed into a moving average. Above
+ * {@code cache.store.adaptive.high-watermark} the target shrinks by a fraction of itself;
+ * below {@code low-watermark} it grows back by a fixed step towards
+ * {@code cache.store.max-bytes}. Between the watermarks it holds still, and consecutive
+ * changes are at least {@code cooldown} apart, so the size settles instead of oscillating.
+ * The target is never taken below {@code min-bytes}.
+ */
+@Component
+public class AdaptiveCacheSizer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveCacheSizer.class);
+
+    private static final double SMOOTHING = 0.5;
+
+    private final TenantPartitionedStore store;
+    private final double highWatermark;
+    private final double lowWatermark;
+    private final double shrinkRatio;
+    private final long growBytes;
+    private final long cooldownNanos;
+    private final long minBytes;
+    private final LongSupplier nanoClock;
+    private final Counter shrinks;
+    private final Counter grows;
+    private final List<MemoryPoolMXBean> oldGenPools = new ArrayList<>();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final NotificationListener listener = this::handleNotification;
+    private double pressure = Double.NaN;
+    private long lastChange = Long.MIN_VALUE;
+
+    @Autowired
+    public AdaptiveCacheSizer(
+            TenantPartitionedStore store,
+            MeterRegistry meterRegistry,
+            @Value("${cache.store.adaptive.enabled:false}") boolean enabled,
+            @Value("${cache.store.adaptive.high-watermark:0.75}") double highWatermark,
+            @Value("${cache.store.adaptive.low-watermark:0.5}") double lowWatermark,
+            @Value("${cache.store.adaptive.shrink-ratio:0.25}") double shrinkRatio,
+            @Value("${cache.store.adaptive.grow-ratio:0.05}") double growRatio,
+            @Value("${cache.store.adaptive.cooldown:10s}") Duration cooldown,
+            @Value("${cache.store.adaptive.min-bytes:8388608}") long minBytes) {
+        this(store, meterRegistry, highWatermark, lowWatermark, shrinkRatio, growRatio, cooldown, minBytes,
+                System::nanoTime);
+        if (enabled) {
+            listen();
+        }
+    }
+
+    AdaptiveCacheSizer(TenantPartitionedStore store, MeterRegistry meterRegistry, double highWatermark,
+                       double lowWatermark, double shrinkRatio, double growRatio, Duration cooldown, long minBytes,
+                       LongSupplier nanoClock) {
+        if (!(0 < lowWatermark && lowWatermark < highWatermark && highWatermark < 1)) {
+            throw new IllegalArgumentException(
+                "cache.store.adaptive watermarks must satisfy 0 < low-watermark < high-watermark < 1");
+        }
+        this.store = store;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.shrinkRatio = shrinkRatio;
+        this.growBytes = Math.max(1, (long) (store.getMaxBytes() * growRatio));
+        this.cooldownNanos = cooldown.toNanos();
+        this.minBytes = Math.min(minBytes, store.getMaxBytes());
+        this.nanoClock = nanoClock;
+        this.shrinks = Counter.builder("cache.store.adaptive.resizes")
+                .tag("direction", "shrink")
+                .description("Target size changes made by the adaptive sizer")
+                .register(meterRegistry);
+        this.grows = Counter.builder("cache.store.adaptive.resizes")
+                .tag("direction", "grow")
+                .description("Target size changes made by the adaptive sizer")
+                .register(meterRegistry);
+        Gauge.builder("cache.store.adaptive.pressure", this, AdaptiveCacheSizer::getPressure)
+                .description("Smoothed old-generation occupancy after GC, as a fraction of its maximum")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Subscribe to GC notifications of every collector; pools that are not young-generation
+     * spaces are taken as the old generation
+     */
+    private void listen() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            final String name = pool.getName();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()
+                    && !name.contains("Eden") && !name.contains("Survivor") && !name.contains("Young")) {
+                oldGenPools.add(pool);
+            }
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(listener, null, null);
+                emitters.add(emitter);
+            }
+        }
+        logger.info("Adaptive cache sizing watches {}", oldGenPools.stream().map(MemoryPoolMXBean::getName).toList());
+    }
+
+    private void handleNotification(Notification notification, Object handback) {
+        long used = 0;
+        long max = 0;
+        for (MemoryPoolMXBean pool : oldGenPools) {
+            final MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null) {
+                used += usage.getUsed();
+                max += usage.getMax() > 0 ? usage.getMax() : Runtime.getRuntime().maxMemory();
+            }
+        }
+        if (max > 0) {
+            onCollection(used, max);
+        }
+    }
+
+    /**
+     * Feed the old generation's occupancy after a collection and adjust the target
+     */
+    synchronized void onCollection(long usedAfterGc, long max) {
+        final double sample = (double) usedAfterGc / max;
+        pressure = Double.isNaN(pressure) ? sample : SMOOTHING * sample + (1 - SMOOTHING) * pressure;
+        final long now = nanoClock.getAsLong();
+        if (lastChange != Long.MIN_VALUE && now - lastChange < cooldownNanos) {
+            return;
+        }
+        final long target = store.getTargetBytes();
+        if (pressure > highWatermark && target > minBytes) {
+            store.setTargetBytes(Math.max(minBytes, (long) (target * (1 - shrinkRatio))));
+            shrinks.increment();
+            lastChange = now;
+            logger.info("Heap pressure at {}%: cache target shrunk to {} bytes", Math.round(pressure * 100),
+                    store.getTargetBytes());
+        } else if (pressure < lowWatermark && target < store.getMaxBytes()) {
+            store.setTargetBytes(target + growBytes);
+            grows.increment();
+            lastChange = now;
+        }
+    }
+
+    public synchronized double getPressure() {
+        return pressure;
+    }
+
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException e) {
+                logger.debug("GC listener already removed: {}", e.getMessage());
+            }
+        }
+        emitters.clear();
+    }
+}
@@ -0,0 +1,118 @@
+package hello.cache;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary framing ({@value #MEDIA_TYPE}) for batch reads, avoiding the base64 and
+ * Jackson cost of JSON for binary values.
+ *
+ * <p>A body starts with the magic {@code CFR1} and the entry count (int32), followed by
+ * one frame per requested key, in request order: value length (int32), status (u8),
+ * flags (u8) and the value bytes. All integers are big-endian; entries without a value
+ * have length 0.
+ */
+public final class CacheFrames {
+
+    public static final String MEDIA_TYPE = "application/x-cache-frames";
+
+    public static final int STATUS_FOUND = 0;
+    public static final int STATUS_NOT_FOUND = 1;
+    /** The key is owned by a peer that could not be asked */
+    public static final int STATUS_UNAVAILABLE = 2;
+
+    /** The value was served by the peer owning the key */
+    public static final int FLAG_FORWARDED = 1;
+
+    private static final int MAGIC = 0x43465231;
+    private static final int HEADER_BYTES = 8;
+    private static final int FRAME_HEADER_BYTES = 6;
+
+    private CacheFrames() {
+    }
+
+    /**
+     * One entry of a batch; the value is null unless the status is {@link #STATUS_FOUND}
+     */
+    public record Frame(int status, int flags, byte[] value) {
+
+        public static Frame of(byte[] value) {
+            return value == null ? new Frame(STATUS_NOT_FOUND, 0, null) : new Frame(STATUS_FOUND, 0, value);
+        }
+
+        public Frame withFlags(int extra) {
+            return new Frame(status, flags | extra, value);
+        }
+    }
+
+    /**
+     * Size of the encoded body, so it can be sent with a Content-Length
+     */
+    public static long encodedLength(List<Frame> frames) {
+        long length = HEADER_BYTES;
+        for (Frame frame : frames) {
+            length += FRAME_HEADER_BYTES + (frame.value() == null ? 0 : frame.value().length);
+        }
+        return length;
+    }
+
+    /**
+     * Encode the frames; values are written from the arrays the store holds, not copied
+     */
+    public static void write(List<Frame> frames, OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(frames.size());
+        for (Frame frame : frames) {
+            final byte[] value = frame.value();
+            data.writeInt(value == null ? 0 : value.length);
+            data.writeByte(frame.status());
+            data.writeByte(frame.flags());
+            if (value != null) {
+                data.write(value);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Decode a body; throws IllegalArgumentException when it is malformed or truncated
+     */
+    public static List<Frame> read(byte[] body) {
+        final ByteBuffer buffer = ByteBuffer.wrap(body);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a cache frames body");
+            }
+            final int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / FRAME_HEADER_BYTES) {
+                throw new IllegalArgumentException("Invalid frame count " + count);
+            }
+            final List<Frame> frames = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final int length = buffer.getInt();
+                final int status = buffer.get() & 0xff;
+                final int flags = buffer.get() & 0xff;
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IllegalArgumentException("Invalid frame length " + length);
+                }
+                byte[] value = null;
+                if (status == STATUS_FOUND) {
+                    value = new byte[length];
+                    buffer.get(value);
+                } else {
+                    buffer.position(buffer.position() + length);
+                }
+                frames.add(new Frame(status, flags, value));
+            }
+            return frames;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated cache frames body", e);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package hello.cache;
+
+/**
+ * Cache key scoped to a tenant (see {@link TenantResolver}).
+ */
+public record CacheKey(String tenant, String key) {
+}
@@ -0,0 +1,19 @@
+package hello.cache;
+
+/**
+ * One write of a multi-key transaction: a put, or a delete when the value is null.
+ */
+public record CacheMutation(String key, byte[] value) {
+
+    public static CacheMutation put(String key, byte[] value) {
+        return new CacheMutation(key, value);
+    }
+
+    public static CacheMutation delete(String key) {
+        return new CacheMutation(key, null);
+    }
+
+    public boolean isDelete() {
+        return value == null;
+    }
+}
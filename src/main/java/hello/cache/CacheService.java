@@ -0,0 +1,287 @@
+package hello.cache;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Read/write path for cache objects.
+ * Reads are counted by the {@link HotKeyDetector}; hot keys are served from and pinned
+ * into the pod-local {@link HotKeyTier}, everything else goes to the {@link TenantPartitionedStore}.
+ * When a shared {@link RemoteObjectStore} is configured it is the source of truth and the
+ * partitioned store acts as an L1 in front of it. L1 copies expire after
+ * {@code cache.valkey.local-ttl}, unless {@link InvalidationSource}s are configured and all
+ * connected, in which case they live until a source reports a change.
+ * Writes, deletes and expiries served here are published to the {@link ChangeFeed}.
+ */
+@Component
+public class CacheService implements InvalidationListener {
+
+    private final TenantPartitionedStore store;
+    private final HotKeyDetector hotKeyDetector;
+    private final HotKeyTier hotKeyTier;
+    private final RemoteObjectStore remoteStore;
+    private final List<InvalidationSource> invalidations;
+    private final Duration localTtl;
+    private final ChangeFeed changeFeed;
+
+    @Autowired
+    public CacheService(
+            TenantPartitionedStore store,
+            HotKeyDetector hotKeyDetector,
+            HotKeyTier hotKeyTier,
+            ObjectProvider<RemoteObjectStore> remoteStore,
+            ObjectProvider<InvalidationSource> invalidations,
+            @Value("${cache.valkey.local-ttl:1s}") Duration localTtl,
+            ChangeFeed changeFeed) {
+        this(store, hotKeyDetector, hotKeyTier, remoteStore.getIfAvailable(), invalidations.orderedStream().toList(),
+                localTtl, changeFeed);
+    }
+
+    CacheService(TenantPartitionedStore store, HotKeyDetector hotKeyDetector, HotKeyTier hotKeyTier,
+                 RemoteObjectStore remoteStore, List<InvalidationSource> invalidations, Duration localTtl) {
+        this(store, hotKeyDetector, hotKeyTier, remoteStore, invalidations, localTtl, null);
+    }
+
+    CacheService(TenantPartitionedStore store, HotKeyDetector hotKeyDetector, HotKeyTier hotKeyTier,
+                 RemoteObjectStore remoteStore, List<InvalidationSource> invalidations, Duration localTtl,
+                 ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+        this.store = store;
+        this.hotKeyDetector = hotKeyDetector;
+        this.hotKeyTier = hotKeyTier;
+        this.remoteStore = remoteStore;
+        this.invalidations = invalidations;
+        this.localTtl = localTtl;
+        invalidations.forEach(source -> source.addListener(this));
+    }
+
+    /**
+     * Get an object, or null when absent
+     */
+    public byte[] getObject(String tenant, String key) {
+        final boolean hot = hotKeyDetector.record(tenant, key);
+        if (hot) {
+            final byte[] pinned = hotKeyTier.get(tenant, key);
+            if (pinned != null) {
+                return pinned;
+            }
+        }
+        // Taken before the read, so a write racing it keeps the old value out of the hot tier
+        final long pinGeneration = hot ? hotKeyTier.generation(tenant, key) : 0;
+        byte[] value = store.getObject(tenant, key);
+        if (value == null && remoteStore != null) {
+            final String remoteKey = RemoteKey.encode(tenant, key);
+            final long generation = generation(remoteKey);
+            value = remoteStore.get(remoteKey);
+            if (value != null) {
+                storeLocal(tenant, key, value, remoteKey, generation, null);
+            }
+        }
+        if (hot && value != null) {
+            hotKeyTier.pin(tenant, key, value, pinGeneration);
+        }
+        return value;
+    }
+
+    /**
+     * Get an object without counting it as a client read: no hot-key detection, pinning,
+     * L1 fill or LRU refresh. Null when absent
+     */
+    public byte[] peekObject(String tenant, String key) {
+        final byte[] value = store.peekObject(tenant, key);
+        if (value == null && remoteStore != null) {
+            return remoteStore.get(RemoteKey.encode(tenant, key));
+        }
+        return value;
+    }
+
+    /**
+     * Be told (tenant, key) when a value is lost because the local store evicted or expired
+     * it. With a remote store the local store is only a copy, so nothing is reported.
+     * Listeners run under a store lock and must not call back into the cache.
+     */
+    public void addDropListener(BiConsumer<String, String> listener) {
+        if (remoteStore == null) {
+            store.addDropListener(listener);
+        }
+    }
+
+    /**
+     * Store an object
+     */
+    public void putObject(String tenant, String key, byte[] value) {
+        if (remoteStore != null) {
+            final String remoteKey = RemoteKey.encode(tenant, key);
+            final long generation = generation(remoteKey);
+            remoteStore.put(remoteKey, value);
+            invalidations.forEach(source -> source.changed(remoteKey));
+            storeLocal(tenant, key, value, remoteKey, generation, null);
+        } else {
+            store.putObject(tenant, key, value);
+        }
+        hotKeyTier.invalidate(tenant, key);
+        publish(ChangeFeed.Type.PUT, tenant, key);
+    }
+
+    /**
+     * Store an object that expires after the given time to live
+     */
+    public void putObject(String tenant, String key, byte[] value, Duration ttl) {
+        if (remoteStore != null) {
+            final String remoteKey = RemoteKey.encode(tenant, key);
+            final long generation = generation(remoteKey);
+            remoteStore.put(remoteKey, value, ttl);
+            invalidations.forEach(source -> source.changed(remoteKey));
+            storeLocal(tenant, key, value, remoteKey, generation, ttl);
+        } else {
+            store.putObject(tenant, key, value, ttl);
+        }
+        hotKeyTier.invalidate(tenant, key);
+        publish(ChangeFeed.Type.PUT, tenant, key);
+    }
+
+    /**
+     * Expire an object after the given time to live; returns false when it does not exist
+     */
+    public boolean expireObject(String tenant, String key, Duration ttl) {
+        final boolean expiring;
+        if (remoteStore != null) {
+            final String remoteKey = RemoteKey.encode(tenant, key);
+            expiring = remoteStore.expire(remoteKey, ttl);
+            invalidations.forEach(source -> source.changed(remoteKey));
+            // the L1 copy does not know the new expiry; the next read refills it
+            store.deleteObject(tenant, key);
+        } else {
+            expiring = store.expireObject(tenant, key, ttl);
+        }
+        hotKeyTier.invalidate(tenant, key);
+        if (expiring) {
+            publish(ChangeFeed.Type.EXPIRE, tenant, key);
+        }
+        return expiring;
+    }
+
+    /**
+     * Delete an object; returns true when it existed
+     */
+    public boolean deleteObject(String tenant, String key) {
+        boolean deleted = store.deleteObject(tenant, key);
+        if (remoteStore != null) {
+            final String remoteKey = RemoteKey.encode(tenant, key);
+            deleted = remoteStore.delete(remoteKey);
+            invalidations.forEach(source -> source.changed(remoteKey));
+        }
+        hotKeyTier.invalidate(tenant, key);
+        if (deleted) {
+            publish(ChangeFeed.Type.DELETE, tenant, key);
+        }
+        return deleted;
+    }
+
+    /**
+     * Whether {@link #commit} is available; not with a shared remote store, whose keys may
+     * live on different cluster nodes
+     */
+    public boolean supportsTransactions() {
+        return remoteStore == null;
+    }
+
+    /**
+     * Apply puts and deletes of one tenant so that readers see all of them or none.
+     * Returns for each mutation whether its key existed before the commit.
+     */
+    public boolean[] commit(String tenant, List<CacheMutation> mutations) {
+        if (!supportsTransactions()) {
+            throw new IllegalStateException("Transactions are not supported with a remote object store");
+        }
+        // Pinned replicas are dropped on both sides of the commit, so none can outlive it
+        mutations.forEach(mutation -> hotKeyTier.invalidate(tenant, mutation.key()));
+        final boolean[] existed = store.commit(tenant, mutations);
+        // existed is the state before the commit; a key touched twice is followed through it,
+        // so a delete after a put in the same commit still reaches subscribers
+        final Map<String, Boolean> live = new HashMap<>();
+        for (int i = 0; i < existed.length; i++) {
+            final CacheMutation mutation = mutations.get(i);
+            hotKeyTier.invalidate(tenant, mutation.key());
+            final boolean wasLive = live.getOrDefault(mutation.key(), existed[i]);
+            live.put(mutation.key(), !mutation.isDelete());
+            if (!mutation.isDelete()) {
+                publish(ChangeFeed.Type.PUT, tenant, mutation.key());
+            } else if (wasLive) {
+                publish(ChangeFeed.Type.DELETE, tenant, mutation.key());
+            }
+        }
+        return existed;
+    }
+
+    @Override
+    public void invalidate(String remoteKey) {
+        final CacheKey cacheKey = RemoteKey.decode(remoteKey);
+        if (cacheKey != null) {
+            store.deleteObject(cacheKey.tenant(), cacheKey.key());
+            hotKeyTier.invalidate(cacheKey.tenant(), cacheKey.key());
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        store.clear();
+        hotKeyTier.clear();
+    }
+
+    private void publish(ChangeFeed.Type type, String tenant, String key) {
+        if (changeFeed != null) {
+            changeFeed.publish(type, tenant, key);
+        }
+    }
+
+    private long generation(String remoteKey) {
+        long generation = 0;
+        for (InvalidationSource source : invalidations) {
+            generation += source.generation(remoteKey);
+        }
+        return generation;
+    }
+
+    private boolean invalidationsConnected() {
+        if (invalidations.isEmpty()) {
+            return false;
+        }
+        for (InvalidationSource source : invalidations) {
+            if (!source.isConnected()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keep an L1 copy; without expiry (or with the value's own ttl, when it has one) only if
+     * no invalidation raced the remote access
+     */
+    private void storeLocal(String tenant, String key, byte[] value, String remoteKey, long generation,
+                            Duration ttl) {
+        if (!invalidationsConnected()) {
+            store.putObject(tenant, key, value, ttl != null && ttl.compareTo(localTtl) < 0 ? ttl : localTtl);
+            return;
+        }
+        if (ttl != null) {
+            store.putObject(tenant, key, value, ttl);
+        } else {
+            store.putObject(tenant, key, value);
+        }
+        // An invalidation delivered after this check finds and removes the copy; one delivered
+        // before it moved the generation, so the copy may predate the change
+        if (generation(remoteKey) != generation) {
+            store.deleteObject(tenant, key);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package hello.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Feed of the mutations served by this pod, for consumers that would otherwise poll.
+ *
+ * <p>Changes go into a fixed ring without locks: a writer claims the next sequence number
+ * and stores its change in that slot, overwriting whatever was there. Writers never wait
+ * for readers. A reader that falls a full ring behind finds its slot overwritten and is
+ * told it lagged, so it can resync instead of holding writers back.
+ *
+ * <p>Sequence numbers restart with the pod; {@link #epoch()} tells one run from another.
+ */
+@Component
+public class ChangeFeed {
+
+    public enum Type { PUT, DELETE, EXPIRE }
+
+    /**
+     * One mutation; timestamp is wall-clock millis when it was published
+     */
+    public record Change(long sequence, Type type, String tenant, String key, long timestamp) {
+    }
+
+    /**
+     * Changes read from a position, the position to continue at, and whether changes
+     * before it were overwritten unread
+     */
+    public record Batch(List<Change> changes, long next, boolean lagged) {
+    }
+
+    private final AtomicReferenceArray<Change> ring;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final long epoch = System.currentTimeMillis();
+    private final Counter published;
+
+    public ChangeFeed(
+            MeterRegistry meterRegistry,
+            @Value("${cache.changes.capacity:65536}") int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("cache.changes.capacity must be a power of two");
+        }
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.published = Counter.builder("cache.changes.published")
+                .description("Cache mutations published to the change feed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Publish a mutation
+     */
+    public void publish(Type type, String tenant, String key) {
+        final long sequence = nextSequence.getAndIncrement();
+        ring.set(index(sequence), new Change(sequence, type, tenant, key, System.currentTimeMillis()));
+        published.increment();
+    }
+
+    /**
+     * Sequence number the next change will get
+     */
+    public long head() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Identifies this run of the feed; sequence numbers of another epoch mean nothing here
+     */
+    public long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Read up to max changes starting at the given sequence. Stops early at a slot a writer
+     * has claimed but not filled yet; the next read picks it up.
+     */
+    public Batch read(long from, int max) {
+        final long oldest = oldest();
+        if (from < oldest || from > nextSequence.get()) {
+            return new Batch(List.of(), Math.max(oldest, Math.min(from, nextSequence.get())), true);
+        }
+        final List<Change> changes = new ArrayList<>();
+        long sequence = from;
+        while (changes.size() < max) {
+            final Change change = ring.get(index(sequence));
+            if (change == null || change.sequence() < sequence) {
+                break;
+            }
+            if (change.sequence() > sequence) {
+                // overwritten while we were reading
+                return new Batch(changes, oldest(), true);
+            }
+            changes.add(change);
+            sequence++;
+        }
+        return new Batch(changes, sequence, false);
+    }
+
+    private long oldest() {
+        return Math.max(0, nextSequence.get() - ring.length());
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+}
@@ -0,0 +1,155 @@
+package hello.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Streaming heavy-hitter detection over cache reads.
+ *
+ * <p>Every read is counted in a count-min sketch (fixed memory, never under-counts).
+ * Keys whose estimate reaches {@code cache.hotkeys.threshold} compete for one of the
+ * {@code cache.hotkeys.top-k} slots of the hot set, displacing the coldest member when
+ * full. Counters are halved every {@code cache.hotkeys.window} so keys cool down once
+ * their traffic stops. Reads of cold keys and of keys already in the hot set are
+ * lock-free; only admission to the hot set synchronizes.
+ */
+@Component
+public class HotKeyDetector {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 4096;
+    private static final long[] SEEDS = {
+        0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final AtomicLongArray sketch = new AtomicLongArray(DEPTH * WIDTH);
+    private final Map<CacheKey, AtomicLong> hotKeys = new ConcurrentHashMap<>();
+    private final int topK;
+    private final long threshold;
+    private final long windowNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong windowStart;
+
+    @Autowired
+    public HotKeyDetector(
+            @Value("${cache.hotkeys.top-k:32}") int topK,
+            @Value("${cache.hotkeys.threshold:1000}") long threshold,
+            @Value("${cache.hotkeys.window:10s}") Duration window) {
+        this(topK, threshold, window, System::nanoTime);
+    }
+
+    HotKeyDetector(int topK, long threshold, Duration window, LongSupplier nanoClock) {
+        this.topK = topK;
+        this.threshold = threshold;
+        this.windowNanos = window.toNanos();
+        this.nanoClock = nanoClock;
+        this.windowStart = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * Count one read of a key; returns true when the key is currently hot
+     */
+    public boolean record(String tenant, String key) {
+        maybeDecay();
+        final long hash = 31L * tenant.hashCode() + key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, sketch.incrementAndGet(index(row, hash)));
+        }
+        if (estimate < threshold) {
+            return false;
+        }
+        final CacheKey cacheKey = new CacheKey(tenant, key);
+        final AtomicLong count = hotKeys.get(cacheKey);
+        if (count != null) {
+            count.accumulateAndGet(estimate, Math::max);
+            return true;
+        }
+        return admit(cacheKey, estimate);
+    }
+
+    /**
+     * Whether a key is currently in the hot set
+     */
+    public boolean isHot(String tenant, String key) {
+        return hotKeys.containsKey(new CacheKey(tenant, key));
+    }
+
+    /**
+     * Snapshot of the hot keys, hottest first
+     */
+    public List<HotKey> hotKeys() {
+        final List<HotKey> snapshot = new ArrayList<>(hotKeys.size());
+        hotKeys.forEach((key, count) -> snapshot.add(new HotKey(key, count.get())));
+        snapshot.sort(Comparator.comparingLong(HotKey::count).reversed());
+        return snapshot;
+    }
+
+    private synchronized boolean admit(CacheKey key, long estimate) {
+        if (hotKeys.containsKey(key)) {
+            return true;
+        }
+        if (hotKeys.size() >= topK) {
+            // K is small, so a scan for the coldest member is cheaper than maintaining a heap
+            CacheKey coldest = null;
+            long coldestCount = Long.MAX_VALUE;
+            for (Map.Entry<CacheKey, AtomicLong> entry : hotKeys.entrySet()) {
+                final long count = entry.getValue().get();
+                if (count < coldestCount) {
+                    coldestCount = count;
+                    coldest = entry.getKey();
+                }
+            }
+            if (coldest == null || coldestCount >= estimate) {
+                return false;
+            }
+            hotKeys.remove(coldest);
+        }
+        hotKeys.put(key, new AtomicLong(estimate));
+        return true;
+    }
+
+    /**
+     * Halve all counters once per window; keys falling below the threshold leave the hot set
+     */
+    private void maybeDecay() {
+        final long start = windowStart.get();
+        final long now = nanoClock.getAsLong();
+        if (now - start < windowNanos || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        for (int i = 0; i < sketch.length(); i++) {
+            final long value = sketch.get(i);
+            if (value != 0) {
+                sketch.addAndGet(i, -(value >>> 1));
+            }
+        }
+        synchronized (this) {
+            hotKeys.values().forEach(count -> count.updateAndGet(c -> c >>> 1));
+            hotKeys.values().removeIf(count -> count.get() < threshold);
+        }
+    }
+
+    private static int index(int row, long hash) {
+        long h = (hash ^ SEEDS[row]) * 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return row * WIDTH + (int) (h & (WIDTH - 1));
+    }
+
+    /**
+     * Hot key with its estimated read count in the current window
+     */
+    public record HotKey(CacheKey key, long count) {
+    }
+}
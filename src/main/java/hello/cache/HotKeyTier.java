@@ -0,0 +1,128 @@
+package hello.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Pod-local tier holding pinned copies of hot keys.
+ *
+ * <p>Pinned copies live outside the tenant partitions, so they are never evicted by
+ * quota pressure and reads skip the partition lock entirely. Each copy expires after
+ * {@code cache.hotkeys.ttl}, which bounds how stale a replica can be when another pod
+ * changes the key. Every pod detects and pins from its own traffic, so keys that are
+ * hot cluster-wide end up replicated in every pod.
+ *
+ * <p>A read that fetched a value just before a write could otherwise pin it after the
+ * write's {@link #invalidate}, and serve the old value for the whole TTL. Readers take the
+ * key's {@link #generation} before reading, {@link #invalidate} moves it, and {@link #pin}
+ * only pins when it has not moved.
+ */
+@Component
+public class HotKeyTier {
+
+    private final Map<CacheKey, Replica> replicas = new ConcurrentHashMap<>();
+    private final InvalidationGenerations generations = new InvalidationGenerations();
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LongSupplier nanoClock;
+    private final Counter hits;
+
+    @Autowired
+    public HotKeyTier(
+            MeterRegistry meterRegistry,
+            @Value("${cache.hotkeys.ttl:2s}") Duration ttl,
+            @Value("${cache.hotkeys.top-k:32}") int maxEntries) {
+        this(meterRegistry, ttl, maxEntries, System::nanoTime);
+    }
+
+    HotKeyTier(MeterRegistry meterRegistry, Duration ttl, int maxEntries, LongSupplier nanoClock) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.nanoClock = nanoClock;
+        this.hits = Counter.builder("cache.hotkeys.local.hits")
+                .description("Reads served from pinned hot-key replicas")
+                .register(meterRegistry);
+        Gauge.builder("cache.hotkeys.pinned", replicas, Map::size)
+                .description("Hot keys currently pinned in the local tier")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get a pinned replica, or null when absent or expired
+     */
+    public byte[] get(String tenant, String key) {
+        final CacheKey cacheKey = new CacheKey(tenant, key);
+        final Replica replica = replicas.get(cacheKey);
+        if (replica == null) {
+            return null;
+        }
+        if (nanoClock.getAsLong() - replica.pinnedAt() >= ttlNanos) {
+            replicas.remove(cacheKey, replica);
+            return null;
+        }
+        hits.increment();
+        return replica.value();
+    }
+
+    /**
+     * Generation of a key, to be taken before reading the value that may be pinned
+     */
+    public long generation(String tenant, String key) {
+        return generations.get(RemoteKey.encode(tenant, key));
+    }
+
+    /**
+     * Pin a replica of a hot key for the configured TTL, unless the key was invalidated
+     * since {@code generation} was taken
+     */
+    public void pin(String tenant, String key, byte[] value, long generation) {
+        final long now = nanoClock.getAsLong();
+        if (replicas.size() >= maxEntries) {
+            replicas.values().removeIf(replica -> now - replica.pinnedAt() >= ttlNanos);
+            if (replicas.size() >= maxEntries) {
+                return;
+            }
+        }
+        final String remoteKey = RemoteKey.encode(tenant, key);
+        // Checked under the map's lock for the key, so an invalidate that moved the generation
+        // either prevents the pin or removes it right after
+        replicas.compute(new CacheKey(tenant, key), (cacheKey, current) ->
+                generations.get(remoteKey) == generation ? new Replica(value, now) : current);
+    }
+
+    /**
+     * Drop the local replica of a key after it changed; call it after the change is stored
+     */
+    public void invalidate(String tenant, String key) {
+        generations.advance(RemoteKey.encode(tenant, key));
+        replicas.remove(new CacheKey(tenant, key));
+    }
+
+    /**
+     * Drop all local replicas
+     */
+    public void clear() {
+        generations.advanceAll();
+        replicas.clear();
+    }
+
+    /**
+     * Whether a live replica of the key is pinned
+     */
+    public boolean isPinned(String tenant, String key) {
+        final Replica replica = replicas.get(new CacheKey(tenant, key));
+        return replica != null && nanoClock.getAsLong() - replica.pinnedAt() < ttlNanos;
+    }
+
+    private record Replica(byte[] value, long pinnedAt) {
+    }
+}
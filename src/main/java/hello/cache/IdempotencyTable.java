@@ -0,0 +1,217 @@
+package hello.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Dedup table for writes carrying an {@code Idempotency-Key}, so retried requests return the
+ * original result instead of executing again.
+ *
+ * <p>Entries are scoped to the tenant and kept for {@code cache.idempotency.window}. The
+ * table is split into lock-striped shards, each holding at most its share of
+ * {@code cache.idempotency.max-entries} in insertion order. Since every entry gets the same
+ * window, the eldest entry of a shard is also the first to expire, and it is evicted early
+ * when the shard is full. A key reused with a different request is rejected, not replayed.
+ */
+@Component
+public class IdempotencyTable {
+
+    public enum Status {
+        /** First request with this key; execute it, then {@link #complete} or {@link #abandon} */
+        NEW,
+        /** Already executed; the original result is attached */
+        REPLAY,
+        /** The original request is still executing */
+        IN_PROGRESS,
+        /** The key was used for a different request */
+        MISMATCH
+    }
+
+    /**
+     * Outcome of claiming a key; the result is set only for {@link Status#REPLAY}
+     */
+    public record Claim(Status status, Map<String, Object> result) {
+    }
+
+    private final Shard[] shards;
+    private final int shardMask;
+    private final long windowNanos;
+    private final LongSupplier nanoClock;
+    private final Counter replays;
+    private final Counter inProgress;
+    private final Counter mismatches;
+
+    @Autowired
+    public IdempotencyTable(
+            MeterRegistry meterRegistry,
+            @Value("${cache.idempotency.window:10m}") Duration window,
+            @Value("${cache.idempotency.max-entries:100000}") int maxEntries,
+            @Value("${cache.idempotency.shards:16}") int shards) {
+        this(meterRegistry, window, maxEntries, shards, System::nanoTime);
+    }
+
+    IdempotencyTable(MeterRegistry meterRegistry, Duration window, int maxEntries, int shards,
+                     LongSupplier nanoClock) {
+        if (shards <= 0 || Integer.bitCount(shards) != 1) {
+            throw new IllegalArgumentException("cache.idempotency.shards must be a power of two");
+        }
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(Math.max(1, maxEntries / shards));
+        }
+        this.shardMask = shards - 1;
+        this.windowNanos = window.toNanos();
+        this.nanoClock = nanoClock;
+        this.replays = outcome(meterRegistry, "replay",
+                "Requests answered from the idempotency table instead of executing again");
+        this.inProgress = outcome(meterRegistry, "in_progress",
+                "Requests rejected because the original with the same idempotency key is still executing");
+        this.mismatches = outcome(meterRegistry, "mismatch",
+                "Requests rejected because their idempotency key was used for a different request");
+        Gauge.builder("cache.idempotency.entries", this, IdempotencyTable::size)
+                .description("Idempotency keys currently remembered")
+                .register(meterRegistry);
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String outcome, String description) {
+        return Counter.builder("cache.idempotency.hits")
+                .tag("outcome", outcome)
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Claim a key for a request identified by its fingerprint
+     */
+    public Claim claim(String tenant, String key, byte[] fingerprint) {
+        final CacheKey cacheKey = new CacheKey(tenant, key);
+        final Shard shard = shard(cacheKey);
+        final long now = nanoClock.getAsLong();
+        shard.lock.lock();
+        try {
+            shard.expire(now - windowNanos);
+            final Entry entry = shard.entries.get(cacheKey);
+            if (entry == null) {
+                shard.entries.put(cacheKey, new Entry(fingerprint, now));
+                return new Claim(Status.NEW, null);
+            }
+            if (!Arrays.equals(entry.fingerprint, fingerprint)) {
+                mismatches.increment();
+                return new Claim(Status.MISMATCH, null);
+            }
+            if (entry.result == null) {
+                inProgress.increment();
+                return new Claim(Status.IN_PROGRESS, null);
+            }
+            replays.increment();
+            return new Claim(Status.REPLAY, entry.result);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Record the result of a claimed request, to be replayed to its retries
+     */
+    public void complete(String tenant, String key, Map<String, Object> result) {
+        final CacheKey cacheKey = new CacheKey(tenant, key);
+        final Shard shard = shard(cacheKey);
+        shard.lock.lock();
+        try {
+            final Entry entry = shard.entries.get(cacheKey);
+            if (entry != null) {
+                entry.result = Map.copyOf(result);
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Forget a claimed request that failed, so a retry executes it again
+     */
+    public void abandon(String tenant, String key) {
+        final CacheKey cacheKey = new CacheKey(tenant, key);
+        final Shard shard = shard(cacheKey);
+        shard.lock.lock();
+        try {
+            final Entry entry = shard.entries.get(cacheKey);
+            if (entry != null && entry.result == null) {
+                shard.entries.remove(cacheKey);
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Keys currently remembered, including expired ones not yet swept
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                size += shard.entries.size();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Shard shard(CacheKey key) {
+        final int hash = key.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & shardMask];
+    }
+
+    private static final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<CacheKey, Entry> entries;
+
+        Shard(int maxEntries) {
+            this.entries = new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<CacheKey, Entry> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        /**
+         * Drop entries created at or before the cutoff; they sit at the head
+         */
+        void expire(long cutoff) {
+            final Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().createdAt - cutoff > 0) {
+                    return;
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] fingerprint;
+        private final long createdAt;
+        private Map<String, Object> result;
+
+        Entry(byte[] fingerprint, long createdAt) {
+            this.fingerprint = fingerprint;
+            this.createdAt = createdAt;
+        }
+    }
+}
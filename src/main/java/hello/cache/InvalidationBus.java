@@ -0,0 +1,270 @@
+package hello.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cross-pod invalidation of local cache copies.
+ *
+ * <p>Keys changed on this pod are collected for {@code window} and published as one batch,
+ * so a key written many times within the window costs a single entry. Every batch carries
+ * the sender's id and a per-sender sequence number. Receivers apply batches in order; a gap
+ * means a batch was lost (or failed to publish), so local copies can no longer be trusted
+ * and everything is flushed. Senders publish an empty batch every {@code heartbeat} while
+ * idle, which bounds how long a gap can go unnoticed and keeps the lag metric fresh.
+ * Losing the transport subscription also flushes, as does getting it back.
+ */
+public class InvalidationBus implements InvalidationSource, InvalidationTransport.Subscriber, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvalidationBus.class);
+
+    private static final byte VERSION = 1;
+
+    private final InvalidationTransport transport;
+    private final long nodeId = new SecureRandom().nextLong();
+    private final Duration window;
+    private final long heartbeatNanos;
+    private final int maxBatchKeys;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    private final InvalidationGenerations generations = new InvalidationGenerations();
+    private final Map<Long, Long> lastSequence = new HashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "cache-invalidation-bus");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Timer lag;
+    private final Counter published;
+    private final Counter coalesced;
+    private final Counter gaps;
+    private long sequence;
+    private long lastPublish;
+    private volatile boolean connected;
+
+    public InvalidationBus(InvalidationTransport transport, MeterRegistry meterRegistry,
+                           Duration window, Duration heartbeat, int maxBatchKeys) {
+        this.transport = transport;
+        this.window = window;
+        this.heartbeatNanos = heartbeat.toNanos();
+        this.maxBatchKeys = maxBatchKeys;
+        this.lastPublish = System.nanoTime() - heartbeatNanos;
+        this.lag = Timer.builder("cache.bus.lag")
+                .description("Time from publishing an invalidation batch to applying it on this pod")
+                .register(meterRegistry);
+        this.published = Counter.builder("cache.bus.keys.published")
+                .description("Invalidated keys published to other pods")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("cache.bus.keys.coalesced")
+                .description("Key changes merged into an invalidation already pending in the window")
+                .register(meterRegistry);
+        this.gaps = Counter.builder("cache.bus.gaps")
+                .description("Sequence gaps or lost subscriptions that forced a full local flush")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Subscribe to the transport and start publishing batches
+     */
+    public void start() {
+        transport.subscribe(this);
+        final long interval = window.toNanos();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void changed(String remoteKey) {
+        if (!pending.add(remoteKey)) {
+            coalesced.increment();
+        }
+    }
+
+    @Override
+    public void addListener(InvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public long generation(String remoteKey) {
+        return generations.get(remoteKey);
+    }
+
+    @Override
+    public void connected() {
+        // batches published while unsubscribed were missed
+        synchronized (this) {
+            lastSequence.clear();
+        }
+        flushAll();
+        connected = true;
+    }
+
+    @Override
+    public void disconnected() {
+        if (connected) {
+            connected = false;
+            gaps.increment();
+            flushAll();
+        }
+    }
+
+    @Override
+    public synchronized void message(byte[] message) {
+        final Batch batch;
+        try {
+            batch = Batch.decode(message);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Dropping malformed invalidation batch: {}", e.getMessage());
+            return;
+        }
+        if (batch.nodeId() == nodeId) {
+            return;
+        }
+        lag.record(Math.max(0, System.currentTimeMillis() - batch.sentAtMillis()), TimeUnit.MILLISECONDS);
+        final Long last = lastSequence.get(batch.nodeId());
+        if (last != null && batch.sequence() <= last) {
+            return;
+        }
+        lastSequence.put(batch.nodeId(), batch.sequence());
+        if (last != null && batch.sequence() != last + 1) {
+            logger.warn("Invalidation batches {}..{} from a peer were lost, flushing local copies",
+                    last + 1, batch.sequence() - 1);
+            gaps.increment();
+            flushAll();
+            return;
+        }
+        for (String remoteKey : batch.keys()) {
+            generations.advance(remoteKey);
+            listeners.forEach(listener -> listener.invalidate(remoteKey));
+        }
+    }
+
+    /**
+     * Publish the keys collected in the window, or a heartbeat when idle for too long
+     */
+    void flush() {
+        final long now = System.nanoTime();
+        if (pending.isEmpty()) {
+            if (now - lastPublish >= heartbeatNanos) {
+                publish(List.of(), now);
+            }
+            return;
+        }
+        final Iterator<String> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            final List<String> keys = new ArrayList<>(Math.min(pending.size(), maxBatchKeys));
+            while (iterator.hasNext() && keys.size() < maxBatchKeys) {
+                keys.add(iterator.next());
+                iterator.remove();
+            }
+            publish(keys, now);
+            published.increment(keys.size());
+        }
+    }
+
+    private void publish(List<String> keys, long now) {
+        // the sequence number is consumed even if publishing fails, so peers see the gap
+        final byte[] message = new Batch(nodeId, ++sequence, System.currentTimeMillis(), keys).encode();
+        lastPublish = now;
+        transport.publish(message);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Publishing invalidations failed: {}", e.getMessage());
+        }
+    }
+
+    private void flushAll() {
+        generations.advanceAll();
+        listeners.forEach(InvalidationListener::invalidateAll);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        flushQuietly();
+    }
+
+    /**
+     * Wire format of one invalidation batch
+     */
+    record Batch(long nodeId, long sequence, long sentAtMillis, List<String> keys) {
+
+        byte[] encode() {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + keys.size() * 32);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(VERSION);
+                out.writeLong(nodeId);
+                out.writeLong(sequence);
+                out.writeLong(sentAtMillis);
+                out.writeInt(keys.size());
+                for (String key : keys) {
+                    final byte[] raw = key.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(raw.length);
+                    out.write(raw);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        static Batch decode(byte[] message) throws IOException {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+                if (in.readByte() != VERSION) {
+                    throw new IOException("Unsupported invalidation batch version");
+                }
+                final long nodeId = in.readLong();
+                final long sequence = in.readLong();
+                final long sentAt = in.readLong();
+                final int count = in.readInt();
+                if (count < 0 || count > message.length) {
+                    throw new IOException("Invalid key count " + count);
+                }
+                final List<String> keys = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    final int length = in.readInt();
+                    if (length < 0 || length > message.length) {
+                        throw new IOException("Invalid key length " + length);
+                    }
+                    final byte[] raw = new byte[length];
+                    in.readFully(raw);
+                    keys.add(new String(raw, StandardCharsets.UTF_8));
+                }
+                return new Batch(nodeId, sequence, sentAt, keys);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package hello.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Generation counters backing {@link InvalidationSource#generation(String)}.
+ * Keys share a fixed number of striped counters and a global epoch moves on flushes;
+ * both only grow, so their sum moves whenever either does.
+ */
+public final class InvalidationGenerations {
+
+    private static final int STRIPES = 256;
+
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicLongArray stripes = new AtomicLongArray(STRIPES);
+
+    /**
+     * Current generation of a key
+     */
+    public long get(String remoteKey) {
+        return epoch.get() + stripes.get(stripe(remoteKey));
+    }
+
+    /**
+     * Move the generation of one key (and the keys sharing its stripe)
+     */
+    public void advance(String remoteKey) {
+        stripes.incrementAndGet(stripe(remoteKey));
+    }
+
+    /**
+     * Move the generation of every key
+     */
+    public void advanceAll() {
+        epoch.incrementAndGet();
+    }
+
+    private static int stripe(String remoteKey) {
+        return (remoteKey.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+}
@@ -0,0 +1,17 @@
+package hello.cache;
+
+/**
+ * Receives notifications that values of the shared store changed elsewhere.
+ */
+public interface InvalidationListener {
+
+    /**
+     * The value under a remote key changed or was deleted
+     */
+    void invalidate(String remoteKey);
+
+    /**
+     * Notifications may have been lost; every local copy must be dropped
+     */
+    void invalidateAll();
+}
@@ -0,0 +1,33 @@
+package hello.cache;
+
+/**
+ * Channel delivering change notifications for the shared store.
+ *
+ * <p>Local copies may be kept without expiry only while the source is connected, and only
+ * when no notification for the key arrived while the copy was being fetched: callers take
+ * {@link #generation(String)} before reading the shared store and compare it after storing
+ * the copy locally, discarding the copy when it moved.
+ */
+public interface InvalidationSource {
+
+    /**
+     * Register a listener for notifications
+     */
+    void addListener(InvalidationListener listener);
+
+    /**
+     * Whether notifications are currently being delivered
+     */
+    boolean isConnected();
+
+    /**
+     * Counter that moves whenever a notification covering the key is delivered or the source reconnects
+     */
+    long generation(String remoteKey);
+
+    /**
+     * Announce that this pod changed a key; sources learning of changes from the store itself ignore this
+     */
+    default void changed(String remoteKey) {
+    }
+}
@@ -0,0 +1,29 @@
+package hello.cache;
+
+/**
+ * Broadcast channel carrying {@link InvalidationBus} messages between pods.
+ */
+public interface InvalidationTransport {
+
+    /**
+     * Send a message to every subscribed pod, including this one
+     */
+    void publish(byte[] message);
+
+    /**
+     * Start delivering messages; the subscriber is told whenever delivery starts or stops
+     */
+    void subscribe(Subscriber subscriber);
+
+    /**
+     * Callbacks of a subscription
+     */
+    interface Subscriber {
+
+        void connected();
+
+        void message(byte[] message);
+
+        void disconnected();
+    }
+}
@@ -0,0 +1,168 @@
+package hello.cache;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash index keyed by primitive {@code long}, for numeric object ids.
+ *
+ * <p>Keys and values live in two parallel arrays probed linearly; there are no per-entry
+ * nodes and no boxed keys, so an entry costs its two array slots divided by the load factor.
+ * Removal shifts the following run back instead of leaving tombstones, so lookups never
+ * slow down as entries churn. Not thread-safe; callers hold their own lock.
+ */
+final class LongKeyIndex<V> {
+
+    private static final int MIN_CAPACITY = 16;
+    // Grow once more than 3/4 of the slots are taken
+    private static final int LOAD_NUMERATOR = 3;
+    private static final int LOAD_DENOMINATOR = 4;
+    /** Longest decimal id that cannot overflow a long */
+    private static final int MAX_ID_DIGITS = 18;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    LongKeyIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Whether a string key is a canonical non-negative decimal id: digits only, no sign and
+     * no leading zeros, so it converts to a {@code long} and back without changing
+     */
+    static boolean isId(String key) {
+        final int length = key.length();
+        if (length == 0 || length > MAX_ID_DIGITS || (key.charAt(0) == '0' && length > 1)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Numeric value of a key accepted by {@link #isId}
+     */
+    static long toId(String key) {
+        long id = 0;
+        for (int i = 0; i < key.length(); i++) {
+            id = id * 10 + (key.charAt(i) - '0');
+        }
+        return id;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Map a key to a non-null value; returns the value it replaced, if any
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        int i = slot(key);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                final V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * LOAD_DENOMINATOR > values.length * LOAD_NUMERATOR) {
+            rehash(values.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Remove a key; returns its value, or null when it was absent
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                final V removed = (V) values[i];
+                shiftBack(i);
+                size--;
+                return removed;
+            }
+        }
+        return null;
+    }
+
+    void clear() {
+        if (values.length > MIN_CAPACITY) {
+            allocate(MIN_CAPACITY);
+        } else {
+            Arrays.fill(values, null);
+        }
+        size = 0;
+    }
+
+    /**
+     * Empty the slot at the gap by moving back any later entry of the run whose home slot
+     * does not lie cyclically between the gap and its current position
+     */
+    private void shiftBack(int gap) {
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == null) {
+                break;
+            }
+            final int home = slot(keys[i]);
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = null;
+    }
+
+    private void rehash(int capacity) {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = slot(oldKeys[i]);
+                while (values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slot(long key) {
+        // Fibonacci hashing spreads sequential ids across the table
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
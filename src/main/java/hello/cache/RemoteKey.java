@@ -0,0 +1,47 @@
+package hello.cache;
+
+/**
+ * Encoding of tenant-qualified keys in the shared store.
+ * The tenant is length-prefixed because tenant ids themselves contain ':'.
+ */
+public final class RemoteKey {
+
+    public static final String PREFIX = "cache:";
+
+    private RemoteKey() {
+        // utility class
+    }
+
+    /**
+     * Remote key for a tenant's key
+     */
+    public static String encode(String tenant, String key) {
+        return PREFIX + tenant.length() + ":" + tenant + ":" + key;
+    }
+
+    /**
+     * Tenant and key of a remote key, or null when the key was not produced by {@link #encode}
+     */
+    public static CacheKey decode(String remoteKey) {
+        if (!remoteKey.startsWith(PREFIX)) {
+            return null;
+        }
+        final int lengthEnd = remoteKey.indexOf(':', PREFIX.length());
+        if (lengthEnd < 0) {
+            return null;
+        }
+        try {
+            final int tenantLength = Integer.parseInt(remoteKey.substring(PREFIX.length(), lengthEnd));
+            if (tenantLength < 0 || tenantLength >= remoteKey.length()) {
+                return null;
+            }
+            final int tenantEnd = lengthEnd + 1 + tenantLength;
+            if (tenantEnd >= remoteKey.length() || remoteKey.charAt(tenantEnd) != ':') {
+                return null;
+            }
+            return new CacheKey(remoteKey.substring(lengthEnd + 1, tenantEnd), remoteKey.substring(tenantEnd + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package hello.cache;
+
+import java.time.Duration;
+
+/**
+ * Shared (L2) object store behind the pod-local tiers, e.g. a Valkey cluster.
+ * Keys are already tenant-qualified by the caller.
+ */
+public interface RemoteObjectStore {
+
+    /**
+     * Get a value, or null when absent
+     */
+    byte[] get(String key);
+
+    /**
+     * Store a value, replacing any previous one
+     */
+    void put(String key, byte[] value);
+
+    /**
+     * Store a value that expires after the given time to live
+     */
+    void put(String key, byte[] value, Duration ttl);
+
+    /**
+     * Set a value's time to live; returns false when it does not exist
+     */
+    boolean expire(String key, Duration ttl);
+
+    /**
+     * Delete a value; returns true when it existed
+     */
+    boolean delete(String key);
+}
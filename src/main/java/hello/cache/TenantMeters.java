@@ -0,0 +1,64 @@
+package hello.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Meters shared by all partitions reporting under the same tenant tag.
+ * Tenants beyond the configured tag limit share the {@link #OTHER_TAG} instance,
+ * which keeps the metric cardinality bounded no matter how many tenants exist.
+ */
+final class TenantMeters {
+
+    static final String OTHER_TAG = "other";
+
+    private static final String TENANT_TAG = "tenant";
+    private static final String RESULT_TAG = "result";
+    private static final String REQUESTS_METRIC = "cache.store.requests";
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final AtomicLong bytes = new AtomicLong();
+
+    TenantMeters(MeterRegistry registry, String tag) {
+        this.hits = Counter.builder(REQUESTS_METRIC)
+                .description("Cache store lookups per tenant")
+                .tag(TENANT_TAG, tag)
+                .tag(RESULT_TAG, "hit")
+                .register(registry);
+        this.misses = Counter.builder(REQUESTS_METRIC)
+                .description("Cache store lookups per tenant")
+                .tag(TENANT_TAG, tag)
+                .tag(RESULT_TAG, "miss")
+                .register(registry);
+        this.evictions = Counter.builder("cache.store.evictions")
+                .description("Entries evicted per tenant")
+                .tag(TENANT_TAG, tag)
+                .register(registry);
+        Gauge.builder("cache.store.tenant.bytes", bytes, AtomicLong::get)
+                .description("Estimated bytes held per tenant")
+                .baseUnit("bytes")
+                .tag(TENANT_TAG, tag)
+                .register(registry);
+    }
+
+    Counter hits() {
+        return hits;
+    }
+
+    Counter misses() {
+        return misses;
+    }
+
+    Counter evictions() {
+        return evictions;
+    }
+
+    AtomicLong bytes() {
+        return bytes;
+    }
+}
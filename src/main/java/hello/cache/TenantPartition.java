@@ -0,0 +1,331 @@
+package hello.cache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * One tenant's slice of the {@link TenantPartitionedStore}.
+ * Entries are kept in an intrusive LRU list guarded by a per-partition lock, so
+ * tenants never contend with each other and eviction never scans the map.
+ * Byte accounting is pushed to the owning store's counter as entries change.
+ * Numeric ids, the common case, are indexed by their primitive value in a
+ * {@link LongKeyIndex} and keep no key string; other keys go into a plain map.
+ * Values the partition drops by itself, evicted or found expired, are reported to
+ * {@code onDrop} while the lock is held.
+ */
+final class TenantPartition {
+
+    /** Fixed per-entry bookkeeping estimate (entry object, map node, list links). */
+    static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    /** Same for numeric ids: entry object, list links and index slots, no node or key string. */
+    static final int ID_ENTRY_OVERHEAD_BYTES = 88;
+
+    /** Expiry marker for entries that live until evicted or replaced. */
+    static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    private final String tenant;
+    private final TenantMeters meters;
+    private final AtomicLong storeBytes;
+    private final BiConsumer<String, String> onDrop;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final LongKeyIndex<Entry> ids = new LongKeyIndex<>();
+    // Sentinel of the LRU list: head.next is the eldest entry, head.prev the newest
+    private final Entry head = new Entry(null, 0, null, 0, NO_EXPIRY);
+    private volatile long usedBytes;
+
+    TenantPartition(String tenant, TenantMeters meters, AtomicLong storeBytes, BiConsumer<String, String> onDrop) {
+        this.tenant = tenant;
+        this.meters = meters;
+        this.storeBytes = storeBytes;
+        this.onDrop = onDrop;
+        head.prev = head;
+        head.next = head;
+    }
+
+    String tenant() {
+        return tenant;
+    }
+
+    TenantMeters meters() {
+        return meters;
+    }
+
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size() + ids.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Estimated memory cost of storing a value under a key
+     */
+    static long sizeOf(String key, byte[] value) {
+        if (LongKeyIndex.isId(key)) {
+            return ID_ENTRY_OVERHEAD_BYTES + value.length;
+        }
+        return ENTRY_OVERHEAD_BYTES + 2L * key.length() + value.length;
+    }
+
+    /**
+     * Look up a live value and mark it most recently used; expired entries are dropped
+     */
+    byte[] get(String key, long now) {
+        lock.lock();
+        try {
+            final Entry entry = find(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt <= now) {
+                drop(entry);
+                return null;
+            }
+            unlink(entry);
+            linkLast(entry);
+            return entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Insert or replace a value expiring at the given nano time
+     */
+    void put(String key, byte[] value, long expiresAt) {
+        final long size = sizeOf(key, value);
+        lock.lock();
+        try {
+            final Entry entry = Entry.of(key, value, size, expiresAt);
+            final Entry previous = index(entry);
+            long delta = size;
+            if (previous != null) {
+                unlink(previous);
+                delta -= previous.size;
+            }
+            linkLast(entry);
+            addUsed(delta);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Apply several puts and removals under one acquisition of the lock, so readers see all
+     * of them or none; returns for each mutation whether its key held a live value before the commit
+     */
+    boolean[] commit(List<CacheMutation> mutations, long now) {
+        final boolean[] existed = new boolean[mutations.size()];
+        lock.lock();
+        try {
+            // Looked up before anything is applied, so a key written earlier in the same
+            // commit still reports its state from before the commit
+            for (int i = 0; i < existed.length; i++) {
+                final Entry current = find(mutations.get(i).key());
+                existed[i] = current != null && current.expiresAt > now;
+            }
+            long delta = 0;
+            for (int i = 0; i < existed.length; i++) {
+                final CacheMutation mutation = mutations.get(i);
+                Entry entry = null;
+                if (!mutation.isDelete()) {
+                    final long size = sizeOf(mutation.key(), mutation.value());
+                    entry = Entry.of(mutation.key(), mutation.value(), size, NO_EXPIRY);
+                    delta += size;
+                }
+                final Entry previous = entry == null ? unindex(mutation.key()) : index(entry);
+                if (previous != null) {
+                    unlink(previous);
+                    delta -= previous.size;
+                }
+                if (entry != null) {
+                    linkLast(entry);
+                }
+            }
+            addUsed(delta);
+            return existed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Move a live entry's expiry; returns false when there is no live entry
+     */
+    boolean expire(String key, long expiresAt, long now) {
+        lock.lock();
+        try {
+            final Entry entry = find(key);
+            if (entry == null) {
+                return false;
+            }
+            if (entry.expiresAt <= now) {
+                drop(entry);
+                return false;
+            }
+            entry.expiresAt = expiresAt;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove a value; returns true when it was present
+     */
+    boolean remove(String key) {
+        lock.lock();
+        try {
+            final Entry entry = unindex(key);
+            if (entry == null) {
+                return false;
+            }
+            unlink(entry);
+            addUsed(-entry.size);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all entries without counting them as evictions
+     */
+    void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            ids.clear();
+            head.prev = head;
+            head.next = head;
+            addUsed(-usedBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evict the least recently used entry; returns the number of bytes released
+     */
+    long evictEldest() {
+        lock.lock();
+        try {
+            final Entry eldest = head.next;
+            if (eldest == head) {
+                return 0;
+            }
+            drop(eldest);
+            meters.evictions().increment();
+            return eldest.size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Look up a live value without touching the LRU order; expired entries are dropped
+     */
+    byte[] peek(String key, long now) {
+        lock.lock();
+        try {
+            final Entry entry = find(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt <= now) {
+                drop(entry);
+                return null;
+            }
+            return entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drop(Entry entry) {
+        unindex(entry);
+        unlink(entry);
+        addUsed(-entry.size);
+        onDrop.accept(tenant, entry.key == null ? Long.toString(entry.id) : entry.key);
+    }
+
+    private Entry find(String key) {
+        return LongKeyIndex.isId(key) ? ids.get(LongKeyIndex.toId(key)) : entries.get(key);
+    }
+
+    /**
+     * Index an entry under its key; returns the entry it replaced, if any
+     */
+    private Entry index(Entry entry) {
+        return entry.key == null ? ids.put(entry.id, entry) : entries.put(entry.key, entry);
+    }
+
+    private Entry unindex(String key) {
+        return LongKeyIndex.isId(key) ? ids.remove(LongKeyIndex.toId(key)) : entries.remove(key);
+    }
+
+    private void unindex(Entry entry) {
+        if (entry.key == null) {
+            ids.remove(entry.id);
+        } else {
+            entries.remove(entry.key);
+        }
+    }
+
+    private void addUsed(long delta) {
+        usedBytes += delta;
+        meters.bytes().addAndGet(delta);
+        storeBytes.addAndGet(delta);
+    }
+
+    private void linkLast(Entry entry) {
+        entry.prev = head.prev;
+        entry.next = head;
+        head.prev.next = entry;
+        head.prev = entry;
+    }
+
+    private static void unlink(Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    private static final class Entry {
+        // Null for numeric ids, which are kept as id instead
+        private final String key;
+        private final long id;
+        private final byte[] value;
+        private final long size;
+        private long expiresAt;
+        private Entry prev;
+        private Entry next;
+
+        private Entry(String key, long id, byte[] value, long size, long expiresAt) {
+            this.key = key;
+            this.id = id;
+            this.value = value;
+            this.size = size;
+            this.expiresAt = expiresAt;
+        }
+
+        static Entry of(String key, byte[] value, long size, long expiresAt) {
+            return LongKeyIndex.isId(key)
+                    ? new Entry(null, LongKeyIndex.toId(key), value, size, expiresAt)
+                    : new Entry(key, 0, value, size, expiresAt);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package hello.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory object store partitioned per tenant (see {@link TenantResolver}).
+ *
+ * <p>Every tenant owns a partition with its own LRU order and lock. Each tenant is
+ * guaranteed {@code cache.store.tenant-quota-bytes}; capacity other tenants leave idle
+ * can be borrowed up to {@code cache.store.tenant-max-bytes}. When the store as a whole
+ * exceeds {@code cache.store.max-bytes}, bytes are reclaimed from the tenant that borrowed
+ * the most, so a noisy tenant evicts its own data before anyone else's. The capacity
+ * actually enforced is a target at or below {@code cache.store.max-bytes}, which the
+ * {@link AdaptiveCacheSizer} lowers under heap pressure.
+ */
+@Component
+public class TenantPartitionedStore {
+
+    private final long maxBytes;
+    private final long tenantQuotaBytes;
+    private final long tenantMaxBytes;
+    private final int maxTenantTags;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier nanoClock;
+
+    private final Map<String, TenantPartition> partitions = new ConcurrentHashMap<>();
+    private final Map<String, TenantMeters> metersByTag = new ConcurrentHashMap<>();
+    private final AtomicInteger taggedTenants = new AtomicInteger();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final List<BiConsumer<String, String>> dropListeners = new CopyOnWriteArrayList<>();
+    private volatile long targetBytes;
+
+    @Autowired
+    public TenantPartitionedStore(
+            MeterRegistry meterRegistry,
+            @Value("${cache.store.max-bytes:134217728}") long maxBytes,
+            @Value("${cache.store.tenant-quota-bytes:16777216}") long tenantQuotaBytes,
+            @Value("${cache.store.tenant-max-bytes:67108864}") long tenantMaxBytes,
+            @Value("${cache.store.metrics.max-tenant-tags:16}") int maxTenantTags) {
+        this(meterRegistry, maxBytes, tenantQuotaBytes, tenantMaxBytes, maxTenantTags, System::nanoTime);
+    }
+
+    TenantPartitionedStore(MeterRegistry meterRegistry, long maxBytes, long tenantQuotaBytes,
+                           long tenantMaxBytes, int maxTenantTags, LongSupplier nanoClock) {
+        if (tenantQuotaBytes > tenantMaxBytes || tenantMaxBytes > maxBytes) {
+            throw new IllegalArgumentException(
+                "cache.store sizes must satisfy tenant-quota-bytes <= tenant-max-bytes <= max-bytes");
+        }
+        this.meterRegistry = meterRegistry;
+        this.maxBytes = maxBytes;
+        this.targetBytes = maxBytes;
+        this.tenantQuotaBytes = tenantQuotaBytes;
+        this.tenantMaxBytes = tenantMaxBytes;
+        this.maxTenantTags = maxTenantTags;
+        this.nanoClock = nanoClock;
+        Gauge.builder("cache.store.bytes", usedBytes, AtomicLong::get)
+                .description("Estimated bytes held by the cache store")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("cache.store.target.bytes", this, TenantPartitionedStore::getTargetBytes)
+                .description("Capacity the cache store currently evicts down to")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("cache.store.tenants", partitions, Map::size)
+                .description("Number of tenant partitions")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get an object for a tenant, or null when absent. Reads never create a partition:
+     * a miss for a tenant that has stored nothing is counted under the shared tag.
+     */
+    public byte[] getObject(String tenant, String key) {
+        final TenantPartition partition = partitions.get(tenant);
+        if (partition == null) {
+            metersByTag.computeIfAbsent(TenantMeters.OTHER_TAG, t -> new TenantMeters(meterRegistry, t))
+                    .misses().increment();
+            return null;
+        }
+        final byte[] value = partition.get(key, nanoClock.getAsLong());
+        if (value != null) {
+            partition.meters().hits().increment();
+        } else {
+            partition.meters().misses().increment();
+        }
+        return value;
+    }
+
+    /**
+     * Store an object for a tenant, evicting as required by the quotas.
+     * The array is stored as-is; callers must not modify it afterwards.
+     */
+    public void putObject(String tenant, String key, byte[] value) {
+        put(tenant, key, value, TenantPartition.NO_EXPIRY);
+    }
+
+    /**
+     * Store an object for a tenant that expires after the given time to live
+     */
+    public void putObject(String tenant, String key, byte[] value, Duration ttl) {
+        put(tenant, key, value, nanoClock.getAsLong() + ttl.toNanos());
+    }
+
+    private void put(String tenant, String key, byte[] value, long expiresAt) {
+        if (TenantPartition.sizeOf(key, value) > tenantMaxBytes) {
+            throw new IllegalArgumentException("Object exceeds the per-tenant cache limit");
+        }
+        final TenantPartition partition = partition(tenant);
+        partition.put(key, value, expiresAt);
+
+        // Stay within the tenant's own ceiling first, then within the global capacity
+        while (partition.usedBytes() > tenantMaxBytes) {
+            if (partition.evictEldest() == 0) {
+                break;
+            }
+        }
+        reclaim();
+    }
+
+    /**
+     * Apply puts and deletes of one tenant atomically: readers see all of them or none.
+     * Returns for each mutation whether its key existed before the commit.
+     */
+    public boolean[] commit(String tenant, List<CacheMutation> mutations) {
+        long size = 0;
+        for (CacheMutation mutation : mutations) {
+            if (!mutation.isDelete()) {
+                size += TenantPartition.sizeOf(mutation.key(), mutation.value());
+            }
+        }
+        // A larger batch would evict part of itself, which readers would see as a partial commit
+        if (size > tenantMaxBytes) {
+            throw new IllegalArgumentException("Transaction exceeds the per-tenant cache limit");
+        }
+        final TenantPartition partition = partition(tenant);
+        final boolean[] existed = partition.commit(mutations, nanoClock.getAsLong());
+        while (partition.usedBytes() > tenantMaxBytes) {
+            if (partition.evictEldest() == 0) {
+                break;
+            }
+        }
+        reclaim();
+        return existed;
+    }
+
+    /**
+     * Get an object for a tenant without counting a hit or miss or refreshing its LRU
+     * position, or null when absent
+     */
+    public byte[] peekObject(String tenant, String key) {
+        final TenantPartition partition = partitions.get(tenant);
+        return partition == null ? null : partition.peek(key, nanoClock.getAsLong());
+    }
+
+    /**
+     * Be told (tenant, key) whenever the store drops a value by itself: evicted for
+     * capacity or found expired. Deletes, overwrites and {@link #clear()} are not reported.
+     * Listeners run under a partition lock and must not call back into the store.
+     */
+    public void addDropListener(BiConsumer<String, String> listener) {
+        dropListeners.add(listener);
+    }
+
+    /**
+     * Delete an object for a tenant; returns true when it existed
+     */
+    public boolean deleteObject(String tenant, String key) {
+        final TenantPartition partition = partitions.get(tenant);
+        return partition != null && partition.remove(key);
+    }
+
+    /**
+     * Expire an object after the given time to live; returns false when it does not exist
+     */
+    public boolean expireObject(String tenant, String key, Duration ttl) {
+        final TenantPartition partition = partitions.get(tenant);
+        final long now = nanoClock.getAsLong();
+        return partition != null && partition.expire(key, now + ttl.toNanos(), now);
+    }
+
+    /**
+     * Drop every object of every tenant
+     */
+    public void clear() {
+        partitions.values().forEach(TenantPartition::clear);
+    }
+
+    /**
+     * Total estimated bytes held by the store
+     */
+    public long usedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * Estimated bytes held for one tenant
+     */
+    public long usedBytes(String tenant) {
+        final TenantPartition partition = partitions.get(tenant);
+        return partition == null ? 0 : partition.usedBytes();
+    }
+
+    /**
+     * Number of entries held for one tenant
+     */
+    public int size(String tenant) {
+        final TenantPartition partition = partitions.get(tenant);
+        return partition == null ? 0 : partition.size();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getTargetBytes() {
+        return targetBytes;
+    }
+
+    /**
+     * Change the capacity the store evicts down to, capped at the configured maximum;
+     * shrinking evicts right away
+     */
+    public void setTargetBytes(long bytes) {
+        targetBytes = Math.max(0, Math.min(bytes, maxBytes));
+        reclaim();
+    }
+
+    /**
+     * Evict from the largest borrower until the store fits its target capacity again
+     */
+    private void reclaim() {
+        while (usedBytes.get() > targetBytes) {
+            final TenantPartition victim = selectVictim();
+            if (victim == null || victim.evictEldest() == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Pick the partition furthest above its guaranteed quota. Partitions within their
+     * quota are only chosen when every tenant is within quota (oversubscribed store).
+     */
+    private TenantPartition selectVictim() {
+        TenantPartition victim = null;
+        long worstOverage = Long.MIN_VALUE;
+        for (TenantPartition partition : partitions.values()) {
+            final long used = partition.usedBytes();
+            final long overage = used - tenantQuotaBytes;
+            if (used > 0 && overage > worstOverage) {
+                worstOverage = overage;
+                victim = partition;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * The tenant's partition, created on first write
+     */
+    private TenantPartition partition(String tenant) {
+        return partitions.computeIfAbsent(tenant, t -> new TenantPartition(t, meters(t), usedBytes, this::dropped));
+    }
+
+    private void dropped(String tenant, String key) {
+        for (BiConsumer<String, String> listener : dropListeners) {
+            listener.accept(tenant, key);
+        }
+    }
+
+    /**
+     * Meters for a new partition; only the first tenants get a dedicated tag
+     */
+    private TenantMeters meters(String tenant) {
+        final boolean dedicated = taggedTenants.get() < maxTenantTags
+            && taggedTenants.getAndIncrement() < maxTenantTags;
+        final String tag = dedicated ? tenant : TenantMeters.OTHER_TAG;
+        return metersByTag.computeIfAbsent(tag, t -> new TenantMeters(meterRegistry, t));
+    }
+}
@@ -0,0 +1,53 @@
+package hello.cache;
+
+import hello.security.JwtAuthenticationDetails;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Resolves the cache tenant for the current request from the JWT claims that
+ * {@link hello.security.JwtAuthenticationFilter} placed in the security context.
+ * A tenant is the pair identity provider + subject, so equal usernames coming from
+ * different IdPs never share a partition.
+ */
+public final class TenantResolver {
+
+    /** Tenant used for unauthenticated callers. */
+    public static final String ANONYMOUS_TENANT = "anonymous";
+
+    private static final String DEFAULT_IDP = "local";
+
+    private TenantResolver() {
+        // utility class
+    }
+
+    /**
+     * Resolve tenant from the current security context
+     */
+    public static String currentTenant() {
+        return fromAuthentication(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    /**
+     * Resolve tenant from an authentication object
+     */
+    public static String fromAuthentication(Authentication authentication) {
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken
+                || !authentication.isAuthenticated() || authentication.getName() == null) {
+            return ANONYMOUS_TENANT;
+        }
+        String idp = null;
+        if (authentication.getDetails() instanceof JwtAuthenticationDetails details) {
+            idp = details.getIdentityProvider();
+        }
+        return of(idp, authentication.getName());
+    }
+
+    /**
+     * Tenant for a subject of an identity provider (null means the local provider)
+     */
+    public static String of(String identityProvider, String subject) {
+        return (identityProvider == null ? DEFAULT_IDP : identityProvider) + ":" + subject;
+    }
+}
@@ -0,0 +1,166 @@
+package hello.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Background repair of divergent replicas.
+ *
+ * <p>Every {@code interval} this pod picks the next member of the {@link PeerRing} and
+ * compares {@link MerkleTree}s with it top-down, one level per round trip, descending only
+ * into nodes whose digests differ. Only the entries of the differing leaves are exchanged:
+ * newer remote entries are applied here and newer local ones are pushed back, so a single
+ * exchange repairs both sides. Identical replicas cost one digest comparison, and the
+ * bytes moved grow with the divergence rather than with the data size.
+ */
+public class AntiEntropy implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AntiEntropy.class);
+
+    private final ReplicaIndex index;
+    private final PeerRing peerRing;
+    private final Function<String, ReplicaPeer> peers;
+    private final Duration interval;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "cache-anti-entropy");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter rounds;
+    private final Counter divergentLeaves;
+    private final Counter pulled;
+    private final Counter pushed;
+    private final DistributionSummary transferred;
+    private int next;
+
+    public AntiEntropy(ReplicaIndex index, PeerRing peerRing, Function<String, ReplicaPeer> peers,
+                       MeterRegistry meterRegistry, Duration interval) {
+        this.index = index;
+        this.peerRing = peerRing;
+        this.peers = peers;
+        this.interval = interval;
+        this.rounds = Counter.builder("cache.antientropy.rounds")
+                .description("Merkle tree comparisons with a peer")
+                .register(meterRegistry);
+        this.divergentLeaves = Counter.builder("cache.antientropy.leaves.divergent")
+                .description("Leaf ranges found to differ from a peer")
+                .register(meterRegistry);
+        this.pulled = Counter.builder("cache.antientropy.keys.repaired")
+                .tag("direction", "pulled")
+                .description("Entries repaired by anti-entropy")
+                .register(meterRegistry);
+        this.pushed = Counter.builder("cache.antientropy.keys.repaired")
+                .tag("direction", "pushed")
+                .description("Entries repaired by anti-entropy")
+                .register(meterRegistry);
+        this.transferred = DistributionSummary.builder("cache.antientropy.transfer")
+                .baseUnit("bytes")
+                .description("Value bytes exchanged per anti-entropy round")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start periodic rounds
+     */
+    public void start() {
+        final long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::runQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    private void runQuietly() {
+        try {
+            index.pruneTombstones();
+            final List<String> others = new ArrayList<>(peerRing.members());
+            others.remove(peerRing.getSelf());
+            if (!others.isEmpty()) {
+                synchronize(peers.apply(others.get(Math.floorMod(next++, others.size()))));
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Anti-entropy round failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reconcile with one peer; returns the number of entries repaired on either side
+     */
+    int synchronize(ReplicaPeer peer) {
+        rounds.increment();
+        final MerkleTree tree = index.tree();
+        int[] frontier = {1};
+        while (!tree.isLeaf(frontier[0])) {
+            final int[] differing = differing(tree, frontier, peer.nodes(frontier));
+            if (differing.length == 0) {
+                return 0;
+            }
+            frontier = new int[differing.length * 2];
+            for (int i = 0; i < differing.length; i++) {
+                frontier[2 * i] = 2 * differing[i];
+                frontier[2 * i + 1] = 2 * differing[i] + 1;
+            }
+        }
+        final int[] leaves = Arrays.stream(differing(tree, frontier, peer.nodes(frontier)))
+                .map(node -> node - tree.leaves())
+                .toArray();
+        if (leaves.length == 0) {
+            return 0;
+        }
+        divergentLeaves.increment(leaves.length);
+        return reconcile(peer, leaves);
+    }
+
+    private int reconcile(ReplicaPeer peer, int[] leaves) {
+        final Map<String, ReplicaIndex.Entry> remote = new HashMap<>();
+        long bytes = 0;
+        int repaired = 0;
+        for (ReplicaIndex.Entry entry : peer.entries(leaves)) {
+            remote.put(entry.key(), entry);
+            bytes += entry.value() == null ? 0 : entry.value().length;
+            if (index.apply(entry)) {
+                pulled.increment();
+                repaired++;
+            }
+        }
+        final List<ReplicaIndex.Entry> newer = new ArrayList<>();
+        for (ReplicaIndex.Entry entry : index.entries(leaves)) {
+            final ReplicaIndex.Entry theirs = remote.get(entry.key());
+            if (theirs == null || ReplicaIndex.isNewer(entry, theirs)) {
+                newer.add(entry);
+                bytes += entry.value() == null ? 0 : entry.value().length;
+            }
+        }
+        peer.apply(newer);
+        pushed.increment(newer.size());
+        transferred.record(bytes);
+        return repaired + newer.size();
+    }
+
+    private static int[] differing(MerkleTree tree, int[] nodes, long[] remote) {
+        if (remote.length != nodes.length) {
+            throw new IllegalStateException("Peer returned " + remote.length + " digests for " + nodes.length + " nodes");
+        }
+        return IntStream.range(0, nodes.length)
+                .filter(i -> tree.node(nodes[i]) != remote[i])
+                .map(i -> nodes[i])
+                .toArray();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,37 @@
+package hello.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Anti-entropy between replicas, enabled with {@code cache.anti-entropy.enabled}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "cache.anti-entropy.enabled", havingValue = "true")
+public class AntiEntropyConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public AntiEntropy antiEntropy(
+            ReplicaIndex replicaIndex,
+            PeerRing peerRing,
+            MeterRegistry meterRegistry,
+            @Value("${cache.anti-entropy.interval:30s}") Duration interval,
+            @Value("${cache.anti-entropy.secret:}") String secret,
+            @Value("${cache.peers.timeout:2s}") Duration timeout) {
+        final HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        final ObjectMapper mapper = new ObjectMapper();
+        return new AntiEntropy(replicaIndex, peerRing,
+                peer -> new HttpReplicaPeer(httpClient, mapper, peer, secret, timeout),
+                meterRegistry, interval);
+    }
+}
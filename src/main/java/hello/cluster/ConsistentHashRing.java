@@ -0,0 +1,99 @@
+package hello.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent-hash ring over cluster members.
+ *
+ * <p>Each member is placed on the ring at {@code virtualNodes} pseudo-random points; a key
+ * belongs to the member owning the first point at or after the key's hash. Adding or
+ * removing one of N members therefore only moves the keys between that member's points
+ * and their predecessors, about 1/N of the keyspace, and virtual nodes keep the slices even.
+ */
+public final class ConsistentHashRing {
+
+    private final List<String> members;
+    private final long[] points;
+    private final int[] owners;
+
+    public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        if (members.isEmpty() || virtualNodes <= 0) {
+            throw new IllegalArgumentException("A ring needs at least one member and one virtual node");
+        }
+        this.members = List.copyOf(new TreeSet<>(members));
+        final int size = this.members.size() * virtualNodes;
+        final long[][] placed = new long[size][];
+        int n = 0;
+        for (int member = 0; member < this.members.size(); member++) {
+            for (int vnode = 0; vnode < virtualNodes; vnode++) {
+                placed[n++] = new long[] {hash(this.members.get(member) + "#" + vnode), member};
+            }
+        }
+        // Ties are broken by member index, so every pod builds the identical ring
+        Arrays.sort(placed, (a, b) -> a[0] != b[0] ? Long.compareUnsigned(a[0], b[0]) : Long.compare(a[1], b[1]));
+        this.points = new long[size];
+        this.owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = placed[i][0];
+            owners[i] = (int) placed[i][1];
+        }
+    }
+
+    /**
+     * Member owning a key
+     */
+    public String ownerOf(String key) {
+        final long hash = hash(key);
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[mid], hash) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return members.get(owners[low == points.length ? 0 : low]);
+    }
+
+    /**
+     * Members of the ring, sorted
+     */
+    public List<String> members() {
+        return members;
+    }
+
+    /**
+     * Ring over a new member set with the same number of virtual nodes per member
+     */
+    public ConsistentHashRing withMembers(Collection<String> newMembers) {
+        return new ConsistentHashRing(new ArrayList<>(newMembers), points.length / members.size());
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, finished with the murmur3 mixer for avalanche
+     */
+    static long hash(String value) {
+        return hash(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long hash(byte[] value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,96 @@
+package hello.cluster;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Gossip membership, enabled with {@code cache.gossip.enabled}.
+ * Seeds are {@code cache.gossip.seeds} (host:port list) plus every address
+ * {@code cache.gossip.seed-dns} resolves to, re-resolved whenever seeding is needed.
+ * Only the seeds, the current addresses of the seed name and the hosts listed in
+ * {@code cache.gossip.allowlist} may take part; messages are signed with
+ * {@code cache.peers.secret}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "cache.gossip.enabled", havingValue = "true")
+public class GossipConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(GossipConfig.class);
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public GossipMembership gossipMembership(
+            PeerRing peerRing,
+            MeterRegistry meterRegistry,
+            @Value("${cache.gossip.advertise-host:127.0.0.1}") String advertiseHost,
+            @Value("${cache.gossip.port:7946}") int port,
+            @Value("${cache.gossip.seeds:}") String seeds,
+            @Value("${cache.gossip.seed-dns:}") String seedDns,
+            @Value("${cache.gossip.protocol-period:1s}") Duration protocolPeriod,
+            @Value("${cache.gossip.ack-timeout:200ms}") Duration ackTimeout,
+            @Value("${cache.gossip.suspicion-timeout:5s}") Duration suspicionTimeout,
+            @Value("${cache.gossip.indirect-probes:3}") int indirectProbes,
+            @Value("${cache.gossip.allowlist:}") String allowlist,
+            @Value("${cache.peers.secret:}") String secret) {
+        final List<InetSocketAddress> staticSeeds = Arrays.stream(seeds.split(","))
+                .map(String::trim)
+                .filter(seed -> !seed.isEmpty())
+                .map(GossipMembership::parse)
+                .toList();
+        final List<String> allowedHosts = Arrays.stream(allowlist.split(","))
+                .map(String::trim)
+                .filter(host -> !host.isEmpty())
+                .toList();
+        return new GossipMembership(peerRing, meterRegistry, advertiseHost, port,
+                () -> resolveSeeds(staticSeeds, seedDns, port),
+                protocolPeriod, ackTimeout, suspicionTimeout, indirectProbes, secret,
+                () -> resolveAllowed(staticSeeds, allowedHosts, seedDns));
+    }
+
+    /**
+     * Addresses that may take part, re-resolved by the membership once per protocol period
+     */
+    private static Set<InetAddress> resolveAllowed(List<InetSocketAddress> staticSeeds, List<String> allowedHosts,
+                                                   String seedDns) {
+        final Set<InetAddress> allowed = new HashSet<>();
+        staticSeeds.stream().map(InetSocketAddress::getAddress).filter(Objects::nonNull).forEach(allowed::add);
+        allowedHosts.forEach(host -> allowed.addAll(resolve(host)));
+        allowed.addAll(resolve(seedDns));
+        return allowed;
+    }
+
+    private static List<InetSocketAddress> resolveSeeds(List<InetSocketAddress> staticSeeds, String seedDns, int port) {
+        final List<InetSocketAddress> resolved = new ArrayList<>(staticSeeds);
+        for (InetAddress address : resolve(seedDns)) {
+            resolved.add(new InetSocketAddress(address, port));
+        }
+        return resolved;
+    }
+
+    private static List<InetAddress> resolve(String name) {
+        if (name.isBlank()) {
+            return List.of();
+        }
+        try {
+            return List.of(InetAddress.getAllByName(name));
+        } catch (UnknownHostException e) {
+            logger.debug("Gossip host {} not resolvable yet: {}", name, e.getMessage());
+            return List.of();
+        }
+    }
+}
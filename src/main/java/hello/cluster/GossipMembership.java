@@ -0,0 +1,554 @@
+package hello.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * SWIM-style membership and failure detection over UDP.
+ *
+ * <p>Every protocol period this pod pings one member, taking members in a shuffled
+ * round-robin order. If no ack arrives within the ack timeout, it asks a few other members
+ * to ping the target on its behalf. If the period ends without any ack, the target becomes
+ * suspect. A suspect that does not refute the suspicion within the suspicion timeout is
+ * declared dead. A pod refutes by raising its incarnation. Incarnations start at the
+ * pod's start time, so a restarted pod outranks its own earlier death. A dead member is
+ * kept as a tombstone for {@value #DEAD_RETENTION_SUSPICION_TIMEOUTS} suspicion timeouts,
+ * so late gossip about its old incarnation cannot revive it, and then forgotten; pods
+ * replaced by rolling restarts therefore do not accumulate.
+ *
+ * <p>Membership updates are piggybacked on pings and acks. Each update is retransmitted
+ * about log(n) times, so it reaches every member in O(log n) periods without extra
+ * messages. A pod that knows no live members pings its seeds. Seeds come from a static
+ * list or from every address behind a DNS name, such as a headless Kubernetes service.
+ * Live and suspect members are published to the {@link PeerRing}.
+ *
+ * <p>Every datagram carries a send time and ends with an HMAC-SHA256 under the shared
+ * {@code cache.peers.secret}; packets that do not verify, or were sent more than
+ * {@link #MAX_SKEW} ago, are dropped. Packets are only accepted from allowed addresses, a
+ * member is only admitted when both its URL and its gossip address resolve to allowed
+ * addresses, and indirect probes are only relayed to known members, so the socket can
+ * neither be used to steer the ring nor as a reflector. The allowed addresses are
+ * resolved once per protocol period, and new members are vetted before the membership
+ * lock is taken, so no DNS lookup ever runs under it.
+ */
+public class GossipMembership implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(GossipMembership.class);
+
+    private static final byte VERSION = 2;
+    private static final byte PING = 1;
+    private static final byte ACK = 2;
+    private static final byte PING_REQ = 3;
+    private static final int MAX_PACKET = 1400;
+    private static final int MAX_PIGGYBACK = 8;
+    private static final int RETRANSMIT_MULTIPLIER = 3;
+    private static final int DEAD_RETENTION_SUSPICION_TIMEOUTS = 3;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+    static final Duration MAX_SKEW = Duration.ofSeconds(30);
+
+    enum State { ALIVE, SUSPECT, DEAD }
+
+    private final PeerRing peerRing;
+    private final String selfId;
+    private final String advertiseHost;
+    private final int bindPort;
+    private final Supplier<List<InetSocketAddress>> seeds;
+    private final Duration protocolPeriod;
+    private final Duration ackTimeout;
+    private final Duration suspicionTimeout;
+    private final int indirectProbes;
+    private final SecretKeySpec key;
+    private final Supplier<Set<InetAddress>> allowedAddresses;
+    private volatile Set<InetAddress> allowed = Set.of();
+    private final Map<String, Member> members = new HashMap<>();
+    private final Map<String, Pending> piggyback = new LinkedHashMap<>();
+    private final Set<Long> acked = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Relay> relays = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<String> probeOrder = new ArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "cache-gossip");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Timer convergence;
+    private final Counter suspicions;
+    private final Counter deaths;
+    private final Counter refutations;
+    private DatagramSocket socket;
+    private String selfAddress;
+    private long incarnation = System.currentTimeMillis();
+    private int probeIndex;
+
+    public GossipMembership(PeerRing peerRing, MeterRegistry meterRegistry, String advertiseHost, int bindPort,
+                            Supplier<List<InetSocketAddress>> seeds, Duration protocolPeriod, Duration ackTimeout,
+                            Duration suspicionTimeout, int indirectProbes, String secret,
+                            Supplier<Set<InetAddress>> allowedAddresses) {
+        if (secret.isBlank()) {
+            throw new IllegalStateException("cache.peers.secret is required when cache.gossip.enabled is set");
+        }
+        this.peerRing = peerRing;
+        this.selfId = peerRing.getSelf();
+        this.advertiseHost = advertiseHost;
+        this.bindPort = bindPort;
+        this.seeds = seeds;
+        this.protocolPeriod = protocolPeriod;
+        this.ackTimeout = ackTimeout;
+        this.suspicionTimeout = suspicionTimeout;
+        this.indirectProbes = indirectProbes;
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+        this.allowedAddresses = allowedAddresses;
+        this.convergence = Timer.builder("cache.gossip.convergence")
+                .description("Time from a membership change being declared to this pod learning it")
+                .register(meterRegistry);
+        this.suspicions = Counter.builder("cache.gossip.suspicions")
+                .description("Members this pod suspected after failed direct and indirect probes")
+                .register(meterRegistry);
+        this.deaths = Counter.builder("cache.gossip.deaths")
+                .description("Members declared dead after the suspicion timeout")
+                .register(meterRegistry);
+        this.refutations = Counter.builder("cache.gossip.refutations")
+                .description("Suspicions about this pod that it refuted")
+                .register(meterRegistry);
+        for (State state : State.values()) {
+            Gauge.builder("cache.gossip.members", this, gossip -> gossip.count(state))
+                    .tag("state", state.name().toLowerCase(Locale.ROOT))
+                    .description("Known members by state, excluding this pod")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Bind the UDP socket and start probing
+     */
+    public void start() {
+        try {
+            socket = new DatagramSocket(bindPort);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot bind gossip port " + bindPort, e);
+        }
+        selfAddress = advertiseHost + ":" + socket.getLocalPort();
+        refreshAllowed();
+        Thread.ofPlatform().daemon().name("cache-gossip-receiver").start(this::receive);
+        final long period = protocolPeriod.toMillis();
+        scheduler.scheduleWithFixedDelay(this::tickQuietly, 0, period, TimeUnit.MILLISECONDS);
+        logger.info("Gossip membership for {} listening on {}", selfId, selfAddress);
+    }
+
+    /**
+     * Port the gossip socket is bound to
+     */
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Current state of a member, or null when unknown
+     */
+    synchronized State stateOf(String id) {
+        final Member member = members.get(id);
+        return member == null ? null : member.state();
+    }
+
+    synchronized int count(State state) {
+        return (int) members.values().stream().filter(member -> member.state() == state).count();
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            logger.warn("Gossip protocol period failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * One protocol period: expire suspects, forget long-dead members, then probe the next member
+     */
+    void tick() {
+        refreshAllowed();
+        final long now = System.currentTimeMillis();
+        final Member target;
+        synchronized (this) {
+            for (Member member : List.copyOf(members.values())) {
+                if (member.state() == State.SUSPECT && now - member.changedAtMillis() >= suspicionTimeout.toMillis()) {
+                    deaths.increment();
+                    logger.info("Gossip member {} declared dead", member.id());
+                    apply(new Update(member.id(), member.address(), member.incarnation(), State.DEAD, now));
+                } else if (member.state() == State.DEAD && now - member.changedAtMillis()
+                        >= DEAD_RETENTION_SUSPICION_TIMEOUTS * suspicionTimeout.toMillis()) {
+                    members.remove(member.id());
+                }
+            }
+            relays.values().removeIf(relay -> now - relay.createdAtMillis() > protocolPeriod.toMillis() * 2);
+            // acks that arrived after their probe was already decided
+            final long settled = sequence.get() - 1024;
+            acked.removeIf(seq -> seq < settled);
+            target = nextTarget();
+        }
+        if (target == null) {
+            for (InetSocketAddress seed : seeds.get()) {
+                send(seed, new Message(PING, sequence.incrementAndGet(), null, outgoingUpdates()));
+            }
+            return;
+        }
+        probe(target);
+    }
+
+    private void refreshAllowed() {
+        allowed = Set.copyOf(allowedAddresses.get());
+    }
+
+    private void probe(Member target) {
+        final long seq = sequence.incrementAndGet();
+        final InetSocketAddress address = parse(target.address());
+        send(address, new Message(PING, seq, null, outgoingUpdates()));
+        scheduler.schedule(() -> {
+            if (acked.contains(seq)) {
+                return;
+            }
+            final List<Member> helpers;
+            synchronized (this) {
+                helpers = new ArrayList<>(members.values().stream()
+                        .filter(member -> member.state() == State.ALIVE && !member.id().equals(target.id()))
+                        .toList());
+            }
+            Collections.shuffle(helpers);
+            for (Member helper : helpers.subList(0, Math.min(indirectProbes, helpers.size()))) {
+                send(parse(helper.address()), new Message(PING_REQ, seq, target.address(), outgoingUpdates()));
+            }
+        }, ackTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.schedule(() -> {
+            if (acked.remove(seq)) {
+                return;
+            }
+            synchronized (this) {
+                final Member current = members.get(target.id());
+                if (current != null && current.state() == State.ALIVE && current.incarnation() == target.incarnation()) {
+                    suspicions.increment();
+                    logger.info("Gossip member {} suspected", target.id());
+                    apply(new Update(target.id(), target.address(), target.incarnation(), State.SUSPECT,
+                            System.currentTimeMillis()));
+                }
+            }
+        }, protocolPeriod.toMillis() - 1, TimeUnit.MILLISECONDS);
+    }
+
+    private Member nextTarget() {
+        if (probeIndex >= probeOrder.size()) {
+            probeOrder.clear();
+            members.values().stream()
+                    .filter(member -> member.state() != State.DEAD)
+                    .map(Member::id)
+                    .forEach(probeOrder::add);
+            Collections.shuffle(probeOrder, ThreadLocalRandom.current());
+            probeIndex = 0;
+        }
+        while (probeIndex < probeOrder.size()) {
+            final Member member = members.get(probeOrder.get(probeIndex++));
+            if (member != null && member.state() != State.DEAD) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    private void receive() {
+        final byte[] buffer = new byte[MAX_PACKET];
+        while (!socket.isClosed()) {
+            final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+                if (!allowed.contains(packet.getAddress())) {
+                    logger.debug("Dropping gossip packet from disallowed {}", packet.getAddress());
+                    continue;
+                }
+                handle(Message.decode(packet.getData(), packet.getLength(), key, System.currentTimeMillis()),
+                        packet.getSocketAddress());
+            } catch (IOException | RuntimeException e) {
+                if (!socket.isClosed()) {
+                    logger.debug("Dropping gossip packet: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    void handle(Message message, SocketAddress from) {
+        final List<Update> updates = message.updates().stream().filter(this::admissible).toList();
+        synchronized (this) {
+            updates.forEach(this::apply);
+        }
+        switch (message.type()) {
+            case PING -> send(from, new Message(ACK, message.sequence(), null, outgoingUpdates()));
+            case PING_REQ -> {
+                if (!isMember(message.target())) {
+                    logger.debug("Ignoring indirect probe of unknown address {}", message.target());
+                    return;
+                }
+                final long relayed = sequence.incrementAndGet();
+                relays.put(relayed, new Relay(from, message.sequence(), System.currentTimeMillis()));
+                send(parse(message.target()), new Message(PING, relayed, null, outgoingUpdates()));
+            }
+            case ACK -> {
+                final Relay relay = relays.remove(message.sequence());
+                if (relay != null) {
+                    send(relay.requester(), new Message(ACK, relay.sequence(), null, outgoingUpdates()));
+                } else {
+                    acked.add(message.sequence());
+                }
+            }
+            default -> logger.debug("Unknown gossip message type {}", message.type());
+        }
+    }
+
+    private synchronized boolean isMember(String address) {
+        return address != null && members.values().stream()
+                .anyMatch(member -> member.state() != State.DEAD && member.address().equals(address));
+    }
+
+    /**
+     * Whether an update may be applied: it is about this pod or a member already known at
+     * that address, or the hosts of its URL and gossip address both resolve to allowed
+     * addresses. Called without the lock, since resolving may block.
+     */
+    private boolean admissible(Update update) {
+        if (update.id().equals(selfId) || isKnown(update)) {
+            return true;
+        }
+        try {
+            final InetSocketAddress gossip = parse(update.address());
+            final String host = URI.create(update.id()).getHost();
+            if (!gossip.isUnresolved() && allowed.contains(gossip.getAddress())
+                    && host != null && allowed.contains(InetAddress.getByName(host))) {
+                return true;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // unparseable or unresolvable, so not admissible
+        }
+        logger.debug("Ignoring gossip about disallowed member {} at {}", update.id(), update.address());
+        return false;
+    }
+
+    private synchronized boolean isKnown(Update update) {
+        final Member member = members.get(update.id());
+        return member != null && member.address().equals(update.address());
+    }
+
+    /**
+     * Apply an admissible update if it supersedes what we know; caller holds the lock
+     */
+    private void apply(Update update) {
+        if (update.id().equals(selfId)) {
+            if (update.state() != State.ALIVE && update.incarnation() >= incarnation) {
+                incarnation = update.incarnation() + 1;
+                refutations.increment();
+                logger.info("Refuting {} suspicion with incarnation {}", update.state(), incarnation);
+            }
+            return;
+        }
+        final Member current = members.get(update.id());
+        if (current != null && !supersedes(update, current)) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        members.put(update.id(), new Member(update.id(), update.address(), update.incarnation(), update.state(), now));
+        piggyback.put(update.id(), new Pending(update, retransmits()));
+        convergence.record(Duration.ofMillis(Math.max(0, now - update.declaredAtMillis())));
+        final boolean ringChanged = current == null || (current.state() == State.DEAD) != (update.state() == State.DEAD);
+        if (ringChanged) {
+            peerRing.updateMembers(members.values().stream()
+                    .filter(member -> member.state() != State.DEAD)
+                    .map(Member::id)
+                    .toList());
+        }
+    }
+
+    /**
+     * SWIM precedence: higher incarnations win; at equal incarnation dead beats suspect beats alive
+     */
+    private static boolean supersedes(Update update, Member current) {
+        if (current.state() == State.DEAD && update.state() != State.DEAD) {
+            return update.incarnation() > current.incarnation();
+        }
+        if (update.incarnation() != current.incarnation()) {
+            return update.incarnation() > current.incarnation();
+        }
+        return update.state().ordinal() > current.state().ordinal();
+    }
+
+    private int retransmits() {
+        return RETRANSMIT_MULTIPLIER * (32 - Integer.numberOfLeadingZeros(members.size() + 1));
+    }
+
+    /**
+     * This pod's own alive update plus the pending updates with the most retransmissions left
+     */
+    private synchronized List<Update> outgoingUpdates() {
+        final List<Update> updates = new ArrayList<>(MAX_PIGGYBACK + 1);
+        updates.add(new Update(selfId, selfAddress, incarnation, State.ALIVE, System.currentTimeMillis()));
+        final List<Map.Entry<String, Pending>> candidates = new ArrayList<>(piggyback.entrySet());
+        candidates.sort(Comparator.comparingInt((Map.Entry<String, Pending> entry) -> entry.getValue().remaining()).reversed());
+        for (Map.Entry<String, Pending> entry : candidates.subList(0, Math.min(MAX_PIGGYBACK, candidates.size()))) {
+            final Pending pending = entry.getValue();
+            updates.add(pending.update());
+            if (pending.remaining() <= 1) {
+                piggyback.remove(entry.getKey());
+            } else {
+                piggyback.put(entry.getKey(), new Pending(pending.update(), pending.remaining() - 1));
+            }
+        }
+        return updates;
+    }
+
+    private void send(SocketAddress to, Message message) {
+        final byte[] bytes = message.encode(key, System.currentTimeMillis());
+        try {
+            socket.send(new DatagramPacket(bytes, bytes.length, to));
+        } catch (IOException e) {
+            logger.debug("Gossip send to {} failed: {}", to, e.getMessage());
+        }
+    }
+
+    static InetSocketAddress parse(String hostAndPort) {
+        final int colon = hostAndPort.lastIndexOf(':');
+        return new InetSocketAddress(hostAndPort.substring(0, colon), Integer.parseInt(hostAndPort.substring(colon + 1)));
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    private record Member(String id, String address, long incarnation, State state, long changedAtMillis) {
+    }
+
+    private record Pending(Update update, int remaining) {
+    }
+
+    private record Relay(SocketAddress requester, long sequence, long createdAtMillis) {
+    }
+
+    /**
+     * A member's state as disseminated; declaredAtMillis is when the change was first observed
+     */
+    record Update(String id, String address, long incarnation, State state, long declaredAtMillis) {
+    }
+
+    private static Mac mac(SecretKeySpec key) {
+        try {
+            final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    /**
+     * Wire format of one gossip datagram: the fields, then an HMAC of them
+     */
+    record Message(byte type, long sequence, String target, List<Update> updates) {
+
+        byte[] encode(SecretKeySpec key, long sentAtMillis) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(VERSION);
+                out.writeLong(sentAtMillis);
+                out.writeByte(type);
+                out.writeLong(sequence);
+                out.writeUTF(target == null ? "" : target);
+                out.writeByte(updates.size());
+                for (Update update : updates) {
+                    out.writeUTF(update.id());
+                    out.writeUTF(update.address());
+                    out.writeLong(update.incarnation());
+                    out.writeByte(update.state().ordinal());
+                    out.writeLong(update.declaredAtMillis());
+                }
+                out.write(mac(key).doFinal(bytes.toByteArray()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        static Message decode(byte[] data, int length, SecretKeySpec key, long nowMillis) throws IOException {
+            final int signed = length - MAC_LENGTH;
+            if (signed <= 0) {
+                throw new IOException("Truncated gossip message");
+            }
+            final Mac mac = mac(key);
+            mac.update(data, 0, signed);
+            if (!MessageDigest.isEqual(mac.doFinal(), Arrays.copyOfRange(data, signed, length))) {
+                throw new IOException("Bad gossip message signature");
+            }
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, signed));
+            if (in.readByte() != VERSION) {
+                throw new IOException("Unsupported gossip message version");
+            }
+            if (Math.abs(nowMillis - in.readLong()) > MAX_SKEW.toMillis()) {
+                throw new IOException("Stale gossip message");
+            }
+            final byte type = in.readByte();
+            final long sequence = in.readLong();
+            final String target = in.readUTF();
+            final int count = in.readUnsignedByte();
+            final List<Update> updates = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final String id = in.readUTF();
+                final String address = in.readUTF();
+                final long incarnation = in.readLong();
+                final int state = in.readUnsignedByte();
+                if (state >= State.values().length) {
+                    throw new IOException("Unknown member state " + state);
+                }
+                updates.add(new Update(id, address, incarnation, State.values()[state], in.readLong()));
+            }
+            return new Message(type, sequence, target.isEmpty() ? null : target, updates);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package hello.cluster;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * {@link ReplicaPeer} reached over the peer's {@code /internal/replicas} endpoints.
+ */
+public class HttpReplicaPeer implements ReplicaPeer {
+
+    public static final String SECRET_HEADER = "X-Cache-Peer-Secret";
+
+    private static final TypeReference<List<ReplicaIndex.Entry>> ENTRIES = new TypeReference<>() {
+    };
+
+    private final HttpClient httpClient;
+    private final ObjectMapper mapper;
+    private final String baseUrl;
+    private final String secret;
+    private final Duration timeout;
+
+    public HttpReplicaPeer(HttpClient httpClient, ObjectMapper mapper, String baseUrl, String secret, Duration timeout) {
+        this.httpClient = httpClient;
+        this.mapper = mapper;
+        this.baseUrl = baseUrl;
+        this.secret = secret;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public long[] nodes(int[] indices) {
+        return call("nodes", indices, long[].class);
+    }
+
+    @Override
+    public List<ReplicaIndex.Entry> entries(int[] leaves) {
+        try {
+            return mapper.readValue(post("entries", leaves), ENTRIES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void apply(List<ReplicaIndex.Entry> entries) {
+        if (!entries.isEmpty()) {
+            post("apply", entries);
+        }
+    }
+
+    private <T> T call(String path, Object body, Class<T> type) {
+        try {
+            return mapper.readValue(post(path, body), type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] post(String path, Object body) {
+        try {
+            final HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/internal/replicas/" + path))
+                    .timeout(timeout)
+                    .header(SECRET_HEADER, secret)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+                    .build();
+            final HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw new IOException("Peer " + baseUrl + " answered " + response.statusCode() + " to " + path);
+            }
+            return response.body();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted calling peer " + baseUrl, e);
+        }
+    }
+}
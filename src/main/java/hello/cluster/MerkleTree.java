@@ -0,0 +1,64 @@
+package hello.cluster;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Incrementally maintained hash tree over the keyspace.
+ *
+ * <p>The key hash space is cut into {@code 2^depth} leaf ranges. A node's digest is the XOR
+ * of the digests of all entries below it, so changing one entry only XORs the difference
+ * into its leaf and that leaf's ancestors: O(depth) work and no rehashing of siblings.
+ * Nodes are stored heap-style: the root is node 1, node {@code i} has children
+ * {@code 2i} and {@code 2i + 1}, and leaf {@code l} is node {@code leaves() + l}.
+ */
+public final class MerkleTree {
+
+    private final int depth;
+    private final int leaves;
+    private final AtomicLongArray nodes;
+
+    public MerkleTree(int depth) {
+        if (depth < 1 || depth > 20) {
+            throw new IllegalArgumentException("Merkle tree depth must be between 1 and 20");
+        }
+        this.depth = depth;
+        this.leaves = 1 << depth;
+        this.nodes = new AtomicLongArray(2 * leaves);
+    }
+
+    /**
+     * Replace an entry's digest; a new entry has an old digest of 0, a removed one a new digest of 0
+     */
+    public void update(long keyHash, long oldDigest, long newDigest) {
+        final long delta = oldDigest ^ newDigest;
+        if (delta == 0) {
+            return;
+        }
+        for (int node = leaves + leafOf(keyHash); node >= 1; node >>>= 1) {
+            nodes.getAndAccumulate(node, delta, (current, change) -> current ^ change);
+        }
+    }
+
+    /**
+     * Leaf range a key hash falls into
+     */
+    public int leafOf(long keyHash) {
+        return (int) (keyHash >>> (64 - depth));
+    }
+
+    public long node(int index) {
+        return nodes.get(index);
+    }
+
+    public long root() {
+        return nodes.get(1);
+    }
+
+    public int leaves() {
+        return leaves;
+    }
+
+    public boolean isLeaf(int index) {
+        return index >= leaves;
+    }
+}
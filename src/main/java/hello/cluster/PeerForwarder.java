@@ -0,0 +1,208 @@
+package hello.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.function.LongSupplier;
+
+/**
+ * Relays cache requests to the pod owning the key.
+ *
+ * <p>One shared {@link HttpClient} is used for all peers; it keeps HTTP/1.1 connections
+ * alive and pools them per peer, so steady-state forwarding costs no handshakes. The
+ * caller's {@code Authorization} and {@code Idempotency-Key} headers are passed on, so the
+ * owner authenticates, scopes and deduplicates the request exactly as if it had received it
+ * directly. Forwarded requests are
+ * marked with {@value #FORWARDED_HEADER} and always served by the receiving pod, which
+ * prevents loops while two pods briefly disagree about membership.
+ *
+ * <p>The marker carries the sender, a timestamp and an HMAC-SHA256 of both plus the method,
+ * URI and a SHA-256 digest of the body under the shared {@code cache.peers.secret}; a marker
+ * that does not verify, or is more than {@link #MAX_SKEW} old, is ignored, so clients cannot
+ * make a pod serve keys it does not own, nor replay an observed marker with another body.
+ * Peering therefore requires the secret.
+ */
+@Component
+public class PeerForwarder {
+
+    private static final Logger logger = LoggerFactory.getLogger(PeerForwarder.class);
+
+    public static final String FORWARDED_HEADER = "X-Cache-Forwarded-By";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    static final Duration MAX_SKEW = Duration.ofSeconds(30);
+
+    private final HttpClient httpClient;
+    private final Duration timeout;
+    private final String self;
+    private final Timer latency;
+    private final Counter failures;
+    private final SecretKeySpec key;
+    private final LongSupplier millisClock;
+
+    @Autowired
+    public PeerForwarder(
+            MeterRegistry meterRegistry,
+            PeerRing peerRing,
+            @Value("${cache.peers.timeout:2s}") Duration timeout,
+            @Value("${cache.peers.secret:}") String secret) {
+        this(meterRegistry, peerRing, timeout, secret, System::currentTimeMillis);
+    }
+
+    PeerForwarder(MeterRegistry meterRegistry, PeerRing peerRing, Duration timeout, String secret,
+                  LongSupplier millisClock) {
+        if (peerRing.isEnabled() && secret.isBlank()) {
+            throw new IllegalStateException("cache.peers.secret is required when cache.peers.enabled is set");
+        }
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        this.timeout = timeout;
+        this.self = peerRing.getSelf();
+        this.latency = Timer.builder("cache.peers.forward.latency")
+                .description("Latency of requests forwarded to the owning pod")
+                .register(meterRegistry);
+        this.failures = Counter.builder("cache.peers.forward.failures")
+                .description("Forwarded requests that failed and were served locally instead")
+                .register(meterRegistry);
+        this.key = secret.isBlank() ? null : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+        this.millisClock = millisClock;
+    }
+
+    /**
+     * Whether the request, whose body was read as given (null when it has none), was forwarded
+     * by an authenticated peer and must be served here
+     */
+    public boolean isForwarded(HttpServletRequest request, byte[] body) {
+        final String marker = request.getHeader(FORWARDED_HEADER);
+        if (marker == null || key == null) {
+            return false;
+        }
+        // <sender>;<epoch millis>;<base64url mac>; the sender is a URL and may hold ';' only before the last two
+        final int macStart = marker.lastIndexOf(';');
+        final int timeStart = macStart < 0 ? -1 : marker.lastIndexOf(';', macStart - 1);
+        if (timeStart < 0) {
+            return false;
+        }
+        try {
+            final long sentAt = Long.parseLong(marker, timeStart + 1, macStart, 10);
+            if (Math.abs(millisClock.getAsLong() - sentAt) > MAX_SKEW.toMillis()) {
+                return false;
+            }
+            final byte[] presented = Base64.getUrlDecoder().decode(marker.substring(macStart + 1));
+            final byte[] expected =
+                    mac(marker.substring(0, timeStart), sentAt, request.getMethod(), target(request), body);
+            return MessageDigest.isEqual(expected, presented);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Send the request to its owner; returns null when the owner cannot be reached
+     */
+    public ResponseEntity<byte[]> forward(String owner, HttpServletRequest request, byte[] body) {
+        return forward(owner, request, body, request.getHeader(HttpHeaders.ACCEPT));
+    }
+
+    /**
+     * Send the request to its owner asking for the given representation; returns null when
+     * the owner cannot be reached
+     */
+    public ResponseEntity<byte[]> forward(String owner, HttpServletRequest request, byte[] body, String accept) {
+        final String target = target(request);
+        final URI uri = URI.create(owner + target);
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header(FORWARDED_HEADER, marker(request.getMethod(), target, body))
+                .method(request.getMethod(), body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        copyHeader(request, builder, HttpHeaders.AUTHORIZATION);
+        copyHeader(request, builder, HttpHeaders.CONTENT_TYPE);
+        copyHeader(request, builder, IDEMPOTENCY_KEY_HEADER);
+        if (accept != null) {
+            builder.header(HttpHeaders.ACCEPT, accept);
+        }
+        final long start = System.nanoTime();
+        try {
+            final HttpResponse<byte[]> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+            latency.record(Duration.ofNanos(System.nanoTime() - start));
+            final ResponseEntity.BodyBuilder relayed = ResponseEntity.status(response.statusCode());
+            response.headers().firstValue(HttpHeaders.CONTENT_TYPE)
+                    .ifPresent(contentType -> relayed.header(HttpHeaders.CONTENT_TYPE, contentType));
+            response.headers().firstValue(IDEMPOTENT_REPLAYED_HEADER)
+                    .ifPresent(replayed -> relayed.header(IDEMPOTENT_REPLAYED_HEADER, replayed));
+            return relayed.body(response.body());
+        } catch (IOException e) {
+            failures.increment();
+            logger.warn("Forwarding to {} failed, serving locally: {}", owner, e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Signed {@value #FORWARDED_HEADER} value for a request sent now; just the sender when no
+     * secret is configured, which receivers never trust
+     */
+    String marker(String method, String target, byte[] body) {
+        if (key == null) {
+            return self;
+        }
+        final long now = millisClock.getAsLong();
+        return self + ";" + now + ";" + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(mac(self, now, method, target, body));
+    }
+
+    private byte[] mac(String sender, long sentAt, String method, String target, byte[] body) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(body == null ? new byte[0] : body);
+            final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            mac.update((sender + "\n" + sentAt + "\n" + method + "\n" + target + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            return mac.doFinal(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static String target(HttpServletRequest request) {
+        final String query = request.getQueryString();
+        return request.getRequestURI() + (query == null ? "" : "?" + query);
+    }
+
+    private static void copyHeader(HttpServletRequest request, HttpRequest.Builder builder, String name) {
+        final String value = request.getHeader(name);
+        if (value != null) {
+            builder.header(name, value);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package hello.cluster;
+
+import hello.cache.RemoteKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Assignment of cache keys to application pods.
+ *
+ * <p>With {@code cache.peers.enabled} each pod owns the slice of the keyspace that the
+ * {@link ConsistentHashRing} over the current members assigns to {@code cache.peers.self};
+ * requests for other keys are forwarded to their owner. Members start out as
+ * {@code cache.peers.members} and can be replaced at runtime as membership changes.
+ */
+@Component
+public class PeerRing {
+
+    private static final Logger logger = LoggerFactory.getLogger(PeerRing.class);
+
+    private final boolean enabled;
+    private final String self;
+    private final Counter rebalances;
+    private volatile ConsistentHashRing ring;
+
+    public PeerRing(
+            MeterRegistry meterRegistry,
+            @Value("${cache.peers.enabled:false}") boolean enabled,
+            @Value("${cache.peers.self:http://localhost:8080}") String self,
+            @Value("${cache.peers.members:}") String members,
+            @Value("${cache.peers.virtual-nodes:128}") int virtualNodes) {
+        this.enabled = enabled;
+        this.self = self;
+        final Set<String> initial = new LinkedHashSet<>();
+        initial.add(self);
+        Arrays.stream(members.split(","))
+                .map(String::trim)
+                .filter(member -> !member.isEmpty())
+                .forEach(initial::add);
+        this.ring = new ConsistentHashRing(initial, virtualNodes);
+        this.rebalances = Counter.builder("cache.peers.rebalances")
+                .description("Membership changes that rebuilt the consistent-hash ring")
+                .register(meterRegistry);
+        Gauge.builder("cache.peers.members", this, peers -> peers.ring.members().size())
+                .description("Pods currently on the consistent-hash ring")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Owner of a tenant's key, or null when this pod owns it (or sharding is disabled)
+     */
+    public String remoteOwner(String tenant, String key) {
+        if (!enabled) {
+            return null;
+        }
+        final String owner = ring.ownerOf(RemoteKey.encode(tenant, key));
+        return self.equals(owner) ? null : owner;
+    }
+
+    /**
+     * Replace the member set; this pod always stays on the ring
+     */
+    public void updateMembers(Collection<String> members) {
+        final Set<String> next = new LinkedHashSet<>(members);
+        next.add(self);
+        final ConsistentHashRing current = ring;
+        if (next.equals(Set.copyOf(current.members()))) {
+            return;
+        }
+        ring = current.withMembers(next);
+        rebalances.increment();
+        logger.info("Peer ring rebuilt with {} members", next.size());
+    }
+
+    /**
+     * Current members, sorted
+     */
+    public List<String> members() {
+        return ring.members();
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
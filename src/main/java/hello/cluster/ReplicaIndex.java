@@ -0,0 +1,255 @@
+package hello.cluster;
+
+import hello.cache.CacheKey;
+import hello.cache.CacheService;
+import hello.cache.RemoteKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Versioned write path for cache objects replicated by {@link AntiEntropy}.
+ *
+ * <p>With {@code cache.anti-entropy.enabled} every write and delete served by this pod is
+ * stamped with a hybrid logical version (milliseconds in the high bits, a counter in the
+ * low 16) and folded into a {@link MerkleTree}; deletes leave a tombstone so repair does
+ * not resurrect them. The store write and the version change happen under the same
+ * per-key lock, so the tree always describes what the store holds. Conflicts resolve
+ * last-writer-wins. When disabled, writes pass straight through to the {@link CacheService}.
+ *
+ * <p>When the store evicts or expires a value, its version is forgotten too, so the index
+ * never outgrows the store's byte bound. The drop is queued by the store and applied on the
+ * next write or repair round, since the store reports it while this index may be mid-update.
+ * A peer still holding the value offers it back at the next repair, like any missing entry.
+ */
+@Component
+public class ReplicaIndex {
+
+    private static final int COUNTER_BITS = 16;
+
+    private final CacheService cacheService;
+    private final boolean enabled;
+    private final long tombstoneTtlMillis;
+    private final LongSupplier millisClock;
+    private final MerkleTree tree;
+    private final Map<String, Version> versions = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final Queue<CacheKey> dropped = new ConcurrentLinkedQueue<>();
+
+    @Autowired
+    public ReplicaIndex(
+            CacheService cacheService,
+            @Value("${cache.anti-entropy.enabled:false}") boolean enabled,
+            @Value("${cache.anti-entropy.tree-depth:10}") int treeDepth,
+            @Value("${cache.anti-entropy.tombstone-ttl:1h}") Duration tombstoneTtl) {
+        this(cacheService, enabled, treeDepth, tombstoneTtl, System::currentTimeMillis);
+    }
+
+    ReplicaIndex(CacheService cacheService, boolean enabled, int treeDepth, Duration tombstoneTtl,
+                 LongSupplier millisClock) {
+        this.cacheService = cacheService;
+        this.enabled = enabled;
+        this.tombstoneTtlMillis = tombstoneTtl.toMillis();
+        this.millisClock = millisClock;
+        this.tree = new MerkleTree(treeDepth);
+        if (enabled) {
+            cacheService.addDropListener((tenant, key) -> dropped.add(new CacheKey(tenant, key)));
+        }
+    }
+
+    /**
+     * Store an object as a new version
+     */
+    public void put(String tenant, String key, byte[] value) {
+        if (!enabled) {
+            cacheService.putObject(tenant, key, value);
+            return;
+        }
+        final String remoteKey = RemoteKey.encode(tenant, key);
+        versions.compute(remoteKey, (k, old) -> {
+            cacheService.putObject(tenant, key, value);
+            return replace(k, old, new Version(nextVersion(), false, ConsistentHashRing.hash(value)));
+        });
+        forgetDropped();
+    }
+
+    /**
+     * Delete an object, leaving a tombstone; returns true when it existed
+     */
+    public boolean delete(String tenant, String key) {
+        if (!enabled) {
+            return cacheService.deleteObject(tenant, key);
+        }
+        final String remoteKey = RemoteKey.encode(tenant, key);
+        final boolean[] existed = new boolean[1];
+        versions.compute(remoteKey, (k, old) -> {
+            existed[0] = cacheService.deleteObject(tenant, key);
+            return replace(k, old, new Version(nextVersion(), true, 0));
+        });
+        forgetDropped();
+        return existed[0];
+    }
+
+    /**
+     * Apply an entry from a peer if it is newer than ours; returns true when applied
+     */
+    public boolean apply(Entry entry) {
+        final CacheKey cacheKey = RemoteKey.decode(entry.key());
+        if (cacheKey == null || (!entry.deleted() && entry.value() == null)) {
+            return false;
+        }
+        clock.accumulateAndGet(entry.version(), Math::max);
+        final boolean[] applied = new boolean[1];
+        versions.compute(entry.key(), (k, old) -> {
+            final Version incoming = new Version(entry.version(), entry.deleted(),
+                    entry.deleted() ? 0 : ConsistentHashRing.hash(entry.value()));
+            if (old != null && !incoming.supersedes(k, old)) {
+                return old;
+            }
+            if (entry.deleted()) {
+                cacheService.deleteObject(cacheKey.tenant(), cacheKey.key());
+            } else {
+                cacheService.putObject(cacheKey.tenant(), cacheKey.key(), entry.value());
+            }
+            applied[0] = true;
+            return replace(k, old, incoming);
+        });
+        forgetDropped();
+        return applied[0];
+    }
+
+    /**
+     * Current entries in the given leaf ranges, with values
+     */
+    public List<Entry> entries(int[] leaves) {
+        forgetDropped();
+        final BitSet wanted = new BitSet(tree.leaves());
+        for (int leaf : leaves) {
+            wanted.set(leaf);
+        }
+        final List<Entry> entries = new ArrayList<>();
+        for (Map.Entry<String, Version> indexed : versions.entrySet()) {
+            final String remoteKey = indexed.getKey();
+            final Version version = indexed.getValue();
+            if (!wanted.get(tree.leafOf(ConsistentHashRing.hash(remoteKey)))) {
+                continue;
+            }
+            if (version.deleted()) {
+                entries.add(new Entry(remoteKey, version.version(), true, null));
+                continue;
+            }
+            final CacheKey cacheKey = RemoteKey.decode(remoteKey);
+            // Not a client read, so a scan neither counts towards nor pins hot keys
+            final byte[] value = cacheService.peekObject(cacheKey.tenant(), cacheKey.key());
+            if (value != null) {
+                entries.add(new Entry(remoteKey, version.version(), false, value));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Whether entry {@code a} wins over entry {@code b} for the same key
+     */
+    public static boolean isNewer(Entry a, Entry b) {
+        return Version.of(a).supersedes(a.key(), Version.of(b));
+    }
+
+    /**
+     * Drop tombstones older than the tombstone TTL, whose peers must have synced within it,
+     * and the versions of values the store has dropped since
+     */
+    public void pruneTombstones() {
+        forgetDropped();
+        final long horizon = (millisClock.getAsLong() - tombstoneTtlMillis) << COUNTER_BITS;
+        for (Map.Entry<String, Version> indexed : versions.entrySet()) {
+            if (indexed.getValue().deleted() && indexed.getValue().version() < horizon) {
+                versions.computeIfPresent(indexed.getKey(),
+                        (k, current) -> current.deleted() && current.version() < horizon ? replace(k, current, null) : current);
+            }
+        }
+    }
+
+    /**
+     * Forget the versions of values the store dropped, unless the key was written again
+     */
+    private void forgetDropped() {
+        CacheKey cacheKey;
+        while ((cacheKey = dropped.poll()) != null) {
+            final CacheKey key = cacheKey;
+            versions.computeIfPresent(RemoteKey.encode(key.tenant(), key.key()), (k, current) ->
+                    current.deleted() || cacheService.peekObject(key.tenant(), key.key()) != null
+                            ? current
+                            : replace(k, current, null));
+        }
+    }
+
+    int size() {
+        return versions.size();
+    }
+
+    public MerkleTree tree() {
+        return tree;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private Version replace(String remoteKey, Version old, Version next) {
+        tree.update(ConsistentHashRing.hash(remoteKey),
+                old == null ? 0 : old.digest(remoteKey),
+                next == null ? 0 : next.digest(remoteKey));
+        return next;
+    }
+
+    private long nextVersion() {
+        final long floor = millisClock.getAsLong() << COUNTER_BITS;
+        return clock.updateAndGet(last -> Math.max(last + 1, floor));
+    }
+
+    /**
+     * A replicated entry as exchanged between peers; the value is null for tombstones
+     */
+    public record Entry(String key, long version, boolean deleted, byte[] value) {
+    }
+
+    private record Version(long version, boolean deleted, long valueHash) {
+
+        static Version of(Entry entry) {
+            return new Version(entry.version(), entry.deleted(),
+                    entry.deleted() ? 0 : ConsistentHashRing.hash(entry.value()));
+        }
+
+        long digest(String remoteKey) {
+            long h = ConsistentHashRing.hash(remoteKey) ^ Long.rotateLeft(version * 0x9e3779b97f4a7c15L, 17)
+                    ^ valueHash ^ (deleted ? 0x5bd1e9955bd1e995L : 0);
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            // 0 is reserved for "no entry"
+            return h == 0 ? 1 : h;
+        }
+
+        /**
+         * Last writer wins; equal versions from different pods are ordered by digest
+         */
+        boolean supersedes(String remoteKey, Version other) {
+            if (version != other.version) {
+                return version > other.version;
+            }
+            return Long.compareUnsigned(digest(remoteKey), other.digest(remoteKey)) > 0;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package hello.cluster;
+
+import java.util.List;
+
+/**
+ * Another replica as seen by {@link AntiEntropy}.
+ */
+public interface ReplicaPeer {
+
+    /**
+     * Digests of the given Merkle tree nodes
+     */
+    long[] nodes(int[] indices);
+
+    /**
+     * The peer's entries in the given leaf ranges
+     */
+    List<ReplicaIndex.Entry> entries(int[] leaves);
+
+    /**
+     * Offer entries to the peer, which keeps those newer than its own
+     */
+    void apply(List<ReplicaIndex.Entry> entries);
+}
@@ -0,0 +1,68 @@
+package hello.controller;
+
+import hello.cache.HotKeyDetector;
+import hello.cache.HotKeyTier;
+import hello.security.RequirePermission;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Administrative insight into the cache internals of this pod.
+ */
+@RestController
+@RequestMapping("/api/v1/cacheServices/admin")
+@Tag(name = "Cache Administration", description = "Cache diagnostics for administrators")
+public class CacheAdminController {
+
+    private final HotKeyDetector hotKeyDetector;
+    private final HotKeyTier hotKeyTier;
+
+    public CacheAdminController(HotKeyDetector hotKeyDetector, HotKeyTier hotKeyTier) {
+        this.hotKeyDetector = hotKeyDetector;
+        this.hotKeyTier = hotKeyTier;
+    }
+
+    /**
+     * List the hot keys currently detected on this pod
+     */
+    @GetMapping("/hot-keys")
+    @PreAuthorize("hasAuthority('CACHE_ADMIN')")
+    @RequirePermission(value = {"CACHE_ADMIN"})
+    @Operation(
+        summary = "List hot keys",
+        description = "Returns the hottest keys seen by this pod with their estimated reads in the current window. Requires CACHE_ADMIN permission.",
+        security = @SecurityRequirement(name = "bearer-jwt")
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Hot keys listed"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - CACHE_ADMIN permission required")
+    })
+    public ResponseEntity<Map<String, Object>> hotKeys() {
+        final List<Map<String, Object>> keys = new ArrayList<>();
+        for (HotKeyDetector.HotKey hotKey : hotKeyDetector.hotKeys()) {
+            final Map<String, Object> entry = new HashMap<>();
+            entry.put("tenant", hotKey.key().tenant());
+            entry.put("key", hotKey.key().key());
+            entry.put("estimatedReads", hotKey.count());
+            entry.put("pinned", hotKeyTier.isPinned(hotKey.key().tenant(), hotKey.key().key()));
+            keys.add(entry);
+        }
+        final Map<String, Object> response = new HashMap<>();
+        response.put("hotKeys", keys);
+        response.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(response);
+    }
+}
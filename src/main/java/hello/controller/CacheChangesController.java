@@ -0,0 +1,206 @@
+package hello.controller;
+
+import hello.cache.ChangeFeed;
+import hello.cache.TenantResolver;
+import hello.security.RequirePermission;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-sent event stream of the caller's cache mutations on this pod, from the {@link ChangeFeed}.
+ *
+ * <p>Each subscriber is pumped by its own virtual thread polling the feed, so a slow client
+ * only ever delays itself. Event IDs are {@code epoch:sequence}; a reconnecting client's
+ * {@code Last-Event-ID} resumes the stream where it stopped. A {@code resync} event means
+ * changes were missed (the client fell a whole ring behind, or the pod restarted) and state
+ * should be re-read. Idle streams get {@code heartbeat} events that advance the ID, so
+ * clients filtering on a quiet prefix do not fall behind.
+ */
+@RestController
+@RequestMapping("/api/v1/cacheServices/changes")
+@Tag(name = "Cache Services", description = "Cache management operations with JWT authorization")
+public class CacheChangesController implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheChangesController.class);
+
+    private static final int READ_BATCH = 256;
+
+    private final ChangeFeed changeFeed;
+    private final Duration pollInterval;
+    private final Duration heartbeat;
+    private final Duration timeout;
+    private final int maxSubscribers;
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter resyncs;
+
+    public CacheChangesController(
+            ChangeFeed changeFeed,
+            MeterRegistry meterRegistry,
+            @Value("${cache.changes.poll-interval:50ms}") Duration pollInterval,
+            @Value("${cache.changes.heartbeat:15s}") Duration heartbeat,
+            @Value("${cache.changes.timeout:30m}") Duration timeout,
+            @Value("${cache.changes.max-subscribers:256}") int maxSubscribers) {
+        this.changeFeed = changeFeed;
+        this.pollInterval = pollInterval;
+        this.heartbeat = heartbeat;
+        this.timeout = timeout;
+        this.maxSubscribers = maxSubscribers;
+        this.resyncs = Counter.builder("cache.changes.resyncs")
+                .description("Change feed subscribers told to resync after missing changes")
+                .register(meterRegistry);
+        Gauge.builder("cache.changes.subscribers", subscribers, AtomicInteger::get)
+                .description("Open change feed streams")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stream the caller's cache mutations
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('CACHE_READ') or hasAuthority('CACHE_ADMIN')")
+    @RequirePermission(value = {"CACHE_READ", "CACHE_ADMIN"})
+    @Operation(
+        summary = "Subscribe to cache changes",
+        description = "Server-sent events (put, delete, expire) for the caller's objects written through this pod. "
+            + "Send Last-Event-ID to resume. Requires CACHE_READ or CACHE_ADMIN permission.",
+        security = @SecurityRequirement(name = "bearer-jwt")
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Event stream opened"),
+        @ApiResponse(responseCode = "503", description = "Too many open streams on this pod")
+    })
+    public ResponseEntity<SseEmitter> changes(
+        @Parameter(description = "Only report keys starting with this prefix", example = "user:")
+        @RequestParam(defaultValue = "") final String prefix,
+        @Parameter(description = "ID of the last event received, to resume from")
+        @RequestHeader(value = "Last-Event-ID", required = false) final String lastEventId) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        final String tenant = TenantResolver.currentTenant();
+        final long resumeAt = resumePosition(lastEventId);
+        final SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        final AtomicBoolean closed = new AtomicBoolean();
+        emitter.onCompletion(() -> closed.set(true));
+        emitter.onTimeout(() -> closed.set(true));
+        emitter.onError(e -> closed.set(true));
+        final long from = resumeAt < 0 ? changeFeed.head() : resumeAt;
+        final boolean resync = lastEventId != null && resumeAt < 0;
+        executor.execute(() -> pump(emitter, closed, tenant, prefix, from, resync));
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Sequence to resume at after the given event ID; -1 when it is not from this feed's epoch
+     */
+    private long resumePosition(String lastEventId) {
+        if (lastEventId == null) {
+            return -1;
+        }
+        final int separator = lastEventId.indexOf(':');
+        try {
+            if (separator < 0 || Long.parseLong(lastEventId.substring(0, separator)) != changeFeed.epoch()) {
+                return -1;
+            }
+            return Math.max(0, Long.parseLong(lastEventId.substring(separator + 1)) + 1);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void pump(SseEmitter emitter, AtomicBoolean closed, String tenant, String prefix, long from,
+                      boolean resync) {
+        long next = from;
+        long lastSent = System.nanoTime();
+        try {
+            if (resync) {
+                resync(emitter, next);
+            }
+            while (!closed.get()) {
+                final ChangeFeed.Batch batch = changeFeed.read(next, READ_BATCH);
+                for (ChangeFeed.Change change : batch.changes()) {
+                    if (change.tenant().equals(tenant) && change.key().startsWith(prefix)) {
+                        emitter.send(SseEmitter.event()
+                                .id(eventId(change.sequence()))
+                                .name(change.type().name().toLowerCase(Locale.ROOT))
+                                .data(payload(change), MediaType.APPLICATION_JSON));
+                        lastSent = System.nanoTime();
+                    }
+                }
+                next = batch.next();
+                if (batch.lagged()) {
+                    resync(emitter, next);
+                    lastSent = System.nanoTime();
+                } else if (batch.changes().isEmpty()) {
+                    if (System.nanoTime() - lastSent >= heartbeat.toNanos()) {
+                        emitter.send(SseEmitter.event().id(eventId(next - 1)).name("heartbeat").data(""));
+                        lastSent = System.nanoTime();
+                    }
+                    Thread.sleep(pollInterval.toMillis());
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Change stream closed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            subscribers.decrementAndGet();
+            emitter.complete();
+        }
+    }
+
+    private void resync(SseEmitter emitter, long next) throws IOException {
+        resyncs.increment();
+        emitter.send(SseEmitter.event().id(eventId(next - 1)).name("resync").data(""));
+    }
+
+    private String eventId(long sequence) {
+        return changeFeed.epoch() + ":" + sequence;
+    }
+
+    private static Map<String, Object> payload(ChangeFeed.Change change) {
+        final Map<String, Object> payload = new HashMap<>();
+        payload.put("sequence", change.sequence());
+        payload.put("type", change.type().name());
+        payload.put("key", change.key());
+        payload.put("timestamp", change.timestamp());
+        return payload;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
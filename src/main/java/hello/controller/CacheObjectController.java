@@ -0,0 +1,475 @@
+package hello.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hello.cache.CacheFrames;
+import hello.cache.CacheMutation;
+import hello.cache.CacheService;
+import hello.cache.IdempotencyTable;
+import hello.cache.TenantResolver;
+import hello.cluster.PeerForwarder;
+import hello.cluster.PeerRing;
+import hello.cluster.ReplicaIndex;
+import hello.security.AuthoritySet;
+import hello.security.RequirePermission;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache object storage endpoints backed by the {@link CacheService}.
+ * Objects are opaque byte payloads scoped to the caller's tenant (JWT idp + subject).
+ * With peer sharding enabled, requests for keys owned by another pod are forwarded there.
+ * Writes go through the {@link ReplicaIndex} so anti-entropy can version and repair them.
+ * Batch reads are served as JSON or, for clients accepting it, as {@link CacheFrames}.
+ * Writes with an {@value #IDEMPOTENCY_KEY_HEADER} header are deduplicated by the {@link IdempotencyTable}.
+ * Transactions apply several puts and deletes atomically on the pod owning all their keys.
+ */
+@RestController
+@RequestMapping("/api/v1/cacheServices/objects")
+@Tag(name = "Cache Services", description = "Cache management operations with JWT authorization")
+public class CacheObjectController {
+
+    private static final String ID_KEY = "id";
+    private static final String TIMESTAMP_KEY = "timestamp";
+    private static final String ERROR_KEY = "error";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final long DELETE_AUTHORITIES =
+            AuthoritySet.mask(AuthoritySet.CACHE_DELETE, AuthoritySet.CACHE_ADMIN);
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final CacheService cacheService;
+    private final PeerRing peerRing;
+    private final PeerForwarder peerForwarder;
+    private final ReplicaIndex replicaIndex;
+    private final IdempotencyTable idempotencyTable;
+    private final int maxBatchKeys;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public CacheObjectController(CacheService cacheService, PeerRing peerRing, PeerForwarder peerForwarder,
+                                 ReplicaIndex replicaIndex, IdempotencyTable idempotencyTable,
+                                 @Value("${cache.batch.max-keys:1000}") int maxBatchKeys) {
+        this.cacheService = cacheService;
+        this.peerRing = peerRing;
+        this.peerForwarder = peerForwarder;
+        this.replicaIndex = replicaIndex;
+        this.idempotencyTable = idempotencyTable;
+        this.maxBatchKeys = maxBatchKeys;
+    }
+
+    /**
+     * Get a cache object for the caller's tenant
+     */
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('CACHE_READ') or hasAuthority('CACHE_ADMIN')")
+    @RequirePermission(value = {"CACHE_READ", "CACHE_ADMIN"})
+    @Operation(
+        summary = "Get cache object payload",
+        description = "Returns the stored payload. Requires CACHE_READ or CACHE_ADMIN permission.",
+        security = @SecurityRequirement(name = "bearer-jwt")
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Object retrieved successfully"),
+        @ApiResponse(responseCode = "404", description = "Object not found for this tenant")
+    })
+    public ResponseEntity<byte[]> getObject(
+        @Parameter(description = "Cache object ID", required = true, example = "123")
+        @PathVariable final String id,
+        final HttpServletRequest request) {
+        final String tenant = TenantResolver.currentTenant();
+        final ResponseEntity<byte[]> forwarded = forwardToOwner(tenant, id, request, null);
+        if (forwarded != null) {
+            return forwarded;
+        }
+        final byte[] value = cacheService.getObject(tenant, id);
+        if (value == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(value);
+    }
+
+    /**
+     * Get several cache objects for the caller's tenant as JSON, values base64-encoded.
+     * No produces condition, so it is the default for clients not asking for frames
+     */
+    @PostMapping(value = "/batch-get", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('CACHE_READ') or hasAuthority('CACHE_ADMIN')")
+    @RequirePermission(value = {"CACHE_READ", "CACHE_ADMIN"})
+    @Operation(
+        summary = "Get several cache object payloads",
+        description = "Takes a JSON array of IDs and returns the payloads by ID, null when missing. "
+            + "Send Accept: " + CacheFrames.MEDIA_TYPE + " for the binary framing instead. "
+            + "Requires CACHE_READ or CACHE_ADMIN permission.",
+        security = @SecurityRequirement(name = "bearer-jwt")
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Objects retrieved"),
+        @ApiResponse(responseCode = "400", description = "Too many IDs in one batch")
+    })
+    public ResponseEntity<Map<String, Object>> getObjects(
+        @RequestBody final List<String> ids,
+        final HttpServletRequest request) {
+        final List<CacheFrames.Frame> frames = batchGet(ids, request);
+        final Map<String, byte[]> objects = new LinkedHashMap<>();
+        final List<String> unavailable = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (frames.get(i).status() == CacheFrames.STATUS_UNAVAILABLE) {
+                unavailable.add(ids.get(i));
+            } else {
+                objects.put(ids.get(i), frames.get(i).value());
+            }
+        }
+        final Map<String, Object> response = new HashMap<>();
+        response.put("objects", objects);
+        response.put("unavailable", unavailable);
+        response.put(TIMESTAMP_KEY, System.currentTimeMillis());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Get several cache objects for the caller's tenant as cache frames, written straight
+     * from the stored arrays
+     */
+    @PostMapping(value = "/batch-get", consumes = MediaType.APPLICATION_JSON_VALUE,
+        produces = CacheFrames.MEDIA_TYPE)
+    @PreAuthorize("hasAuthority('CACHE_READ') or hasAuthority('CACHE_ADMIN')")
+    @RequirePermission(value = {"CACHE_READ", "CACHE_ADMIN"})
+    @Operation(hidden = true)
+    public void getObjectsFramed(
+        @RequestBody final List<String> ids,
+        final HttpServletRequest request,
+        final HttpServletResponse response) throws IOException {
+        final List<CacheFrames.Frame> frames = batchGet(ids, request);
+        response.setContentType(CacheFrames.MEDIA_TYPE);
+        response.setContentLengthLong(CacheFrames.encodedLength(frames));
+        CacheFrames.write(frames, response.getOutputStream());
+    }
+
+    /**
+     * Store a cache object for the caller's tenant
+     */
+    @PutMapping(value = "/{id}", consumes = MediaType.ALL_VALUE)
+    @PreAuthorize("hasAuthority('CACHE_WRITE') or hasAuthority('CACHE_ADMIN')")
+    @RequirePermission(value = {"CACHE_WRITE", "CACHE_ADMIN"})
+    @Operation(
+        summary = "Put cache object payload",
+        description = "Stores the request body. A retry with the same Idempotency-Key returns the original "
+            + "result without storing again. Requires CACHE_WRITE or CACHE_ADMIN permission.",
+        security = @SecurityRequirement(name = "bearer-jwt")
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Object stored successfully"),
+        @ApiResponse(responseCode = "400", description = "Object exceeds the per-tenant limit"),
+        @ApiResponse(responseCode = "409", description = "The request with this Idempotency-Key is still executing"),
+        @ApiResponse(responseCode = "422", description = "The Idempotency-Key was used for a different request")
+    })
+    public ResponseEntity<?> putObject(
+        @Parameter(description = "Cache object ID", required = true, example = "123")
+        @PathVariable final String id,
+        @RequestBody final byte[] value,
+        @Parameter(description = "Client-chosen key identifying this write across retries")
+        @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) final String idempotencyKey,
+        final HttpServletRequest request) {
+        final String tenant = TenantResolver.currentTenant();
+        final ResponseEntity<byte[]> forwarded = forwardToOwner(tenant, id, request, value);
+        if (forwarded != null) {
+            return forwarded;
+        }
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(store(tenant, id, value));
+        }
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException(
+                IDEMPOTENCY_KEY_HEADER + " must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        final IdempotencyTable.Claim claim = idempotencyTable.claim(tenant, idempotencyKey, fingerprint(id, value));
+        if (claim.status() == IdempotencyTable.Status.REPLAY) {
+            return ResponseEntity.ok().header(IDEMPOTENT_REPLAYED_HEADER, "true").body(claim.result());
+        }
+        if (claim.status() == IdempotencyTable.Status.IN_PROGRESS) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of(ERROR_KEY, "A request with this " + IDEMPOTENCY_KEY_HEADER + " is still executing"));
+        }
+        if (claim.status() == IdempotencyTable.Status.MISMATCH) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(Map.of(ERROR_KEY, IDEMPOTENCY_KEY_HEADER + " was already used for a different request"));
+        }
+        final Map<String, Object> response;
+        try {
+            response = store(tenant, id, value);
+        } catch (RuntimeException e) {
+            idempotencyTable.abandon(tenant, idempotencyKey);
+            throw e;
+        }
+        idempotencyTable.complete(tenant, idempotencyKey, response);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Apply several puts and deletes for the caller's tenant atomically
+     */
+    @PostMapping(value = "/transaction", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('CACHE_WRITE') or hasAuthority('CACHE_ADMIN')")
+    @RequirePermission(value = {"CACHE_WRITE", "CACHE_ADMIN"})
+    @Operation(
+        summary = "Commit a multi-object transaction",
+        description = "Applies puts (base64 values) and deletes so that readers see all of them or none. "
+            + "All IDs must be owned by the same pod. Requires CACHE_WRITE or CACHE_ADMIN permission, "
+            + "and CACHE_DELETE as well when the transaction deletes.",
+        security = @SecurityRequirement(name = "bearer-jwt")
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Transaction committed"),
+        @ApiResponse(responseCode = "400", description = "Invalid operations, or IDs owned by different pods"),
+        @ApiResponse(responseCode = "501", description = "Not available with a remote store or anti-entropy")
+    })
+    public ResponseEntity<?> commit(
+        @RequestBody final Transaction transaction,
+        final HttpServletRequest request) {
+        final List<CacheMutation> mutations = mutations(transaction);
+        if (!cacheService.supportsTransactions() || replicaIndex.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
+                .body(Map.of(ERROR_KEY, "Transactions are not available with a remote store or anti-entropy"));
+        }
+        final String tenant = TenantResolver.currentTenant();
+        final byte[] body = json(transaction);
+        if (!peerForwarder.isForwarded(request, body)) {
+            final Set<String> owners = new HashSet<>();
+            mutations.forEach(mutation -> owners.add(peerRing.remoteOwner(tenant, mutation.key())));
+            if (owners.size() > 1) {
+                throw new IllegalArgumentException("All IDs of a transaction must be owned by the same pod");
+            }
+            final String owner = owners.iterator().next();
+            if (owner != null) {
+                final ResponseEntity<byte[]> forwarded = peerForwarder.forward(owner, request, body);
+                if (forwarded != null) {
+                    return forwarded;
+                }
+            }
+        }
+        final boolean[] existed = cacheService.commit(tenant, mutations);
+        int deleted = 0;
+        for (int i = 0; i < existed.length; i++) {
+            if (mutations.get(i).isDelete() && existed[i]) {
+                deleted++;
+            }
+        }
+        final Map<String, Object> response = new HashMap<>();
+        response.put("operations", mutations.size());
+        response.put("deleted", deleted);
+        response.put(TIMESTAMP_KEY, System.currentTimeMillis());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Delete a cache object for the caller's tenant
+     */
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasAuthority('CACHE_DELETE') or hasAuthority('CACHE_ADMIN')")
+    @RequirePermission(value = {"CACHE_DELETE", "CACHE_ADMIN"})
+    @Operation(
+        summary = "Delete cache object payload",
+        description = "Removes the stored payload. Requires CACHE_DELETE or CACHE_ADMIN permission.",
+        security = @SecurityRequirement(name = "bearer-jwt")
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Object deleted successfully"),
+        @ApiResponse(responseCode = "404", description = "Object not found for this tenant")
+    })
+    public ResponseEntity<?> deleteObject(
+        @Parameter(description = "Cache object ID", required = true, example = "123")
+        @PathVariable final String id,
+        final HttpServletRequest request) {
+        final String tenant = TenantResolver.currentTenant();
+        final ResponseEntity<byte[]> forwarded = forwardToOwner(tenant, id, request, null);
+        if (forwarded != null) {
+            return forwarded;
+        }
+        if (!replicaIndex.delete(tenant, id)) {
+            return ResponseEntity.notFound().build();
+        }
+        final Map<String, Object> response = new HashMap<>();
+        response.put(ID_KEY, id);
+        response.put("deleted", true);
+        response.put(TIMESTAMP_KEY, System.currentTimeMillis());
+        return ResponseEntity.ok(response);
+    }
+
+    private Map<String, Object> store(String tenant, String id, byte[] value) {
+        replicaIndex.put(tenant, id, value);
+        final Map<String, Object> response = new HashMap<>();
+        response.put(ID_KEY, id);
+        response.put("size", value.length);
+        response.put(TIMESTAMP_KEY, System.currentTimeMillis());
+        return response;
+    }
+
+    /**
+     * Digest of what a write does, to tell a retry from a different request reusing its key
+     */
+    private static byte[] fingerprint(String id, byte[] value) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(id.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(value);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Validate a transaction's operations; deleting needs the delete permission as well
+     */
+    private List<CacheMutation> mutations(Transaction transaction) {
+        final List<Transaction.Op> operations = transaction.operations();
+        if (operations == null || operations.isEmpty() || operations.size() > maxBatchKeys) {
+            throw new IllegalArgumentException("A transaction holds 1 to " + maxBatchKeys + " operations");
+        }
+        final List<CacheMutation> mutations = new ArrayList<>(operations.size());
+        for (Transaction.Op operation : operations) {
+            if (operation.id() == null) {
+                throw new IllegalArgumentException("Every operation needs an id");
+            }
+            if ("put".equals(operation.op()) && operation.value() != null) {
+                mutations.add(CacheMutation.put(operation.id(), operation.value()));
+            } else if ("delete".equals(operation.op())) {
+                final AuthoritySet authorities =
+                        AuthoritySet.of(SecurityContextHolder.getContext().getAuthentication());
+                if (!authorities.hasAny(DELETE_AUTHORITIES)) {
+                    throw new AccessDeniedException("Deleting requires CACHE_DELETE or CACHE_ADMIN permission");
+                }
+                mutations.add(CacheMutation.delete(operation.id()));
+            } else {
+                throw new IllegalArgumentException("Operations are 'put' with a value or 'delete'");
+            }
+        }
+        return mutations;
+    }
+
+    private byte[] json(Object body) {
+        try {
+            return mapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read a batch in request order; keys owned by other pods are fetched from each owner
+     * as one framed sub-batch, and served locally when the owner cannot be reached
+     */
+    private List<CacheFrames.Frame> batchGet(List<String> ids, HttpServletRequest request) {
+        if (ids.size() > maxBatchKeys) {
+            throw new IllegalArgumentException("A batch holds at most " + maxBatchKeys + " IDs");
+        }
+        final String tenant = TenantResolver.currentTenant();
+        final CacheFrames.Frame[] frames = new CacheFrames.Frame[ids.size()];
+        final Map<String, List<Integer>> remote = new HashMap<>();
+        final boolean forwarded = peerForwarder.isForwarded(request, json(ids));
+        for (int i = 0; i < ids.size(); i++) {
+            final String owner = forwarded ? null : peerRing.remoteOwner(tenant, ids.get(i));
+            if (owner == null) {
+                frames[i] = CacheFrames.Frame.of(cacheService.getObject(tenant, ids.get(i)));
+            } else {
+                remote.computeIfAbsent(owner, k -> new ArrayList<>()).add(i);
+            }
+        }
+        remote.forEach((owner, positions) -> fetchFromOwner(owner, tenant, ids, positions, request, frames));
+        return List.of(frames);
+    }
+
+    private void fetchFromOwner(String owner, String tenant, List<String> ids, List<Integer> positions,
+                                HttpServletRequest request, CacheFrames.Frame[] frames) {
+        final List<String> ownedIds = positions.stream().map(ids::get).toList();
+        final ResponseEntity<byte[]> reply =
+            peerForwarder.forward(owner, request, json(ownedIds), CacheFrames.MEDIA_TYPE);
+        if (reply == null) {
+            for (int position : positions) {
+                frames[position] = CacheFrames.Frame.of(cacheService.getObject(tenant, ids.get(position)));
+            }
+            return;
+        }
+        final List<CacheFrames.Frame> owned = decode(reply, positions.size());
+        for (int j = 0; j < positions.size(); j++) {
+            frames[positions.get(j)] = owned == null
+                ? new CacheFrames.Frame(CacheFrames.STATUS_UNAVAILABLE, 0, null)
+                : owned.get(j).withFlags(CacheFrames.FLAG_FORWARDED);
+        }
+    }
+
+    /**
+     * Frames of a peer's reply, or null when it failed or does not answer the sub-batch
+     */
+    private static List<CacheFrames.Frame> decode(ResponseEntity<byte[]> reply, int expected) {
+        if (!reply.getStatusCode().is2xxSuccessful() || reply.getBody() == null) {
+            return null;
+        }
+        try {
+            final List<CacheFrames.Frame> frames = CacheFrames.read(reply.getBody());
+            return frames.size() == expected ? frames : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Relay the request to the pod owning the key; null when it is served here
+     */
+    private ResponseEntity<byte[]> forwardToOwner(String tenant, String id, HttpServletRequest request, byte[] body) {
+        if (peerForwarder.isForwarded(request, body)) {
+            return null;
+        }
+        final String owner = peerRing.remoteOwner(tenant, id);
+        return owner == null ? null : peerForwarder.forward(owner, request, body);
+    }
+
+    /**
+     * Body of a transaction: operations applied in order, a later one winning for the same ID
+     */
+    public record Transaction(List<Op> operations) {
+
+        /**
+         * "put" with a (base64 in JSON) value, or "delete"
+         */
+        public record Op(String op, String id, byte[] value) {
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package hello.controller;
+
+import hello.cluster.HttpReplicaPeer;
+import hello.cluster.MerkleTree;
+import hello.cluster.ReplicaIndex;
+import io.swagger.v3.oas.annotations.Hidden;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Peer-to-peer endpoints used by anti-entropy to compare and repair replicas.
+ * Callers must present the shared {@code cache.anti-entropy.secret}; with no secret
+ * configured every request is refused.
+ */
+@RestController
+@RequestMapping("/internal/replicas")
+@ConditionalOnProperty(name = "cache.anti-entropy.enabled", havingValue = "true")
+@Hidden
+public class ReplicaController {
+
+    private final ReplicaIndex replicaIndex;
+    private final byte[] secret;
+
+    public ReplicaController(ReplicaIndex replicaIndex, @Value("${cache.anti-entropy.secret:}") String secret) {
+        this.replicaIndex = replicaIndex;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Digests of the requested Merkle tree nodes
+     */
+    @PostMapping("/nodes")
+    public ResponseEntity<long[]> nodes(
+        @RequestHeader(value = HttpReplicaPeer.SECRET_HEADER, required = false) final String presented,
+        @RequestBody final int[] indices) {
+        if (!authorized(presented)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        final MerkleTree tree = replicaIndex.tree();
+        final long[] digests = new long[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            if (indices[i] < 1 || indices[i] >= 2 * tree.leaves()) {
+                return ResponseEntity.badRequest().build();
+            }
+            digests[i] = tree.node(indices[i]);
+        }
+        return ResponseEntity.ok(digests);
+    }
+
+    /**
+     * Entries in the requested leaf ranges
+     */
+    @PostMapping("/entries")
+    public ResponseEntity<List<ReplicaIndex.Entry>> entries(
+        @RequestHeader(value = HttpReplicaPeer.SECRET_HEADER, required = false) final String presented,
+        @RequestBody final int[] leaves) {
+        if (!authorized(presented)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(replicaIndex.entries(leaves));
+    }
+
+    /**
+     * Apply entries a peer found to be newer than ours
+     */
+    @PostMapping("/apply")
+    public ResponseEntity<Map<String, Object>> apply(
+        @RequestHeader(value = HttpReplicaPeer.SECRET_HEADER, required = false) final String presented,
+        @RequestBody final List<ReplicaIndex.Entry> entries) {
+        if (!authorized(presented)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        int applied = 0;
+        for (ReplicaIndex.Entry entry : entries) {
+            if (replicaIndex.apply(entry)) {
+                applied++;
+            }
+        }
+        final Map<String, Object> response = new HashMap<>();
+        response.put("applied", applied);
+        return ResponseEntity.ok(response);
+    }
+
+    private boolean authorized(String presented) {
+        return secret.length > 0 && presented != null
+            && MessageDigest.isEqual(secret, presented.getBytes(StandardCharsets.UTF_8));
+    }
+}
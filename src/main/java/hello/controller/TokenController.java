@@ -1,15 +1,24 @@
 package hello.controller;
 
 import hello.security.JwtUtil;
+import hello.security.RequirePermission;
+import hello.security.VerifiedToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -35,9 +44,13 @@ public class TokenController {
     private static final String CACHE_ADMIN = "CACHE_ADMIN";
     private static final String CACHE_WRITE = "CACHE_WRITE";
     private static final String LOCAL = "local";
+    private static final Map<String, Object> INVALID = Map.of("valid", false);
 
-    public TokenController(JwtUtil jwtUtil) {
+    private final int maxBatchTokens;
+
+    public TokenController(JwtUtil jwtUtil, @Value("${jwt.batch.max-tokens:1000}") int maxBatchTokens) {
         this.jwtUtil = jwtUtil;
+        this.maxBatchTokens = maxBatchTokens;
     }
 
     /**
@@ -194,21 +207,80 @@ public class TokenController {
     public ResponseEntity<Map<String, Object>> validateToken(@RequestParam String token) {
         Map<String, Object> response = new HashMap<>();
         
-        boolean isValid = jwtUtil.validateToken(token);
-        response.put("valid", isValid);
+        VerifiedToken verified = jwtUtil.verify(token);
+        response.putAll(validation(verified));
+        response.put(TIMESTAMP_KEY, System.currentTimeMillis());
         
-        if (isValid) {
-            response.put(USERNAME_KEY, jwtUtil.extractUsername(token));
-            response.put(ROLES_KEY, jwtUtil.extractRoles(token));
-            response.put(PERMISSIONS_KEY, jwtUtil.extractPermissions(token));
-            response.put("auth_level", jwtUtil.extractAuthLevel(token));
-            response.put("idp", jwtUtil.extractIdentityProvider(token));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Validate several JWT tokens in one request
+     */
+    @PostMapping(value = "/validate/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+        summary = "Validate JWT tokens in bulk",
+        description = "Takes a JSON array of tokens and returns one result per token, in order, "
+            + "shaped like the single validate response. Repeated tokens are verified once."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Tokens validated"),
+        @ApiResponse(responseCode = "400", description = "Too many tokens in one batch")
+    })
+    public ResponseEntity<Map<String, Object>> validateTokens(@RequestBody List<String> tokens) {
+        if (tokens.size() > maxBatchTokens) {
+            throw new IllegalArgumentException("A batch holds at most " + maxBatchTokens + " tokens");
         }
-        
+        final List<VerifiedToken> verified = jwtUtil.verifyAll(tokens);
+        // Repeated tokens come back as the same VerifiedToken, so they share one result map too
+        final Map<VerifiedToken, Map<String, Object>> shared = new IdentityHashMap<>();
+        final List<Map<String, Object>> results = new ArrayList<>(verified.size());
+        for (VerifiedToken token : verified) {
+            results.add(token == null ? INVALID : shared.computeIfAbsent(token, TokenController::validation));
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results);
         response.put(TIMESTAMP_KEY, System.currentTimeMillis());
-        
         return ResponseEntity.ok(response);
     }
-}
 
+    private static Map<String, Object> validation(VerifiedToken verified) {
+        if (verified == null) {
+            return INVALID;
+        }
+        final Map<String, Object> validation = new LinkedHashMap<>();
+        validation.put("valid", true);
+        validation.put(USERNAME_KEY, verified.subject());
+        validation.put(ROLES_KEY, verified.roles());
+        validation.put(PERMISSIONS_KEY, verified.permissions());
+        validation.put("auth_level", verified.authLevel());
+        validation.put("idp", verified.identityProvider());
+        return validation;
+    }
 
+    /**
+     * Revoke a leaked JWT token before it expires
+     */
+    @PostMapping(value = "/revoke", consumes = MediaType.TEXT_PLAIN_VALUE)
+    @PreAuthorize("hasAuthority('CACHE_ADMIN')")
+    @RequirePermission(value = {CACHE_ADMIN})
+    @Operation(
+        summary = "Revoke JWT token",
+        description = "Rejects a valid token, sent as the plain-text request body, on every pod from now "
+            + "until its expiry. Requires CACHE_ADMIN permission.",
+        security = @SecurityRequirement(name = "bearer-jwt")
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Token revoked, or reported as not revocable"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Invalid or missing JWT token"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - Insufficient permissions (requires CACHE_ADMIN)")
+    })
+    public ResponseEntity<Map<String, Object>> revokeToken(@RequestBody String token) {
+        Map<String, Object> response = new HashMap<>();
+        // In the body rather than the query string, which access logs and proxies record.
+        // A token that does not verify (forged, expired or already revoked) is rejected anyway
+        response.put("revoked", jwtUtil.revoke(token.strip()));
+        response.put(TIMESTAMP_KEY, System.currentTimeMillis());
+        return ResponseEntity.ok(response);
+    }
+}
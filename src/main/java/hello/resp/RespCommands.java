@@ -0,0 +1,306 @@
+package hello.resp;
+
+import hello.cache.CacheService;
+import hello.cache.TenantResolver;
+import hello.cluster.PeerRing;
+import hello.cluster.ReplicaIndex;
+import hello.security.AuthoritySet;
+import hello.security.JwtUtil;
+import hello.security.TokenDigest;
+import hello.security.VerifiedToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The RESP command subset served by {@link RespServer}: GET, SET (with EX/PX), DEL, MGET,
+ * EXPIRE and AUTH, plus the PING/SELECT/CLIENT/QUIT handshake commands clients send.
+ *
+ * <p>AUTH takes the same JWT as the HTTP API (as the password, with or without a user
+ * name). The token's identity provider and subject select the tenant and its permissions
+ * gate each command exactly like the {@code @RequirePermission} annotations on
+ * {@code CacheObjectController}. A connection is deauthenticated when its token expires
+ * or is revoked; the revocation list is consulted before every command, which costs one
+ * Bloom filter probe for tokens that were never revoked.
+ */
+class RespCommands {
+
+    private static final Logger logger = LoggerFactory.getLogger(RespCommands.class);
+
+    private static final long READ = AuthoritySet.mask(AuthoritySet.CACHE_READ, AuthoritySet.CACHE_ADMIN);
+    private static final long WRITE = AuthoritySet.mask(AuthoritySet.CACHE_WRITE, AuthoritySet.CACHE_ADMIN);
+    private static final long DELETE = AuthoritySet.mask(AuthoritySet.CACHE_DELETE, AuthoritySet.CACHE_ADMIN);
+    private static final List<String> COMMANDS =
+            List.of("AUTH", "GET", "SET", "DEL", "MGET", "EXPIRE", "PING", "SELECT", "CLIENT", "QUIT");
+    // Deadlines are kept in System.nanoTime() terms, which overflow a little beyond 292 years
+    private static final Duration MAX_TTL = Duration.ofDays(100 * 365L);
+
+    private final CacheService cacheService;
+    private final ReplicaIndex replicaIndex;
+    private final PeerRing peerRing;
+    private final JwtUtil jwtUtil;
+    private final Map<String, Counter> counters = new HashMap<>();
+    private final Counter unknown;
+
+    RespCommands(CacheService cacheService, ReplicaIndex replicaIndex, PeerRing peerRing, JwtUtil jwtUtil,
+                 MeterRegistry meterRegistry) {
+        this.cacheService = cacheService;
+        this.replicaIndex = replicaIndex;
+        this.peerRing = peerRing;
+        this.jwtUtil = jwtUtil;
+        for (String command : COMMANDS) {
+            counters.put(command, counter(meterRegistry, command.toLowerCase(Locale.ROOT)));
+        }
+        this.unknown = counter(meterRegistry, "unknown");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String command) {
+        return Counter.builder("cache.resp.commands")
+                .tag("command", command)
+                .description("Commands served over the RESP listener")
+                .register(meterRegistry);
+    }
+
+    /**
+     * State for a new connection
+     */
+    Session newSession() {
+        return new Session(jwtUtil);
+    }
+
+    /**
+     * Execute one command and write its reply; a failure is answered with an error reply,
+     * so the connection stays usable
+     */
+    void execute(List<byte[]> arguments, Session session, RespWriter out) throws IOException {
+        if (arguments.isEmpty()) {
+            return;
+        }
+        final String command = text(arguments.get(0)).toUpperCase(Locale.ROOT);
+        counters.getOrDefault(command, unknown).increment();
+        try {
+            dispatch(command, arguments, session, out);
+        } catch (IllegalArgumentException e) {
+            out.error("ERR " + e.getMessage());
+        } catch (RuntimeException e) {
+            logger.warn("RESP command {} failed", command, e);
+            out.error("ERR internal error");
+        }
+    }
+
+    private void dispatch(String command, List<byte[]> arguments, Session session, RespWriter out) throws IOException {
+        switch (command) {
+            case "AUTH" -> auth(arguments, session, out);
+            case "PING" -> {
+                if (arguments.size() > 1) {
+                    out.bulk(arguments.get(1));
+                } else {
+                    out.simple("PONG");
+                }
+            }
+            case "QUIT" -> {
+                out.simple("OK");
+                session.closed = true;
+            }
+            case "SELECT" -> {
+                if (arguments.size() == 2 && text(arguments.get(1)).equals("0")) {
+                    out.simple("OK");
+                } else {
+                    out.error("ERR only database 0 is available");
+                }
+            }
+            // CLIENT SETNAME / SETINFO sent by client libraries on connect; nothing to record
+            case "CLIENT" -> out.simple("OK");
+            case "GET", "SET", "DEL", "MGET", "EXPIRE" -> data(command, arguments, session, out);
+            default -> out.error("ERR unknown command '" + command + "'");
+        }
+    }
+
+    private void data(String command, List<byte[]> arguments, Session session, RespWriter out) throws IOException {
+        if (!session.isAuthenticated(System.currentTimeMillis())) {
+            out.error("NOAUTH Authentication required.");
+            return;
+        }
+        final int minArguments = switch (command) {
+            case "SET", "EXPIRE" -> 3;
+            default -> 2;
+        };
+        if (arguments.size() < minArguments) {
+            out.error("ERR wrong number of arguments for '" + command.toLowerCase(Locale.ROOT) + "' command");
+            return;
+        }
+        final long required = switch (command) {
+            case "GET", "MGET" -> READ;
+            case "DEL" -> DELETE;
+            default -> WRITE;
+        };
+        if (!session.hasAny(required)) {
+            out.error("NOPERM this token lacks " + String.join(" or ", AuthoritySet.names(required)));
+            return;
+        }
+        final int lastKey = command.equals("DEL") || command.equals("MGET") ? arguments.size() - 1 : 1;
+        for (int i = 1; i <= lastKey; i++) {
+            final String owner = peerRing.remoteOwner(session.tenant, text(arguments.get(i)));
+            if (owner != null) {
+                out.error("ERR key '" + text(arguments.get(i)) + "' is owned by peer " + owner);
+                return;
+            }
+        }
+        switch (command) {
+            case "GET" -> out.bulk(cacheService.getObject(session.tenant, text(arguments.get(1))));
+            case "MGET" -> {
+                // read every value before replying, so a failure cannot leave half an array behind
+                final List<byte[]> values = new ArrayList<>(arguments.size() - 1);
+                for (int i = 1; i < arguments.size(); i++) {
+                    values.add(cacheService.getObject(session.tenant, text(arguments.get(i))));
+                }
+                out.array(values.size());
+                for (byte[] value : values) {
+                    out.bulk(value);
+                }
+            }
+            case "DEL" -> {
+                long deleted = 0;
+                for (int i = 1; i < arguments.size(); i++) {
+                    if (replicaIndex.delete(session.tenant, text(arguments.get(i)))) {
+                        deleted++;
+                    }
+                }
+                out.integer(deleted);
+            }
+            case "SET" -> set(arguments, session, out);
+            default -> expire(arguments, session, out);
+        }
+    }
+
+    private void set(List<byte[]> arguments, Session session, RespWriter out) throws IOException {
+        Duration ttl = null;
+        if (arguments.size() == 5) {
+            final String unit = text(arguments.get(3)).toUpperCase(Locale.ROOT);
+            final long amount = positive(arguments.get(4));
+            if (amount <= 0 || !(unit.equals("EX") || unit.equals("PX"))) {
+                out.error("ERR syntax error");
+                return;
+            }
+            ttl = unit.equals("EX") ? Duration.ofSeconds(amount) : Duration.ofMillis(amount);
+            if (ttl.compareTo(MAX_TTL) > 0) {
+                out.error("ERR invalid expire time in 'set' command");
+                return;
+            }
+        } else if (arguments.size() != 3) {
+            out.error("ERR syntax error");
+            return;
+        }
+        final String key = text(arguments.get(1));
+        if (ttl == null) {
+            replicaIndex.put(session.tenant, key, arguments.get(2));
+        } else if (replicaIndex.isEnabled()) {
+            out.error("ERR expiring keys are not replicated by anti-entropy");
+            return;
+        } else {
+            cacheService.putObject(session.tenant, key, arguments.get(2), ttl);
+        }
+        out.simple("OK");
+    }
+
+    private void expire(List<byte[]> arguments, Session session, RespWriter out) throws IOException {
+        final long seconds = positive(arguments.get(2));
+        if (arguments.size() != 3 || seconds <= 0) {
+            out.error("ERR value is not an integer or out of range");
+            return;
+        }
+        if (Duration.ofSeconds(seconds).compareTo(MAX_TTL) > 0) {
+            out.error("ERR invalid expire time in 'expire' command");
+            return;
+        }
+        if (replicaIndex.isEnabled()) {
+            out.error("ERR expiring keys are not replicated by anti-entropy");
+            return;
+        }
+        final boolean expiring = cacheService.expireObject(session.tenant, text(arguments.get(1)),
+                Duration.ofSeconds(seconds));
+        out.integer(expiring ? 1 : 0);
+    }
+
+    private void auth(List<byte[]> arguments, Session session, RespWriter out) throws IOException {
+        if (arguments.size() < 2 || arguments.size() > 3) {
+            out.error("ERR wrong number of arguments for 'auth' command");
+            return;
+        }
+        final String token = text(arguments.get(arguments.size() - 1));
+        final VerifiedToken verified = jwtUtil.verify(token);
+        if (verified == null) {
+            session.reset();
+            out.error("WRONGPASS invalid or expired token");
+            return;
+        }
+        session.tenant = TenantResolver.of(verified.identityProvider(), verified.subject());
+        session.digest = TokenDigest.of(token);
+        session.authorities = verified.authorities();
+        session.expiresAtMillis = verified.expiresAt().toEpochMilli();
+        out.simple("OK");
+    }
+
+    private static String text(byte[] argument) {
+        return new String(argument, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A positive integer argument, or -1 when it is not one
+     */
+    private static long positive(byte[] argument) {
+        try {
+            return Long.parseLong(text(argument));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Authentication state of one connection
+     */
+    static final class Session {
+        private final JwtUtil jwtUtil;
+        private String tenant;
+        private TokenDigest digest;
+        private AuthoritySet authorities = AuthoritySet.EMPTY;
+        private long expiresAtMillis;
+        private boolean closed;
+
+        private Session(JwtUtil jwtUtil) {
+            this.jwtUtil = jwtUtil;
+        }
+
+        boolean isAuthenticated(long nowMillis) {
+            if (tenant != null && (nowMillis >= expiresAtMillis || jwtUtil.isRevoked(digest))) {
+                reset();
+            }
+            return tenant != null;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        private boolean hasAny(long required) {
+            return authorities.hasAny(required);
+        }
+
+        private void reset() {
+            tenant = null;
+            digest = null;
+            authorities = AuthoritySet.EMPTY;
+            expiresAtMillis = 0;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package hello.resp;
+
+import hello.cache.CacheService;
+import hello.cluster.PeerRing;
+import hello.cluster.ReplicaIndex;
+import hello.security.JwtUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RESP listener for the cache store, enabled with {@code cache.resp.enabled}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "cache.resp.enabled", havingValue = "true")
+public class RespConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public RespServer respServer(
+            CacheService cacheService,
+            ReplicaIndex replicaIndex,
+            PeerRing peerRing,
+            JwtUtil jwtUtil,
+            MeterRegistry meterRegistry,
+            @Value("${cache.resp.bind-address:0.0.0.0}") String bindAddress,
+            @Value("${cache.resp.port:6380}") int port,
+            @Value("${cache.resp.max-connections:1024}") int maxConnections,
+            @Value("${cache.resp.max-value-bytes:16777216}") int maxValueBytes) {
+        final RespCommands commands = new RespCommands(cacheService, replicaIndex, peerRing, jwtUtil, meterRegistry);
+        return new RespServer(commands, meterRegistry, bindAddress, port, maxConnections, maxValueBytes);
+    }
+}
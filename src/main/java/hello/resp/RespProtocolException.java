@@ -0,0 +1,15 @@
+package hello.resp;
+
+import java.io.IOException;
+
+/**
+ * Malformed RESP input; the connection cannot be resynchronised and is closed.
+ */
+class RespProtocolException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    RespProtocolException(String message) {
+        super(message);
+    }
+}
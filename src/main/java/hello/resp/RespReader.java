@@ -0,0 +1,157 @@
+package hello.resp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads RESP commands: arrays of bulk strings as sent by clients, or inline commands
+ * as typed into a terminal. Lengths are bounded before anything is allocated.
+ *
+ * <p>Like Redis, a connection that has not authenticated may only send small commands,
+ * enough for AUTH and the client handshake. Bulk strings are buffered as their bytes
+ * arrive rather than at their declared length, so a length alone costs no memory.
+ */
+final class RespReader {
+
+    private static final int MAX_LINE = 64 * 1024;
+    private static final int UNAUTHENTICATED_MAX_ARGUMENTS = 10;
+    private static final int UNAUTHENTICATED_MAX_BULK_BYTES = 16 * 1024;
+    private static final int BULK_CHUNK = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[16 * 1024];
+    private final int maxBulkBytes;
+    private final int maxArguments;
+    private int position;
+    private int limit;
+
+    RespReader(InputStream in, int maxBulkBytes, int maxArguments) {
+        this.in = in;
+        this.maxBulkBytes = maxBulkBytes;
+        this.maxArguments = maxArguments;
+    }
+
+    /**
+     * Next command as its arguments, or null at end of stream; the small limits apply
+     * unless the connection has authenticated
+     */
+    List<byte[]> readCommand(boolean authenticated) throws IOException {
+        final int first = read();
+        if (first < 0) {
+            return null;
+        }
+        if (first != '*') {
+            return inline((char) first + readLine());
+        }
+        final int count = parseLength(readLine(),
+                authenticated ? maxArguments : UNAUTHENTICATED_MAX_ARGUMENTS, "multibulk length");
+        final int maxBulk = authenticated ? maxBulkBytes : UNAUTHENTICATED_MAX_BULK_BYTES;
+        final List<byte[]> arguments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (read() != '$') {
+                throw new RespProtocolException("expected '$'");
+            }
+            final byte[] argument = readBulk(parseLength(readLine(), maxBulk, "bulk length"));
+            if (read() != '\r' || read() != '\n') {
+                throw new RespProtocolException("bulk string not terminated by CRLF");
+            }
+            arguments.add(argument);
+        }
+        return arguments;
+    }
+
+    /**
+     * Whether another command has already arrived, so replies can wait for a later flush
+     */
+    boolean hasPendingInput() throws IOException {
+        return position < limit || in.available() > 0;
+    }
+
+    private static List<byte[]> inline(String line) {
+        final List<byte[]> arguments = new ArrayList<>();
+        for (String token : line.trim().split("\\s+")) {
+            if (!token.isEmpty()) {
+                arguments.add(token.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return arguments;
+    }
+
+    private static int parseLength(String line, int max, String what) throws RespProtocolException {
+        final int length;
+        try {
+            length = Integer.parseInt(line);
+        } catch (NumberFormatException e) {
+            throw new RespProtocolException("invalid " + what);
+        }
+        if (length < 0 || length > max) {
+            throw new RespProtocolException("invalid " + what);
+        }
+        return length;
+    }
+
+    private String readLine() throws IOException {
+        final StringBuilder line = new StringBuilder();
+        while (true) {
+            final int b = read();
+            if (b < 0) {
+                throw new RespProtocolException("unexpected end of stream");
+            }
+            if (b == '\r') {
+                if (read() != '\n') {
+                    throw new RespProtocolException("expected LF after CR");
+                }
+                return line.toString();
+            }
+            if (b == '\n') {
+                return line.toString();
+            }
+            if (line.length() >= MAX_LINE) {
+                throw new RespProtocolException("line too long");
+            }
+            line.append((char) b);
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    /**
+     * A bulk string of the given length, grown by doubling as its bytes arrive
+     */
+    private byte[] readBulk(int length) throws IOException {
+        byte[] target = new byte[Math.min(length, BULK_CHUNK)];
+        int offset = 0;
+        while (offset < length) {
+            if (position == limit && !fill()) {
+                throw new RespProtocolException("unexpected end of stream");
+            }
+            if (offset == target.length) {
+                target = Arrays.copyOf(target, (int) Math.min(length, 2L * target.length));
+            }
+            final int n = Math.min(limit - position, target.length - offset);
+            System.arraycopy(buffer, position, target, offset, n);
+            position += n;
+            offset += n;
+        }
+        return target;
+    }
+
+    private boolean fill() throws IOException {
+        final int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+}
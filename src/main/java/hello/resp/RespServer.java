@@ -0,0 +1,152 @@
+package hello.resp;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * TCP listener speaking RESP, so Valkey/Redis clients can use the cache store without the
+ * HTTP stack.
+ *
+ * <p>Each connection is served by its own virtual thread with blocking I/O. Replies are
+ * buffered and only flushed once no further request bytes are waiting. A pipelined batch
+ * is therefore answered with a single write, however many commands it holds.
+ */
+public class RespServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RespServer.class);
+
+    private static final int MAX_ARGUMENTS = 64 * 1024;
+
+    private final RespCommands commands;
+    private final String bindAddress;
+    private final int port;
+    private final int maxConnections;
+    private final int maxBulkBytes;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final DistributionSummary pipelineDepth;
+    private ServerSocket serverSocket;
+
+    RespServer(RespCommands commands, MeterRegistry meterRegistry, String bindAddress, int port,
+               int maxConnections, int maxBulkBytes) {
+        this.commands = commands;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.maxConnections = maxConnections;
+        this.maxBulkBytes = maxBulkBytes;
+        this.pipelineDepth = DistributionSummary.builder("cache.resp.pipeline.depth")
+                .description("Commands answered per flush; above 1 when clients pipeline")
+                .register(meterRegistry);
+        Gauge.builder("cache.resp.connections", connections, Set::size)
+                .description("Open RESP connections")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Bind the port and start accepting connections
+     */
+    public void start() {
+        try {
+            serverSocket = new ServerSocket(port, 1024, InetAddress.getByName(bindAddress));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot bind RESP listener on " + bindAddress + ":" + port, e);
+        }
+        Thread.ofPlatform().daemon().name("cache-resp-acceptor").start(this::accept);
+        logger.info("RESP listener on {}:{}", bindAddress, serverSocket.getLocalPort());
+    }
+
+    /**
+     * Port the listener is bound to
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                if (connections.size() >= maxConnections) {
+                    logger.warn("Refusing RESP connection from {}: {} connections open",
+                            socket.getRemoteSocketAddress(), maxConnections);
+                    socket.close();
+                    continue;
+                }
+                connections.add(socket);
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.warn("Accepting RESP connection failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            final RespReader reader = new RespReader(socket.getInputStream(), maxBulkBytes, MAX_ARGUMENTS);
+            final RespWriter writer = new RespWriter(socket.getOutputStream());
+            final RespCommands.Session session = commands.newSession();
+            int pending = 0;
+            while (!session.isClosed()) {
+                final List<byte[]> command;
+                try {
+                    command = reader.readCommand(session.isAuthenticated(System.currentTimeMillis()));
+                } catch (RespProtocolException e) {
+                    writer.error("ERR Protocol error: " + e.getMessage());
+                    writer.flush();
+                    return;
+                }
+                if (command == null) {
+                    break;
+                }
+                commands.execute(command, session, writer);
+                pending++;
+                if (session.isClosed() || !reader.hasPendingInput()) {
+                    // Recorded before the replies go out, so a client that has read them sees the batch counted
+                    pipelineDepth.record(pending);
+                    pending = 0;
+                    writer.flush();
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("RESP connection closed: {}", e.getMessage());
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            logger.debug("Closing RESP listener failed: {}", e.getMessage());
+        }
+        for (Socket socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.debug("Closing RESP connection failed: {}", e.getMessage());
+            }
+        }
+        executor.shutdown();
+    }
+}
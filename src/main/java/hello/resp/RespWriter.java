@@ -0,0 +1,80 @@
+package hello.resp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered RESP reply encoder. Replies accumulate until {@link #flush()}, so a pipelined
+ * batch goes out in as few writes as possible. Values too large for the buffer are
+ * written straight from the array the store holds instead of being copied into it.
+ */
+final class RespWriter {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[16 * 1024];
+    private int count;
+
+    RespWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    void simple(String value) throws IOException {
+        ascii("+" + value + "\r\n");
+    }
+
+    void error(String message) throws IOException {
+        ascii("-" + message + "\r\n");
+    }
+
+    void integer(long value) throws IOException {
+        ascii(":" + value + "\r\n");
+    }
+
+    void array(int size) throws IOException {
+        ascii("*" + size + "\r\n");
+    }
+
+    /**
+     * A bulk string; null encodes the nil reply
+     */
+    void bulk(byte[] value) throws IOException {
+        if (value == null) {
+            ascii("$-1\r\n");
+            return;
+        }
+        ascii("$" + value.length + "\r\n");
+        bytes(value);
+        bytes(CRLF);
+    }
+
+    void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    private void ascii(String value) throws IOException {
+        bytes(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void bytes(byte[] value) throws IOException {
+        if (value.length > buffer.length - count) {
+            drain();
+            if (value.length >= buffer.length) {
+                out.write(value);
+                return;
+            }
+        }
+        System.arraycopy(value, 0, buffer, count, value.length);
+        count += value.length;
+    }
+
+    private void drain() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package hello.security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The authorities of a caller as a bitset over the authorities this service checks.
+ *
+ * <p>Known permissions and roles are interned at fixed bit positions, each with one shared
+ * {@link GrantedAuthority} instance, so checking "any of these" is a single AND against a
+ * mask from {@link #mask}. Authorities outside the registry are kept by name and still
+ * take part in {@link #has(String)} and {@link #granted()}.
+ */
+public final class AuthoritySet implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String CACHE_READ = "CACHE_READ";
+    public static final String CACHE_WRITE = "CACHE_WRITE";
+    public static final String CACHE_DELETE = "CACHE_DELETE";
+    public static final String CACHE_ADMIN = "CACHE_ADMIN";
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    // Bit i stands for KNOWN.get(i); at most 64 entries
+    private static final List<GrantedAuthority> KNOWN = List.of(
+            new SimpleGrantedAuthority(CACHE_READ),
+            new SimpleGrantedAuthority(CACHE_WRITE),
+            new SimpleGrantedAuthority(CACHE_DELETE),
+            new SimpleGrantedAuthority(CACHE_ADMIN),
+            new SimpleGrantedAuthority("ROLE_USER"),
+            new SimpleGrantedAuthority("ROLE_ADMIN"));
+    private static final Map<String, Integer> BITS = new HashMap<>();
+
+    static {
+        for (int bit = 0; bit < KNOWN.size(); bit++) {
+            BITS.put(KNOWN.get(bit).getAuthority(), bit);
+        }
+    }
+
+    public static final AuthoritySet EMPTY = new AuthoritySet(0, Set.of());
+
+    private final long bits;
+    private final Set<String> others;
+    private final transient List<GrantedAuthority> granted;
+
+    private AuthoritySet(long bits, Set<String> others) {
+        this.bits = bits;
+        this.others = others;
+        this.granted = grantedAuthorities(bits, others);
+    }
+
+    /**
+     * Authorities from token claims: roles become {@code ROLE_}-prefixed, all upper-cased
+     */
+    public static AuthoritySet of(Collection<String> roles, Collection<String> permissions) {
+        final Builder builder = new Builder();
+        for (String role : roles) {
+            builder.add(ROLE_PREFIX + role.toUpperCase(Locale.ROOT));
+        }
+        for (String permission : permissions) {
+            builder.add(permission.toUpperCase(Locale.ROOT));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Authorities of an authentication; the verified token's set when there is one
+     */
+    public static AuthoritySet of(Authentication authentication) {
+        if (authentication == null) {
+            return EMPTY;
+        }
+        if (authentication.getDetails() instanceof JwtAuthenticationDetails details && details.getToken() != null) {
+            return details.getToken().authorities();
+        }
+        final Builder builder = new Builder();
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (authority.getAuthority() != null) {
+                builder.add(authority.getAuthority());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Mask of registered authorities; throws for one outside the registry, since a mask
+     * cannot represent it
+     */
+    public static long mask(String... authorities) {
+        long mask = 0;
+        for (String authority : authorities) {
+            final Integer bit = BITS.get(authority);
+            if (bit == null) {
+                throw new IllegalArgumentException("Not a registered authority: " + authority);
+            }
+            mask |= 1L << bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Whether an authority is in the registry, i.e. can be part of a {@link #mask}
+     */
+    public static boolean isRegistered(String authority) {
+        return BITS.containsKey(authority);
+    }
+
+    /**
+     * Names of the registered authorities in a mask
+     */
+    public static List<String> names(long mask) {
+        final List<String> names = new ArrayList<>(Long.bitCount(mask));
+        for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            names.add(KNOWN.get(Long.numberOfTrailingZeros(remaining)).getAuthority());
+        }
+        return names;
+    }
+
+    public boolean hasAny(long mask) {
+        return (bits & mask) != 0;
+    }
+
+    public boolean hasAll(long mask) {
+        return (bits & mask) == mask;
+    }
+
+    public boolean has(String authority) {
+        final Integer bit = BITS.get(authority);
+        return bit != null ? (bits & (1L << bit)) != 0 : others.contains(authority);
+    }
+
+    /**
+     * The authorities as Spring Security sees them; registered ones are shared instances
+     */
+    public List<GrantedAuthority> granted() {
+        return granted != null ? granted : grantedAuthorities(bits, others);
+    }
+
+    private static List<GrantedAuthority> grantedAuthorities(long bits, Set<String> others) {
+        final List<GrantedAuthority> authorities = new ArrayList<>(Long.bitCount(bits) + others.size());
+        for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            authorities.add(KNOWN.get(Long.numberOfTrailingZeros(remaining)));
+        }
+        for (String other : others) {
+            authorities.add(new SimpleGrantedAuthority(other));
+        }
+        return List.copyOf(authorities);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof AuthoritySet that && bits == that.bits && others.equals(that.others);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(bits) * 31 + others.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return granted().toString();
+    }
+
+    private static final class Builder {
+        private long bits;
+        private Set<String> others;
+
+        void add(String authority) {
+            final Integer bit = BITS.get(authority);
+            if (bit != null) {
+                bits |= 1L << bit;
+            } else {
+                if (others == null) {
+                    others = new TreeSet<>();
+                }
+                others.add(authority);
+            }
+        }
+
+        AuthoritySet build() {
+            if (bits == 0 && others == null) {
+                return EMPTY;
+            }
+            return new AuthoritySet(bits, others == null ? Set.of() : Set.copyOf(others));
+        }
+    }
+}
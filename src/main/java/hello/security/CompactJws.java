@@ -0,0 +1,211 @@
+package hello.security;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the parts of a compact JWS ({@code header.payload.signature}) without jjwt, for the
+ * verifiers that check signatures themselves.
+ *
+ * <p>Only the fields this service uses are read, with a streaming parser. Anything unusual
+ * makes a reader return null, which the verifiers treat as "leave it to jjwt".
+ */
+final class CompactJws {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final Base64.Decoder BASE64URL = Base64.getUrlDecoder();
+
+    /** The token's ASCII bytes; the signature covers {@code [0, secondDot)} */
+    private final byte[] ascii;
+    private final int firstDot;
+    private final int secondDot;
+
+    private CompactJws(byte[] ascii, int firstDot, int secondDot) {
+        this.ascii = ascii;
+        this.firstDot = firstDot;
+        this.secondDot = secondDot;
+    }
+
+    /**
+     * Split a token into its three parts; null when it is not a compact JWS
+     */
+    static CompactJws split(String token) {
+        final int firstDot = token.indexOf('.');
+        final int secondDot = token.indexOf('.', firstDot + 1);
+        if (firstDot <= 0 || secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            return null;
+        }
+        return new CompactJws(token.getBytes(StandardCharsets.US_ASCII), firstDot, secondDot);
+    }
+
+    /**
+     * Header fields of interest; {@code plain} is false when it has any other field
+     */
+    record Header(String algorithm, String keyId, boolean plain) {
+    }
+
+    byte[] signingInput() {
+        return ascii;
+    }
+
+    int signingInputLength() {
+        return secondDot;
+    }
+
+    byte[] signature() {
+        return decode(secondDot + 1, ascii.length);
+    }
+
+    /**
+     * The decoded header; null when it is not a JSON object of string fields
+     */
+    Header header() throws IOException {
+        String algorithm = null;
+        String keyId = null;
+        boolean plain = true;
+        try (JsonParser parser = JSON.createParser(decode(0, firstDot))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                if (parser.nextToken() != JsonToken.VALUE_STRING) {
+                    return null;
+                }
+                switch (field) {
+                    case "alg" -> algorithm = parser.getText();
+                    case "kid" -> keyId = parser.getText();
+                    case "typ" -> {
+                        // informational
+                    }
+                    default -> plain = false;
+                }
+            }
+        }
+        return algorithm == null ? null : new Header(algorithm, keyId, plain);
+    }
+
+    /**
+     * The unverified {@code iss} claim, or {@code idp} when there is none; only for choosing
+     * the key to verify with, never for trusting
+     */
+    String issuer() throws IOException {
+        String issuer = null;
+        String identityProvider = null;
+        try (JsonParser parser = JSON.createParser(decode(firstDot + 1, secondDot))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                final JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_STRING && "iss".equals(field)) {
+                    issuer = parser.getText();
+                } else if (value == JsonToken.VALUE_STRING && "idp".equals(field)) {
+                    identityProvider = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return issuer != null ? issuer : identityProvider;
+    }
+
+    /**
+     * The claims of an unexpired token whose signature was checked; null when they need jjwt
+     * ({@code nbf}, unexpected types) or the token has expired. The token was signed here, so
+     * its identity provider is local whatever its {@code idp} claim says.
+     */
+    VerifiedToken claims(long nowMillis) throws IOException {
+        return claims(nowMillis, null, null);
+    }
+
+    /**
+     * The claims of a token verified with a key of {@code issuer}, which becomes its identity
+     * provider; also null when its {@code idp} names another provider or its {@code aud} names
+     * none of the audiences. A null issuer reads the token as issued here: local, ignoring
+     * {@code idp} and {@code aud}.
+     */
+    VerifiedToken claims(long nowMillis, String issuer, Set<String> audiences) throws IOException {
+        String subject = null;
+        long expiresAt = -1;
+        long issuedAt = -1;
+        List<String> roles = List.of();
+        List<String> permissions = List.of();
+        String authLevel = null;
+        String identityProvider = null;
+        List<String> audience = List.of();
+        try (JsonParser parser = JSON.createParser(decode(firstDot + 1, secondDot))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                final JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "aud" -> audience = value == JsonToken.VALUE_STRING
+                            ? List.of(parser.getText())
+                            : strings(parser, value);
+                    case "sub" -> subject = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "exp" -> expiresAt = value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : -1;
+                    case "iat" -> issuedAt = value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : -1;
+                    case "roles" -> roles = strings(parser, value);
+                    case "permissions" -> permissions = strings(parser, value);
+                    case "auth_level" -> authLevel = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "idp" -> identityProvider = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "nbf" -> {
+                        return null;
+                    }
+                    default -> parser.skipChildren();
+                }
+                if (roles == null || permissions == null || audience == null) {
+                    return null;
+                }
+            }
+        }
+        if (subject == null || expiresAt < 0 || expiresAt * 1000 <= nowMillis) {
+            return null;
+        }
+        if (issuer != null && ((identityProvider != null && !identityProvider.equals(issuer))
+                || Collections.disjoint(audience, audiences))) {
+            return null;
+        }
+        return VerifiedToken.of(subject, roles, permissions, authLevel, issuer,
+                issuedAt < 0 ? null : Instant.ofEpochSecond(issuedAt), Instant.ofEpochSecond(expiresAt));
+    }
+
+    /**
+     * A string array claim; anything but an array of strings is left to jjwt (null)
+     */
+    private static List<String> strings(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return value == JsonToken.VALUE_NULL ? List.of() : null;
+        }
+        final List<String> strings = new ArrayList<>(4);
+        JsonToken element;
+        while ((element = parser.nextToken()) == JsonToken.VALUE_STRING) {
+            strings.add(parser.getText());
+        }
+        return element == JsonToken.END_ARRAY ? strings : null;
+    }
+
+    private byte[] decode(int from, int to) {
+        final ByteBuffer decoded = BASE64URL.decode(ByteBuffer.wrap(ascii, from, to - from));
+        return decoded.limit() == decoded.array().length
+                ? decoded.array()
+                : Arrays.copyOf(decoded.array(), decoded.limit());
+    }
+}
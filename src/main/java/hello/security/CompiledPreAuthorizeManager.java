@@ -0,0 +1,123 @@
+package hello.security;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.authorization.method.PreAuthorizeAuthorizationManager;
+import org.springframework.security.core.Authentication;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link PreAuthorize} without SpEL for the expressions this service writes.
+ *
+ * <p>Each method's expression is compiled the first time the method is called. A plain
+ * {@code or} of {@code hasAuthority}, {@code hasAnyAuthority}, {@code hasRole} and
+ * {@code hasAnyRole} terms, or an {@code and} of single-authority terms, becomes a
+ * {@link PermissionDecision} tested against the caller's {@link AuthoritySet}. Anything
+ * else (other functions, mixed operators, parentheses, method arguments) is evaluated by
+ * Spring's own {@link PreAuthorizeAuthorizationManager}, so semantics never change.
+ */
+public final class CompiledPreAuthorizeManager implements AuthorizationManager<MethodInvocation> {
+
+    private static final String ROLE_PREFIX = "ROLE_";
+    private static final Pattern TERM = Pattern.compile(
+            "\\s*(hasAuthority|hasAnyAuthority|hasRole|hasAnyRole)\\(\\s*('[^']*'(?:\\s*,\\s*'[^']*')*)\\s*\\)\\s*");
+    private static final Pattern OPERATOR = Pattern.compile("(or|and)\\b");
+    private static final Pattern ARGUMENT = Pattern.compile("'([^']*)'");
+
+    // Stands for "not compilable" in the per-method map, which cannot hold null
+    private static final PermissionDecision SPEL = PermissionDecision.of(List.of(), false);
+    private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+    private final PreAuthorizeAuthorizationManager fallback = new PreAuthorizeAuthorizationManager();
+    private final Map<Method, PermissionDecision> decisions = new ConcurrentHashMap<>();
+
+    @Override
+    public AuthorizationResult authorize(Supplier<Authentication> authentication, MethodInvocation invocation) {
+        PermissionDecision decision = decisions.get(invocation.getMethod());
+        if (decision == null) {
+            decision = decisions.computeIfAbsent(invocation.getMethod(), method -> resolve(method, invocation.getThis()));
+        }
+        if (decision == SPEL) {
+            return fallback.authorize(authentication, invocation);
+        }
+        return decision.test(AuthoritySet.of(authentication.get())) ? GRANTED : DENIED;
+    }
+
+    @Override
+    @Deprecated
+    public AuthorizationDecision check(Supplier<Authentication> authentication, MethodInvocation invocation) {
+        final AuthorizationResult result = authorize(authentication, invocation);
+        if (result == null || result instanceof AuthorizationDecision) {
+            return (AuthorizationDecision) result;
+        }
+        return result.isGranted() ? GRANTED : DENIED;
+    }
+
+    private static PermissionDecision resolve(Method method, Object target) {
+        final Class<?> targetClass = target == null ? method.getDeclaringClass() : AopUtils.getTargetClass(target);
+        final Method specific = AopUtils.getMostSpecificMethod(method, targetClass);
+        PreAuthorize annotation = AnnotatedElementUtils.findMergedAnnotation(specific, PreAuthorize.class);
+        if (annotation == null) {
+            annotation = AnnotatedElementUtils.findMergedAnnotation(targetClass, PreAuthorize.class);
+        }
+        final PermissionDecision decision = annotation == null ? null : compile(annotation.value());
+        return decision == null ? SPEL : decision;
+    }
+
+    /**
+     * The decision an expression compiles to; null when it needs SpEL
+     */
+    static PermissionDecision compile(String expression) {
+        final Matcher term = TERM.matcher(expression);
+        final Matcher operator = OPERATOR.matcher(expression);
+        final List<String> authorities = new ArrayList<>();
+        String joinedBy = null;
+        int position = 0;
+        while (true) {
+            term.region(position, expression.length());
+            if (!term.lookingAt()) {
+                return null;
+            }
+            final boolean any = term.group(1).startsWith("hasAny");
+            final boolean role = term.group(1).endsWith("Role");
+            final Matcher argument = ARGUMENT.matcher(term.group(2));
+            int arguments = 0;
+            while (argument.find()) {
+                final String name = argument.group(1);
+                authorities.add(role && !name.startsWith(ROLE_PREFIX) ? ROLE_PREFIX + name : name);
+                arguments++;
+            }
+            if (!any && arguments != 1) {
+                return null;
+            }
+            position = term.end();
+            if (position == expression.length()) {
+                // "and" can only join single authorities, or it would need a nested any-of
+                return "and".equals(joinedBy) && arguments != 1
+                        ? null
+                        : PermissionDecision.of(authorities, "and".equals(joinedBy));
+            }
+            operator.region(position, expression.length());
+            if (!operator.lookingAt() || joinedBy != null && !joinedBy.equals(operator.group(1))
+                    || "and".equals(operator.group(1)) && arguments != 1) {
+                return null;
+            }
+            joinedBy = operator.group(1);
+            position = operator.end();
+        }
+    }
+}
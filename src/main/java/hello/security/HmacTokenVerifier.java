@@ -0,0 +1,70 @@
+package hello.security;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * Fast path for the HMAC-signed tokens {@link JwtUtil} issues, bypassing jjwt.
+ *
+ * <p>The signature is checked over the raw header and payload bytes with a per-thread,
+ * pre-initialised {@link Mac}, and only the claims {@link VerifiedToken} carries are read
+ * by {@link CompactJws}; no claims map is built. Anything out of the ordinary (an
+ * algorithm other than the key's, a {@code kid} or other header fields, {@code nbf},
+ * unexpected claim types, a bad signature or an expired token) returns null, and the
+ * caller falls back to jjwt, which then makes the definitive decision.
+ */
+final class HmacTokenVerifier {
+
+    private final SecretKey key;
+    private final String algorithm;
+    // Requests are served on Tomcat's pooled platform threads, so each keeps its Mac. The
+    // RESP listener's per-connection virtual threads get one per connection, built on AUTH
+    private final ThreadLocal<Mac> macs = new ThreadLocal<>();
+
+    HmacTokenVerifier(SecretKey key) {
+        this.key = key;
+        this.algorithm = switch (key.getAlgorithm()) {
+            case "HmacSHA256" -> "HS256";
+            case "HmacSHA384" -> "HS384";
+            case "HmacSHA512" -> "HS512";
+            default -> throw new IllegalArgumentException("Not an HMAC-SHA2 key: " + key.getAlgorithm());
+        };
+    }
+
+    /**
+     * Verify a token and read its claims; null when this path cannot vouch for the token
+     */
+    VerifiedToken verify(String token, long nowMillis) {
+        final CompactJws jws = CompactJws.split(token);
+        if (jws == null) {
+            return null;
+        }
+        try {
+            final CompactJws.Header header = jws.header();
+            if (header == null || !header.plain() || header.keyId() != null
+                    || !algorithm.equals(header.algorithm())
+                    || !signatureMatches(jws.signingInput(), jws.signingInputLength(), jws.signature())) {
+                return null;
+            }
+            return jws.claims(nowMillis);
+        } catch (IllegalArgumentException | IOException | GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    private boolean signatureMatches(byte[] ascii, int signedLength, byte[] signature)
+            throws GeneralSecurityException {
+        Mac mac = macs.get();
+        if (mac == null) {
+            mac = Mac.getInstance(key.getAlgorithm());
+            mac.init(key);
+            macs.set(mac);
+        }
+        mac.update(ascii, 0, signedLength);
+        // doFinal resets the Mac, so it is ready for the thread's next token
+        return MessageDigest.isEqual(mac.doFinal(), signature);
+    }
+}
@@ -0,0 +1,62 @@
+package hello.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import java.util.Objects;
+
+/**
+ * Authentication details for JWT-authenticated requests.
+ * Extends the standard web details with the identity provider (idp claim) of the token,
+ * so downstream components can scope data per tenant (idp + subject), and with the
+ * {@link VerifiedToken} itself, so they can read further claims without parsing the token.
+ */
+public class JwtAuthenticationDetails extends WebAuthenticationDetails {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String identityProvider;
+    private final VerifiedToken token;
+
+    public JwtAuthenticationDetails(HttpServletRequest request, String identityProvider) {
+        super(request);
+        this.identityProvider = identityProvider;
+        this.token = null;
+    }
+
+    public JwtAuthenticationDetails(HttpServletRequest request, VerifiedToken token) {
+        super(request);
+        this.identityProvider = token.identityProvider();
+        this.token = token;
+    }
+
+    /**
+     * Identity provider that issued the token (e.g. local, okta, azure-ad)
+     */
+    public String getIdentityProvider() {
+        return identityProvider;
+    }
+
+    /**
+     * The verified token the request authenticated with; null when built from an IdP alone
+     */
+    public VerifiedToken getToken() {
+        return token;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof JwtAuthenticationDetails that) || !super.equals(o)) {
+            return false;
+        }
+        return Objects.equals(identityProvider, that.identityProvider) && Objects.equals(token, that.token);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), identityProvider, token);
+    }
+}
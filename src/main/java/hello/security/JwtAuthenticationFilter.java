@@ -6,15 +6,11 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.Locale;
 
 /**
  * JWT Authentication Filter that processes JWT tokens from Authorization header.
@@ -39,20 +35,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         try {
             String jwt = getJwtFromRequest(request);
+            // Verify and parse once; everything below reads the verified claims
+            VerifiedToken token = jwt == null ? null : jwtUtil.verify(jwt);
             
-            if (jwt != null && jwtUtil.validateToken(jwt)) {
-                // Extract user information from JWT
-                String username = jwtUtil.extractUsername(jwt);
-                List<String> roles = jwtUtil.extractRoles(jwt);
-                List<String> permissions = jwtUtil.extractPermissions(jwt);
-                
-                // Create authorities from roles and permissions
-                List<SimpleGrantedAuthority> authorities = createAuthorities(roles, permissions);
-                
-                // Create authentication object
+            if (token != null) {
+                // Authorities were interned from roles and permissions when the token was verified
                 UsernamePasswordAuthenticationToken authentication = 
-                    new UsernamePasswordAuthenticationToken(username, null, authorities);
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    new UsernamePasswordAuthenticationToken(token.subject(), null, token.authorities().granted());
+                authentication.setDetails(new JwtAuthenticationDetails(request, token));
                 
                 // Set authentication in security context
                 SecurityContextHolder.getContext().setAuthentication(authentication);
@@ -77,27 +67,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         return null;
     }
 
-    /**
-     * Create authorities from roles and permissions
-     */
-    private List<SimpleGrantedAuthority> createAuthorities(List<String> roles, List<String> permissions) {
-        // Ensure we use a mutable list to support adding permissions below
-        java.util.ArrayList<SimpleGrantedAuthority> authorities = new java.util.ArrayList<>(
-            roles.stream()
-                .map(role -> new SimpleGrantedAuthority("ROLE_" + role.toUpperCase(Locale.ROOT)))
-                .toList()
-        );
-
-        // Add permissions as authorities
-        authorities.addAll(
-            permissions.stream()
-                .map(permission -> new SimpleGrantedAuthority(permission.toUpperCase(Locale.ROOT)))
-                .toList()
-        );
-
-        return authorities;
-    }
-
     /**
      * Skip filter for certain paths (like login, health checks, etc.)
      */
@@ -2,22 +2,55 @@ package hello.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
 /**
  * JWT utility class for token validation, parsing, and claims extraction.
  * Follows Spring Security best practices for JWT handling.
+ *
+ * <p>Request paths call {@link #verify(String)}, which checks the signature and parses the
+ * claims once into a {@link VerifiedToken}. The signing key and parser are built once per
+ * secret. Every signature verification is counted in {@code jwt.verifications}.
+ *
+ * <p>With {@code jwt.cache.max-entries} above zero, verified tokens are remembered in a
+ * {@link VerifiedTokenCache} belonging to the current key, so a token presented again is
+ * served without another verification until it expires or the secret changes.
+ *
+ * <p>With {@code jwt.fast-path.enabled}, tokens shaped like the ones {@link #generateToken}
+ * issues are verified by {@link HmacTokenVerifier} without jjwt; everything else, and every
+ * token it declines, goes through jjwt. Tokens signed with an identity provider's private
+ * key (RS256, ES256, ...) are verified against the {@link KeyRing} instead of the secret.
+ *
+ * <p>Tokens signed with the secret belong to the local identity provider whatever their
+ * {@code idp} claim says, so a token minted here can never reach the tenant of a user of an
+ * external provider.
+ *
+ * <p>A token that verifies is still rejected while it is on the {@link TokenRevocationList};
+ * {@link #revoke(String)} puts it there until it expires.
  */
 @Component
-public class JwtUtil {
+public class JwtUtil implements MeterBinder {
+
+    // Below this many distinct tokens a batch is verified on the calling thread
+    private static final int PARALLEL_BATCH_THRESHOLD = 8;
 
     @Value("${jwt.secret:mySecretKey}")
     private String secret;
@@ -25,6 +58,174 @@ public class JwtUtil {
     @Value("${jwt.expiration:86400000}") // 24 hours default
     private Long expiration;
 
+    @Value("${jwt.cache.max-entries:10000}")
+    private int cacheMaxEntries;
+
+    @Value("${jwt.cache.shards:16}")
+    private int cacheShards;
+
+    @Value("${jwt.fast-path.enabled:true}")
+    private boolean fastPathEnabled;
+
+    @Autowired(required = false)
+    private KeyRing keyRing;
+
+    @Autowired(required = false)
+    private TokenRevocationList revocations;
+
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder fastVerifications = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder revokedTokens = new LongAdder();
+    private volatile Signing signing;
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("jwt.verifications", verified, LongAdder::sum)
+                .tag("outcome", "valid")
+                .description("JWT signature verifications")
+                .register(registry);
+        FunctionCounter.builder("jwt.verifications", rejected, LongAdder::sum)
+                .tag("outcome", "invalid")
+                .description("JWT signature verifications")
+                .register(registry);
+        FunctionCounter.builder("jwt.verifications.fast", fastVerifications, LongAdder::sum)
+                .description("Valid JWTs verified by the HMAC fast path instead of jjwt")
+                .register(registry);
+        FunctionCounter.builder("jwt.cache.requests", cacheHits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Verified-token cache lookups")
+                .register(registry);
+        FunctionCounter.builder("jwt.cache.requests", cacheMisses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Verified-token cache lookups")
+                .register(registry);
+        FunctionCounter.builder("jwt.verifications.revoked", revokedTokens, LongAdder::sum)
+                .description("Validly signed tokens rejected because they were revoked")
+                .register(registry);
+        Gauge.builder("jwt.cache.entries", this, JwtUtil::cachedTokens)
+                .description("Verified tokens currently cached")
+                .register(registry);
+    }
+
+    /**
+     * Verify signature and expiry and parse the claims in one step; returns null when the
+     * token is malformed, forged, expired or revoked
+     */
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        final TokenDigest digest = TokenDigest.of(token);
+        final VerifiedToken verifiedToken = verify(token, digest);
+        if (verifiedToken != null && revocations != null && revocations.isRevoked(digest)) {
+            revokedTokens.increment();
+            return null;
+        }
+        return verifiedToken;
+    }
+
+    /**
+     * Whether a token verified earlier has been revoked since, for callers that keep a
+     * session open on it
+     */
+    public boolean isRevoked(TokenDigest digest) {
+        if (revocations != null && revocations.isRevoked(digest)) {
+            revokedTokens.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Verify a batch of tokens, each distinct token once, spread over the available cores;
+     * the result has one entry per token in order, null where {@link #verify(String)} would
+     * return null, and repeated tokens share one result
+     */
+    public List<VerifiedToken> verifyAll(List<String> tokens) {
+        final Map<String, Integer> slots = new HashMap<>();
+        for (String token : tokens) {
+            slots.putIfAbsent(token, slots.size());
+        }
+        final String[] distinct = new String[slots.size()];
+        slots.forEach((token, slot) -> distinct[slot] = token);
+        final VerifiedToken[] results = new VerifiedToken[distinct.length];
+        final IntStream indexes = IntStream.range(0, distinct.length);
+        (distinct.length < PARALLEL_BATCH_THRESHOLD ? indexes : indexes.parallel())
+                .forEach(i -> results[i] = verify(distinct[i]));
+        final List<VerifiedToken> verifiedTokens = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            verifiedTokens.add(results[slots.get(token)]);
+        }
+        return verifiedTokens;
+    }
+
+    /**
+     * Revoke a valid token until it expires; false when it does not verify, so there is
+     * nothing to revoke
+     */
+    public boolean revoke(String token) {
+        if (token == null || token.isEmpty() || revocations == null) {
+            return false;
+        }
+        final TokenDigest digest = TokenDigest.of(token);
+        final VerifiedToken verifiedToken = verify(token, digest);
+        if (verifiedToken == null) {
+            return false;
+        }
+        revocations.revoke(digest, verifiedToken.expiresAt().toEpochMilli());
+        return true;
+    }
+
+    private VerifiedToken verify(String token, TokenDigest digest) {
+        if (keyRing != null && keyRing.handles(token)) {
+            return keyRing.verify(token, digest);
+        }
+        final Signing current = signing();
+        final long now = System.currentTimeMillis();
+        if (current.cache() != null) {
+            final VerifiedToken cached = current.cache().get(digest, now);
+            if (cached != null) {
+                cacheHits.increment();
+                return cached;
+            }
+            cacheMisses.increment();
+        }
+        VerifiedToken verifiedToken = current.fastPath() == null ? null : current.fastPath().verify(token, now);
+        if (verifiedToken != null) {
+            verified.increment();
+            fastVerifications.increment();
+        } else {
+            try {
+                final Claims claims = parse(current, token);
+                if (claims.getExpiration() == null) {
+                    return null;
+                }
+                verifiedToken = VerifiedToken.of(claims, null);
+            } catch (JwtException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+        if (current.cache() != null) {
+            current.cache().put(digest, verifiedToken);
+        }
+        return verifiedToken;
+    }
+
+    /**
+     * Signature verifications performed so far, valid or not
+     */
+    public long verifications() {
+        return verified.sum() + rejected.sum();
+    }
+
+    private int cachedTokens() {
+        final Signing current = signing;
+        return current == null || current.cache() == null ? 0 : current.cache().size();
+    }
+
     /**
      * Extract username from JWT token
      */
@@ -51,11 +252,18 @@ public class JwtUtil {
      * Extract all claims from JWT token
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parse(signing(), token);
+    }
+
+    private Claims parse(Signing current, String token) {
+        try {
+            final Claims claims = current.parser().parseSignedClaims(token).getPayload();
+            verified.increment();
+            return claims;
+        } catch (JwtException | IllegalArgumentException e) {
+            rejected.increment();
+            throw e;
+        }
     }
 
     /**
@@ -118,34 +326,19 @@ public class JwtUtil {
         return extractAllClaims(token);
     }
 
-    /**
-     * Check if token is expired
-     */
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
     /**
      * Validate JWT token
      */
     public Boolean validateToken(String token) {
-        try {
-            Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token);
-            return !isTokenExpired(token);
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
-        }
+        return verify(token) != null;
     }
 
     /**
      * Validate JWT token with username
      */
     public Boolean validateToken(String token, String username) {
-        final String extractedUsername = extractUsername(token);
-        return (extractedUsername.equals(username) && !isTokenExpired(token));
+        final VerifiedToken verifiedToken = verify(token);
+        return verifiedToken != null && verifiedToken.subject().equals(username);
     }
 
     /**
@@ -194,8 +387,30 @@ public class JwtUtil {
      * Get signing key for JWT validation
      */
     private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signing().key();
+    }
+
+    /**
+     * Key, parser and token cache for the current secret, built on first use and whenever
+     * it changes
+     */
+    private Signing signing() {
+        final Signing current = signing;
+        if (current != null && current.secret().equals(secret)) {
+            return current;
+        }
+        final SecretKey key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        final VerifiedTokenCache cache = cacheMaxEntries > 0
+                ? new VerifiedTokenCache(cacheMaxEntries, cacheShards)
+                : null;
+        final Signing rebuilt = new Signing(secret, key, Jwts.parser().verifyWith(key).build(), cache,
+                fastPathEnabled ? new HmacTokenVerifier(key) : null);
+        signing = rebuilt;
+        return rebuilt;
+    }
+
+    private record Signing(String secret, SecretKey key, JwtParser parser, VerifiedTokenCache cache,
+                           HmacTokenVerifier fastPath) {
     }
 
     /**
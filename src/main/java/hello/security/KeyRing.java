@@ -0,0 +1,424 @@
+package hello.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Public keys of external identity providers, for verifying their RS256/ES256 tokens.
+ *
+ * <p>Keys are read from {@code jwt.keys.location}: one directory per issuer, named by the
+ * URL-encoded issuer, holding {@code <kid>.pem} files (X.509 public keys) and JWKS
+ * {@code *.json} files. A token's key is looked up by its header {@code kid} and its
+ * {@code iss} claim, or {@code idp} when it has no {@code iss}. The issuer whose key
+ * verified a token is its identity provider: a token whose {@code idp} names another one is
+ * rejected, as is one whose {@code aud} names none of the issuer's audiences, listed one per
+ * line in an {@code audiences} file in its directory or else {@code jwt.keys.audience}.
+ * The directory is checked
+ * every {@code jwt.keys.reload-interval}; a change builds a complete new key set off to the
+ * side and swaps it in with one volatile write, so verification never waits on a reload.
+ *
+ * <p>Keys are parsed once per load, and each key keeps a pool of {@link Signature}
+ * objects already initialised with it. Verified tokens are cached per key set like the
+ * HMAC ones in {@link JwtUtil}, so a reload also drops every cached token.
+ */
+@Component
+public class KeyRing implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyRing.class);
+
+    private static final int SIGNATURE_POOL_SIZE = 32;
+    private static final String AUDIENCES_FILE = "audiences";
+    private static final Map<String, String> SIGNATURE_ALGORITHMS = Map.of(
+            "RS256", "SHA256withRSA",
+            "RS384", "SHA384withRSA",
+            "RS512", "SHA512withRSA",
+            "ES256", "SHA256withECDSAinP1363Format",
+            "ES384", "SHA384withECDSAinP1363Format",
+            "ES512", "SHA512withECDSAinP1363Format");
+    private static final Map<String, String> CURVES = Map.of(
+            "P-256", "secp256r1",
+            "P-384", "secp384r1",
+            "P-521", "secp521r1");
+
+    private final Path location;
+    private final Set<String> defaultAudiences;
+    private final int cacheMaxEntries;
+    private final int cacheShards;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Counter reloads;
+    private final Counter reloadFailures;
+    private final Counter verified;
+    private final Counter rejected;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "jwt-key-ring");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile KeySet keySet = new KeySet(Map.of(), null);
+
+    public KeyRing(
+            MeterRegistry meterRegistry,
+            @Value("${jwt.keys.location:}") String location,
+            @Value("${jwt.keys.reload-interval:30s}") Duration reloadInterval,
+            @Value("${jwt.keys.audience:}") String audience,
+            @Value("${jwt.cache.max-entries:10000}") int cacheMaxEntries,
+            @Value("${jwt.cache.shards:16}") int cacheShards) {
+        this.location = location.isBlank() ? null : Path.of(location);
+        this.defaultAudiences = audiences(Arrays.asList(audience.split(",")));
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.cacheShards = cacheShards;
+        this.reloads = Counter.builder("jwt.keys.reloads")
+                .tag("outcome", "success")
+                .description("Key ring reloads after the key files changed")
+                .register(meterRegistry);
+        this.reloadFailures = Counter.builder("jwt.keys.reloads")
+                .tag("outcome", "failure")
+                .description("Key ring reloads after the key files changed")
+                .register(meterRegistry);
+        this.verified = Counter.builder("jwt.keys.verifications")
+                .tag("outcome", "valid")
+                .description("Asymmetric JWT signature verifications")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("jwt.keys.verifications")
+                .tag("outcome", "invalid")
+                .description("Asymmetric JWT signature verifications")
+                .register(meterRegistry);
+        Gauge.builder("jwt.keys.loaded", this, ring -> ring.keySet.keys().size())
+                .description("Public keys currently loaded")
+                .register(meterRegistry);
+        if (this.location != null) {
+            reload();
+            scheduler.scheduleWithFixedDelay(this::reload,
+                    reloadInterval.toMillis(), reloadInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Whether a token should be verified here rather than with the shared secret: the ring
+     * has keys and the token is not HMAC-signed
+     */
+    public boolean handles(String token) {
+        if (keySet.keys().isEmpty()) {
+            return false;
+        }
+        final CompactJws jws = CompactJws.split(token);
+        try {
+            final CompactJws.Header header = jws == null ? null : jws.header();
+            return header != null && !header.algorithm().startsWith("HS");
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Verify a token against the key named by its issuer and kid; null when there is no
+     * such key or the token is forged or expired
+     */
+    public VerifiedToken verify(String token) {
+        return verify(token, TokenDigest.of(token));
+    }
+
+    VerifiedToken verify(String token, TokenDigest digest) {
+        final KeySet current = keySet;
+        final long now = System.currentTimeMillis();
+        if (current.cache() != null) {
+            final VerifiedToken cached = current.cache().get(digest, now);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final VerifiedToken verifiedToken = verify(current, token, now);
+        if (verifiedToken == null) {
+            rejected.increment();
+            return null;
+        }
+        verified.increment();
+        if (current.cache() != null) {
+            current.cache().put(digest, verifiedToken);
+        }
+        return verifiedToken;
+    }
+
+    private static VerifiedToken verify(KeySet current, String token, long now) {
+        final CompactJws jws = CompactJws.split(token);
+        if (jws == null) {
+            return null;
+        }
+        try {
+            final CompactJws.Header header = jws.header();
+            if (header == null || header.keyId() == null) {
+                return null;
+            }
+            final PublicKeyEntry entry = current.keys().get(new KeyId(jws.issuer(), header.keyId()));
+            if (entry == null || !entry.verify(header.algorithm(), jws)) {
+                return null;
+            }
+            final VerifiedToken fast = header.plain() ? jws.claims(now, entry.id().issuer(), entry.audiences()) : null;
+            return fast != null ? fast : entry.parse(token);
+        } catch (IOException | IllegalArgumentException | GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Rescan the key directory and swap in the keys found; the previous keys stay in use
+     * when it cannot be read
+     */
+    void reload() {
+        try {
+            final Map<KeyId, PublicKeyEntry> keys = new HashMap<>();
+            try (Stream<Path> issuers = Files.list(location)) {
+                for (Path directory : issuers.filter(Files::isDirectory).toList()) {
+                    final String issuer = URLDecoder.decode(directory.getFileName().toString(), StandardCharsets.UTF_8);
+                    loadIssuer(issuer, directory, keys);
+                }
+            }
+            if (keys.equals(keySet.keys())) {
+                return;
+            }
+            keySet = new KeySet(Map.copyOf(keys), cacheMaxEntries > 0
+                    ? new VerifiedTokenCache(cacheMaxEntries, cacheShards)
+                    : null);
+            reloads.increment();
+            logger.info("Loaded {} public keys from {}", keys.size(), location);
+        } catch (IOException | RuntimeException e) {
+            reloadFailures.increment();
+            logger.warn("Reading keys from {} failed, keeping the previous keys: {}", location, e.getMessage());
+        }
+    }
+
+    private void loadIssuer(String issuer, Path directory, Map<KeyId, PublicKeyEntry> keys) throws IOException {
+        final Path audiencesFile = directory.resolve(AUDIENCES_FILE);
+        final Set<String> audiences = Files.isRegularFile(audiencesFile)
+                ? audiences(Files.readAllLines(audiencesFile))
+                : defaultAudiences;
+        if (audiences.isEmpty()) {
+            logger.warn("Skipping keys of {}: no audiences configured, so none of its tokens could be accepted", issuer);
+            return;
+        }
+        final List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : files) {
+            final String name = file.getFileName().toString();
+            try {
+                if (name.endsWith(".pem")) {
+                    final String kid = name.substring(0, name.length() - ".pem".length());
+                    put(keys, new PublicKeyEntry(issuer, kid, pem(Files.readString(file)), audiences));
+                } else if (name.endsWith(".json")) {
+                    for (PublicKeyEntry entry : jwks(issuer, audiences, mapper.readTree(file.toFile()))) {
+                        put(keys, entry);
+                    }
+                }
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                reloadFailures.increment();
+                logger.warn("Skipping unreadable key file {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private void put(Map<KeyId, PublicKeyEntry> keys, PublicKeyEntry entry) {
+        final PublicKeyEntry existing = keySet.keys().get(entry.id());
+        // keep the loaded entry, with its warm Signature pool, when the key did not change
+        keys.put(entry.id(), existing != null && existing.equals(entry) ? existing : entry);
+    }
+
+    private static Set<String> audiences(List<String> lines) {
+        return lines.stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static PublicKey pem(String pem) throws GeneralSecurityException {
+        final String encoded = pem
+                .replaceAll("-----BEGIN PUBLIC KEY-----", "")
+                .replaceAll("-----END PUBLIC KEY-----", "")
+                .replaceAll("\\s", "");
+        final X509EncodedKeySpec spec = new X509EncodedKeySpec(Base64.getDecoder().decode(encoded));
+        try {
+            return KeyFactory.getInstance("RSA").generatePublic(spec);
+        } catch (GeneralSecurityException e) {
+            return KeyFactory.getInstance("EC").generatePublic(spec);
+        }
+    }
+
+    private static List<PublicKeyEntry> jwks(String issuer, Set<String> audiences, JsonNode jwks)
+            throws GeneralSecurityException {
+        final List<PublicKeyEntry> entries = new ArrayList<>();
+        for (JsonNode jwk : jwks.path("keys")) {
+            final String kid = jwk.path("kid").asText(null);
+            if (kid == null || "enc".equals(jwk.path("use").asText())) {
+                continue;
+            }
+            final PublicKey key = switch (jwk.path("kty").asText()) {
+                case "RSA" -> KeyFactory.getInstance("RSA").generatePublic(
+                        new RSAPublicKeySpec(unsigned(jwk, "n"), unsigned(jwk, "e")));
+                case "EC" -> KeyFactory.getInstance("EC").generatePublic(
+                        new ECPublicKeySpec(new ECPoint(unsigned(jwk, "x"), unsigned(jwk, "y")), curve(jwk)));
+                default -> null;
+            };
+            if (key != null) {
+                entries.add(new PublicKeyEntry(issuer, kid, key, audiences));
+            }
+        }
+        return entries;
+    }
+
+    private static BigInteger unsigned(JsonNode jwk, String field) {
+        return new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path(field).asText()));
+    }
+
+    private static ECParameterSpec curve(JsonNode jwk) throws GeneralSecurityException {
+        final String curve = CURVES.get(jwk.path("crv").asText());
+        if (curve == null) {
+            throw new IllegalArgumentException("Unsupported curve " + jwk.path("crv").asText());
+        }
+        final AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+        parameters.init(new ECGenParameterSpec(curve));
+        return parameters.getParameterSpec(ECParameterSpec.class);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private record KeyId(String issuer, String kid) {
+    }
+
+    /**
+     * An immutable set of keys and the tokens verified with them
+     */
+    private record KeySet(Map<KeyId, PublicKeyEntry> keys, VerifiedTokenCache cache) {
+    }
+
+    /**
+     * One public key with the audiences its issuer accepts, its jjwt parser and pools of
+     * ready {@link Signature}s per algorithm
+     */
+    private static final class PublicKeyEntry {
+        private final KeyId id;
+        private final PublicKey key;
+        private final Set<String> audiences;
+        private final JwtParser parser;
+        private final Map<String, ArrayBlockingQueue<Signature>> signatures = new ConcurrentHashMap<>();
+
+        PublicKeyEntry(String issuer, String kid, PublicKey key, Set<String> audiences) {
+            this.id = new KeyId(issuer, kid);
+            this.key = key;
+            this.audiences = audiences;
+            this.parser = Jwts.parser().verifyWith(key).build();
+        }
+
+        KeyId id() {
+            return id;
+        }
+
+        Set<String> audiences() {
+            return audiences;
+        }
+
+        boolean verify(String algorithm, CompactJws jws) throws GeneralSecurityException {
+            final String jca = SIGNATURE_ALGORITHMS.get(algorithm);
+            if (jca == null || !(algorithm.startsWith("RS") ? key instanceof RSAPublicKey : key instanceof ECPublicKey)) {
+                return false;
+            }
+            final ArrayBlockingQueue<Signature> pool =
+                    signatures.computeIfAbsent(jca, name -> new ArrayBlockingQueue<>(SIGNATURE_POOL_SIZE));
+            Signature signature = pool.poll();
+            if (signature == null) {
+                signature = Signature.getInstance(jca);
+                signature.initVerify(key);
+            }
+            final boolean valid;
+            try {
+                signature.update(jws.signingInput(), 0, jws.signingInputLength());
+                valid = signature.verify(jws.signature());
+            } catch (SignatureException e) {
+                // state is unspecified after a failure, so this one is not reused
+                return false;
+            }
+            pool.offer(signature);
+            return valid;
+        }
+
+        /**
+         * Full jjwt parse, for tokens whose claims {@link CompactJws} leaves alone
+         */
+        VerifiedToken parse(String token) {
+            try {
+                final Claims claims = parser.parseSignedClaims(token).getPayload();
+                final Object identityProvider = claims.get("idp");
+                if (claims.getExpiration() == null
+                        || (identityProvider != null && !id.issuer().equals(identityProvider))
+                        || claims.getAudience() == null || Collections.disjoint(claims.getAudience(), audiences)) {
+                    return null;
+                }
+                return VerifiedToken.of(claims, id.issuer());
+            } catch (JwtException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PublicKeyEntry that && id.equals(that.id) && key.equals(that.key)
+                    && audiences.equals(that.audiences);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+    }
+}
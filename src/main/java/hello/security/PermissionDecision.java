@@ -0,0 +1,93 @@
+package hello.security;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A precompiled authorization check: a mask of registered authorities plus, rarely, the
+ * names of authorities outside the {@link AuthoritySet} registry. Built once per method
+ * and then only tested, so a check is a couple of ANDs with no allocation.
+ */
+final class PermissionDecision {
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final long mask;
+    private final String[] others;
+    private final boolean requireAll;
+    private final String description;
+
+    private PermissionDecision(long mask, String[] others, boolean requireAll, String description) {
+        this.mask = mask;
+        this.others = others;
+        this.requireAll = requireAll;
+        this.description = description;
+    }
+
+    static PermissionDecision of(RequirePermission annotation) {
+        final List<String> authorities = new ArrayList<>(annotation.value().length + annotation.roles().length);
+        for (String permission : annotation.value()) {
+            authorities.add(permission.toUpperCase(Locale.ROOT));
+        }
+        for (String role : annotation.roles()) {
+            final String upper = role.toUpperCase(Locale.ROOT);
+            authorities.add(upper.startsWith(ROLE_PREFIX) ? upper : ROLE_PREFIX + upper);
+        }
+        return of(authorities, annotation.requireAll());
+    }
+
+    /**
+     * A check for any (or all) of the given authorities; with none, any caller passes
+     */
+    static PermissionDecision of(Collection<String> authorities, boolean requireAll) {
+        final Set<String> unique = new LinkedHashSet<>(authorities);
+        long mask = 0;
+        final List<String> others = new ArrayList<>();
+        for (String authority : unique) {
+            if (AuthoritySet.isRegistered(authority)) {
+                mask |= AuthoritySet.mask(authority);
+            } else {
+                others.add(authority);
+            }
+        }
+        final String description = (requireAll ? "all of " : "any of ") + String.join(", ", unique);
+        return new PermissionDecision(mask, others.toArray(String[]::new), requireAll, description);
+    }
+
+    boolean test(AuthoritySet authorities) {
+        return requireAll ? hasAll(authorities) : hasAny(authorities);
+    }
+
+    private boolean hasAll(AuthoritySet authorities) {
+        if (!authorities.hasAll(mask)) {
+            return false;
+        }
+        for (String other : others) {
+            if (!authorities.has(other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasAny(AuthoritySet authorities) {
+        if (mask == 0 && others.length == 0 || authorities.hasAny(mask)) {
+            return true;
+        }
+        for (String other : others) {
+            if (authorities.has(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,115 @@
+package hello.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Enforces {@link RequirePermission} on request handlers.
+ *
+ * <p>Once every singleton exists, each handler method of each request mapping is resolved
+ * to a {@link PermissionDecision}: the method's annotation, else its class's. A request
+ * then costs one map lookup by the handler's {@link Method} and a mask test against the
+ * caller's {@link AuthoritySet}, with no reflection or annotation lookup. Handlers
+ * without the annotation are left alone.
+ */
+@Component
+public class RequirePermissionInterceptor implements HandlerInterceptor, SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequirePermissionInterceptor.class);
+
+    private final ApplicationContext applicationContext;
+    private final Counter granted;
+    private final Counter denied;
+    private final Counter unauthenticated;
+    private volatile Map<Method, PermissionDecision> decisions = Map.of();
+
+    public RequirePermissionInterceptor(ApplicationContext applicationContext, MeterRegistry meterRegistry) {
+        this.applicationContext = applicationContext;
+        this.granted = Counter.builder("security.permissions.checks")
+                .tag("outcome", "granted")
+                .description("@RequirePermission checks on incoming requests")
+                .register(meterRegistry);
+        this.denied = Counter.builder("security.permissions.checks")
+                .tag("outcome", "denied")
+                .description("@RequirePermission checks on incoming requests")
+                .register(meterRegistry);
+        this.unauthenticated = Counter.builder("security.permissions.checks")
+                .tag("outcome", "unauthenticated")
+                .description("@RequirePermission checks on incoming requests")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        final Map<Method, PermissionDecision> resolved = new HashMap<>();
+        for (RequestMappingHandlerMapping mapping
+                : applicationContext.getBeansOfType(RequestMappingHandlerMapping.class).values()) {
+            for (HandlerMethod handlerMethod : mapping.getHandlerMethods().values()) {
+                final PermissionDecision decision = resolve(handlerMethod.getMethod(), handlerMethod.getBeanType());
+                if (decision != null) {
+                    resolved.put(handlerMethod.getMethod(), decision);
+                }
+            }
+        }
+        decisions = Map.copyOf(resolved);
+        logger.info("Compiled @RequirePermission checks for {} handler methods", resolved.size());
+    }
+
+    /**
+     * The decision for a handler method; null when neither it nor its class is annotated
+     */
+    static PermissionDecision resolve(Method method, Class<?> beanType) {
+        RequirePermission annotation = AnnotatedElementUtils.findMergedAnnotation(method, RequirePermission.class);
+        if (annotation == null) {
+            annotation = AnnotatedElementUtils.findMergedAnnotation(beanType, RequirePermission.class);
+        }
+        return annotation == null ? null : PermissionDecision.of(annotation);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        final PermissionDecision decision = decisions.get(handlerMethod.getMethod());
+        if (decision == null) {
+            return true;
+        }
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            unauthenticated.increment();
+            throw new AuthenticationCredentialsNotFoundException("Authentication required");
+        }
+        if (!decision.test(AuthoritySet.of(authentication))) {
+            denied.increment();
+            throw new AccessDeniedException("Requires " + decision);
+        }
+        granted.increment();
+        return true;
+    }
+
+    int size() {
+        return decisions.size();
+    }
+}
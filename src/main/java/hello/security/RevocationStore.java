@@ -0,0 +1,33 @@
+package hello.security;
+
+import java.util.List;
+
+/**
+ * Shared, append-only log of revoked tokens that {@link TokenRevocationList} replicates
+ * between pods. Tokens are identified by the hex SHA-256 digest of the token.
+ */
+public interface RevocationStore {
+
+    /** Cursor of an empty log */
+    String START = "0-0";
+
+    /**
+     * Record a revocation for every pod, including this one
+     */
+    void append(String digest, long expiresAtMillis);
+
+    /**
+     * Revocations recorded after {@code cursor}, oldest first and at most {@code max};
+     * {@link #START} reads from the beginning
+     */
+    Batch since(String cursor, int max);
+
+    record Revocation(String digest, long expiresAtMillis) {
+    }
+
+    /**
+     * Revocations read and the cursor to continue from
+     */
+    record Batch(List<Revocation> revocations, String cursor) {
+    }
+}
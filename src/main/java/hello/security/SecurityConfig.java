@@ -1,15 +1,30 @@
 package hello.security;
 
+import org.springframework.aop.Advisor;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.annotation.Role;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 @Profile("!test")
-public class SecurityConfig {
+// @PreAuthorize goes through CompiledPreAuthorizeManager below instead of the stock SpEL advisor
+@EnableMethodSecurity(prePostEnabled = false)
+public class SecurityConfig implements WebMvcConfigurer {
+
+    private final RequirePermissionInterceptor requirePermissionInterceptor;
+
+    public SecurityConfig(RequirePermissionInterceptor requirePermissionInterceptor) {
+        this.requirePermissionInterceptor = requirePermissionInterceptor;
+    }
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -20,6 +35,16 @@ public class SecurityConfig {
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
         return http.build();
     }
-}
 
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor preAuthorizeAuthorizationMethodInterceptor() {
+        return AuthorizationManagerBeforeMethodInterceptor.preAuthorize(new CompiledPreAuthorizeManager());
+    }
 
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // @RequirePermission is checked per handler method once the filter chain has authenticated
+        registry.addInterceptor(requirePermissionInterceptor);
+    }
+}
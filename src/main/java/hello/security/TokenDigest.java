@@ -0,0 +1,50 @@
+package hello.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 of a token as four longs, cheap to hash and compare. Used wherever a token has
+ * to be remembered without keeping the token itself.
+ */
+public record TokenDigest(long a, long b, long c, long d) {
+
+    public static TokenDigest of(String token) {
+        final MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        return of(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Parse the 64-character hex form of {@link #hex()}
+     */
+    static TokenDigest ofHex(String hex) {
+        if (hex.length() != 64) {
+            throw new IllegalArgumentException("Not a SHA-256 hex digest: " + hex);
+        }
+        return of(HexFormat.of().parseHex(hex));
+    }
+
+    private static TokenDigest of(byte[] sha256) {
+        final ByteBuffer hash = ByteBuffer.wrap(sha256);
+        return new TokenDigest(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+    }
+
+    String hex() {
+        final HexFormat hex = HexFormat.of();
+        return hex.toHexDigits(a) + hex.toHexDigits(b) + hex.toHexDigits(c) + hex.toHexDigits(d);
+    }
+
+    @Override
+    public int hashCode() {
+        // already uniformly distributed
+        return (int) (b ^ (b >>> 32));
+    }
+}
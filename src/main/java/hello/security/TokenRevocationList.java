@@ -0,0 +1,243 @@
+package hello.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tokens revoked before their {@code exp}, checked by {@link JwtUtil} on every verification.
+ *
+ * <p>Revoked tokens are kept by {@link TokenDigest} in an exact map, fronted by a Bloom
+ * filter built from the same digests. A token that was never revoked, the common case, is
+ * answered by the filter with a few bit probes and no lock or I/O; only a filter hit
+ * consults the map. Writers (local revocations, sync and pruning) take a lock and readers
+ * never do; the filter only grows, so it is rebuilt when entries are pruned or it fills up.
+ *
+ * <p>With a {@link RevocationStore}, local revocations are appended to it, and it is read
+ * every {@code jwt.revocation.sync-interval} from the last position seen, so every pod
+ * applies every revocation. Entries past their {@code exp} are pruned on the same
+ * schedule, since an expired token is rejected anyway.
+ */
+@Component
+public class TokenRevocationList implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    // 10 bits per entry and 7 probes give about 1% false positives at capacity
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int PROBES = 7;
+    private static final int SYNC_BATCH = 1000;
+
+    private final RevocationStore store;
+    private final int expectedEntries;
+    private final Map<TokenDigest, Long> revoked = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Counter matches;
+    private final Counter falsePositives;
+    private final Counter syncFailures;
+    private final Counter malformed;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "jwt-revocations");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Bloom bloom;
+    private String cursor = RevocationStore.START;
+
+    @Autowired
+    public TokenRevocationList(
+            MeterRegistry meterRegistry,
+            ObjectProvider<RevocationStore> store,
+            @Value("${jwt.revocation.expected-entries:1024}") int expectedEntries,
+            @Value("${jwt.revocation.sync-interval:1s}") Duration syncInterval) {
+        this(meterRegistry, store.getIfAvailable(), expectedEntries, syncInterval);
+    }
+
+    TokenRevocationList(MeterRegistry meterRegistry, RevocationStore store, int expectedEntries,
+                        Duration syncInterval) {
+        this.store = store;
+        this.expectedEntries = expectedEntries;
+        this.bloom = new Bloom(expectedEntries);
+        this.matches = Counter.builder("jwt.revocations.lookups")
+                .tag("result", "revoked")
+                .description("Verified tokens found in the revocation filter")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("jwt.revocations.lookups")
+                .tag("result", "false-positive")
+                .description("Verified tokens found in the revocation filter")
+                .register(meterRegistry);
+        this.syncFailures = Counter.builder("jwt.revocations.sync.failures")
+                .description("Failed reads of the shared revocation log")
+                .register(meterRegistry);
+        this.malformed = Counter.builder("jwt.revocations.sync.malformed")
+                .description("Entries of the shared revocation log skipped as unreadable")
+                .register(meterRegistry);
+        Gauge.builder("jwt.revocations.entries", revoked, Map::size)
+                .description("Revoked tokens that have not expired yet")
+                .register(meterRegistry);
+        refresh();
+        scheduler.scheduleWithFixedDelay(this::refresh,
+                syncInterval.toMillis(), syncInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Whether a token has been revoked
+     */
+    boolean isRevoked(TokenDigest digest) {
+        if (!bloom.mightContain(digest)) {
+            return false;
+        }
+        if (revoked.containsKey(digest)) {
+            matches.increment();
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+
+    /**
+     * Revoke a token until its expiry, here at once and on other pods at their next sync
+     */
+    void revoke(TokenDigest digest, long expiresAtMillis) {
+        add(digest, expiresAtMillis);
+        if (store != null) {
+            store.append(digest.hex(), expiresAtMillis);
+        }
+    }
+
+    int size() {
+        return revoked.size();
+    }
+
+    private void add(TokenDigest digest, long expiresAtMillis) {
+        lock.lock();
+        try {
+            if (revoked.put(digest, expiresAtMillis) != null) {
+                return;
+            }
+            final Bloom current = bloom;
+            if (revoked.size() > current.capacity) {
+                // The map entry is in place first, so the rebuilt filter includes it
+                rebuild(current.capacity * 2);
+            } else {
+                current.add(digest);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Catch up with the shared log and prune expired entries
+     */
+    void refresh() {
+        if (store != null) {
+            try {
+                sync();
+            } catch (RuntimeException e) {
+                syncFailures.increment();
+                logger.warn("Reading the revocation log failed, retrying at the next sync: {}", e.getMessage());
+            }
+        }
+        prune(System.currentTimeMillis());
+    }
+
+    private void sync() {
+        final long now = System.currentTimeMillis();
+        while (true) {
+            final RevocationStore.Batch batch = store.since(cursor, SYNC_BATCH);
+            for (RevocationStore.Revocation revocation : batch.revocations()) {
+                if (revocation.expiresAtMillis() <= now) {
+                    continue;
+                }
+                try {
+                    add(TokenDigest.ofHex(revocation.digest()), revocation.expiresAtMillis());
+                } catch (IllegalArgumentException e) {
+                    // Skipped for good, or the cursor would never move past it
+                    malformed.increment();
+                    logger.warn("Skipping malformed revocation: {}", e.getMessage());
+                }
+            }
+            if (batch.cursor().equals(cursor)) {
+                return;
+            }
+            cursor = batch.cursor();
+        }
+    }
+
+    void prune(long nowMillis) {
+        lock.lock();
+        try {
+            if (revoked.values().removeIf(expiresAt -> expiresAt <= nowMillis)) {
+                rebuild(Math.max(expectedEntries, revoked.size() * 2));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rebuild(int capacity) {
+        final Bloom rebuilt = new Bloom(capacity);
+        for (TokenDigest digest : revoked.keySet()) {
+            rebuilt.add(digest);
+        }
+        bloom = rebuilt;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Bloom filter over token digests. The digest is already a uniform hash, so probe
+     * positions come from two of its words by double hashing. Bits are only set under the
+     * list's lock; reads are lock-free.
+     */
+    private static final class Bloom {
+
+        private final int capacity;
+        private final long mask;
+        private final AtomicLongArray words;
+
+        Bloom(int capacity) {
+            this.capacity = Math.max(1, capacity);
+            final long bits = Math.max(64, Long.highestOneBit((long) this.capacity * BITS_PER_ENTRY - 1) << 1);
+            this.mask = bits - 1;
+            this.words = new AtomicLongArray((int) (bits >>> 6));
+        }
+
+        void add(TokenDigest digest) {
+            long position = digest.c();
+            for (int i = 0; i < PROBES; i++, position += digest.d() | 1) {
+                final int word = (int) ((position & mask) >>> 6);
+                words.set(word, words.get(word) | 1L << position);
+            }
+        }
+
+        boolean mightContain(TokenDigest digest) {
+            long position = digest.c();
+            for (int i = 0; i < PROBES; i++, position += digest.d() | 1) {
+                if ((words.get((int) ((position & mask) >>> 6)) & 1L << position) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package hello.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A JWT whose signature and expiry have been checked, with the claims this service uses.
+ * Produced once per token by {@link JwtUtil#verify(String)} and handed on from there,
+ * so nothing downstream parses or verifies the token again. The authorities are derived
+ * once here too, as an {@link AuthoritySet}.
+ */
+public record VerifiedToken(
+        String subject,
+        List<String> roles,
+        List<String> permissions,
+        String authLevel,
+        String identityProvider,
+        Instant issuedAt,
+        Instant expiresAt,
+        AuthoritySet authorities) implements Serializable {
+
+    private static final String DEFAULT_AUTH_LEVEL = "AAL1";
+    private static final String DEFAULT_IDP = "local";
+
+    public VerifiedToken {
+        roles = List.copyOf(roles);
+        permissions = List.copyOf(permissions);
+    }
+
+    /**
+     * Read the claims of a verified token on behalf of the identity provider that vouched for
+     * it (null for the local one), applying the same defaults as {@link JwtUtil}
+     */
+    static VerifiedToken of(Claims claims, String identityProvider) {
+        return of(
+                claims.getSubject(),
+                strings(claims.get("roles")),
+                strings(claims.get("permissions")),
+                claims.get("auth_level") instanceof String authLevel ? authLevel : null,
+                identityProvider,
+                claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant(),
+                claims.getExpiration().toInstant());
+    }
+
+    /**
+     * Build from individual claims; a null auth level or identity provider takes the default
+     */
+    static VerifiedToken of(String subject, List<String> roles, List<String> permissions, String authLevel,
+                            String identityProvider, Instant issuedAt, Instant expiresAt) {
+        return new VerifiedToken(
+                subject,
+                roles,
+                permissions,
+                authLevel == null ? DEFAULT_AUTH_LEVEL : authLevel,
+                identityProvider == null ? DEFAULT_IDP : identityProvider,
+                issuedAt,
+                expiresAt,
+                AuthoritySet.of(roles, permissions));
+    }
+
+    public boolean hasRole(String role) {
+        return roles.contains(role);
+    }
+
+    public boolean hasPermission(String permission) {
+        return permissions.contains(permission);
+    }
+
+    private static List<String> strings(Object claim) {
+        if (claim instanceof List<?> list) {
+            return list.stream().map(String::valueOf).toList();
+        }
+        return List.of();
+    }
+}
@@ -0,0 +1,102 @@
+package hello.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of tokens that already passed verification, so a bearer token reused
+ * across requests is verified once rather than on every request.
+ *
+ * <p>Entries are keyed by the {@link TokenDigest} of the token; the token itself is never
+ * stored. The cache is split into lock-striped shards, each evicting its least recently
+ * used entry when full. An entry is dropped on the first lookup at or after the token's
+ * {@code exp}, so it is never served past expiry. {@link JwtUtil} keeps one cache per
+ * signing key, which discards every entry when the key changes.
+ */
+final class VerifiedTokenCache {
+
+    private final Shard[] shards;
+    private final int shardMask;
+
+    VerifiedTokenCache(int maxEntries, int shards) {
+        if (shards <= 0 || Integer.bitCount(shards) != 1) {
+            throw new IllegalArgumentException("jwt.cache.shards must be a power of two");
+        }
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(Math.max(1, maxEntries / shards));
+        }
+        this.shardMask = shards - 1;
+    }
+
+    /**
+     * The verified form of a token, or null when it is not cached or has expired
+     */
+    VerifiedToken get(String token, long nowMillis) {
+        return get(TokenDigest.of(token), nowMillis);
+    }
+
+    VerifiedToken get(TokenDigest digest, long nowMillis) {
+        final Shard shard = shard(digest);
+        shard.lock.lock();
+        try {
+            final VerifiedToken verified = shard.entries.get(digest);
+            if (verified == null) {
+                return null;
+            }
+            if (verified.expiresAt().toEpochMilli() <= nowMillis) {
+                shard.entries.remove(digest);
+                return null;
+            }
+            return verified;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    void put(String token, VerifiedToken verified) {
+        put(TokenDigest.of(token), verified);
+    }
+
+    void put(TokenDigest digest, VerifiedToken verified) {
+        final Shard shard = shard(digest);
+        shard.lock.lock();
+        try {
+            shard.entries.put(digest, verified);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                size += shard.entries.size();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Shard shard(TokenDigest digest) {
+        return shards[(int) digest.a() & shardMask];
+    }
+
+    private static final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<TokenDigest, VerifiedToken> entries;
+
+        Shard(int maxEntries) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<TokenDigest, VerifiedToken> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package hello.valkey;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Serves reads from shard replicas, hedging slow ones.
+ *
+ * <p>Each read goes to a random eligible replica of the key's shard. If it has not answered
+ * by the hedge deadline (the recent p95 replica latency, clamped to the configured bounds),
+ * a second request is sent to another replica, or to the primary when the shard has only one,
+ * and whichever answers first wins. Hedges are capped at {@code maxHedgeRatio} of all reads
+ * so a slow cluster does not get its load doubled. Shards without eligible replicas and
+ * failed replica reads fall back to the primary.
+ */
+public class HedgedReplicaReader implements ValkeyObjectStore.ValueReader, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgedReplicaReader.class);
+
+    private final Function<byte[], List<ReplicaNode>> replicas;
+    private final ValkeyObjectStore.ValueReader primary;
+    private final long minHedgeNanos;
+    private final long maxHedgeNanos;
+    private final double maxHedgeRatio;
+    private final long timeoutNanos;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final LatencyWindow latencies = new LatencyWindow();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final Timer replicaLatency;
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter fallbacks;
+
+    public HedgedReplicaReader(Function<byte[], List<ReplicaNode>> replicas, ValkeyObjectStore.ValueReader primary,
+                               MeterRegistry meterRegistry, Duration minHedgeDelay, Duration maxHedgeDelay,
+                               double maxHedgeRatio, Duration timeout) {
+        this.replicas = replicas;
+        this.primary = primary;
+        this.minHedgeNanos = minHedgeDelay.toNanos();
+        this.maxHedgeNanos = maxHedgeDelay.toNanos();
+        this.maxHedgeRatio = maxHedgeRatio;
+        this.timeoutNanos = timeout.toNanos();
+        this.replicaLatency = Timer.builder("cache.valkey.replica.read.latency")
+                .description("Latency of individual replica reads")
+                .register(meterRegistry);
+        this.hedgesSent = Counter.builder("cache.valkey.replica.hedges")
+                .description("Hedged requests sent after the first replica missed the deadline")
+                .tag("outcome", "sent")
+                .register(meterRegistry);
+        this.hedgesWon = Counter.builder("cache.valkey.replica.hedges")
+                .description("Hedged requests that answered before the original request")
+                .tag("outcome", "won")
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("cache.valkey.replica.fallbacks")
+                .description("Reads served by the primary because no replica was eligible or the replica failed")
+                .register(meterRegistry);
+        Gauge.builder("cache.valkey.replica.hedge.ratio", this, HedgedReplicaReader::hedgeRatio)
+                .description("Fraction of replica reads that were hedged")
+                .register(meterRegistry);
+        Gauge.builder("cache.valkey.replica.hedge.delay", this, reader -> reader.hedgeDelayNanos() / 1e6)
+                .description("Current hedge deadline derived from the replica p95")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public byte[] read(byte[] key) {
+        final List<ReplicaNode> candidates = replicas.apply(key);
+        if (candidates.isEmpty()) {
+            fallbacks.increment();
+            return primary.read(key);
+        }
+        reads.incrementAndGet();
+        final int first = ThreadLocalRandom.current().nextInt(candidates.size());
+        final CompletableFuture<byte[]> original = readFrom(candidates.get(first), key);
+        try {
+            return original.get(hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return hedge(candidates, first, key, original);
+        } catch (ExecutionException e) {
+            return fallback(candidates.get(first), key, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private byte[] hedge(List<ReplicaNode> candidates, int first, byte[] key, CompletableFuture<byte[]> original) {
+        try {
+            if (!hedgeAllowed()) {
+                return original.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            hedges.incrementAndGet();
+            hedgesSent.increment();
+            final CompletableFuture<byte[]> hedged = candidates.size() > 1
+                    ? readFrom(candidates.get((first + 1) % candidates.size()), key)
+                    : CompletableFuture.supplyAsync(() -> primary.read(key), executor);
+            final CompletableFuture<byte[]> winner = firstSuccessful(original, hedged);
+            final byte[] value = winner.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            if (!original.isDone() || original.isCompletedExceptionally()) {
+                hedgesWon.increment();
+            }
+            return value;
+        } catch (ExecutionException | TimeoutException e) {
+            original.cancel(true);
+            return fallback(candidates.get(first), key, e instanceof ExecutionException ? e.getCause() : e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private byte[] fallback(ReplicaNode replica, byte[] key, Throwable cause) {
+        logger.debug("Replica read from {} failed, using the primary: {}", replica.name(), cause.toString());
+        fallbacks.increment();
+        return primary.read(key);
+    }
+
+    private CompletableFuture<byte[]> readFrom(ReplicaNode replica, byte[] key) {
+        return CompletableFuture.supplyAsync(() -> {
+            final long start = System.nanoTime();
+            final byte[] value = replica.get(key);
+            final long elapsed = System.nanoTime() - start;
+            latencies.record(elapsed);
+            replicaLatency.record(elapsed, TimeUnit.NANOSECONDS);
+            return value;
+        }, executor);
+    }
+
+    private boolean hedgeAllowed() {
+        return hedges.get() < maxHedgeRatio * reads.get();
+    }
+
+    long hedgeDelayNanos() {
+        final long p95 = latencies.p95();
+        return p95 == 0 ? maxHedgeNanos : Math.max(minHedgeNanos, Math.min(maxHedgeNanos, p95));
+    }
+
+    private double hedgeRatio() {
+        final long total = reads.get();
+        return total == 0 ? 0 : (double) hedges.get() / total;
+    }
+
+    /**
+     * Completes with the first successful result, or exceptionally once both have failed
+     */
+    private static CompletableFuture<byte[]> firstSuccessful(CompletableFuture<byte[]> a, CompletableFuture<byte[]> b) {
+        final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        final AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<byte[]> candidate : List.of(a, b)) {
+            candidate.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else if (failures.incrementAndGet() == 2) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Last {@value #SIZE} replica latencies; the p95 is recomputed every {@value #RECOMPUTE_EVERY} samples
+     */
+    private static final class LatencyWindow {
+
+        private static final int SIZE = 1024;
+        private static final int RECOMPUTE_EVERY = 64;
+
+        private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+        private final AtomicLong count = new AtomicLong();
+        private volatile long p95;
+
+        void record(long nanos) {
+            final long n = count.getAndIncrement();
+            samples.set((int) (n % SIZE), nanos);
+            if (n % RECOMPUTE_EVERY == RECOMPUTE_EVERY - 1) {
+                final int filled = (int) Math.min(n + 1, SIZE);
+                final long[] sorted = new long[filled];
+                for (int i = 0; i < filled; i++) {
+                    sorted[i] = samples.get(i);
+                }
+                Arrays.sort(sorted);
+                p95 = sorted[(int) (filled * 0.95)];
+            }
+        }
+
+        long p95() {
+            return p95;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package hello.valkey;
+
+/**
+ * Read-only connection target for one replica of a cluster shard.
+ */
+public interface ReplicaNode {
+
+    /**
+     * Address of the replica, used in logs
+     */
+    String name();
+
+    /**
+     * Read the value stored under a key on this replica
+     */
+    byte[] get(byte[] key);
+}
@@ -0,0 +1,242 @@
+package hello.valkey;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.valkey.Connection;
+import io.valkey.ConnectionPool;
+import io.valkey.HostAndPort;
+import io.valkey.Jedis;
+import io.valkey.JedisClientConfig;
+import io.valkey.JedisCluster;
+import io.valkey.JedisFactory;
+import io.valkey.JedisPool;
+import io.valkey.resps.ClusterShardInfo;
+import io.valkey.resps.ClusterShardNodeInfo;
+import io.valkey.util.JedisClusterCRC16;
+import org.apache.commons.pool2.PooledObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Slot-to-replica map of the Valkey cluster, refreshed in the background.
+ *
+ * <p>The topology comes from {@code CLUSTER SHARDS}; every replica gets its own small pool
+ * of connections switched to {@code READONLY}. On each refresh the replication link of
+ * every replica is checked and replicas that are disconnected or have not heard from their
+ * primary for longer than {@code maxLag} are left out of the map, which bounds how stale a
+ * replica read can be.
+ */
+public class ReplicaTopology implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaTopology.class);
+
+    private static final int SLOTS = 16384;
+    private static final String LINK_STATUS = "master_link_status:";
+    private static final String LAST_IO = "master_last_io_seconds_ago:";
+    private static final String REPLICA = "replica";
+    private static final String ONLINE = "online";
+
+    private final JedisCluster cluster;
+    private final JedisClientConfig clientConfig;
+    private final long maxLagSeconds;
+    private final Duration refreshInterval;
+    private final Map<HostAndPort, PooledReplica> replicas = new ConcurrentHashMap<>();
+    private final AtomicInteger eligible = new AtomicInteger();
+    private final AtomicLong maxObservedLag = new AtomicLong();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "valkey-replica-topology");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile List<List<ReplicaNode>> bySlot = Collections.nCopies(SLOTS, List.of());
+
+    public ReplicaTopology(JedisCluster cluster, JedisClientConfig clientConfig, MeterRegistry meterRegistry,
+                           Duration maxLag, Duration refreshInterval) {
+        this.cluster = cluster;
+        this.clientConfig = clientConfig;
+        this.maxLagSeconds = maxLag.toSeconds();
+        this.refreshInterval = refreshInterval;
+        Gauge.builder("cache.valkey.replica.eligible", eligible, AtomicInteger::get)
+                .description("Replicas within the staleness bound and serving reads")
+                .register(meterRegistry);
+        Gauge.builder("cache.valkey.replica.lag.seconds", maxObservedLag, AtomicLong::get)
+                .description("Largest replication lag observed across reachable replicas at the last refresh")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Load the topology and start refreshing it periodically
+     */
+    public void start() {
+        refreshQuietly();
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly,
+                refreshInterval.toMillis(), refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replicas currently eligible to serve the slot of a key
+     */
+    public List<ReplicaNode> replicasFor(byte[] key) {
+        return bySlot.get(JedisClusterCRC16.getSlot(key));
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        replicas.values().forEach(PooledReplica::close);
+        replicas.clear();
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            logger.warn("Replica topology refresh failed, keeping the previous map: {}", e.getMessage());
+        }
+    }
+
+    private void refresh() {
+        final List<ClusterShardInfo> shards = clusterShards();
+        final List<List<ReplicaNode>> next = new ArrayList<>(Collections.nCopies(SLOTS, List.of()));
+        final Set<HostAndPort> seen = new HashSet<>();
+        final Map<HostAndPort, Boolean> healthy = new HashMap<>();
+        long worstLag = 0;
+        for (ClusterShardInfo shard : shards) {
+            final List<ReplicaNode> eligibleNodes = new ArrayList<>();
+            for (ClusterShardNodeInfo node : shard.getNodes()) {
+                // Replicas still loading or marked failed by the cluster are not read from
+                if (!REPLICA.equals(node.getRole()) || !ONLINE.equals(node.getHealth())) {
+                    continue;
+                }
+                final HostAndPort address = address(node);
+                seen.add(address);
+                final PooledReplica replica = replicas.computeIfAbsent(address, PooledReplica::new);
+                if (!healthy.containsKey(address)) {
+                    final long lag = replica.lagSeconds();
+                    if (lag != Long.MAX_VALUE) {
+                        worstLag = Math.max(worstLag, lag);
+                    }
+                    healthy.put(address, lag <= maxLagSeconds);
+                }
+                if (healthy.get(address)) {
+                    eligibleNodes.add(replica);
+                }
+            }
+            final List<ReplicaNode> shared = List.copyOf(eligibleNodes);
+            // A shard owns one or more [start, end] slot ranges
+            for (List<Long> range : shard.getSlots()) {
+                for (int slot = range.get(0).intValue(); slot <= range.get(1).intValue(); slot++) {
+                    next.set(slot, shared);
+                }
+            }
+        }
+        bySlot = next;
+        eligible.set((int) healthy.values().stream().filter(Boolean::booleanValue).count());
+        maxObservedLag.set(worstLag);
+        replicas.keySet().removeIf(address -> {
+            if (seen.contains(address)) {
+                return false;
+            }
+            replicas.get(address).close();
+            return true;
+        });
+    }
+
+    private List<ClusterShardInfo> clusterShards() {
+        RuntimeException failure = null;
+        for (ConnectionPool pool : cluster.getClusterNodes().values()) {
+            try (Connection connection = pool.getResource()) {
+                return new Jedis(connection).clusterShards();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        throw failure != null ? failure : new IllegalStateException("No cluster nodes known");
+    }
+
+    private HostAndPort address(ClusterShardNodeInfo node) {
+        // The preferred endpoint is "?" when the node does not know it; the IP always works
+        final String endpoint = node.getEndpoint();
+        final String host = endpoint == null || endpoint.isEmpty() || "?".equals(endpoint) ? node.getIp() : endpoint;
+        final Long port = clientConfig.isSsl() && node.getTlsPort() != null ? node.getTlsPort() : node.getPort();
+        return new HostAndPort(host, port.intValue());
+    }
+
+    /**
+     * Replication lag of a replica in seconds; Long.MAX_VALUE when its link is down or it cannot be reached
+     */
+    static long parseLagSeconds(String replicationInfo) {
+        boolean linkUp = false;
+        long lag = Long.MAX_VALUE;
+        for (String line : replicationInfo.split("\r?\n")) {
+            if (line.startsWith(LINK_STATUS)) {
+                linkUp = "up".equals(line.substring(LINK_STATUS.length()).trim());
+            } else if (line.startsWith(LAST_IO)) {
+                lag = Long.parseLong(line.substring(LAST_IO.length()).trim());
+            }
+        }
+        return linkUp ? lag : Long.MAX_VALUE;
+    }
+
+    /**
+     * Replica with a pool of READONLY connections
+     */
+    private final class PooledReplica implements ReplicaNode {
+
+        private final HostAndPort address;
+        private final JedisPool pool;
+
+        private PooledReplica(HostAndPort address) {
+            this.address = address;
+            this.pool = new JedisPool(new JedisFactory(address, clientConfig) {
+                @Override
+                public PooledObject<Jedis> makeObject() throws Exception {
+                    final PooledObject<Jedis> pooled = super.makeObject();
+                    pooled.getObject().readonly();
+                    return pooled;
+                }
+            });
+        }
+
+        @Override
+        public String name() {
+            return address.toString();
+        }
+
+        @Override
+        public byte[] get(byte[] key) {
+            try (Jedis jedis = pool.getResource()) {
+                return jedis.get(key);
+            }
+        }
+
+        long lagSeconds() {
+            try (Jedis jedis = pool.getResource()) {
+                return parseLagSeconds(jedis.info("replication"));
+            } catch (RuntimeException e) {
+                logger.debug("Replica {} unreachable: {}", address, e.getMessage());
+                return Long.MAX_VALUE;
+            }
+        }
+
+        void close() {
+            pool.close();
+        }
+    }
+}
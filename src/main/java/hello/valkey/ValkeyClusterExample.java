@@ -4,7 +4,9 @@ import java.util.HashSet;
 import java.util.Set;
 
 import io.valkey.ConnectionPoolConfig;
+import io.valkey.DefaultJedisClientConfig;
 import io.valkey.HostAndPort;
+import io.valkey.JedisClientConfig;
 import io.valkey.JedisCluster;
 
 /**
@@ -60,5 +62,22 @@ public final class ValkeyClusterExample {
                 poolConfig,
                 useTls);
     }
-}
 
+    /**
+     * Client settings matching {@link #createClusterClient()}, for direct connections to single
+     * cluster nodes such as replicas.
+     *
+     * @return client configuration built from the same environment variables.
+     */
+    public static JedisClientConfig createClientConfig() {
+        final int timeoutMillis = Integer.parseInt(
+                System.getenv().getOrDefault("VALKEY_COMMAND_TIMEOUT_MILLIS", DEFAULT_COMMAND_TIMEOUT_MS));
+        return DefaultJedisClientConfig.builder()
+                .connectionTimeoutMillis(timeoutMillis)
+                .socketTimeoutMillis(timeoutMillis)
+                .user(System.getenv().getOrDefault("VALKEY_USERNAME", "default"))
+                .password(System.getenv("VALKEY_AUTH_TOKEN"))
+                .ssl(Boolean.parseBoolean(System.getenv().getOrDefault("VALKEY_ENABLE_TLS", "false")))
+                .build();
+    }
+}
@@ -0,0 +1,108 @@
+package hello.valkey;
+
+import hello.cache.InvalidationBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.valkey.JedisCluster;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Wires the shared Valkey cluster tier when {@code cache.valkey.enabled=true}.
+ * Connection settings come from the environment, see {@link ValkeyClusterExample}.
+ * With {@code cache.valkey.read-from=replica} top-level reads are served by shard replicas;
+ * with {@code cache.valkey.tracking.enabled=true} the L1 is kept coherent by client tracking,
+ * and with {@code cache.valkey.bus.enabled=true} by invalidations published by the other pods.
+ * Token revocations are shared between pods through a stream whenever the tier is enabled.
+ */
+@Configuration
+@ConditionalOnProperty(name = "cache.valkey.enabled", havingValue = "true")
+public class ValkeyConfig {
+
+    @Bean(destroyMethod = "close")
+    public JedisCluster valkeyCluster() {
+        return ValkeyClusterExample.createClusterClient();
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "cache.valkey.read-from", havingValue = "replica")
+    public ReplicaTopology replicaTopology(
+            JedisCluster valkeyCluster,
+            MeterRegistry meterRegistry,
+            @Value("${cache.valkey.replica.max-lag:2s}") Duration maxLag,
+            @Value("${cache.valkey.replica.refresh-interval:5s}") Duration refreshInterval) {
+        return new ReplicaTopology(valkeyCluster, ValkeyClusterExample.createClientConfig(), meterRegistry,
+                maxLag, refreshInterval);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "cache.valkey.read-from", havingValue = "replica")
+    public HedgedReplicaReader hedgedReplicaReader(
+            ReplicaTopology replicaTopology,
+            JedisCluster valkeyCluster,
+            MeterRegistry meterRegistry,
+            @Value("${cache.valkey.replica.hedge-min-delay:2ms}") Duration minHedgeDelay,
+            @Value("${cache.valkey.replica.hedge-max-delay:50ms}") Duration maxHedgeDelay,
+            @Value("${cache.valkey.replica.hedge-max-ratio:0.1}") double maxHedgeRatio,
+            @Value("${cache.valkey.replica.timeout:500ms}") Duration timeout) {
+        return new HedgedReplicaReader(replicaTopology::replicasFor, valkeyCluster::get, meterRegistry,
+                minHedgeDelay, maxHedgeDelay, maxHedgeRatio, timeout);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "cache.valkey.tracking.enabled", havingValue = "true")
+    public ValkeyInvalidationTracker valkeyInvalidationTracker(
+            JedisCluster valkeyCluster,
+            MeterRegistry meterRegistry,
+            @Value("${cache.valkey.tracking.health-check-interval:5s}") Duration healthCheckInterval,
+            @Value("${cache.valkey.tracking.reconnect-delay:1s}") Duration reconnectDelay) {
+        return new ValkeyInvalidationTracker(valkeyCluster, ValkeyClusterExample.createClientConfig(), meterRegistry,
+                healthCheckInterval, reconnectDelay);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "cache.valkey.bus.enabled", havingValue = "true")
+    public ValkeyInvalidationTransport valkeyInvalidationTransport(
+            JedisCluster valkeyCluster,
+            @Value("${cache.valkey.bus.channel:cache-invalidations}") String channel,
+            @Value("${cache.valkey.bus.reconnect-delay:1s}") Duration reconnectDelay) {
+        return new ValkeyInvalidationTransport(valkeyCluster, channel, reconnectDelay);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "cache.valkey.bus.enabled", havingValue = "true")
+    public InvalidationBus invalidationBus(
+            ValkeyInvalidationTransport valkeyInvalidationTransport,
+            MeterRegistry meterRegistry,
+            @Value("${cache.valkey.bus.window:5ms}") Duration window,
+            @Value("${cache.valkey.bus.heartbeat:1s}") Duration heartbeat,
+            @Value("${cache.valkey.bus.max-batch-keys:512}") int maxBatchKeys) {
+        return new InvalidationBus(valkeyInvalidationTransport, meterRegistry, window, heartbeat, maxBatchKeys);
+    }
+
+    @Bean
+    public ValkeyObjectStore valkeyObjectStore(
+            JedisCluster valkeyCluster,
+            MeterRegistry meterRegistry,
+            ObjectProvider<HedgedReplicaReader> replicaReader,
+            @Value("${cache.valkey.chunk-threshold-bytes:262144}") int chunkThreshold,
+            @Value("${cache.valkey.chunk-size-bytes:65536}") int chunkSize,
+            @Value("${cache.valkey.ttl:1h}") Duration ttl,
+            @Value("${cache.valkey.chunk-grace:10s}") Duration chunkGrace) {
+        final HedgedReplicaReader reader = replicaReader.getIfAvailable();
+        return new ValkeyObjectStore(valkeyCluster, meterRegistry, chunkThreshold, chunkSize, ttl, chunkGrace,
+                reader != null ? reader : valkeyCluster::get);
+    }
+
+    @Bean
+    public ValkeyRevocationStore valkeyRevocationStore(
+            JedisCluster valkeyCluster,
+            @Value("${jwt.revocation.stream:jwt:revocations}") String stream,
+            @Value("${jwt.revocation.retention:24h}") Duration retention) {
+        return new ValkeyRevocationStore(valkeyCluster, stream, retention);
+    }
+}
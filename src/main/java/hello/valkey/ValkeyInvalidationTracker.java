@@ -0,0 +1,301 @@
+package hello.valkey;
+
+import hello.cache.InvalidationGenerations;
+import hello.cache.InvalidationListener;
+import hello.cache.InvalidationSource;
+import hello.cache.RemoteKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.valkey.CommandArguments;
+import io.valkey.Connection;
+import io.valkey.HostAndPort;
+import io.valkey.Jedis;
+import io.valkey.JedisClientConfig;
+import io.valkey.JedisCluster;
+import io.valkey.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-assisted client-side caching for the L1 in front of Valkey.
+ *
+ * <p>Every cluster node, primaries and replicas alike, is asked to track the cache key
+ * prefix in broadcast mode ({@code CLIENT TRACKING ON BCAST PREFIX cache:}) and redirect
+ * invalidations to a second connection subscribed to {@code __redis__:invalidate}. Tracking
+ * replicas as well means a copy read from a lagging replica is still invalidated once that
+ * replica applies the change, and a promoted replica is already tracked after a failover.
+ *
+ * <p>The tracked connection is pinged every {@code healthCheckInterval}. When either
+ * connection of a node breaks, invalidations may have been lost: listeners are told to drop
+ * everything, {@link #isConnected()} reports false (so new L1 copies get a short TTL again)
+ * and the node is reconnected after {@code reconnectDelay}.
+ */
+public class ValkeyInvalidationTracker implements InvalidationSource, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValkeyInvalidationTracker.class);
+
+    static final String CHANNEL = "__redis__:invalidate";
+
+    private final JedisCluster cluster;
+    private final JedisClientConfig clientConfig;
+    private final Duration healthCheckInterval;
+    private final Duration reconnectDelay;
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<HostAndPort, Session> sessions = new ConcurrentHashMap<>();
+    private final InvalidationGenerations generations = new InvalidationGenerations();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "valkey-tracking-health");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter invalidations;
+    private final Counter flushes;
+    private volatile boolean running = true;
+
+    public ValkeyInvalidationTracker(JedisCluster cluster, JedisClientConfig clientConfig, MeterRegistry meterRegistry,
+                                     Duration healthCheckInterval, Duration reconnectDelay) {
+        this.cluster = cluster;
+        this.clientConfig = clientConfig;
+        this.healthCheckInterval = healthCheckInterval;
+        this.reconnectDelay = reconnectDelay;
+        this.invalidations = Counter.builder("cache.valkey.tracking.invalidations")
+                .description("Keys invalidated by Valkey client tracking")
+                .register(meterRegistry);
+        this.flushes = Counter.builder("cache.valkey.tracking.flushes")
+                .description("Full L1 flushes after a tracking connection broke or the server flushed")
+                .register(meterRegistry);
+        Gauge.builder("cache.valkey.tracking.connected", this, tracker -> tracker.isConnected() ? 1 : 0)
+                .description("Whether invalidations from every cluster node are being received")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Open tracking sessions to all known nodes and start health checks
+     */
+    public void start() {
+        discoverNodes();
+        final long interval = healthCheckInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::checkHealth, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void addListener(InvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public boolean isConnected() {
+        if (sessions.isEmpty()) {
+            return false;
+        }
+        for (Session session : sessions.values()) {
+            if (!session.connected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long generation(String remoteKey) {
+        return generations.get(remoteKey);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        scheduler.shutdownNow();
+        sessions.values().forEach(Session::disconnect);
+    }
+
+    /**
+     * Apply one pub/sub reply from an invalidation connection
+     */
+    void handleReply(Object message) {
+        if (!(message instanceof List<?> reply) || reply.size() < 3 || !"message".equals(text(reply.get(0)))) {
+            return;
+        }
+        final Object payload = reply.get(2);
+        if (payload == null) {
+            // FLUSHALL / FLUSHDB on the server
+            flushAll();
+            return;
+        }
+        final List<?> keys = payload instanceof List<?> list ? list : List.of(payload);
+        for (Object key : keys) {
+            final String remoteKey = text(key);
+            generations.advance(remoteKey);
+            invalidations.increment();
+            listeners.forEach(listener -> listener.invalidate(remoteKey));
+        }
+    }
+
+    /**
+     * Drop all local copies; advances every generation first so racing fills notice
+     */
+    void flushAll() {
+        generations.advanceAll();
+        flushes.increment();
+        listeners.forEach(InvalidationListener::invalidateAll);
+    }
+
+    /**
+     * Open sessions to new nodes and retire those of nodes that left the cluster, whose
+     * session could never reconnect and would keep {@link #isConnected()} false
+     */
+    void discoverNodes() {
+        final Set<HostAndPort> nodes = new HashSet<>();
+        for (String node : cluster.getClusterNodes().keySet()) {
+            final HostAndPort address = HostAndPort.from(node);
+            nodes.add(address);
+            sessions.computeIfAbsent(address, key -> {
+                final Session session = new Session(key);
+                Thread.ofVirtual().name("valkey-tracking-" + key).start(session::run);
+                return session;
+            });
+        }
+        sessions.entrySet().removeIf(entry -> {
+            if (nodes.contains(entry.getKey())) {
+                return false;
+            }
+            logger.info("Node {} left the cluster, stopping client tracking on it", entry.getKey());
+            entry.getValue().retire();
+            return true;
+        });
+    }
+
+    int size() {
+        return sessions.size();
+    }
+
+    private void checkHealth() {
+        try {
+            discoverNodes();
+            sessions.values().forEach(Session::ping);
+        } catch (RuntimeException e) {
+            logger.warn("Client tracking health check failed: {}", e.getMessage());
+        }
+    }
+
+    private static String text(Object value) {
+        return value instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(value);
+    }
+
+    /**
+     * Tracked control connection plus invalidation subscriber for one node
+     */
+    private final class Session {
+
+        private final HostAndPort address;
+        private volatile Connection subscriber;
+        private volatile Connection control;
+        private volatile boolean connected;
+        private volatile boolean retired;
+
+        private Session(HostAndPort address) {
+            this.address = address;
+        }
+
+        void run() {
+            while (running && !retired) {
+                try {
+                    connect();
+                    listen();
+                } catch (RuntimeException e) {
+                    if (running && !retired) {
+                        logger.warn("Client tracking connection to {} lost: {}", address, e.getMessage());
+                    }
+                } finally {
+                    disconnect();
+                }
+                if (!retired) {
+                    sleep(reconnectDelay);
+                }
+            }
+        }
+
+        void retire() {
+            retired = true;
+            disconnect();
+        }
+
+        private void connect() {
+            subscriber = new Connection(address, clientConfig);
+            final long subscriberId = new Jedis(subscriber).clientId();
+            subscriber.sendCommand(Protocol.Command.SUBSCRIBE, CHANNEL);
+            subscriber.getObjectMultiBulkReply();
+            control = new Connection(address, clientConfig);
+            control.executeCommand(new CommandArguments(Protocol.Command.CLIENT)
+                    .add("TRACKING").add("ON").add("REDIRECT").add(subscriberId)
+                    .add("BCAST").add("PREFIX").add(RemoteKey.PREFIX));
+            // Copies fetched before this point were not tracked by this node
+            flushAll();
+            connected = true;
+            logger.info("Client tracking active on {}", address);
+        }
+
+        private void listen() {
+            subscriber.setTimeoutInfinite();
+            while (running && !retired) {
+                handleReply(subscriber.getUnflushedObject());
+            }
+        }
+
+        void ping() {
+            final Connection current = control;
+            if (!connected || current == null) {
+                return;
+            }
+            try {
+                current.ping();
+            } catch (RuntimeException e) {
+                logger.warn("Client tracking control connection to {} failed: {}", address, e.getMessage());
+                // breaks the subscriber's blocking read so the session reconnects
+                disconnect();
+            }
+        }
+
+        void disconnect() {
+            final boolean wasConnected = connected;
+            connected = false;
+            if (wasConnected) {
+                flushAll();
+            }
+            closeQuietly(control);
+            closeQuietly(subscriber);
+        }
+
+        private void closeQuietly(Connection connection) {
+            if (connection == null) {
+                return;
+            }
+            try {
+                connection.disconnect();
+            } catch (RuntimeException e) {
+                logger.debug("Closing tracking connection to {} failed: {}", address, e.getMessage());
+            }
+        }
+
+        private void sleep(Duration delay) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package hello.valkey;
+
+import hello.cache.InvalidationTransport;
+import io.valkey.BinaryJedisPubSub;
+import io.valkey.JedisCluster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * {@link InvalidationTransport} over Valkey pub/sub. Cluster pub/sub is broadcast to
+ * every node, so subscribers may be connected to any of them.
+ */
+public class ValkeyInvalidationTransport implements InvalidationTransport, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValkeyInvalidationTransport.class);
+
+    private final JedisCluster cluster;
+    private final byte[] channel;
+    private final Duration reconnectDelay;
+    private volatile BinaryJedisPubSub current;
+    private volatile boolean running = true;
+
+    public ValkeyInvalidationTransport(JedisCluster cluster, String channel, Duration reconnectDelay) {
+        this.cluster = cluster;
+        this.channel = channel.getBytes(StandardCharsets.UTF_8);
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        cluster.publish(channel, message);
+    }
+
+    @Override
+    public void subscribe(Subscriber subscriber) {
+        Thread.ofVirtual().name("valkey-invalidation-bus").start(() -> run(subscriber));
+    }
+
+    private void run(Subscriber subscriber) {
+        while (running) {
+            final BinaryJedisPubSub pubSub = new BinaryJedisPubSub() {
+                @Override
+                public void onSubscribe(byte[] subscribedChannel, int subscribedChannels) {
+                    subscriber.connected();
+                }
+
+                @Override
+                public void onMessage(byte[] messageChannel, byte[] message) {
+                    subscriber.message(message);
+                }
+            };
+            current = pubSub;
+            try {
+                cluster.subscribe(pubSub, channel);
+            } catch (RuntimeException e) {
+                if (running) {
+                    logger.warn("Invalidation bus subscription lost: {}", e.getMessage());
+                }
+            } finally {
+                subscriber.disconnected();
+            }
+            try {
+                Thread.sleep(reconnectDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        final BinaryJedisPubSub pubSub = current;
+        if (pubSub != null && pubSub.isSubscribed()) {
+            pubSub.unsubscribe();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package hello.valkey;
+
+import hello.cache.RemoteObjectStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.valkey.AbstractPipeline;
+import io.valkey.Response;
+import io.valkey.UnifiedJedis;
+import io.valkey.params.SetParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * {@link RemoteObjectStore} backed by a Valkey cluster.
+ *
+ * <p>Values up to {@code chunkThreshold} bytes are stored inline under their key. Larger
+ * values are split into {@code chunkSize} pieces so no single command blocks a shard's
+ * event loop for long. Chunks are written with one pipeline, then a small manifest naming
+ * the write is swapped in under the key with {@code SET ... GET}. Chunk keys carry the
+ * write id in their own hash tag, which spreads them over slots and means a reader
+ * following a manifest can only ever see chunks of that one write. Chunks of a replaced
+ * manifest are expired after a grace period rather than deleted, so in-flight readers
+ * can finish; a reader that still loses the race re-reads the manifest.
+ */
+public class ValkeyObjectStore implements RemoteObjectStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValkeyObjectStore.class);
+
+    static final byte FORMAT_INLINE = 0;
+    static final byte FORMAT_MANIFEST = 1;
+    static final int WRITE_ID_BYTES = 16;
+    static final int MANIFEST_BYTES = 1 + WRITE_ID_BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int MAX_READ_ATTEMPTS = 3;
+
+    private final UnifiedJedis jedis;
+    private final ValueReader valueReader;
+    private final int chunkThreshold;
+    private final int chunkSize;
+    private final long ttlMillis;
+    private final long graceMillis;
+    private final SecureRandom random = new SecureRandom();
+    private final Counter chunkedWrites;
+    private final Counter tornReads;
+
+    public ValkeyObjectStore(UnifiedJedis jedis, MeterRegistry meterRegistry,
+                             int chunkThreshold, int chunkSize, Duration ttl, Duration grace) {
+        this(jedis, meterRegistry, chunkThreshold, chunkSize, ttl, grace, jedis::get);
+    }
+
+    /**
+     * Create a store whose top-level reads (inline values and manifests) go through the given
+     * reader, e.g. one serving them from replicas. Chunks are always read from primaries: they
+     * live on other shards than their manifest, and a lagging replica there would only turn
+     * the read into a retry.
+     */
+    public ValkeyObjectStore(UnifiedJedis jedis, MeterRegistry meterRegistry,
+                             int chunkThreshold, int chunkSize, Duration ttl, Duration grace,
+                             ValueReader valueReader) {
+        if (chunkSize <= 0 || chunkThreshold < chunkSize) {
+            throw new IllegalArgumentException("chunk size must be positive and not above the chunk threshold");
+        }
+        this.jedis = jedis;
+        this.valueReader = valueReader;
+        this.chunkThreshold = chunkThreshold;
+        this.chunkSize = chunkSize;
+        this.ttlMillis = ttl.toMillis();
+        this.graceMillis = grace.toMillis();
+        this.chunkedWrites = Counter.builder("cache.valkey.chunked.writes")
+                .description("Values written to Valkey as chunks")
+                .register(meterRegistry);
+        this.tornReads = Counter.builder("cache.valkey.chunked.retries")
+                .description("Chunked reads retried because a concurrent write replaced the chunks")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public byte[] get(String key) {
+        final byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            final byte[] stored = valueReader.read(rawKey);
+            if (stored == null || stored.length == 0) {
+                return null;
+            }
+            if (stored[0] == FORMAT_INLINE) {
+                return Arrays.copyOfRange(stored, 1, stored.length);
+            }
+            final byte[] value = readChunks(Manifest.parse(stored));
+            if (value != null) {
+                return value;
+            }
+            tornReads.increment();
+        }
+        logger.warn("Chunked read kept racing concurrent writes, treating as a miss");
+        return null;
+    }
+
+    @Override
+    public void put(String key, byte[] value) {
+        put(key, value, ttlMillis);
+    }
+
+    @Override
+    public void put(String key, byte[] value, Duration ttl) {
+        put(key, value, Math.max(1, ttl.toMillis()));
+    }
+
+    private void put(String key, byte[] value, long expiryMillis) {
+        final byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] stored;
+        if (value.length <= chunkThreshold) {
+            stored = new byte[value.length + 1];
+            stored[0] = FORMAT_INLINE;
+            System.arraycopy(value, 0, stored, 1, value.length);
+        } else {
+            stored = writeChunks(value, expiryMillis).encode();
+            chunkedWrites.increment();
+        }
+        releaseChunks(jedis.setGet(rawKey, stored, SetParams.setParams().px(expiryMillis)));
+    }
+
+    /**
+     * Chunks of a manifest are re-armed to outlive the new expiry by the grace period first
+     */
+    @Override
+    public boolean expire(String key, Duration ttl) {
+        final byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        final long millis = Math.max(1, ttl.toMillis());
+        final byte[] stored = jedis.get(rawKey);
+        if (stored == null || stored.length == 0) {
+            return false;
+        }
+        if (stored[0] == FORMAT_MANIFEST) {
+            final Manifest manifest = Manifest.parse(stored);
+            try (AbstractPipeline pipeline = jedis.pipelined()) {
+                for (int i = 0; i < manifest.count(); i++) {
+                    pipeline.pexpire(manifest.chunkKey(i), millis + graceMillis);
+                }
+                pipeline.sync();
+            }
+        }
+        return jedis.pexpire(rawKey, millis) == 1;
+    }
+
+    @Override
+    public boolean delete(String key) {
+        final byte[] previous = jedis.getDel(key.getBytes(StandardCharsets.UTF_8));
+        releaseChunks(previous);
+        return previous != null;
+    }
+
+    /**
+     * Write all chunks in a single pipeline; they outlive the manifest by the grace period
+     */
+    private Manifest writeChunks(byte[] value, long expiryMillis) {
+        final byte[] writeId = new byte[WRITE_ID_BYTES];
+        random.nextBytes(writeId);
+        final int count = (value.length + chunkSize - 1) / chunkSize;
+        final Manifest manifest = new Manifest(writeId, count, value.length, chunkSize);
+        final SetParams chunkParams = SetParams.setParams().px(expiryMillis + graceMillis);
+        try (AbstractPipeline pipeline = jedis.pipelined()) {
+            final List<Response<String>> replies = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final int from = i * chunkSize;
+                final byte[] chunk = Arrays.copyOfRange(value, from, Math.min(value.length, from + chunkSize));
+                replies.add(pipeline.set(manifest.chunkKey(i), chunk, chunkParams));
+            }
+            pipeline.sync();
+            replies.forEach(Response::get); // surfaces any per-command error
+        }
+        return manifest;
+    }
+
+    /**
+     * Fetch all chunks of a manifest in one pipeline (fanned out to shards in parallel);
+     * returns null when any chunk is gone
+     */
+    private byte[] readChunks(Manifest manifest) {
+        final List<Response<byte[]>> replies = new ArrayList<>(manifest.count());
+        try (AbstractPipeline pipeline = jedis.pipelined()) {
+            for (int i = 0; i < manifest.count(); i++) {
+                replies.add(pipeline.get(manifest.chunkKey(i)));
+            }
+            pipeline.sync();
+        }
+        final byte[] value = new byte[Math.toIntExact(manifest.length())];
+        int offset = 0;
+        for (Response<byte[]> reply : replies) {
+            final byte[] chunk = reply.get();
+            if (chunk == null || offset + chunk.length > value.length) {
+                return null;
+            }
+            System.arraycopy(chunk, 0, value, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return offset == value.length ? value : null;
+    }
+
+    /**
+     * Let the chunks of a replaced or deleted manifest expire after the grace period
+     */
+    private void releaseChunks(byte[] previous) {
+        if (previous == null || previous.length == 0 || previous[0] != FORMAT_MANIFEST) {
+            return;
+        }
+        final Manifest manifest = Manifest.parse(previous);
+        try (AbstractPipeline pipeline = jedis.pipelined()) {
+            for (int i = 0; i < manifest.count(); i++) {
+                pipeline.pexpire(manifest.chunkKey(i), graceMillis);
+            }
+            pipeline.sync();
+        }
+    }
+
+    /**
+     * Source of the value stored directly under a key
+     */
+    @FunctionalInterface
+    public interface ValueReader {
+        byte[] read(byte[] key);
+    }
+
+    /**
+     * Pointer from a key to the chunks of one write
+     */
+    record Manifest(byte[] writeId, int count, long length, int chunkSize) {
+
+        static Manifest parse(byte[] stored) {
+            if (stored.length != MANIFEST_BYTES || stored[0] != FORMAT_MANIFEST) {
+                throw new IllegalStateException("Corrupt chunk manifest");
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(stored, 1, stored.length - 1);
+            final byte[] writeId = new byte[WRITE_ID_BYTES];
+            buffer.get(writeId);
+            return new Manifest(writeId, buffer.getInt(), buffer.getLong(), buffer.getInt());
+        }
+
+        byte[] encode() {
+            return ByteBuffer.allocate(MANIFEST_BYTES)
+                    .put(FORMAT_MANIFEST)
+                    .put(writeId)
+                    .putInt(count)
+                    .putLong(length)
+                    .putInt(chunkSize)
+                    .array();
+        }
+
+        /**
+         * Chunk keys use their own hash tag so chunks spread over slots regardless of the key
+         */
+        byte[] chunkKey(int index) {
+            return ("{" + HexFormat.of().formatHex(writeId) + ":" + index + "}:chunk")
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
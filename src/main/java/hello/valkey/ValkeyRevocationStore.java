@@ -0,0 +1,66 @@
+package hello.valkey;
+
+import hello.security.RevocationStore;
+import io.valkey.UnifiedJedis;
+import io.valkey.params.XAddParams;
+import io.valkey.resps.StreamEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link RevocationStore} on a Valkey stream. Each revocation is one entry, so pods catch
+ * up with {@code XRANGE} from the last entry id they have seen. Entries older than the
+ * retention are trimmed on append: every token they name has expired by then.
+ */
+public class ValkeyRevocationStore implements RevocationStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValkeyRevocationStore.class);
+
+    private static final String DIGEST = "digest";
+    private static final String EXPIRES_AT = "exp";
+
+    private final UnifiedJedis jedis;
+    private final String stream;
+    private final long retentionMillis;
+
+    public ValkeyRevocationStore(UnifiedJedis jedis, String stream, Duration retention) {
+        this.jedis = jedis;
+        this.stream = stream;
+        this.retentionMillis = retention.toMillis();
+    }
+
+    @Override
+    public void append(String digest, long expiresAtMillis) {
+        final long oldest = System.currentTimeMillis() - retentionMillis;
+        jedis.xadd(stream, XAddParams.xAddParams().minId(Long.toString(oldest)).approximateTrimming(),
+                Map.of(DIGEST, digest, EXPIRES_AT, Long.toString(expiresAtMillis)));
+    }
+
+    @Override
+    public Batch since(String cursor, int max) {
+        final List<StreamEntry> entries = jedis.xrange(stream, "(" + cursor, "+", max);
+        final List<Revocation> revocations = new ArrayList<>(entries.size());
+        String last = cursor;
+        for (StreamEntry entry : entries) {
+            last = entry.getID().toString();
+            final String digest = entry.getFields().get(DIGEST);
+            final String expiresAt = entry.getFields().get(EXPIRES_AT);
+            if (digest == null || expiresAt == null) {
+                logger.warn("Skipping revocation entry {} without a digest or expiry", last);
+                continue;
+            }
+            try {
+                revocations.add(new Revocation(digest, Long.parseLong(expiresAt)));
+            } catch (NumberFormatException e) {
+                // The cursor still moves past it, so one bad entry cannot stall replication
+                logger.warn("Skipping revocation entry {} with expiry '{}'", last, expiresAt);
+            }
+        }
+        return new Batch(revocations, last);
+    }
+}
@@ -1,5 +1,6 @@
 package hello;
 
+import hello.cache.CacheFrames;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpMethod;
@@ -8,10 +9,15 @@ import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
@@ -50,6 +56,27 @@ class LocalRestClientTest {
 
         server.verify();
     }
-}
 
+    @Test
+    @DisplayName("LocalRestClient batch reads ask for cache frames and decode them by ID")
+    void getObjects_decodesFrames() throws IOException {
+        LocalRestClient client = new LocalRestClient("Bearer abc");
+        RestTemplate restTemplate = (RestTemplate) ReflectionTestUtils.getField(client, "rest");
+        MockRestServiceServer server = MockRestServiceServer.createServer(restTemplate);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        CacheFrames.write(List.of(CacheFrames.Frame.of(new byte[] {4, 2}), CacheFrames.Frame.of(null)), body);
 
+        server.expect(requestTo("http://localhost:8080/api/v1/cacheServices/objects/batch-get"))
+            .andExpect(method(HttpMethod.POST))
+            .andExpect(header("Accept", CacheFrames.MEDIA_TYPE))
+            .andExpect(content().json("[\"a\",\"b\"]"))
+            .andRespond(withSuccess(body.toByteArray(), MediaType.parseMediaType(CacheFrames.MEDIA_TYPE)));
+
+        Map<String, byte[]> objects = client.getObjects(List.of("a", "b"));
+
+        assertThat(objects).containsOnlyKeys("a", "b");
+        assertThat(objects.get("a")).containsExactly(4, 2);
+        assertThat(objects.get("b")).isNull();
+        server.verify();
+    }
+}
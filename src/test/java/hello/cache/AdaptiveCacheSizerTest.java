@@ -0,0 +1,80 @@
+package hello.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveCacheSizerTest {
+
+    private static final long MAX = 1000;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong();
+    private final TenantPartitionedStore store = new TenantPartitionedStore(registry, 1 << 20, 1 << 16, 1 << 18, 4);
+    private final AdaptiveCacheSizer sizer = new AdaptiveCacheSizer(store, registry, 0.75, 0.5, 0.25, 0.05,
+        Duration.ofSeconds(10), 1 << 18, clock::get);
+
+    private void collect(long used) {
+        sizer.onCollection(used, MAX);
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+    }
+
+    @Test
+    @DisplayName("old-gen pressure shrinks the target, evicting down to it, at most once per cooldown")
+    void pressure_shrinksTarget() {
+        for (int i = 0; i < 8; i++) {
+            store.putObject("tenant" + i, "k", new byte[100_000]);
+        }
+        collect(900);
+        assertThat(store.getTargetBytes()).isEqualTo((1 << 20) * 3 / 4);
+        assertThat(store.usedBytes()).isLessThanOrEqualTo(store.getTargetBytes());
+
+        for (int i = 0; i < 9; i++) {
+            collect(900);
+        }
+        assertThat(store.getTargetBytes()).isEqualTo((1 << 20) * 3 / 4);
+        collect(900);
+        assertThat(store.getTargetBytes()).isEqualTo((1 << 20) * 9 / 16);
+        assertThat(registry.get("cache.store.target.bytes").gauge().value()).isEqualTo((1 << 20) * 9 / 16);
+        assertThat(registry.get("cache.store.adaptive.resizes").tag("direction", "shrink").counter().count())
+            .isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("the target holds between the watermarks, grows back in steps and never exceeds max-bytes")
+    void headroom_growsTargetBack() {
+        collect(900);
+        long shrunk = store.getTargetBytes();
+
+        for (int i = 0; i < 20; i++) {
+            collect(600);
+        }
+        assertThat(store.getTargetBytes()).isEqualTo(shrunk);
+
+        for (int i = 0; i < 200; i++) {
+            collect(100);
+        }
+        assertThat(store.getTargetBytes()).isEqualTo(store.getMaxBytes());
+    }
+
+    @Test
+    @DisplayName("a single spike is smoothed and the target never drops below min-bytes")
+    void smoothingAndFloor() {
+        collect(100);
+        collect(1000);
+        assertThat(store.getTargetBytes()).isEqualTo(store.getMaxBytes());
+
+        for (int i = 0; i < 500; i++) {
+            collect(1000);
+        }
+        assertThat(store.getTargetBytes()).isEqualTo(1 << 18);
+        assertThatThrownBy(() -> new AdaptiveCacheSizer(store, registry, 0.5, 0.75, 0.25, 0.05,
+            Duration.ofSeconds(1), 0, clock::get)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
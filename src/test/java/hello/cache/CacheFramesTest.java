@@ -0,0 +1,82 @@
+package hello.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CacheFramesTest {
+
+    private static byte[] encode(List<CacheFrames.Frame> frames) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CacheFrames.write(frames, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    @DisplayName("frames round-trip in order with their status, flags and values")
+    void writeRead_roundTrip() throws IOException {
+        List<CacheFrames.Frame> frames = List.of(
+            CacheFrames.Frame.of(new byte[] {1, 2, 3}),
+            CacheFrames.Frame.of(null),
+            CacheFrames.Frame.of(new byte[0]).withFlags(CacheFrames.FLAG_FORWARDED),
+            new CacheFrames.Frame(CacheFrames.STATUS_UNAVAILABLE, 0, null));
+
+        byte[] body = encode(frames);
+        List<CacheFrames.Frame> read = CacheFrames.read(body);
+
+        assertThat(body).hasSize((int) CacheFrames.encodedLength(frames));
+        assertThat(read).extracting(CacheFrames.Frame::status).containsExactly(
+            CacheFrames.STATUS_FOUND, CacheFrames.STATUS_NOT_FOUND, CacheFrames.STATUS_FOUND,
+            CacheFrames.STATUS_UNAVAILABLE);
+        assertThat(read).extracting(CacheFrames.Frame::flags).containsExactly(0, 0, CacheFrames.FLAG_FORWARDED, 0);
+        assertThat(read.get(0).value()).containsExactly(1, 2, 3);
+        assertThat(read.get(1).value()).isNull();
+        assertThat(read.get(2).value()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("foreign, truncated and oversized bodies are rejected")
+    void read_malformed() throws IOException {
+        byte[] body = encode(List.of(CacheFrames.Frame.of(new byte[] {1, 2, 3})));
+
+        assertThatThrownBy(() -> CacheFrames.read("{\"objects\":{}}".getBytes()))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CacheFrames.read(Arrays.copyOf(body, body.length - 1)))
+            .isInstanceOf(IllegalArgumentException.class);
+        byte[] hugeCount = body.clone();
+        hugeCount[4] = 0x7f;
+        assertThatThrownBy(() -> CacheFrames.read(hugeCount)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("a batch of binary values encodes at least a fifth smaller as frames than as base64 JSON")
+    void encodedSize_comparedToJson() throws IOException {
+        Random random = new Random(7);
+        List<CacheFrames.Frame> frames = new ArrayList<>();
+        Map<String, byte[]> json = new LinkedHashMap<>();
+        for (int i = 0; i < 500; i++) {
+            byte[] value = new byte[256];
+            random.nextBytes(value);
+            frames.add(CacheFrames.Frame.of(value));
+            json.put("object-" + i, value);
+        }
+
+        int framed = encode(frames).length;
+        int base64Json = new ObjectMapper().writeValueAsBytes(Map.of("objects", json)).length;
+
+        assertThat(framed).isEqualTo(8 + 500 * (6 + 256));
+        assertThat((double) framed / base64Json).isLessThan(0.8);
+    }
+}
@@ -0,0 +1,284 @@
+package hello.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheServiceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong();
+    private final TenantPartitionedStore store = new TenantPartitionedStore(registry, 1 << 20, 1 << 16, 1 << 18, 4);
+    private final HotKeyTier tier = new HotKeyTier(registry, Duration.ofSeconds(1), 8, clock::get);
+    private final Map<String, byte[]> remote = new HashMap<>();
+    private final RemoteObjectStore remoteStore = new RemoteObjectStore() {
+        @Override
+        public byte[] get(String key) {
+            return remote.get(key);
+        }
+
+        @Override
+        public void put(String key, byte[] value) {
+            remote.put(key, value);
+        }
+
+        @Override
+        public void put(String key, byte[] value, Duration ttl) {
+            remote.put(key, value);
+        }
+
+        @Override
+        public boolean expire(String key, Duration ttl) {
+            return remote.containsKey(key);
+        }
+
+        @Override
+        public boolean delete(String key) {
+            return remote.remove(key) != null;
+        }
+    };
+    private final CacheService service = new CacheService(
+        store, new HotKeyDetector(8, 3, Duration.ofMinutes(1), clock::get), tier, null, List.of(),
+        Duration.ofSeconds(1));
+
+    @Test
+    @DisplayName("hot keys are pinned locally and served from the local tier")
+    void getObject_hotKeyPinned() {
+        service.putObject("t", "k", new byte[] {1});
+        for (int i = 0; i < 3; i++) {
+            assertThat(service.getObject("t", "k")).containsExactly(1);
+        }
+        assertThat(tier.isPinned("t", "k")).isTrue();
+
+        assertThat(service.getObject("t", "k")).containsExactly(1);
+        assertThat(registry.get("cache.hotkeys.local.hits").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("writes and deletes drop the pinned replica; replicas expire after the TTL")
+    void putAndDelete_invalidatePinnedReplica() {
+        service.putObject("t", "k", new byte[] {1});
+        for (int i = 0; i < 3; i++) {
+            service.getObject("t", "k");
+        }
+        service.putObject("t", "k", new byte[] {2});
+        assertThat(tier.isPinned("t", "k")).isFalse();
+        assertThat(service.getObject("t", "k")).containsExactly(2);
+        assertThat(tier.isPinned("t", "k")).isTrue();
+
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertThat(tier.get("t", "k")).isNull();
+
+        assertThat(service.deleteObject("t", "k")).isTrue();
+        assertThat(service.getObject("t", "k")).isNull();
+    }
+
+    @Test
+    @DisplayName("the local tier stops pinning when full of live replicas")
+    void pin_respectsCapacity() {
+        HotKeyTier small = new HotKeyTier(registry, Duration.ofSeconds(1), 1, clock::get);
+        small.pin("t", "a", new byte[] {1}, small.generation("t", "a"));
+        small.pin("t", "b", new byte[] {2}, small.generation("t", "b"));
+
+        assertThat(small.isPinned("t", "a")).isTrue();
+        assertThat(small.isPinned("t", "b")).isFalse();
+
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        small.pin("t", "b", new byte[] {2}, small.generation("t", "b"));
+        assertThat(small.get("t", "b")).containsExactly(2);
+    }
+
+    @Test
+    @DisplayName("a value read before a write is not pinned after the write invalidated the key")
+    void pin_skippedAfterRacingWrite() {
+        long generation = tier.generation("t", "k");
+        service.putObject("t", "k", new byte[] {2});
+
+        tier.pin("t", "k", new byte[] {1}, generation);
+        assertThat(tier.isPinned("t", "k")).isFalse();
+
+        tier.pin("t", "k", new byte[] {2}, tier.generation("t", "k"));
+        assertThat(tier.get("t", "k")).containsExactly(2);
+    }
+
+    @Test
+    @DisplayName("with a remote tier, writes go through to it and local misses are filled from it")
+    void remoteTier_writeThroughAndReadFill() {
+        final TenantPartitionedStore local = new TenantPartitionedStore(registry, 1 << 20, 1 << 16, 1 << 18, 4);
+        final CacheService layered = new CacheService(local,
+            new HotKeyDetector(8, 100, Duration.ofMinutes(1), clock::get), tier, remoteStore, List.of(),
+            Duration.ofMinutes(1));
+
+        layered.putObject("t", "k", new byte[] {1});
+        assertThat(remote).containsKey(RemoteKey.encode("t", "k"));
+
+        local.deleteObject("t", "k");
+        assertThat(layered.getObject("t", "k")).containsExactly(1);
+        assertThat(local.getObject("t", "k")).containsExactly(1);
+
+        remote.put(RemoteKey.encode("t", "other"), new byte[] {2});
+        assertThat(layered.getObject("t", "other")).containsExactly(2);
+
+        assertThat(layered.deleteObject("t", "k")).isTrue();
+        assertThat(remote).doesNotContainKey(RemoteKey.encode("t", "k"));
+        assertThat(layered.getObject("t", "k")).isNull();
+    }
+
+    @Test
+    @DisplayName("with client tracking connected, L1 copies live until invalidated")
+    void tracking_copiesLiveUntilInvalidated() {
+        final FakeInvalidations invalidations = new FakeInvalidations();
+        final TenantPartitionedStore local =
+            new TenantPartitionedStore(registry, 1 << 20, 1 << 16, 1 << 18, 4, clock::get);
+        final CacheService tracked = new CacheService(local,
+            new HotKeyDetector(8, 100, Duration.ofMinutes(1), clock::get), tier, remoteStore, List.of(invalidations),
+            Duration.ofSeconds(1));
+        remote.put(RemoteKey.encode("idp:sub", "k"), new byte[] {1});
+
+        assertThat(tracked.getObject("idp:sub", "k")).containsExactly(1);
+        clock.addAndGet(Duration.ofHours(1).toNanos());
+        assertThat(local.getObject("idp:sub", "k")).containsExactly(1);
+
+        invalidations.listener.invalidate(RemoteKey.encode("idp:sub", "k"));
+        assertThat(local.getObject("idp:sub", "k")).isNull();
+
+        tracked.getObject("idp:sub", "k");
+        invalidations.listener.invalidateAll();
+        assertThat(local.usedBytes()).isZero();
+    }
+
+    @Test
+    @DisplayName("copies racing an invalidation or fetched while disconnected are not kept indefinitely")
+    void tracking_racesAndDisconnects() {
+        final FakeInvalidations invalidations = new FakeInvalidations();
+        final TenantPartitionedStore local =
+            new TenantPartitionedStore(registry, 1 << 20, 1 << 16, 1 << 18, 4, clock::get);
+        final RemoteObjectStore racing = new RemoteObjectStore() {
+            @Override
+            public byte[] get(String key) {
+                // another pod changes the key while this read is in flight
+                invalidations.generation++;
+                return remote.get(key);
+            }
+
+            @Override
+            public void put(String key, byte[] value) {
+                remote.put(key, value);
+            }
+
+            @Override
+            public void put(String key, byte[] value, Duration ttl) {
+                remote.put(key, value);
+            }
+
+            @Override
+            public boolean expire(String key, Duration ttl) {
+                return remote.containsKey(key);
+            }
+
+            @Override
+            public boolean delete(String key) {
+                return remote.remove(key) != null;
+            }
+        };
+        final HotKeyDetector detector = new HotKeyDetector(8, 100, Duration.ofMinutes(1), clock::get);
+        remote.put(RemoteKey.encode("t", "k"), new byte[] {1});
+
+        new CacheService(local, detector, tier, racing, List.of(invalidations), Duration.ofSeconds(1))
+            .getObject("t", "k");
+        assertThat(local.getObject("t", "k")).isNull();
+
+        invalidations.connected = false;
+        new CacheService(local, detector, tier, remoteStore, List.of(invalidations), Duration.ofSeconds(1))
+            .getObject("t", "k");
+        assertThat(local.getObject("t", "k")).containsExactly(1);
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertThat(local.getObject("t", "k")).isNull();
+    }
+
+    @Test
+    @DisplayName("values written with a ttl and expired values vanish once their time is up")
+    void putWithTtlAndExpire_local() {
+        final TenantPartitionedStore local =
+            new TenantPartitionedStore(registry, 1 << 20, 1 << 16, 1 << 18, 4, clock::get);
+        final CacheService timed = new CacheService(local, new HotKeyDetector(8, 100, Duration.ofMinutes(1), clock::get),
+            tier, null, List.of(), Duration.ofSeconds(1));
+
+        timed.putObject("t", "a", new byte[] {1}, Duration.ofSeconds(5));
+        timed.putObject("t", "b", new byte[] {2});
+        assertThat(timed.expireObject("t", "b", Duration.ofSeconds(3))).isTrue();
+        assertThat(timed.expireObject("t", "missing", Duration.ofSeconds(3))).isFalse();
+
+        clock.addAndGet(Duration.ofSeconds(4).toNanos());
+        assertThat(timed.getObject("t", "a")).containsExactly(1);
+        assertThat(timed.getObject("t", "b")).isNull();
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertThat(timed.getObject("t", "a")).isNull();
+    }
+
+    @Test
+    @DisplayName("puts, deletes and expiries that changed something are published to the change feed")
+    void mutations_publishedToChangeFeed() {
+        final ChangeFeed feed = new ChangeFeed(registry, 16);
+        final CacheService published = new CacheService(store, new HotKeyDetector(8, 3, Duration.ofMinutes(1), clock::get),
+            tier, null, List.of(), Duration.ofSeconds(1), feed);
+
+        published.putObject("t", "a", new byte[] {1});
+        published.putObject("t", "b", new byte[] {2}, Duration.ofSeconds(5));
+        published.expireObject("t", "a", Duration.ofSeconds(3));
+        published.expireObject("t", "missing", Duration.ofSeconds(3));
+        published.deleteObject("t", "b");
+        published.deleteObject("t", "missing");
+
+        final ChangeFeed.Batch batch = feed.read(0, 16);
+        assertThat(batch.changes()).extracting(ChangeFeed.Change::type).containsExactly(
+            ChangeFeed.Type.PUT, ChangeFeed.Type.PUT, ChangeFeed.Type.EXPIRE, ChangeFeed.Type.DELETE);
+        assertThat(batch.changes()).extracting(ChangeFeed.Change::key).containsExactly("a", "b", "a", "b");
+        assertThat(batch.next()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("a commit that puts and then deletes a new key publishes both changes")
+    void commit_publishesDeleteOfKeyPutInSameCommit() {
+        final ChangeFeed feed = new ChangeFeed(registry, 16);
+        final CacheService published = new CacheService(store, new HotKeyDetector(8, 3, Duration.ofMinutes(1), clock::get),
+            tier, null, List.of(), Duration.ofSeconds(1), feed);
+
+        assertThat(published.commit("t", List.of(
+            CacheMutation.put("a", new byte[] {1}),
+            CacheMutation.delete("a"),
+            CacheMutation.delete("a")))).containsExactly(false, false, false);
+
+        assertThat(feed.read(0, 16).changes()).extracting(ChangeFeed.Change::type)
+            .containsExactly(ChangeFeed.Type.PUT, ChangeFeed.Type.DELETE);
+    }
+
+    private static final class FakeInvalidations implements InvalidationSource {
+        private InvalidationListener listener;
+        private boolean connected = true;
+        private long generation;
+
+        @Override
+        public void addListener(InvalidationListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public long generation(String remoteKey) {
+            return generation;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package hello.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChangeFeedTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ChangeFeed feed = new ChangeFeed(registry, 8);
+
+    @Test
+    @DisplayName("changes are read in sequence order, in batches, up to the head")
+    void read_inOrder() {
+        for (int i = 0; i < 5; i++) {
+            feed.publish(ChangeFeed.Type.PUT, "t", "k" + i);
+        }
+
+        ChangeFeed.Batch first = feed.read(0, 3);
+        ChangeFeed.Batch rest = feed.read(first.next(), 10);
+
+        assertThat(first.changes()).extracting(ChangeFeed.Change::key).containsExactly("k0", "k1", "k2");
+        assertThat(rest.changes()).extracting(ChangeFeed.Change::sequence).containsExactly(3L, 4L);
+        assertThat(rest.next()).isEqualTo(5).isEqualTo(feed.head());
+        assertThat(rest.lagged()).isFalse();
+        assertThat(feed.read(5, 10).changes()).isEmpty();
+        assertThat(registry.get("cache.changes.published").counter().count()).isEqualTo(5.0);
+    }
+
+    @Test
+    @DisplayName("a reader a full ring behind is told it lagged and moved to the oldest retained change")
+    void read_lagged() {
+        for (int i = 0; i < 20; i++) {
+            feed.publish(ChangeFeed.Type.DELETE, "t", "k" + i);
+        }
+
+        ChangeFeed.Batch lagged = feed.read(3, 10);
+        assertThat(lagged.lagged()).isTrue();
+        assertThat(lagged.changes()).isEmpty();
+        assertThat(lagged.next()).isEqualTo(12);
+
+        ChangeFeed.Batch resumed = feed.read(lagged.next(), 10);
+        assertThat(resumed.lagged()).isFalse();
+        assertThat(resumed.changes()).extracting(ChangeFeed.Change::key)
+            .containsExactly("k12", "k13", "k14", "k15", "k16", "k17", "k18", "k19");
+        assertThat(feed.read(99, 10).lagged()).isTrue();
+    }
+
+    @Test
+    @DisplayName("concurrent writers never lose or duplicate sequence numbers")
+    void publish_concurrentWriters() throws InterruptedException {
+        ChangeFeed large = new ChangeFeed(registry, 1 << 12);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            int writer = w;
+            writers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < 1000; i++) {
+                    large.publish(ChangeFeed.Type.PUT, "t", writer + ":" + i);
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        ChangeFeed.Batch batch = large.read(0, 5000);
+        assertThat(batch.changes()).hasSize(4000);
+        assertThat(batch.changes()).extracting(ChangeFeed.Change::key).doesNotHaveDuplicates();
+    }
+
+    @Test
+    @DisplayName("the ring capacity must be a power of two")
+    void capacity_powerOfTwo() {
+        assertThatThrownBy(() -> new ChangeFeed(registry, 12)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
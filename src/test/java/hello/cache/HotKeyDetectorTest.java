@@ -0,0 +1,59 @@
+package hello.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotKeyDetectorTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private static void read(HotKeyDetector detector, String key, int times) {
+        for (int i = 0; i < times; i++) {
+            detector.record("t", key);
+        }
+    }
+
+    @Test
+    @DisplayName("keys become hot once their estimate reaches the threshold")
+    void record_thresholdCrossed() {
+        HotKeyDetector detector = new HotKeyDetector(4, 10, Duration.ofSeconds(10), clock::get);
+
+        read(detector, "a", 9);
+        assertThat(detector.isHot("t", "a")).isFalse();
+        assertThat(detector.record("t", "a")).isTrue();
+        assertThat(detector.isHot("t", "a")).isTrue();
+        assertThat(detector.isHot("other", "a")).isFalse();
+        assertThat(detector.hotKeys()).extracting(h -> h.key().key()).containsExactly("a");
+    }
+
+    @Test
+    @DisplayName("a full hot set admits a hotter key by displacing the coldest member")
+    void record_topKDisplacesColdest() {
+        HotKeyDetector detector = new HotKeyDetector(2, 5, Duration.ofSeconds(10), clock::get);
+
+        read(detector, "a", 50);
+        read(detector, "b", 6);
+        read(detector, "c", 20);
+
+        assertThat(detector.hotKeys()).extracting(h -> h.key().key()).containsExactly("a", "c");
+        assertThat(detector.hotKeys().get(0).count()).isGreaterThanOrEqualTo(50);
+    }
+
+    @Test
+    @DisplayName("counters decay each window so keys cool down when traffic stops")
+    void record_decaysAcrossWindows() {
+        HotKeyDetector detector = new HotKeyDetector(4, 10, Duration.ofSeconds(1), clock::get);
+
+        read(detector, "a", 12);
+        assertThat(detector.isHot("t", "a")).isTrue();
+
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertThat(detector.record("t", "b")).isFalse();
+        assertThat(detector.isHot("t", "a")).isFalse();
+    }
+}
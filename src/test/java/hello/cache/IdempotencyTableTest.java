@@ -0,0 +1,70 @@
+package hello.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyTableTest {
+
+    private static final byte[] REQUEST = {1};
+    private static final byte[] OTHER_REQUEST = {2};
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong();
+    private final IdempotencyTable table = new IdempotencyTable(registry, Duration.ofMinutes(1), 64, 4, clock::get);
+
+    private double hits(String outcome) {
+        return registry.get("cache.idempotency.hits").tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    @DisplayName("a completed request is replayed; an executing one and a different request are rejected")
+    void claim_outcomes() {
+        assertThat(table.claim("t", "key", REQUEST).status()).isEqualTo(IdempotencyTable.Status.NEW);
+        assertThat(table.claim("t", "key", REQUEST).status()).isEqualTo(IdempotencyTable.Status.IN_PROGRESS);
+
+        table.complete("t", "key", Map.of("id", "42"));
+        IdempotencyTable.Claim replay = table.claim("t", "key", REQUEST);
+
+        assertThat(replay.status()).isEqualTo(IdempotencyTable.Status.REPLAY);
+        assertThat(replay.result()).containsEntry("id", "42");
+        assertThat(table.claim("t", "key", OTHER_REQUEST).status()).isEqualTo(IdempotencyTable.Status.MISMATCH);
+        assertThat(table.claim("other-tenant", "key", OTHER_REQUEST).status()).isEqualTo(IdempotencyTable.Status.NEW);
+        assertThat(hits("replay")).isEqualTo(1.0);
+        assertThat(hits("in_progress")).isEqualTo(1.0);
+        assertThat(hits("mismatch")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("an abandoned request executes again on retry; keys are forgotten after the window")
+    void abandonAndExpire() {
+        table.claim("t", "failed", REQUEST);
+        table.abandon("t", "failed");
+        assertThat(table.claim("t", "failed", REQUEST).status()).isEqualTo(IdempotencyTable.Status.NEW);
+
+        table.claim("t", "done", REQUEST);
+        table.complete("t", "done", Map.of("id", "1"));
+        clock.addAndGet(Duration.ofSeconds(61).toNanos());
+
+        assertThat(table.claim("t", "done", REQUEST).status()).isEqualTo(IdempotencyTable.Status.NEW);
+    }
+
+    @Test
+    @DisplayName("memory stays bounded: full shards evict their eldest keys")
+    void size_bounded() {
+        for (int i = 0; i < 1000; i++) {
+            table.claim("t", "key-" + i, REQUEST);
+            table.complete("t", "key-" + i, Map.of("id", i));
+        }
+
+        assertThat(table.size()).isLessThanOrEqualTo(64);
+        assertThat(registry.get("cache.idempotency.entries").gauge().value()).isEqualTo(table.size());
+        assertThat(table.claim("t", "key-999", REQUEST).status()).isEqualTo(IdempotencyTable.Status.REPLAY);
+    }
+}
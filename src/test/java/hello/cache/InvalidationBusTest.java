@@ -0,0 +1,139 @@
+package hello.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvalidationBusTest {
+
+    private final SimpleMeterRegistry registryA = new SimpleMeterRegistry();
+    private final SimpleMeterRegistry registryB = new SimpleMeterRegistry();
+    private final MemoryTransport transport = new MemoryTransport();
+    private final InvalidationBus podA = new InvalidationBus(transport, registryA,
+        Duration.ofHours(1), Duration.ofHours(1), 2);
+    private final InvalidationBus podB = new InvalidationBus(transport, registryB,
+        Duration.ofHours(1), Duration.ofHours(1), 2);
+    private final RecordingListener listenerA = new RecordingListener();
+    private final RecordingListener listenerB = new RecordingListener();
+
+    InvalidationBusTest() {
+        podA.addListener(listenerA);
+        podB.addListener(listenerB);
+        podA.start();
+        podB.start();
+        podA.flush();
+        podB.flush();
+        listenerA.flushes = 0;
+        listenerB.flushes = 0;
+    }
+
+    @AfterEach
+    void close() {
+        podA.close();
+        podB.close();
+    }
+
+    @Test
+    @DisplayName("changes are coalesced per key, batched and applied on the other pods only")
+    void flush_coalescesAndDelivers() {
+        podA.changed("k1");
+        podA.changed("k1");
+        podA.changed("k2");
+        podA.changed("k3");
+        podA.flush();
+
+        assertThat(listenerB.keys).containsExactlyInAnyOrder("k1", "k2", "k3");
+        assertThat(listenerA.keys).isEmpty();
+        assertThat(listenerB.flushes).isZero();
+        assertThat(registryA.get("cache.bus.keys.coalesced").counter().count()).isEqualTo(1.0);
+        assertThat(registryA.get("cache.bus.keys.published").counter().count()).isEqualTo(3.0);
+        // the startup heartbeat plus two batches of at most two keys
+        assertThat(registryB.get("cache.bus.lag").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("a sequence gap from a peer flushes every local copy")
+    void message_gapFlushes() {
+        long before = podB.generation("k1");
+        transport.drop = true;
+        podA.changed("k1");
+        podA.flush();
+        transport.drop = false;
+        assertThat(listenerB.keys).isEmpty();
+
+        podA.changed("k2");
+        podA.flush();
+
+        assertThat(listenerB.keys).isEmpty();
+        assertThat(listenerB.flushes).isEqualTo(1);
+        assertThat(podB.generation("k1")).isNotEqualTo(before);
+        assertThat(registryB.get("cache.bus.gaps").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("losing or regaining the subscription flushes; only a subscribed bus is connected")
+    void subscription_flushesOnChange() {
+        assertThat(podB.isConnected()).isTrue();
+
+        podB.disconnected();
+        assertThat(podB.isConnected()).isFalse();
+        assertThat(listenerB.flushes).isEqualTo(1);
+
+        podB.connected();
+        assertThat(podB.isConnected()).isTrue();
+        assertThat(listenerB.flushes).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("malformed and replayed batches are ignored")
+    void message_malformedAndReplayed() {
+        podB.message(new byte[] {9, 1, 2});
+        byte[] batch = new InvalidationBus.Batch(42L, 1, System.currentTimeMillis(), List.of("k")).encode();
+        podB.message(batch);
+        podB.message(batch);
+
+        assertThat(listenerB.keys).containsExactly("k");
+        assertThat(listenerB.flushes).isZero();
+    }
+
+    /** Broadcasts every message to all subscribers, like pub/sub */
+    private static final class MemoryTransport implements InvalidationTransport {
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private boolean drop;
+
+        @Override
+        public void publish(byte[] message) {
+            if (!drop) {
+                subscribers.forEach(subscriber -> subscriber.message(message));
+            }
+        }
+
+        @Override
+        public void subscribe(Subscriber subscriber) {
+            subscribers.add(subscriber);
+            subscriber.connected();
+        }
+    }
+
+    private static final class RecordingListener implements InvalidationListener {
+        private final List<String> keys = new ArrayList<>();
+        private int flushes;
+
+        @Override
+        public void invalidate(String remoteKey) {
+            keys.add(remoteKey);
+        }
+
+        @Override
+        public void invalidateAll() {
+            flushes++;
+        }
+    }
+}
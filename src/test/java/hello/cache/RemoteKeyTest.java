@@ -0,0 +1,25 @@
+package hello.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RemoteKeyTest {
+
+    @Test
+    @DisplayName("tenants containing ':' round-trip through the remote key")
+    void encodeDecode_roundTrip() {
+        assertThat(RemoteKey.decode(RemoteKey.encode("google:123", "a:b"))).isEqualTo(new CacheKey("google:123", "a:b"));
+        assertThat(RemoteKey.decode(RemoteKey.encode("anonymous", ""))).isEqualTo(new CacheKey("anonymous", ""));
+    }
+
+    @Test
+    @DisplayName("keys not produced by encode are rejected")
+    void decode_foreignKeys() {
+        assertThat(RemoteKey.decode("other:1:t:k")).isNull();
+        assertThat(RemoteKey.decode("cache:x:t:k")).isNull();
+        assertThat(RemoteKey.decode("cache:9:t:k")).isNull();
+        assertThat(RemoteKey.decode("cache:-1:t:k")).isNull();
+    }
+}
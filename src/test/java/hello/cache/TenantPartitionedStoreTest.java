@@ -0,0 +1,238 @@
+package hello.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TenantPartitionedStoreTest {
+
+    private static final String ALICE = "local:alice";
+    private static final String BOB = "okta:bob";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private static long entrySize(String key, int valueLength) {
+        return TenantPartition.sizeOf(key, new byte[valueLength]);
+    }
+
+    @Test
+    @DisplayName("objects are isolated per tenant")
+    void putGetDelete_isolatedPerTenant() {
+        TenantPartitionedStore store = new TenantPartitionedStore(registry, 1 << 20, 1 << 16, 1 << 18, 4);
+
+        store.putObject(ALICE, "1", new byte[] {1, 2, 3});
+
+        assertThat(store.getObject(ALICE, "1")).containsExactly(1, 2, 3);
+        assertThat(store.getObject(BOB, "1")).isNull();
+        assertThat(store.deleteObject(BOB, "1")).isFalse();
+        assertThat(store.deleteObject(ALICE, "1")).isTrue();
+        assertThat(store.getObject(ALICE, "1")).isNull();
+        assertThat(store.usedBytes()).isZero();
+    }
+
+    @Test
+    @DisplayName("numeric ids are stored apart from string keys without colliding with them")
+    void numericIds_distinctFromNonCanonicalKeys() {
+        TenantPartitionedStore store = new TenantPartitionedStore(registry, 1 << 20, 1 << 16, 1 << 18, 4);
+
+        store.putObject(ALICE, "123", new byte[] {1});
+        store.putObject(ALICE, "0123", new byte[] {2});
+
+        assertThat(store.getObject(ALICE, "123")).containsExactly(1);
+        assertThat(store.getObject(ALICE, "0123")).containsExactly(2);
+        assertThat(store.size(ALICE)).isEqualTo(2);
+        assertThat(store.usedBytes(ALICE)).isEqualTo(entrySize("123", 1) + entrySize("0123", 1));
+        assertThat(entrySize("123", 1)).isLessThan(entrySize("abc", 1));
+
+        assertThat(store.deleteObject(ALICE, "123")).isTrue();
+        assertThat(store.getObject(ALICE, "123")).isNull();
+        assertThat(store.getObject(ALICE, "0123")).containsExactly(2);
+    }
+
+    @Test
+    @DisplayName("replacing an object adjusts accounting instead of double counting")
+    void put_replaceAdjustsBytes() {
+        TenantPartitionedStore store = new TenantPartitionedStore(registry, 1 << 20, 1 << 16, 1 << 18, 4);
+
+        store.putObject(ALICE, "k", new byte[100]);
+        store.putObject(ALICE, "k", new byte[10]);
+
+        assertThat(store.usedBytes(ALICE)).isEqualTo(entrySize("k", 10));
+        assertThat(store.usedBytes()).isEqualTo(entrySize("k", 10));
+        assertThat(store.size(ALICE)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("a tenant above its ceiling evicts its own least recently used entries")
+    void put_overTenantMax_evictsOwnLru() {
+        long entry = entrySize("k0", 1000);
+        TenantPartitionedStore store = new TenantPartitionedStore(registry, entry * 100, entry, entry * 3, 4);
+
+        store.putObject(ALICE, "k0", new byte[1000]);
+        store.putObject(ALICE, "k1", new byte[1000]);
+        store.putObject(ALICE, "k2", new byte[1000]);
+        store.getObject(ALICE, "k0"); // k1 becomes the eldest
+        store.putObject(ALICE, "k3", new byte[1000]);
+
+        assertThat(store.size(ALICE)).isEqualTo(3);
+        assertThat(store.getObject(ALICE, "k1")).isNull();
+        assertThat(store.getObject(ALICE, "k0")).isNotNull();
+        assertThat(registry.get("cache.store.evictions").tag("tenant", ALICE).counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("evictions are reported to drop listeners; peeking does not refresh the LRU order")
+    void dropListener_reportsEvictions() {
+        long entry = entrySize("k0", 1000);
+        TenantPartitionedStore store = new TenantPartitionedStore(registry, entry * 100, entry, entry * 2, 4);
+        List<String> dropped = new ArrayList<>();
+        store.addDropListener((tenant, key) -> dropped.add(tenant + "/" + key));
+
+        store.putObject(ALICE, "k0", new byte[1000]);
+        store.putObject(ALICE, "1", new byte[1000]);
+        assertThat(store.peekObject(ALICE, "k0")).isNotNull(); // k0 stays the eldest
+        store.putObject(ALICE, "k2", new byte[1000]);
+        store.putObject(ALICE, "k3", new byte[1000]);
+        store.deleteObject(ALICE, "k3");
+
+        assertThat(dropped).containsExactly(ALICE + "/k0", ALICE + "/1");
+    }
+
+    @Test
+    @DisplayName("a noisy tenant borrowing idle capacity is reclaimed before a tenant within quota")
+    void put_storeFull_reclaimsFromLargestBorrower() {
+        long entry = entrySize("k0", 1000);
+        // Capacity for 6 entries, 2 guaranteed per tenant, up to 5 when borrowing
+        TenantPartitionedStore store = new TenantPartitionedStore(registry, entry * 6, entry * 2, entry * 5, 4);
+
+        store.putObject(BOB, "b0", new byte[1000]);
+        for (int i = 0; i < 5; i++) {
+            store.putObject(ALICE, "k" + i, new byte[1000]);
+        }
+        assertThat(store.usedBytes()).isLessThanOrEqualTo(entry * 6);
+        assertThat(store.getObject(BOB, "b0")).isNotNull();
+
+        // Bob comes back for his guaranteed share; Alice gives back borrowed bytes
+        store.putObject(BOB, "b1", new byte[1000]);
+        assertThat(store.size(BOB)).isEqualTo(2);
+        assertThat(store.size(ALICE)).isEqualTo(4);
+        assertThat(store.usedBytes()).isLessThanOrEqualTo(entry * 6);
+    }
+
+    @Test
+    @DisplayName("objects larger than the tenant ceiling are rejected")
+    void put_tooLarge_rejected() {
+        TenantPartitionedStore store = new TenantPartitionedStore(registry, 4096, 1024, 2048, 4);
+
+        assertThatThrownBy(() -> store.putObject(ALICE, "big", new byte[4096]))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("tenant metric tags are capped and overflow tenants share the 'other' tag")
+    void metrics_tenantTagsBounded() {
+        TenantPartitionedStore store = new TenantPartitionedStore(registry, 1 << 20, 1 << 12, 1 << 16, 2);
+
+        store.putObject("t:1", "k", new byte[1]);
+        store.getObject("t:1", "k");
+        store.getObject("t:2", "k");
+        store.getObject("t:3", "k");
+        store.getObject("t:4", "k");
+
+        assertThat(registry.get("cache.store.requests").tag("tenant", "t:1").tag("result", "hit").counter().count())
+            .isEqualTo(1.0);
+        assertThat(registry.get("cache.store.requests").tag("tenant", "other").tag("result", "miss").counter().count())
+            .isEqualTo(3.0);
+        assertThat(registry.find("cache.store.requests").tag("tenant", "t:2").counters()).isEmpty();
+        assertThat(registry.find("cache.store.requests").tag("tenant", "t:3").counters()).isEmpty();
+        assertThat(registry.get("cache.store.tenant.bytes").tag("tenant", "t:1").gauge().value())
+            .isEqualTo(entrySize("k", 1));
+    }
+
+    @Test
+    @DisplayName("reads, peeks, expires and deletes of an unknown tenant create no partition or tag")
+    void readPaths_doNotCreatePartitions() {
+        TenantPartitionedStore store = new TenantPartitionedStore(registry, 1 << 20, 1 << 12, 1 << 16, 4);
+
+        assertThat(store.getObject(BOB, "k")).isNull();
+        assertThat(store.peekObject(BOB, "k")).isNull();
+        assertThat(store.expireObject(BOB, "k", Duration.ofSeconds(1))).isFalse();
+        assertThat(store.deleteObject(BOB, "k")).isFalse();
+
+        assertThat(registry.get("cache.store.tenants").gauge().value()).isZero();
+        assertThat(registry.find("cache.store.requests").tag("tenant", BOB).counters()).isEmpty();
+
+        store.putObject(BOB, "k", new byte[1]);
+        assertThat(registry.get("cache.store.tenants").gauge().value()).isEqualTo(1.0);
+        assertThat(registry.find("cache.store.requests").tag("tenant", BOB).counters()).isNotEmpty();
+    }
+
+    @Test
+    @DisplayName("inconsistent size configuration is rejected")
+    void constructor_invalidSizes() {
+        assertThatThrownBy(() -> new TenantPartitionedStore(registry, 100, 200, 150, 4))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("a commit applies puts and deletes together and reports which keys existed")
+    void commit_putsAndDeletes() {
+        TenantPartitionedStore store = new TenantPartitionedStore(registry, 1 << 20, 1 << 16, 1 << 18, 4);
+        store.putObject(ALICE, "old", new byte[] {9});
+
+        boolean[] existed = store.commit(ALICE, List.of(
+            CacheMutation.put("a", new byte[] {1}),
+            CacheMutation.put("old", new byte[] {2}),
+            CacheMutation.delete("gone"),
+            CacheMutation.delete("a")));
+
+        assertThat(existed).containsExactly(false, true, false, false);
+        assertThat(store.getObject(ALICE, "a")).isNull();
+        assertThat(store.getObject(ALICE, "old")).containsExactly(2);
+        assertThat(store.usedBytes()).isEqualTo(entrySize("old", 1));
+        assertThatThrownBy(() -> store.commit(ALICE, List.of(
+            CacheMutation.put("x", new byte[1 << 17]), CacheMutation.put("y", new byte[1 << 17]))))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("concurrent readers never see a commit half applied")
+    void commit_allOrNothingForReaders() throws InterruptedException {
+        TenantPartitionedStore store = new TenantPartitionedStore(registry, 1 << 20, 1 << 16, 1 << 18, 4);
+        store.commit(ALICE, List.of(CacheMutation.put("a", version(0)), CacheMutation.put("b", version(0))));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger torn = new AtomicInteger();
+        Thread reader = Thread.ofPlatform().start(() -> {
+            while (!done.get()) {
+                // a is applied before b, so only a torn commit lets b lag behind an earlier read of a
+                int a = ByteBuffer.wrap(store.getObject(ALICE, "a")).getInt();
+                int b = ByteBuffer.wrap(store.getObject(ALICE, "b")).getInt();
+                if (b < a) {
+                    torn.incrementAndGet();
+                }
+            }
+        });
+
+        for (int i = 1; i <= 100_000; i++) {
+            store.commit(ALICE, List.of(CacheMutation.put("a", version(i)), CacheMutation.put("b", version(i))));
+        }
+        done.set(true);
+        reader.join();
+
+        assertThat(torn).hasValue(0);
+    }
+
+    private static byte[] version(int version) {
+        return ByteBuffer.allocate(4).putInt(version).array();
+    }
+}
@@ -0,0 +1,45 @@
+package hello.cache;
+
+import hello.security.JwtAuthenticationDetails;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TenantResolverTest {
+
+    @Test
+    @DisplayName("tenant combines identity provider and subject")
+    void fromAuthentication_usesIdpAndSubject() {
+        UsernamePasswordAuthenticationToken authentication =
+            new UsernamePasswordAuthenticationToken("alice", null, List.of());
+        authentication.setDetails(new JwtAuthenticationDetails(new MockHttpServletRequest(), "okta"));
+
+        assertThat(TenantResolver.fromAuthentication(authentication)).isEqualTo("okta:alice");
+    }
+
+    @Test
+    @DisplayName("missing idp falls back to local")
+    void fromAuthentication_defaultsToLocalIdp() {
+        UsernamePasswordAuthenticationToken authentication =
+            new UsernamePasswordAuthenticationToken("alice", null, List.of());
+
+        assertThat(TenantResolver.fromAuthentication(authentication)).isEqualTo("local:alice");
+    }
+
+    @Test
+    @DisplayName("unauthenticated callers share the anonymous tenant")
+    void fromAuthentication_anonymous() {
+        AnonymousAuthenticationToken anonymous = new AnonymousAuthenticationToken(
+            "key", "anonymousUser", List.of(new SimpleGrantedAuthority("ROLE_ANONYMOUS")));
+
+        assertThat(TenantResolver.fromAuthentication(null)).isEqualTo(TenantResolver.ANONYMOUS_TENANT);
+        assertThat(TenantResolver.fromAuthentication(anonymous)).isEqualTo(TenantResolver.ANONYMOUS_TENANT);
+    }
+}
@@ -0,0 +1,167 @@
+package hello.cluster;
+
+import hello.cache.CacheService;
+import hello.cache.RemoteKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AntiEntropyTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong millis = new AtomicLong(1_000_000);
+    private final Map<String, byte[]> storeA = new HashMap<>();
+    private final Map<String, byte[]> storeB = new HashMap<>();
+    private final ReplicaIndex replicaA = new ReplicaIndex(cache(storeA), true, 10, Duration.ofHours(1), millis::get);
+    private final ReplicaIndex replicaB = new ReplicaIndex(cache(storeB), true, 10, Duration.ofHours(1), millis::get);
+    private final AntiEntropy antiEntropy = new AntiEntropy(replicaA,
+        new PeerRing(registry, false, "http://a", "http://b", 8), peer -> null, registry, Duration.ofHours(1));
+    private final CountingPeer peerB = new CountingPeer(replicaB);
+
+    /** A CacheService backed by a plain map */
+    private static CacheService cache(Map<String, byte[]> store) {
+        CacheService cache = mock(CacheService.class);
+        when(cache.peekObject(anyString(), anyString()))
+            .thenAnswer(call -> store.get(call.getArgument(0) + "/" + call.getArgument(1)));
+        doAnswer(call -> store.put(call.getArgument(0) + "/" + call.getArgument(1), call.getArgument(2)))
+            .when(cache).putObject(anyString(), anyString(), any(byte[].class));
+        when(cache.deleteObject(anyString(), anyString()))
+            .thenAnswer(call -> store.remove(call.getArgument(0) + "/" + call.getArgument(1)) != null);
+        return cache;
+    }
+
+    private void writeBoth(int keys) {
+        for (int i = 0; i < keys; i++) {
+            replicaA.put("t", "k" + i, ("value-" + i).getBytes());
+        }
+        replicaA.entries(IntStream.range(0, replicaA.tree().leaves()).toArray()).forEach(replicaB::apply);
+    }
+
+    @Test
+    @DisplayName("identical replicas are confirmed with a single root comparison")
+    void synchronize_identical() {
+        writeBoth(200);
+
+        assertThat(antiEntropy.synchronize(peerB)).isZero();
+        assertThat(peerB.nodeRequests).isEqualTo(1);
+        assertThat(peerB.entriesSent).isZero();
+    }
+
+    @Test
+    @DisplayName("only the divergent leaves are exchanged and both sides converge")
+    void synchronize_repairsDivergence() {
+        writeBoth(2000);
+        millis.addAndGet(10);
+        replicaA.put("t", "only-on-a", new byte[] {1});
+        replicaB.put("t", "k7", new byte[] {2});
+        replicaA.delete("t", "k8");
+
+        assertThat(antiEntropy.synchronize(peerB)).isEqualTo(3);
+
+        assertThat(replicaA.tree().root()).isEqualTo(replicaB.tree().root());
+        assertThat(storeB.get("t/only-on-a")).containsExactly(1);
+        assertThat(storeA.get("t/k7")).containsExactly(2);
+        assertThat(storeB).doesNotContainKey("t/k8");
+        assertThat(storeA).hasSameSizeAs(storeB);
+        // a handful of leaves, each holding about two of the 2000 keys
+        assertThat(peerB.entriesSent + peerB.entriesApplied).isLessThan(30);
+        assertThat(peerB.nodeRequests).isEqualTo(11);
+        assertThat(registry.get("cache.antientropy.keys.repaired").tag("direction", "pulled").counter().count())
+            .isEqualTo(1.0);
+        assertThat(antiEntropy.synchronize(peerB)).isZero();
+    }
+
+    @Test
+    @DisplayName("tombstones win over older copies and are pruned after their TTL")
+    void tombstones_preventResurrection() {
+        writeBoth(1);
+        millis.addAndGet(10);
+        replicaA.delete("t", "k0");
+
+        antiEntropy.synchronize(peerB);
+        assertThat(storeB).isEmpty();
+
+        millis.addAndGet(Duration.ofHours(2).toMillis());
+        replicaA.pruneTombstones();
+        replicaB.pruneTombstones();
+        assertThat(replicaA.tree().root()).isZero();
+        assertThat(replicaB.tree().root()).isZero();
+    }
+
+    @Test
+    @DisplayName("versions of values the store evicts are forgotten; scans do not count as reads")
+    void storeDrops_forgetVersions() {
+        Map<String, byte[]> store = new HashMap<>();
+        CacheService cache = cache(store);
+        ReplicaIndex index = new ReplicaIndex(cache, true, 10, Duration.ofHours(1), millis::get);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<BiConsumer<String, String>> listener = ArgumentCaptor.forClass(BiConsumer.class);
+        verify(cache).addDropListener(listener.capture());
+        index.put("t", "evicted", new byte[] {1});
+        index.put("t", "kept", new byte[] {2});
+
+        store.remove("t/evicted");
+        listener.getValue().accept("t", "evicted");
+        // reported, but written again before the index caught up
+        listener.getValue().accept("t", "kept");
+        index.pruneTombstones();
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.entries(IntStream.range(0, index.tree().leaves()).toArray()))
+            .extracting(ReplicaIndex.Entry::key).containsExactly(RemoteKey.encode("t", "kept"));
+        verify(cache, never()).getObject(anyString(), anyString());
+    }
+
+    /** Calls the other replica directly, counting what crosses the wire */
+    private static final class CountingPeer implements ReplicaPeer {
+        private final ReplicaIndex replica;
+        private int nodeRequests;
+        private int entriesSent;
+        private int entriesApplied;
+
+        CountingPeer(ReplicaIndex replica) {
+            this.replica = replica;
+        }
+
+        @Override
+        public long[] nodes(int[] indices) {
+            nodeRequests++;
+            long[] digests = new long[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                digests[i] = replica.tree().node(indices[i]);
+            }
+            return digests;
+        }
+
+        @Override
+        public List<ReplicaIndex.Entry> entries(int[] leaves) {
+            List<ReplicaIndex.Entry> entries = replica.entries(leaves);
+            entriesSent += entries.size();
+            return entries;
+        }
+
+        @Override
+        public void apply(List<ReplicaIndex.Entry> entries) {
+            entriesApplied += entries.size();
+            entries.forEach(replica::apply);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package hello.cluster;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 20_000;
+    private static final List<String> FOUR = List.of(
+        "http://10.0.0.1:8080", "http://10.0.0.2:8080", "http://10.0.0.3:8080", "http://10.0.0.4:8080");
+
+    @Test
+    @DisplayName("virtual nodes spread keys evenly over members")
+    void ownerOf_balanced() {
+        ConsistentHashRing ring = new ConsistentHashRing(FOUR, 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.ownerOf("cache:1:t:key-" + i), 1, Integer::sum);
+        }
+
+        assertThat(counts).hasSize(4);
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(KEYS / 4 * 3 / 4, KEYS / 4 * 5 / 4));
+    }
+
+    @Test
+    @DisplayName("adding a fifth member moves about a fifth of the keys, all to the new member")
+    void withMembers_movesOnlyOneNth() {
+        ConsistentHashRing before = new ConsistentHashRing(FOUR, 128);
+        String added = "http://10.0.0.5:8080";
+        ConsistentHashRing after = before.withMembers(List.of(FOUR.get(0), FOUR.get(1), FOUR.get(2), FOUR.get(3), added));
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "cache:1:t:key-" + i;
+            if (!before.ownerOf(key).equals(after.ownerOf(key))) {
+                moved++;
+                assertThat(after.ownerOf(key)).isEqualTo(added);
+            }
+        }
+        assertThat((double) moved / KEYS).isBetween(0.12, 0.28);
+    }
+
+    @Test
+    @DisplayName("every pod builds the same ring regardless of member order")
+    void ownerOf_independentOfMemberOrder() {
+        ConsistentHashRing a = new ConsistentHashRing(FOUR, 16);
+        ConsistentHashRing b = new ConsistentHashRing(List.of(FOUR.get(3), FOUR.get(1), FOUR.get(0), FOUR.get(2)), 16);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(a.ownerOf("k" + i)).isEqualTo(b.ownerOf("k" + i));
+        }
+    }
+}
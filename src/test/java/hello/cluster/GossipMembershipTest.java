@@ -0,0 +1,174 @@
+package hello.cluster;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GossipMembershipTest {
+
+    private static final String SECRET = "gossip-secret";
+    private static final SecretKeySpec KEY = new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+
+    private final List<GossipMembership> nodes = new ArrayList<>();
+    private final List<PeerRing> rings = new ArrayList<>();
+    private final List<SimpleMeterRegistry> registries = new ArrayList<>();
+
+    @AfterEach
+    void stop() {
+        nodes.forEach(GossipMembership::close);
+    }
+
+    private GossipMembership startNode(int index, List<InetSocketAddress> seeds) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PeerRing ring = new PeerRing(registry, true, id(index), "", 8);
+        GossipMembership node = new GossipMembership(ring, registry, "127.0.0.1", 0, () -> seeds,
+            Duration.ofMillis(50), Duration.ofMillis(20), Duration.ofMillis(300), 2, SECRET,
+            () -> Set.of(InetAddress.getLoopbackAddress()));
+        node.start();
+        nodes.add(node);
+        rings.add(ring);
+        registries.add(registry);
+        return node;
+    }
+
+    private static String id(int index) {
+        return "http://127.0.0.1:" + (8080 + index);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    @DisplayName("pods seeded from one address converge on the full membership, detect a failure and forget it")
+    void membership_convergesAndDetectsFailure() throws InterruptedException {
+        GossipMembership seed = startNode(0, List.of());
+        List<InetSocketAddress> seeds = List.of(new InetSocketAddress("127.0.0.1", seed.getPort()));
+        for (int i = 1; i < 4; i++) {
+            startNode(i, seeds);
+        }
+
+        await(() -> rings.stream().allMatch(ring -> ring.members().size() == 4));
+        assertThat(registries.get(0).get("cache.gossip.convergence").timer().count()).isPositive();
+        assertThat(registries.get(0).get("cache.gossip.members").tag("state", "alive").gauge().value()).isEqualTo(3.0);
+
+        nodes.get(3).close();
+
+        await(() -> rings.subList(0, 3).stream().allMatch(ring -> ring.members().size() == 3));
+        for (int i = 0; i < 3; i++) {
+            assertThat(nodes.get(i).stateOf(id(3))).isEqualTo(GossipMembership.State.DEAD);
+            assertThat(rings.get(i).members()).doesNotContain(id(3));
+        }
+
+        // the tombstone is dropped after a few suspicion timeouts
+        await(() -> nodes.subList(0, 3).stream().allMatch(node -> node.stateOf(id(3)) == null));
+        assertThat(rings.subList(0, 3)).allSatisfy(ring -> assertThat(ring.members()).hasSize(3));
+    }
+
+    @Test
+    @DisplayName("a pod refutes a suspicion about itself by raising its incarnation")
+    void handle_refutesSuspicion() {
+        GossipMembership node = startNode(0, List.of());
+        GossipMembership.Update suspect = new GossipMembership.Update(id(0), "127.0.0.1:1",
+            Long.MAX_VALUE - 1, GossipMembership.State.SUSPECT, System.currentTimeMillis());
+
+        node.handle(new GossipMembership.Message((byte) 2, 1, null, List.of(suspect)), new InetSocketAddress("127.0.0.1", 1));
+
+        assertThat(registries.get(0).get("cache.gossip.refutations").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("messages survive the wire format")
+    void message_roundTrip() throws Exception {
+        GossipMembership.Message message = new GossipMembership.Message((byte) 3, 42, "10.0.0.1:7946", List.of(
+            new GossipMembership.Update("http://a:8080", "10.0.0.2:7946", 7, GossipMembership.State.DEAD, 123)));
+
+        byte[] bytes = message.encode(KEY, 1_000);
+
+        assertThat(GossipMembership.Message.decode(bytes, bytes.length, KEY, 2_000)).isEqualTo(message);
+    }
+
+    @Test
+    @DisplayName("messages signed with another secret, altered or replayed late are rejected")
+    void message_rejectsForgedTamperedAndStale() {
+        GossipMembership.Message message = new GossipMembership.Message((byte) 1, 42, null, List.of(
+            new GossipMembership.Update("http://127.0.0.1:8080", "127.0.0.1:7946", 7, GossipMembership.State.DEAD, 123)));
+        SecretKeySpec other = new SecretKeySpec("other".getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        byte[] forged = message.encode(other, 1_000);
+        byte[] tampered = message.encode(KEY, 1_000);
+        tampered[10] ^= 1;
+        byte[] stale = message.encode(KEY, 1_000);
+
+        assertThatThrownBy(() -> GossipMembership.Message.decode(forged, forged.length, KEY, 1_000))
+            .hasMessageContaining("signature");
+        assertThatThrownBy(() -> GossipMembership.Message.decode(tampered, tampered.length, KEY, 1_000))
+            .hasMessageContaining("signature");
+        assertThatThrownBy(() -> GossipMembership.Message.decode(stale, stale.length, KEY,
+            1_001 + GossipMembership.MAX_SKEW.toMillis()))
+            .hasMessageContaining("Stale");
+    }
+
+    @Test
+    @DisplayName("members at disallowed addresses are never admitted to the ring")
+    void handle_ignoresDisallowedMembers() {
+        GossipMembership node = startNode(0, List.of());
+        GossipMembership.Update outsider = new GossipMembership.Update("http://10.0.0.5:8080", "10.0.0.5:7946",
+            1, GossipMembership.State.ALIVE, System.currentTimeMillis());
+        GossipMembership.Update disguised = new GossipMembership.Update("http://10.0.0.5:8080", "127.0.0.1:7946",
+            1, GossipMembership.State.ALIVE, System.currentTimeMillis());
+
+        node.handle(new GossipMembership.Message((byte) 2, 1, null, List.of(outsider, disguised)),
+            new InetSocketAddress("127.0.0.1", 1));
+
+        assertThat(node.stateOf("http://10.0.0.5:8080")).isNull();
+        assertThat(rings.get(0).members()).doesNotContain("http://10.0.0.5:8080");
+    }
+
+    @Test
+    @DisplayName("indirect probes of addresses that are not members are not relayed")
+    void handle_ignoresPingReqForUnknownTarget() throws Exception {
+        GossipMembership node = startNode(0, List.of());
+        try (DatagramSocket target = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            target.setSoTimeout(300);
+
+            node.handle(new GossipMembership.Message((byte) 3, 1, "127.0.0.1:" + target.getLocalPort(), List.of()),
+                new InetSocketAddress("127.0.0.1", 1));
+
+            assertThatThrownBy(() -> target.receive(new DatagramPacket(new byte[1400], 1400)))
+                .isInstanceOf(SocketTimeoutException.class);
+        }
+    }
+
+    @Test
+    @DisplayName("gossip without a shared secret is refused")
+    void constructor_requiresSecret() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PeerRing ring = new PeerRing(registry, true, id(0), "", 8);
+
+        assertThatThrownBy(() -> new GossipMembership(ring, registry, "127.0.0.1", 0, List::of,
+            Duration.ofMillis(50), Duration.ofMillis(20), Duration.ofMillis(300), 2, "",
+            () -> Set.of(InetAddress.getLoopbackAddress())))
+            .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,41 @@
+package hello.cluster;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MerkleTreeTest {
+
+    @Test
+    @DisplayName("digests depend on the entries, not on the order of updates")
+    void update_orderIndependent() {
+        MerkleTree a = new MerkleTree(4);
+        MerkleTree b = new MerkleTree(4);
+        a.update(ConsistentHashRing.hash("x"), 0, 11);
+        a.update(ConsistentHashRing.hash("y"), 0, 22);
+        b.update(ConsistentHashRing.hash("y"), 0, 22);
+        b.update(ConsistentHashRing.hash("x"), 0, 7);
+        b.update(ConsistentHashRing.hash("x"), 7, 11);
+
+        for (int node = 1; node < 2 * a.leaves(); node++) {
+            assertThat(a.node(node)).isEqualTo(b.node(node));
+        }
+        assertThat(a.root()).isNotZero();
+    }
+
+    @Test
+    @DisplayName("a change touches only its leaf and that leaf's ancestors")
+    void update_pathOnly() {
+        MerkleTree tree = new MerkleTree(3);
+        long hash = 0xA000_0000_0000_0000L;
+        tree.update(hash, 0, 5);
+
+        int leaf = tree.leaves() + tree.leafOf(hash);
+        assertThat(tree.leafOf(hash)).isEqualTo(5);
+        for (int node = 1; node < 2 * tree.leaves(); node++) {
+            boolean onPath = node == leaf || node == leaf >>> 1 || node == leaf >>> 2 || node == 1;
+            assertThat(tree.node(node)).isEqualTo(onPath ? 5 : 0);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package hello.cluster;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PeerForwarderTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final List<String> seen = new ArrayList<>();
+
+    @AfterEach
+    void stop() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    /** Start a fake peer on localhost that echoes what it received */
+    private String startPeer(String name) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] requestBody = exchange.getRequestBody().readAllBytes();
+            synchronized (seen) {
+                seen.add(name + " " + exchange.getRequestMethod() + " " + exchange.getRequestURI()
+                    + " auth=" + exchange.getRequestHeaders().getFirst("Authorization")
+                    + " by=" + exchange.getRequestHeaders().getFirst(PeerForwarder.FORWARDED_HEADER).split(";")[0]
+                    + " body=" + requestBody.length);
+            }
+            byte[] response = (name + ":" + exchange.getRequestURI().getPath()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(exchange.getRequestURI().getPath().endsWith("missing") ? 404 : 200,
+                response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private PeerForwarder forwarder(String self) {
+        return forwarder(self, "peer-secret");
+    }
+
+    private PeerForwarder forwarder(String self, String secret) {
+        PeerRing ring = new PeerRing(registry, true, self, "", 8);
+        return new PeerForwarder(registry, ring, Duration.ofSeconds(2), secret, now::get);
+    }
+
+    private static MockHttpServletRequest marked(String method, String uri, String marker) {
+        MockHttpServletRequest request = request(method, uri);
+        request.addHeader(PeerForwarder.FORWARDED_HEADER, marker);
+        return request;
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.addHeader("Authorization", "Bearer token");
+        return request;
+    }
+
+    @Test
+    @DisplayName("requests are relayed to the owning peer with the caller's credentials and the peer's response")
+    void forward_relaysRequestAndResponse() throws IOException {
+        String peerA = startPeer("a");
+        String peerB = startPeer("b");
+        PeerForwarder forwarder = forwarder("http://127.0.0.1:1");
+
+        ResponseEntity<byte[]> fromA = forwarder.forward(peerA, request("GET", "/api/v1/cacheServices/objects/1"), null);
+        ResponseEntity<byte[]> fromB = forwarder.forward(peerB,
+            request("PUT", "/api/v1/cacheServices/objects/2"), new byte[] {1, 2, 3});
+        ResponseEntity<byte[]> missing = forwarder.forward(peerA,
+            request("DELETE", "/api/v1/cacheServices/objects/missing"), null);
+
+        assertThat(new String(fromA.getBody(), StandardCharsets.UTF_8)).isEqualTo("a:/api/v1/cacheServices/objects/1");
+        assertThat(fromA.getHeaders().getContentType()).hasToString("text/plain");
+        assertThat(new String(fromB.getBody(), StandardCharsets.UTF_8)).isEqualTo("b:/api/v1/cacheServices/objects/2");
+        assertThat(missing.getStatusCode().value()).isEqualTo(404);
+        assertThat(seen).containsExactly(
+            "a GET /api/v1/cacheServices/objects/1 auth=Bearer token by=http://127.0.0.1:1 body=0",
+            "b PUT /api/v1/cacheServices/objects/2 auth=Bearer token by=http://127.0.0.1:1 body=3",
+            "a DELETE /api/v1/cacheServices/objects/missing auth=Bearer token by=http://127.0.0.1:1 body=0");
+    }
+
+    @Test
+    @DisplayName("sequential forwards to a peer reuse one keep-alive connection")
+    void forward_reusesConnection() throws IOException {
+        String peer = startPeer("a");
+        PeerForwarder forwarder = forwarder("http://127.0.0.1:1");
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(forwarder.forward(peer, request("GET", "/api/v1/cacheServices/objects/" + i), null)
+                .getStatusCode().value()).isEqualTo(200);
+        }
+        assertThat(clientPorts).hasSize(1);
+        assertThat(registry.get("cache.peers.forward.latency").timer().count()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("an unreachable owner yields null so the request is served locally")
+    void forward_unreachableOwner() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        String gone = "http://127.0.0.1:" + server.getAddress().getPort();
+        server.stop(0);
+
+        assertThat(forwarder("http://127.0.0.1:1").forward(gone, request("GET", "/x"), null)).isNull();
+        assertThat(registry.get("cache.peers.forward.failures").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("only markers signed with the shared secret for this request and recently are trusted")
+    void isForwarded_requiresValidSignature() {
+        PeerForwarder sender = forwarder("http://127.0.0.1:1");
+        PeerForwarder receiver = forwarder("http://127.0.0.1:2");
+        String uri = "/api/v1/cacheServices/objects/1";
+        String marker = sender.marker("GET", uri, null);
+
+        assertThat(receiver.isForwarded(marked("GET", uri, marker), null)).isTrue();
+        assertThat(receiver.isForwarded(request("GET", uri), null)).isFalse();
+        assertThat(receiver.isForwarded(marked("GET", uri, "http://127.0.0.1:1"), null)).isFalse();
+        assertThat(receiver.isForwarded(marked("DELETE", uri, marker), null)).isFalse();
+        assertThat(receiver.isForwarded(marked("GET", "/api/v1/cacheServices/objects/2", marker), null)).isFalse();
+        assertThat(receiver.isForwarded(marked("GET", uri, marker.replace(":1;", ":3;")), null)).isFalse();
+        assertThat(receiver.isForwarded(marked("GET", uri, marker + "x"), null)).isFalse();
+        assertThat(forwarder("http://127.0.0.1:2", "other-secret").isForwarded(marked("GET", uri, marker), null))
+            .isFalse();
+
+        now.addAndGet(PeerForwarder.MAX_SKEW.toMillis() + 1);
+        assertThat(receiver.isForwarded(marked("GET", uri, marker), null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("a forwarded marker only vouches for the body it was signed with")
+    void isForwarded_coversBody() {
+        PeerForwarder sender = forwarder("http://127.0.0.1:1");
+        PeerForwarder receiver = forwarder("http://127.0.0.1:2");
+        String uri = "/api/v1/cacheServices/objects/1";
+        String marker = sender.marker("PUT", uri, new byte[] {1, 2, 3});
+
+        assertThat(receiver.isForwarded(marked("PUT", uri, marker), new byte[] {1, 2, 3})).isTrue();
+        assertThat(receiver.isForwarded(marked("PUT", uri, marker), new byte[] {6, 6, 6})).isFalse();
+        assertThat(receiver.isForwarded(marked("PUT", uri, marker), null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("peering without a shared secret is refused")
+    void constructor_requiresSecret() {
+        assertThatThrownBy(() -> forwarder("http://127.0.0.1:1", ""))
+            .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -1,12 +1,19 @@
 package hello.controller;
 
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.stream.Stream;
+
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -20,6 +27,21 @@ class AuthTestControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @BeforeEach
+    void authenticateAsAdmin() {
+        authenticate("ROLE_ADMIN", "CACHE_READ", "CACHE_WRITE", "CACHE_ADMIN");
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static void authenticate(String... authorities) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+            "alice", null, Stream.of(authorities).map(SimpleGrantedAuthority::new).toList()));
+    }
+
     @Test
     @DisplayName("GET /api/v1/test/public returns 200 and message")
     void publicEndpoint_returnsOk() throws Exception {
@@ -84,6 +106,32 @@ class AuthTestControllerTest {
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.message").value("All permissions endpoint accessed successfully"));
     }
-}
 
+    @Test
+    @DisplayName("GET /api/v1/test/all-permissions requires every listed permission")
+    void allPermissions_requiresAll() throws Exception {
+        authenticate("CACHE_READ");
+        mockMvc.perform(get("/api/v1/test/all-permissions"))
+            .andExpect(status().isForbidden());
 
+        authenticate("CACHE_READ", "CACHE_WRITE");
+        mockMvc.perform(get("/api/v1/test/all-permissions"))
+            .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("annotated endpoints reject callers without the permission or without authentication")
+    void annotated_enforced() throws Exception {
+        authenticate("CACHE_READ");
+        mockMvc.perform(get("/api/v1/test/admin"))
+            .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/v1/test/multi-permission"))
+            .andExpect(status().isOk());
+
+        SecurityContextHolder.clearContext();
+        mockMvc.perform(get("/api/v1/test/cache/read"))
+            .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/v1/test/public"))
+            .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,51 @@
+package hello.controller;
+
+import hello.cache.HotKeyDetector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "cache.hotkeys.threshold=5")
+@AutoConfigureMockMvc(addFilters = false)
+class CacheAdminControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/cacheServices/admin/hot-keys lists detected hot keys")
+    void hotKeys_listsDetectedKeys() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+            "alice", null, List.of(new SimpleGrantedAuthority("CACHE_ADMIN"))));
+        for (int i = 0; i < 5; i++) {
+            hotKeyDetector.record("local:alice", "123");
+        }
+
+        mockMvc.perform(get("/api/v1/cacheServices/admin/hot-keys"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.hotKeys[0].tenant").value("local:alice"))
+            .andExpect(jsonPath("$.hotKeys[0].key").value("123"))
+            .andExpect(jsonPath("$.hotKeys[0].pinned").value(false));
+    }
+}
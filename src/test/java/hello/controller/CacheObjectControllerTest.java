@@ -0,0 +1,163 @@
+package hello.controller;
+
+import hello.cache.CacheFrames;
+import hello.security.JwtAuthenticationDetails;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.json.JsonCompareMode;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+class CacheObjectControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static void authenticate(String username, String idp) {
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+            username, null, List.of(new SimpleGrantedAuthority("CACHE_ADMIN")));
+        authentication.setDetails(new JwtAuthenticationDetails(new MockHttpServletRequest(), idp));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
+
+    @Test
+    @DisplayName("PUT then GET returns the stored payload, DELETE removes it")
+    void putGetDelete_roundTrip() throws Exception {
+        authenticate("alice", "okta");
+
+        mockMvc.perform(put("/api/v1/cacheServices/objects/42").content(new byte[] {7, 8, 9}))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value("42"))
+            .andExpect(jsonPath("$.size").value(3));
+        mockMvc.perform(get("/api/v1/cacheServices/objects/42"))
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(new byte[] {7, 8, 9}));
+        mockMvc.perform(delete("/api/v1/cacheServices/objects/42"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.deleted").value(true));
+        mockMvc.perform(get("/api/v1/cacheServices/objects/42"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("objects are not visible to the same username from another IdP")
+    void get_otherTenant_notFound() throws Exception {
+        authenticate("bob", "okta");
+        mockMvc.perform(put("/api/v1/cacheServices/objects/7").content(new byte[] {1}))
+            .andExpect(status().isOk());
+
+        authenticate("bob", "azure-ad");
+        mockMvc.perform(get("/api/v1/cacheServices/objects/7"))
+            .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/api/v1/cacheServices/objects/7"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("batch-get answers JSON by default and cache frames when the client accepts them")
+    void batchGet_contentNegotiation() throws Exception {
+        authenticate("carol", "okta");
+        mockMvc.perform(put("/api/v1/cacheServices/objects/b1").content(new byte[] {1, 2}))
+            .andExpect(status().isOk());
+        mockMvc.perform(put("/api/v1/cacheServices/objects/b3").content(new byte[] {3}))
+            .andExpect(status().isOk());
+        String ids = "[\"b1\",\"b2\",\"b3\"]";
+
+        mockMvc.perform(post("/api/v1/cacheServices/objects/batch-get")
+                .contentType(MediaType.APPLICATION_JSON).content(ids))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.objects.b1").value("AQI="))
+            .andExpect(jsonPath("$.objects.b2").isEmpty())
+            .andExpect(jsonPath("$.objects.b3").value("Aw=="))
+            .andExpect(jsonPath("$.unavailable").isEmpty());
+
+        byte[] framed = mockMvc.perform(post("/api/v1/cacheServices/objects/batch-get")
+                .contentType(MediaType.APPLICATION_JSON).content(ids).accept(CacheFrames.MEDIA_TYPE))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Type", CacheFrames.MEDIA_TYPE))
+            .andReturn().getResponse().getContentAsByteArray();
+        List<CacheFrames.Frame> frames = CacheFrames.read(framed);
+        assertThat(frames).extracting(CacheFrames.Frame::status)
+            .containsExactly(CacheFrames.STATUS_FOUND, CacheFrames.STATUS_NOT_FOUND, CacheFrames.STATUS_FOUND);
+        assertThat(frames.get(0).value()).containsExactly(1, 2);
+        assertThat(frames.get(2).value()).containsExactly(3);
+    }
+
+    @Test
+    @DisplayName("a retried PUT with the same Idempotency-Key replays the original result")
+    void put_idempotencyKey() throws Exception {
+        authenticate("dave", "okta");
+
+        String original = mockMvc.perform(put("/api/v1/cacheServices/objects/9")
+                .header("Idempotency-Key", "retry-1").content(new byte[] {1, 2}))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("Idempotent-Replayed"))
+            .andReturn().getResponse().getContentAsString();
+        mockMvc.perform(put("/api/v1/cacheServices/objects/9").content(new byte[] {5}))
+            .andExpect(status().isOk());
+
+        mockMvc.perform(put("/api/v1/cacheServices/objects/9")
+                .header("Idempotency-Key", "retry-1").content(new byte[] {1, 2}))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Idempotent-Replayed", "true"))
+            .andExpect(content().json(original, JsonCompareMode.STRICT));
+        mockMvc.perform(get("/api/v1/cacheServices/objects/9"))
+            .andExpect(content().bytes(new byte[] {5}));
+
+        mockMvc.perform(put("/api/v1/cacheServices/objects/9")
+                .header("Idempotency-Key", "retry-1").content(new byte[] {3}))
+            .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    @DisplayName("a transaction applies its puts and deletes together")
+    void transaction_commit() throws Exception {
+        authenticate("erin", "okta");
+        mockMvc.perform(put("/api/v1/cacheServices/objects/t-old").content(new byte[] {9}))
+            .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/v1/cacheServices/objects/transaction")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"operations\":[{\"op\":\"put\",\"id\":\"t-a\",\"value\":\"AQI=\"},"
+                    + "{\"op\":\"delete\",\"id\":\"t-old\"}]}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.operations").value(2))
+            .andExpect(jsonPath("$.deleted").value(1));
+
+        mockMvc.perform(get("/api/v1/cacheServices/objects/t-a"))
+            .andExpect(content().bytes(new byte[] {1, 2}));
+        mockMvc.perform(get("/api/v1/cacheServices/objects/t-old"))
+            .andExpect(status().isNotFound());
+        mockMvc.perform(post("/api/v1/cacheServices/objects/transaction")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"operations\":[{\"op\":\"put\",\"id\":\"t-b\"}]}"))
+            .andExpect(status().isBadRequest());
+    }
+}
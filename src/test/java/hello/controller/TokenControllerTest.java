@@ -1,12 +1,16 @@
 package hello.controller;
 
 import hello.security.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -24,6 +28,11 @@ class TokenControllerTest {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
     @Test
     @DisplayName("POST /api/v1/auth/token generates token")
     void generateToken_returnsToken() throws Exception {
@@ -63,4 +72,38 @@ class TokenControllerTest {
             .andExpect(status().isBadRequest())
             .andExpect(jsonPath("$.error").exists());
     }
+
+    @Test
+    @DisplayName("POST /api/v1/auth/validate/batch returns one result per token in order")
+    void validateTokens_batch() throws Exception {
+        String bob = jwtUtil.generateToken("bob", java.util.List.of("USER"), java.util.List.of("CACHE_READ"));
+        String carol = jwtUtil.generateToken("carol", java.util.List.of("ADMIN"), java.util.List.of("CACHE_ADMIN"));
+        mockMvc.perform(post("/api/v1/auth/validate/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"" + bob + "\", \"not-a-token\", \"" + carol + "\", \"" + bob + "\"]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.results.length()").value(4))
+            .andExpect(jsonPath("$.results[0].valid").value(true))
+            .andExpect(jsonPath("$.results[0].username").value("bob"))
+            .andExpect(jsonPath("$.results[1].valid").value(false))
+            .andExpect(jsonPath("$.results[2].username").value("carol"))
+            .andExpect(jsonPath("$.results[2].roles[0]").value("ADMIN"))
+            .andExpect(jsonPath("$.results[3].username").value("bob"));
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/auth/revoke takes the token in the body and rejects it afterwards")
+    void revokeToken_body() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+            "alice", null, java.util.List.of(new SimpleGrantedAuthority("CACHE_ADMIN"))));
+        String leaked = jwtUtil.generateToken("dora", java.util.List.of("USER"), java.util.List.of("CACHE_READ"));
+        mockMvc.perform(post("/api/v1/auth/revoke")
+                .contentType(MediaType.TEXT_PLAIN)
+                .content(leaked))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.revoked").value(true));
+        mockMvc.perform(post("/api/v1/auth/validate").param("token", leaked))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.valid").value(false));
+    }
 }
@@ -0,0 +1,209 @@
+package hello.resp;
+
+import hello.cache.CacheService;
+import hello.cluster.PeerRing;
+import hello.cluster.ReplicaIndex;
+import hello.security.JwtUtil;
+import hello.security.TokenRevocationList;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.valkey.Jedis;
+import io.valkey.exceptions.JedisDataException;
+import io.valkey.params.SetParams;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Timeout(30)
+class RespServerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Map<String, byte[]> store = new HashMap<>();
+    private final Map<String, Duration> ttls = new HashMap<>();
+    private final JwtUtil jwtUtil = new JwtUtil();
+    private RespServer server;
+
+    @BeforeEach
+    void start() {
+        ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
+        CacheService cache = mock(CacheService.class);
+        when(cache.getObject(anyString(), anyString())).thenAnswer(call -> {
+            if (call.getArgument(1).equals("broken")) {
+                throw new IllegalStateException("store unavailable");
+            }
+            return store.get(call.getArgument(0) + "/" + call.getArgument(1));
+        });
+        doAnswer(call -> store.put(call.getArgument(0) + "/" + call.getArgument(1), call.getArgument(2)))
+            .when(cache).putObject(anyString(), anyString(), any(byte[].class));
+        doAnswer(call -> {
+            ttls.put(call.getArgument(0) + "/" + call.getArgument(1), call.getArgument(3));
+            return store.put(call.getArgument(0) + "/" + call.getArgument(1), call.getArgument(2));
+        }).when(cache).putObject(anyString(), anyString(), any(byte[].class), any(Duration.class));
+        when(cache.expireObject(anyString(), anyString(), any(Duration.class))).thenAnswer(call -> {
+            String key = call.getArgument(0) + "/" + call.getArgument(1);
+            ttls.put(key, call.getArgument(2));
+            return store.containsKey(key);
+        });
+        when(cache.deleteObject(anyString(), anyString()))
+            .thenAnswer(call -> store.remove(call.getArgument(0) + "/" + call.getArgument(1)) != null);
+
+        RespCommands commands = new RespCommands(cache, new ReplicaIndex(cache, false, 10, Duration.ofHours(1)),
+            new PeerRing(registry, false, "http://self", "", 8), jwtUtil, registry);
+        server = new RespServer(commands, registry, "127.0.0.1", 0, 16, 1 << 20);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    private String token(String user, String... permissions) {
+        return jwtUtil.generateToken(user, List.of("USER"), List.of(permissions), "AAL1", "okta");
+    }
+
+    @Test
+    @DisplayName("a stock Valkey client authenticates with a JWT and uses the tenant's keys")
+    void valkeyClient_roundTrip() {
+        try (Jedis client = new Jedis("127.0.0.1", server.getPort())) {
+            assertThat(client.auth(token("alice", "cache_read", "CACHE_WRITE", "CACHE_DELETE"))).isEqualTo("OK");
+
+            assertThat(client.set("k1", "v1")).isEqualTo("OK");
+            assertThat(client.set("k2", "v2")).isEqualTo("OK");
+            assertThat(client.get("k1")).isEqualTo("v1");
+            assertThat(client.mget("k1", "missing", "k2")).containsExactly("v1", null, "v2");
+            assertThat(client.expire("k1", 30)).isEqualTo(1L);
+            assertThat(client.del("k1", "k2", "missing")).isEqualTo(2L);
+            assertThat(client.ping()).isEqualTo("PONG");
+        }
+        assertThat(ttls).containsEntry("local:alice/k1", Duration.ofSeconds(30));
+        assertThat(store).isEmpty();
+    }
+
+    @Test
+    @DisplayName("commands require a valid token with the matching permission")
+    void valkeyClient_authorization() {
+        store.put("local:bob/secret", "b".getBytes(StandardCharsets.UTF_8));
+        try (Jedis client = new Jedis("127.0.0.1", server.getPort())) {
+            assertThatThrownBy(() -> client.get("k")).isInstanceOf(JedisDataException.class).hasMessageStartingWith("NOAUTH");
+            assertThatThrownBy(() -> client.auth("not-a-jwt")).hasMessageStartingWith("WRONGPASS");
+
+            client.auth(token("alice", "CACHE_READ"));
+            assertThatThrownBy(() -> client.set("k", "v")).hasMessageStartingWith("NOPERM");
+            assertThat(client.get("secret")).isNull();
+        }
+    }
+
+    @Test
+    @DisplayName("revoking the token of an authenticated connection deauthenticates it")
+    @SuppressWarnings("unchecked")
+    void valkeyClient_revokedToken() {
+        try (TokenRevocationList revocations = new TokenRevocationList(registry, mock(ObjectProvider.class),
+                64, Duration.ofHours(1));
+             Jedis client = new Jedis("127.0.0.1", server.getPort())) {
+            ReflectionTestUtils.setField(jwtUtil, "revocations", revocations);
+            String token = token("erin", "CACHE_READ");
+            client.auth(token);
+            assertThat(client.get("k")).isNull();
+
+            assertThat(jwtUtil.revoke(token)).isTrue();
+
+            assertThatThrownBy(() -> client.get("k")).hasMessageStartingWith("NOAUTH");
+            assertThatThrownBy(() -> client.auth(token)).hasMessageStartingWith("WRONGPASS");
+        }
+    }
+
+    @Test
+    @DisplayName("out-of-range TTLs and store failures are answered with errors and the connection stays usable")
+    void valkeyClient_errorsKeepConnection() {
+        try (Jedis client = new Jedis("127.0.0.1", server.getPort())) {
+            client.auth(token("dave", "CACHE_ADMIN"));
+
+            assertThatThrownBy(() -> client.set("k", "v", SetParams.setParams().ex(Long.MAX_VALUE)))
+                .hasMessageStartingWith("ERR invalid expire time");
+            assertThatThrownBy(() -> client.expire("k", Long.MAX_VALUE))
+                .hasMessageStartingWith("ERR invalid expire time");
+            assertThatThrownBy(() -> client.mget("k", "broken")).hasMessage("ERR internal error");
+            assertThat(client.set("k", "v")).isEqualTo("OK");
+            assertThat(client.get("k")).isEqualTo("v");
+        }
+        assertThat(ttls).isEmpty();
+    }
+
+    @Test
+    @DisplayName("a pipelined batch is answered in order with one flush; large values stream through")
+    void rawSocket_pipelining() throws IOException {
+        byte[] large = new byte[100_000];
+        Arrays.fill(large, (byte) 'x');
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            // A short read fails the test instead of blocking it
+            socket.setSoTimeout(5_000);
+            String token = token("carol", "CACHE_ADMIN");
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            batch.writeBytes(("AUTH " + token + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            batch.writeBytes("*3\r\n$3\r\nSET\r\n$1\r\na\r\n$1\r\n1\r\n".getBytes(StandardCharsets.US_ASCII));
+            batch.writeBytes("*5\r\n$3\r\nSET\r\n$1\r\nb\r\n$1\r\n2\r\n$2\r\nPX\r\n$3\r\n500\r\n".getBytes(StandardCharsets.US_ASCII));
+            batch.writeBytes("*3\r\n$4\r\nMGET\r\n$1\r\na\r\n$1\r\nb\r\n".getBytes(StandardCharsets.US_ASCII));
+            batch.writeBytes("*2\r\n$4\r\nNOPE\r\n$1\r\na\r\n".getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().write(batch.toByteArray());
+            socket.getOutputStream().flush();
+
+            String expected = "+OK\r\n+OK\r\n+OK\r\n*2\r\n$1\r\n1\r\n$1\r\n2\r\n-ERR unknown command 'NOPE'\r\n";
+            assertThat(read(socket.getInputStream(), expected.length())).isEqualTo(expected);
+            assertThat(registry.get("cache.resp.pipeline.depth").summary().max()).isEqualTo(5.0);
+            assertThat(ttls).containsEntry("local:carol/b", Duration.ofMillis(500));
+
+            socket.getOutputStream().write(("*3\r\n$3\r\nSET\r\n$5\r\nlarge\r\n$" + large.length + "\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().write(large);
+            socket.getOutputStream().write("\r\n*2\r\n$3\r\nGET\r\n$5\r\nlarge\r\n".getBytes(StandardCharsets.US_ASCII));
+            String reply = read(socket.getInputStream(), 5 + 9 + large.length + 2);
+            assertThat(reply).startsWith("+OK\r\n$100000\r\nxxx").endsWith("x\r\n");
+
+            socket.getOutputStream().write("*1\r\n$x\r\n".getBytes(StandardCharsets.US_ASCII));
+            assertThat(new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII))
+                .startsWith("-ERR Protocol error");
+        }
+    }
+
+    @Test
+    @DisplayName("before AUTH only small commands are accepted, whatever length a client declares")
+    void rawSocket_unauthenticatedLimits() throws IOException {
+        for (String command : List.of("*3\r\n$3\r\nSET\r\n$1\r\na\r\n$100000\r\n", "*11\r\n")) {
+            try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+                socket.setSoTimeout(5_000);
+                socket.getOutputStream().write(command.getBytes(StandardCharsets.US_ASCII));
+
+                assertThat(new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII))
+                    .startsWith("-ERR Protocol error: invalid");
+            }
+        }
+    }
+
+    private static String read(InputStream in, int length) throws IOException {
+        return new String(in.readNBytes(length), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,67 @@
+package hello.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AuthoritySetTest {
+
+    @Test
+    @DisplayName("registered authorities are bits, others are kept by name")
+    void of_claims() {
+        AuthoritySet set = AuthoritySet.of(List.of("user", "auditor"), List.of("cache_read", "reports_view"));
+
+        assertThat(set.has("ROLE_USER")).isTrue();
+        assertThat(set.has(AuthoritySet.CACHE_READ)).isTrue();
+        assertThat(set.has("ROLE_AUDITOR")).isTrue();
+        assertThat(set.has("REPORTS_VIEW")).isTrue();
+        assertThat(set.has(AuthoritySet.CACHE_WRITE)).isFalse();
+        assertThat(set.granted()).extracting(Object::toString)
+            .containsExactlyInAnyOrder("ROLE_USER", "CACHE_READ", "ROLE_AUDITOR", "REPORTS_VIEW");
+        assertThat(set).isEqualTo(AuthoritySet.of(List.of("AUDITOR", "USER"), List.of("REPORTS_VIEW", "CACHE_READ")));
+        assertThat(AuthoritySet.of(List.of(), List.of())).isSameAs(AuthoritySet.EMPTY);
+    }
+
+    @Test
+    @DisplayName("hasAny and hasAll check a whole mask at once")
+    void masks() {
+        AuthoritySet set = AuthoritySet.of(List.of(), List.of("CACHE_READ", "CACHE_DELETE"));
+        long delete = AuthoritySet.mask(AuthoritySet.CACHE_DELETE, AuthoritySet.CACHE_ADMIN);
+
+        assertThat(set.hasAny(delete)).isTrue();
+        assertThat(set.hasAll(delete)).isFalse();
+        assertThat(set.hasAll(AuthoritySet.mask(AuthoritySet.CACHE_READ, AuthoritySet.CACHE_DELETE))).isTrue();
+        assertThat(AuthoritySet.EMPTY.hasAny(delete)).isFalse();
+        assertThat(AuthoritySet.names(delete)).containsExactly("CACHE_DELETE", "CACHE_ADMIN");
+        assertThatThrownBy(() -> AuthoritySet.mask("REPORTS_VIEW")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("granted authorities of registered names are shared instances")
+    void granted_interned() {
+        AuthoritySet first = AuthoritySet.of(List.of("USER"), List.of());
+        AuthoritySet second = AuthoritySet.of(List.of("USER"), List.of("CACHE_READ"));
+
+        assertThat(first.granted().get(0)).isSameAs(
+            second.granted().stream().filter(a -> a.getAuthority().equals("ROLE_USER")).findFirst().orElseThrow());
+    }
+
+    @Test
+    @DisplayName("an authentication without a verified token is read from its authorities")
+    void of_authentication() {
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+            "alice", null, List.of(new SimpleGrantedAuthority("CACHE_ADMIN"), new SimpleGrantedAuthority("OTHER")));
+
+        AuthoritySet set = AuthoritySet.of(authentication);
+
+        assertThat(set.hasAny(AuthoritySet.mask(AuthoritySet.CACHE_ADMIN))).isTrue();
+        assertThat(set.has("OTHER")).isTrue();
+        assertThat(AuthoritySet.of((org.springframework.security.core.Authentication) null)).isSameAs(AuthoritySet.EMPTY);
+    }
+}
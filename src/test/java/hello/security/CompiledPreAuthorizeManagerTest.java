@@ -0,0 +1,135 @@
+package hello.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.authorization.method.PreAuthorizeAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class CompiledPreAuthorizeManagerTest {
+
+    static class Endpoints {
+
+        @PreAuthorize("hasAuthority('CACHE_READ') or hasAuthority('CACHE_ADMIN')")
+        public void read() {
+        }
+
+        @PreAuthorize("hasAnyAuthority('CACHE_READ', 'CACHE_WRITE', 'CACHE_ADMIN')")
+        public void any() {
+        }
+
+        @PreAuthorize("hasRole('ADMIN')")
+        public void admin() {
+        }
+
+        @PreAuthorize("hasAuthority('CACHE_READ') and hasAuthority('REPORTS_VIEW')")
+        public void both() {
+        }
+
+        @PreAuthorize("isAuthenticated() and hasAuthority('CACHE_READ')")
+        public void spel() {
+        }
+    }
+
+    private static Authentication user(String... authorities) {
+        return new UsernamePasswordAuthenticationToken(
+            "alice", null, Stream.of(authorities).map(SimpleGrantedAuthority::new).toList());
+    }
+
+    @Test
+    @DisplayName("supported expressions compile, anything else is left to SpEL")
+    void compile() {
+        assertThat(CompiledPreAuthorizeManager.compile("hasAuthority('CACHE_READ') or hasAuthority('CACHE_ADMIN')"))
+            .hasToString("any of CACHE_READ, CACHE_ADMIN");
+        assertThat(CompiledPreAuthorizeManager.compile("hasAnyRole('USER', 'ROLE_ADMIN')"))
+            .hasToString("any of ROLE_USER, ROLE_ADMIN");
+        assertThat(CompiledPreAuthorizeManager.compile("hasRole('ADMIN') and hasAuthority('CACHE_WRITE')"))
+            .hasToString("all of ROLE_ADMIN, CACHE_WRITE");
+        assertThat(CompiledPreAuthorizeManager.compile("hasAuthority('A') and hasAnyAuthority('B', 'C')")).isNull();
+        assertThat(CompiledPreAuthorizeManager.compile("hasAuthority('A') or hasAuthority('B') and hasAuthority('C')"))
+            .isNull();
+        assertThat(CompiledPreAuthorizeManager.compile("hasAuthority('A', 'B')")).isNull();
+        assertThat(CompiledPreAuthorizeManager.compile("(hasAuthority('A'))")).isNull();
+        assertThat(CompiledPreAuthorizeManager.compile("permitAll")).isNull();
+        assertThat(CompiledPreAuthorizeManager.compile("#id == authentication.name")).isNull();
+    }
+
+    @Test
+    @DisplayName("decisions match Spring's SpEL evaluation for every endpoint and caller")
+    void authorize_matchesSpel() {
+        CompiledPreAuthorizeManager compiled = new CompiledPreAuthorizeManager();
+        PreAuthorizeAuthorizationManager spel = new PreAuthorizeAuthorizationManager();
+        List<Authentication> callers = new ArrayList<>(List.of(
+            user(),
+            user("CACHE_READ"),
+            user("CACHE_ADMIN"),
+            user("CACHE_WRITE", "ROLE_USER"),
+            user("ROLE_ADMIN"),
+            user("ADMIN"),
+            user("CACHE_READ", "REPORTS_VIEW"),
+            user("cache_read")));
+        callers.add(new AnonymousAuthenticationToken("key", "anonymous",
+            List.of(new SimpleGrantedAuthority("ROLE_ANONYMOUS"))));
+
+        // Coverage tools add synthetic methods, which carry no expression
+        List<Method> endpoints = Stream.of(Endpoints.class.getDeclaredMethods())
+            .filter(method -> !method.isSynthetic() && method.isAnnotationPresent(PreAuthorize.class))
+            .toList();
+        assertThat(endpoints).hasSize(5);
+        for (Method method : endpoints) {
+            SimpleMethodInvocation invocation = new SimpleMethodInvocation(new Endpoints(), method);
+            for (Authentication caller : callers) {
+                AuthorizationResult expected = spel.authorize(() -> caller, invocation);
+                assertThat(compiled.authorize(() -> caller, invocation))
+                    .as("%s for %s", method.getName(), caller.getAuthorities())
+                    .isNotNull()
+                    .extracting(AuthorizationResult::isGranted)
+                    .isEqualTo(expected.isGranted());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("a compiled decision allocates less per call than SpEL")
+    void authorize_allocatesLessThanSpel() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        CompiledPreAuthorizeManager compiled = new CompiledPreAuthorizeManager();
+        PreAuthorizeAuthorizationManager spel = new PreAuthorizeAuthorizationManager();
+        SimpleMethodInvocation invocation = new SimpleMethodInvocation(new Endpoints(), Endpoints.class.getMethod("read"));
+        Authentication caller = user("CACHE_ADMIN");
+        for (int i = 0; i < 2_000; i++) {
+            compiled.authorize(() -> caller, invocation);
+            spel.authorize(() -> caller, invocation);
+        }
+
+        long thread = Thread.currentThread().threadId();
+        long start = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 1_000; i++) {
+            compiled.authorize(() -> caller, invocation);
+        }
+        long fast = threads.getThreadAllocatedBytes(thread) - start;
+        start = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 1_000; i++) {
+            spel.authorize(() -> caller, invocation);
+        }
+        long slow = threads.getThreadAllocatedBytes(thread) - start;
+
+        assertThat(fast).isLessThan(slow);
+    }
+}
@@ -0,0 +1,107 @@
+package hello.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class HmacTokenVerifierTest {
+
+    private static final String HS256_SECRET = "mySecretKeymySecretKeymySecretKey123";
+    private static final String HS384_SECRET = "mySecretKeyForJWTTokenGenerationAndValidation123456789";
+
+    private static JwtUtil jwtUtil(String secret) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", secret);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
+        return jwtUtil;
+    }
+
+    private static SecretKey key(String secret) {
+        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("issued tokens verify to the same claims as through jjwt, for HS256 and HS384 keys")
+    void verify_matchesJjwt() {
+        for (String secret : List.of(HS256_SECRET, HS384_SECRET)) {
+            JwtUtil jwtUtil = jwtUtil(secret);
+            HmacTokenVerifier verifier = new HmacTokenVerifier(key(secret));
+            String token = jwtUtil.generateToken("ivan", List.of("USER", "admin"),
+                List.of("CACHE_READ", "cache_write"), "AAL2", "okta");
+
+            VerifiedToken fast = verifier.verify(token, System.currentTimeMillis());
+
+            assertThat(fast).isNotNull().isEqualTo(jwtUtil.verify(token));
+            assertThat(fast.authorities().granted()).extracting(Object::toString)
+                .containsExactlyInAnyOrder("ROLE_USER", "ROLE_ADMIN", "CACHE_READ", "CACHE_WRITE");
+        }
+    }
+
+    @Test
+    @DisplayName("tokens the fast path cannot vouch for are left to jjwt")
+    void verify_declinesUnusualTokens() {
+        JwtUtil jwtUtil = jwtUtil(HS256_SECRET);
+        HmacTokenVerifier verifier = new HmacTokenVerifier(key(HS256_SECRET));
+        long now = System.currentTimeMillis();
+        String token = jwtUtil.generateToken("judy", List.of("USER"), List.of());
+        Date exp = new Date(now + 60_000);
+
+        String tampered = token.substring(0, token.lastIndexOf('.') + 1) + "AAAA";
+        String otherKey = Jwts.builder().subject("judy").expiration(exp).signWith(key(HS384_SECRET)).compact();
+        String notBefore = Jwts.builder().subject("judy").expiration(exp).notBefore(new Date(now))
+            .signWith(key(HS256_SECRET)).compact();
+        String withKid = Jwts.builder().header().keyId("k1").and().subject("judy").expiration(exp)
+            .signWith(key(HS256_SECRET)).compact();
+        String noExpiry = Jwts.builder().subject("judy").signWith(key(HS256_SECRET)).compact();
+
+        assertThat(verifier.verify(token, now)).isNotNull();
+        assertThat(verifier.verify(token, now + 7200_000L)).isNull();
+        assertThat(verifier.verify(tampered, now)).isNull();
+        assertThat(verifier.verify(otherKey, now)).isNull();
+        assertThat(verifier.verify(notBefore, now)).isNull();
+        assertThat(verifier.verify(withKid, now)).isNull();
+        assertThat(verifier.verify(noExpiry, now)).isNull();
+        assertThat(verifier.verify("not-a-token", now)).isNull();
+    }
+
+    @Test
+    @DisplayName("the fast path allocates less per verification than jjwt")
+    void verify_allocatesLessThanJjwt() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        JwtUtil jwtUtil = jwtUtil(HS256_SECRET);
+        HmacTokenVerifier verifier = new HmacTokenVerifier(key(HS256_SECRET));
+        String token = jwtUtil.generateToken("kate", List.of("USER"), List.of("CACHE_READ", "CACHE_WRITE"));
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 2_000; i++) {
+            verifier.verify(token, now);
+            jwtUtil.verify(token);
+        }
+
+        long thread = Thread.currentThread().threadId();
+        long start = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 1_000; i++) {
+            verifier.verify(token, now);
+        }
+        long fast = threads.getThreadAllocatedBytes(thread) - start;
+        start = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 1_000; i++) {
+            jwtUtil.verify(token);
+        }
+        long jjwt = threads.getThreadAllocatedBytes(thread) - start;
+
+        assertThat(fast).isLessThan(jjwt);
+    }
+}
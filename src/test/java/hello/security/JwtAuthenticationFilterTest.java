@@ -2,10 +2,13 @@ package hello.security;
 
 import jakarta.servlet.FilterChain;
 // Removed unused imports per maintainability
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.List;
 
@@ -15,6 +18,11 @@ import static org.mockito.Mockito.mock;
 
 class JwtAuthenticationFilterTest {
 
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
     @Test
     @DisplayName("shouldNotFilter returns true for actuator paths")
     void shouldNotFilter_actuator() {
@@ -27,8 +35,8 @@ class JwtAuthenticationFilterTest {
     @DisplayName("getJwtFromRequest parses Authorization header and sets authorities (role only)")
     void getJwtFromRequest_parses() throws Exception {
         JwtUtil jwtUtil = new JwtUtil();
-        org.springframework.test.util.ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
-        org.springframework.test.util.ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
         // Use only roles to avoid immutable permissions list addAll issue in filter
         String token = jwtUtil.generateToken("alice", List.of("USER"), List.of());
 
@@ -40,8 +48,8 @@ class JwtAuthenticationFilterTest {
 
         // should not throw; token should be validated and context set
         filter.doFilter(req, res, chain);
-        assertThat(org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication()).isNotNull();
-        assertThat(org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication().getAuthorities())
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNotNull();
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getAuthorities())
             .extracting(Object::toString)
             .contains("ROLE_USER");
     }
@@ -50,8 +58,8 @@ class JwtAuthenticationFilterTest {
     @DisplayName("getJwtFromRequest sets permission authority when present")
     void getJwtFromRequest_withPermission() throws Exception {
         JwtUtil jwtUtil = new JwtUtil();
-        org.springframework.test.util.ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
-        org.springframework.test.util.ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
         String token = jwtUtil.generateToken("eve", List.of("USER"), List.of("CACHE_READ"));
 
         JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtil);
@@ -61,11 +69,34 @@ class JwtAuthenticationFilterTest {
         FilterChain chain = mock(FilterChain.class);
 
         filter.doFilter(req, res, chain);
-        assertThat(org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication()).isNotNull();
-        assertThat(org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication().getAuthorities())
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNotNull();
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getAuthorities())
             .extracting(Object::toString)
             .contains("CACHE_READ");
     }
-}
 
+    @Test
+    @DisplayName("an authenticated request verifies its token exactly once and keeps it in the details")
+    void doFilter_verifiesOnce() throws Exception {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
+        String token = jwtUtil.generateToken("frank", List.of("USER"), List.of("CACHE_READ"), "AAL2", "okta");
+
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtil);
+        MockHttpServletRequest req = new MockHttpServletRequest("GET", "/api");
+        req.addHeader("Authorization", "Bearer " + token);
+        long before = jwtUtil.verifications();
 
+        filter.doFilter(req, new MockHttpServletResponse(), mock(FilterChain.class));
+
+        assertThat(jwtUtil.verifications() - before).isEqualTo(1);
+        Object details = SecurityContextHolder.getContext()
+            .getAuthentication().getDetails();
+        assertThat(details).isInstanceOf(JwtAuthenticationDetails.class);
+        VerifiedToken verified = ((JwtAuthenticationDetails) details).getToken();
+        assertThat(verified.subject()).isEqualTo("frank");
+        assertThat(verified.identityProvider()).isEqualTo("local");
+        assertThat(verified.authLevel()).isEqualTo("AAL2");
+    }
+}
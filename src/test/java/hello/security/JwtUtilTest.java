@@ -1,10 +1,16 @@
 package hello.security;
 
+import hello.cache.TenantResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -39,16 +45,16 @@ class JwtUtilTest {
     @DisplayName("JwtUtil validateToken with username (non-expired) and expired token handling")
     void validateTokenWithUsername_andExpired() {
         JwtUtil jwtUtil = new JwtUtil();
-        org.springframework.test.util.ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
+        ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
         // Use a safe expiration for username-validation case
-        org.springframework.test.util.ReflectionTestUtils.setField(jwtUtil, "expiration", 60_000L);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 60_000L);
 
-        String token = jwtUtil.generateToken("carol", java.util.List.of("USER"), java.util.List.of());
+        String token = jwtUtil.generateToken("carol", List.of("USER"), List.of());
         assertThat(jwtUtil.validateToken(token, "carol")).isTrue();
 
         // Now create an immediately expired token and validate with the boolean API that handles expiry
-        org.springframework.test.util.ReflectionTestUtils.setField(jwtUtil, "expiration", 0L);
-        String expired = jwtUtil.generateToken("dave", java.util.List.of("USER"), java.util.List.of());
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 0L);
+        String expired = jwtUtil.generateToken("dave", List.of("USER"), List.of());
         assertThat(jwtUtil.validateToken(expired)).isFalse();
     }
 
@@ -61,23 +67,159 @@ class JwtUtilTest {
 
         String token = jwtUtil.generateToken(
             "erin",
-            java.util.List.of("USER"),
-            java.util.List.of("CACHE_READ"),
+            List.of("USER"),
+            List.of("CACHE_READ"),
             "AAL2",
             "okta"
         );
 
-        java.util.Map<String, Object> claims = jwtUtil.extractCustomClaims(token);
+        Map<String, Object> claims = jwtUtil.extractCustomClaims(token);
         assertThat(claims)
             .containsEntry("auth_level", "AAL2")
             .containsEntry("idp", "okta");
         @SuppressWarnings("unchecked")
-        java.util.List<String> roles = (java.util.List<String>) claims.get("roles");
+        List<String> roles = (List<String>) claims.get("roles");
         @SuppressWarnings("unchecked")
-        java.util.List<String> perms = (java.util.List<String>) claims.get("permissions");
+        List<String> perms = (List<String>) claims.get("permissions");
         assertThat(roles).contains("USER");
         assertThat(perms).contains("CACHE_READ");
     }
-}
 
+    @Test
+    @DisplayName("verify parses a valid token once and rejects tampered and expired ones")
+    void verify_singleVerification() {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        jwtUtil.bindTo(registry);
+
+        String token = jwtUtil.generateToken("gina", List.of("USER"), List.of("CACHE_READ"), "AAL3", "azure-ad");
+        VerifiedToken verified = jwtUtil.verify(token);
+
+        assertThat(verified).isNotNull();
+        assertThat(verified.subject()).isEqualTo("gina");
+        assertThat(verified.roles()).containsExactly("USER");
+        assertThat(verified.hasPermission("CACHE_READ")).isTrue();
+        assertThat(verified.authLevel()).isEqualTo("AAL3");
+        // signed with the secret, so local whatever its idp claim says
+        assertThat(verified.identityProvider()).isEqualTo("local");
+        assertThat(verified.expiresAt()).isAfter(Instant.now());
+        assertThat(registry.get("jwt.verifications").tag("outcome", "valid").functionCounter().count())
+            .isEqualTo(1.0);
+
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+        assertThat(jwtUtil.verify(tampered)).isNull();
+        ReflectionTestUtils.setField(jwtUtil, "expiration", -1_000L);
+        assertThat(jwtUtil.verify(jwtUtil.generateToken("gina", List.of(), List.of()))).isNull();
+        assertThat(registry.get("jwt.verifications").tag("outcome", "invalid").functionCounter().count())
+            .isEqualTo(2.0);
+    }
 
+    @Test
+    @DisplayName("a repeated token is served from the cache until the secret changes")
+    void verify_cachesUntilKeyChange() {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaxEntries", 64);
+        ReflectionTestUtils.setField(jwtUtil, "cacheShards", 4);
+        String token = jwtUtil.generateToken("hank", List.of("USER"), List.of("CACHE_READ"));
+
+        VerifiedToken first = jwtUtil.verify(token);
+        VerifiedToken second = jwtUtil.verify(token);
+
+        assertThat(second).isSameAs(first);
+        assertThat(jwtUtil.verifications()).isEqualTo(1);
+        assertThat(second.authorities().granted()).extracting(Object::toString)
+            .containsExactlyInAnyOrder("ROLE_USER", "CACHE_READ");
+
+        ReflectionTestUtils.setField(jwtUtil, "secret", "anotherSecretKeyanotherSecretKey456");
+        assertThat(jwtUtil.verify(token)).isNull();
+        assertThat(jwtUtil.verifications()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("with the fast path enabled, issued tokens skip jjwt and forged ones are still rejected")
+    void verify_fastPath() {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "fastPathEnabled", true);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        jwtUtil.bindTo(registry);
+        String token = jwtUtil.generateToken("liam", List.of("USER"), List.of("CACHE_READ"));
+
+        assertThat(jwtUtil.verify(token).subject()).isEqualTo("liam");
+        assertThat(jwtUtil.verify(token.substring(0, token.length() - 4) + "AAAA")).isNull();
+        assertThat(registry.get("jwt.verifications.fast").functionCounter().count()).isEqualTo(1.0);
+        assertThat(registry.get("jwt.verifications").tag("outcome", "invalid").functionCounter().count())
+            .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("a revoked token is rejected even when cached, and only valid tokens can be revoked")
+    void revoke_rejectsToken() {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaxEntries", 16);
+        ReflectionTestUtils.setField(jwtUtil, "cacheShards", 4);
+        try (TokenRevocationList revocations = new TokenRevocationList(
+                new SimpleMeterRegistry(), (RevocationStore) null, 16, Duration.ofHours(1))) {
+            ReflectionTestUtils.setField(jwtUtil, "revocations", revocations);
+            String leaked = jwtUtil.generateToken("mia", List.of("USER"), List.of("CACHE_READ"));
+            String other = jwtUtil.generateToken("noah", List.of("USER"), List.of("CACHE_READ"));
+            assertThat(jwtUtil.verify(leaked)).isNotNull();
+
+            assertThat(jwtUtil.revoke(leaked)).isTrue();
+            assertThat(jwtUtil.verify(leaked)).isNull();
+            assertThat(jwtUtil.verify(other)).isNotNull();
+            assertThat(jwtUtil.revoke(leaked.substring(0, leaked.length() - 4) + "AAAA")).isFalse();
+            assertThat(revocations.size()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("verifyAll verifies each distinct token once and answers in request order")
+    void verifyAll_deduplicates() {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tokens.add(jwtUtil.generateToken("user" + i, List.of("USER"), List.of("CACHE_READ")));
+        }
+        String forged = tokens.get(0).substring(0, tokens.get(0).length() - 4) + "AAAA";
+        List<String> batch = new ArrayList<>(tokens);
+        batch.add(forged);
+        batch.addAll(tokens);
+
+        List<VerifiedToken> results = jwtUtil.verifyAll(batch);
+
+        assertThat(results).hasSize(41);
+        assertThat(jwtUtil.verifications()).isEqualTo(21);
+        for (int i = 0; i < 20; i++) {
+            assertThat(results.get(i).subject()).isEqualTo("user" + i);
+            assertThat(results.get(21 + i)).isSameAs(results.get(i));
+        }
+        assertThat(results.get(20)).isNull();
+    }
+
+    @Test
+    @DisplayName("tokens signed with the secret are local on both paths, so they cannot reach an IdP user's tenant")
+    void verify_secretSignedTokensAreLocal() {
+        for (boolean fastPath : List.of(true, false)) {
+            JwtUtil jwtUtil = new JwtUtil();
+            ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
+            ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
+            ReflectionTestUtils.setField(jwtUtil, "fastPathEnabled", fastPath);
+
+            VerifiedToken verified = jwtUtil.verify(
+                jwtUtil.generateToken("mia", List.of("USER"), List.of("CACHE_READ"), "AAL2", "okta"));
+
+            assertThat(verified.identityProvider()).isEqualTo("local");
+            assertThat(TenantResolver.of(verified.identityProvider(), verified.subject())).isEqualTo("local:mia");
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package hello.security;
+
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeyRingTest {
+
+    private static final String ISSUER = "https://idp.example.com";
+    private static final String AUDIENCE = "cache";
+
+    @TempDir
+    Path keys;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private static KeyPair rsa() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    private static KeyPair ec() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+
+    private static String pem(KeyPair pair) {
+        return "-----BEGIN PUBLIC KEY-----\n"
+            + Base64.getMimeEncoder().encodeToString(pair.getPublic().getEncoded())
+            + "\n-----END PUBLIC KEY-----\n";
+    }
+
+    private static String coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] fixed = new byte[32];
+        int length = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - length, fixed, 32 - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+    }
+
+    private static String jwks(String kid, KeyPair pair) {
+        ECPublicKey key = (ECPublicKey) pair.getPublic();
+        return "{\"keys\":[{\"kty\":\"EC\",\"crv\":\"P-256\",\"use\":\"sig\",\"kid\":\"" + kid + "\","
+            + "\"x\":\"" + coordinate(key.getW().getAffineX()) + "\","
+            + "\"y\":\"" + coordinate(key.getW().getAffineY()) + "\"}]}";
+    }
+
+    private static String token(String kid, PrivateKey key, String claim, String issuer) {
+        return token(kid, key, Map.of(claim, issuer, "aud", AUDIENCE), true);
+    }
+
+    /** A token with the given extra claims; a header that is not plain takes jjwt's path */
+    private static String token(String kid, PrivateKey key, Map<String, ?> claims, boolean plainHeader) {
+        return Jwts.builder()
+            .header().keyId(kid).add(plainHeader ? Map.of() : Map.of("x-trace", "1")).and()
+            .subject("mia")
+            .claims(claims)
+            .claim("roles", List.of("USER"))
+            .claim("permissions", List.of("CACHE_READ"))
+            .expiration(new Date(System.currentTimeMillis() + 60_000))
+            .signWith(key)
+            .compact();
+    }
+
+    private Path issuerDirectory(String issuer) throws Exception {
+        return Files.createDirectories(keys.resolve(URLEncoder.encode(issuer, StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @DisplayName("RS256 tokens verify against a PEM key and ES256 tokens against a JWKS key, by issuer and kid")
+    void verify_byIssuerAndKid() throws Exception {
+        KeyPair okta = rsa();
+        KeyPair example = ec();
+        Files.writeString(issuerDirectory("okta").resolve("rsa-1.pem"), pem(okta));
+        Files.writeString(issuerDirectory(ISSUER).resolve("jwks.json"), jwks("ec-1", example));
+
+        try (KeyRing ring = new KeyRing(registry, keys.toString(), Duration.ofHours(1), AUDIENCE, 64, 4)) {
+            String rs256 = token("rsa-1", okta.getPrivate(), "idp", "okta");
+            String es256 = token("ec-1", example.getPrivate(), "iss", ISSUER);
+
+            assertThat(ring.handles(rs256)).isTrue();
+            VerifiedToken fromOkta = ring.verify(rs256);
+            assertThat(fromOkta.subject()).isEqualTo("mia");
+            assertThat(fromOkta.identityProvider()).isEqualTo("okta");
+            assertThat(fromOkta.authorities().granted()).extracting(Object::toString)
+                .containsExactlyInAnyOrder("ROLE_USER", "CACHE_READ");
+            assertThat(ring.verify(es256).subject()).isEqualTo("mia");
+
+            assertThat(ring.verify(token("rsa-2", okta.getPrivate(), "idp", "okta"))).isNull();
+            assertThat(ring.verify(token("rsa-1", okta.getPrivate(), "idp", "azure-ad"))).isNull();
+            assertThat(ring.verify(token("rsa-1", rsa().getPrivate(), "idp", "okta"))).isNull();
+            assertThat(registry.get("jwt.keys.loaded").gauge().value()).isEqualTo(2.0);
+        }
+    }
+
+    @Test
+    @DisplayName("a reload picks up added keys and drops removed ones along with their cached tokens")
+    void reload_swapsKeySet() throws Exception {
+        KeyPair first = rsa();
+        KeyPair second = rsa();
+        Path okta = issuerDirectory("okta");
+        Files.writeString(okta.resolve("k1.pem"), pem(first));
+
+        try (KeyRing ring = new KeyRing(registry, keys.toString(), Duration.ofHours(1), AUDIENCE, 64, 4)) {
+            String oldToken = token("k1", first.getPrivate(), "idp", "okta");
+            String newToken = token("k2", second.getPrivate(), "idp", "okta");
+            assertThat(ring.verify(oldToken)).isNotNull();
+            assertThat(ring.verify(newToken)).isNull();
+
+            Files.writeString(okta.resolve("k2.pem"), pem(second));
+            Files.delete(okta.resolve("k1.pem"));
+            ring.reload();
+
+            assertThat(ring.verify(newToken)).isNotNull();
+            assertThat(ring.verify(oldToken)).isNull();
+            assertThat(registry.get("jwt.keys.reloads").tag("outcome", "success").counter().count()).isEqualTo(2.0);
+        }
+    }
+
+    @Test
+    @DisplayName("JwtUtil hands asymmetric tokens to the key ring and keeps HMAC tokens on the secret")
+    void jwtUtil_routesByAlgorithm() throws Exception {
+        KeyPair okta = rsa();
+        Files.writeString(issuerDirectory("okta").resolve("rsa-1.pem"), pem(okta));
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeymySecretKeymySecretKey123");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600_000L);
+
+        try (KeyRing ring = new KeyRing(registry, keys.toString(), Duration.ofHours(1), AUDIENCE, 0, 4)) {
+            ReflectionTestUtils.setField(jwtUtil, "keyRing", ring);
+
+            assertThat(jwtUtil.verify(token("rsa-1", okta.getPrivate(), "idp", "okta")).identityProvider())
+                .isEqualTo("okta");
+            assertThat(jwtUtil.verify(jwtUtil.generateToken("nina", List.of("USER"), List.of())).subject())
+                .isEqualTo("nina");
+            assertThat(registry.get("jwt.keys.verifications").tag("outcome", "valid").counter().count())
+                .isEqualTo(1.0);
+        }
+    }
+
+    @Test
+    @DisplayName("the verifying issuer is the identity provider, and a token naming another one is rejected")
+    void verify_bindsIdentityProviderToIssuer() throws Exception {
+        KeyPair example = rsa();
+        Files.writeString(issuerDirectory(ISSUER).resolve("rsa-1.pem"), pem(example));
+        Files.writeString(issuerDirectory("okta").resolve("rsa-1.pem"), pem(rsa()));
+
+        try (KeyRing ring = new KeyRing(registry, keys.toString(), Duration.ofHours(1), AUDIENCE, 0, 4)) {
+            for (boolean plain : List.of(true, false)) {
+                assertThat(ring.verify(token("rsa-1", example.getPrivate(),
+                    Map.of("iss", ISSUER, "aud", AUDIENCE), plain)).identityProvider()).isEqualTo(ISSUER);
+                assertThat(ring.verify(token("rsa-1", example.getPrivate(),
+                    Map.of("iss", ISSUER, "idp", ISSUER, "aud", AUDIENCE), plain))).isNotNull();
+                assertThat(ring.verify(token("rsa-1", example.getPrivate(),
+                    Map.of("iss", ISSUER, "idp", "okta", "aud", AUDIENCE), plain))).isNull();
+                assertThat(ring.verify(token("rsa-1", example.getPrivate(),
+                    Map.of("iss", ISSUER, "idp", "local", "aud", AUDIENCE), plain))).isNull();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("tokens must name one of the issuer's audiences, read from its directory or the default")
+    void verify_checksAudiencePerIssuer() throws Exception {
+        KeyPair okta = rsa();
+        KeyPair example = rsa();
+        Files.writeString(issuerDirectory("okta").resolve("rsa-1.pem"), pem(okta));
+        Files.writeString(issuerDirectory(ISSUER).resolve("rsa-1.pem"), pem(example));
+        Files.writeString(issuerDirectory(ISSUER).resolve("audiences"), "api://cache\n\nother\n");
+
+        try (KeyRing ring = new KeyRing(registry, keys.toString(), Duration.ofHours(1), AUDIENCE, 0, 4)) {
+            for (boolean plain : List.of(true, false)) {
+                assertThat(ring.verify(token("rsa-1", okta.getPrivate(),
+                    Map.of("idp", "okta", "aud", List.of("billing", AUDIENCE)), plain))).isNotNull();
+                assertThat(ring.verify(token("rsa-1", okta.getPrivate(),
+                    Map.of("idp", "okta", "aud", "billing"), plain))).isNull();
+                assertThat(ring.verify(token("rsa-1", okta.getPrivate(), Map.of("idp", "okta"), plain))).isNull();
+                assertThat(ring.verify(token("rsa-1", example.getPrivate(),
+                    Map.of("iss", ISSUER, "aud", "api://cache"), plain))).isNotNull();
+                assertThat(ring.verify(token("rsa-1", example.getPrivate(),
+                    Map.of("iss", ISSUER, "aud", AUDIENCE), plain))).isNull();
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package hello.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequirePermissionInterceptorTest {
+
+    @RequirePermission(roles = "ADMIN")
+    static class Handlers {
+
+        @RequirePermission(value = {"CACHE_READ", "CACHE_WRITE"}, requireAll = true)
+        public void readWrite() {
+        }
+
+        @RequirePermission(value = {"CACHE_DELETE", "REPORTS_PURGE"})
+        public void deleteOrPurge() {
+        }
+
+        public void inherited() {
+        }
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static void authenticate(String... authorities) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+            "alice", null, Stream.of(authorities).map(SimpleGrantedAuthority::new).toList()));
+    }
+
+    private static PermissionDecision decision(String method) throws NoSuchMethodException {
+        return RequirePermissionInterceptor.resolve(Handlers.class.getMethod(method), Handlers.class);
+    }
+
+    @Test
+    @DisplayName("requireAll needs every authority, otherwise any one will do")
+    void decisions() throws Exception {
+        assertThat(decision("readWrite").test(AuthoritySet.of(List.of(), List.of("CACHE_READ")))).isFalse();
+        assertThat(decision("readWrite").test(AuthoritySet.of(List.of(), List.of("CACHE_READ", "CACHE_WRITE"))))
+            .isTrue();
+        assertThat(decision("deleteOrPurge").test(AuthoritySet.of(List.of(), List.of("REPORTS_PURGE")))).isTrue();
+        assertThat(decision("deleteOrPurge").test(AuthoritySet.of(List.of(), List.of("CACHE_READ")))).isFalse();
+        assertThat(decision("inherited").test(AuthoritySet.of(List.of("admin"), List.of()))).isTrue();
+        assertThat(decision("inherited").toString()).isEqualTo("any of ROLE_ADMIN");
+        assertThat(RequirePermissionInterceptor.resolve(Object.class.getMethod("toString"), Object.class)).isNull();
+    }
+
+    @Test
+    @DisplayName("preHandle enforces the compiled decision of a mapped handler")
+    void preHandle_mapped() throws Exception {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("handlers", MappedHandlers.class);
+        context.registerSingleton("requestMappingHandlerMapping", RequestMappingHandlerMapping.class);
+        context.refresh();
+        RequirePermissionInterceptor interceptor = new RequirePermissionInterceptor(context, new SimpleMeterRegistry());
+        interceptor.afterSingletonsInstantiated();
+        HandlerMethod handler = new HandlerMethod(new MappedHandlers(), "readWrite");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.size()).isEqualTo(1);
+        assertThatThrownBy(() -> interceptor.preHandle(request, response, handler))
+            .isInstanceOf(AuthenticationCredentialsNotFoundException.class);
+        authenticate("CACHE_READ");
+        assertThatThrownBy(() -> interceptor.preHandle(request, response, handler))
+            .isInstanceOf(AccessDeniedException.class)
+            .hasMessage("Requires all of CACHE_READ, CACHE_WRITE");
+        authenticate("CACHE_READ", "CACHE_WRITE");
+        assertThat(interceptor.preHandle(request, response, handler)).isTrue();
+        assertThat(interceptor.preHandle(request, response, new HandlerMethod(new MappedHandlers(), "open")))
+            .isTrue();
+    }
+
+    @RestController
+    static class MappedHandlers {
+
+        @GetMapping("/read-write")
+        @RequirePermission(value = {"CACHE_READ", "CACHE_WRITE"}, requireAll = true)
+        public void readWrite() {
+        }
+
+        @GetMapping("/open")
+        public void open() {
+        }
+    }
+}
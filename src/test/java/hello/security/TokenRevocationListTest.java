@@ -0,0 +1,129 @@
+package hello.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenRevocationListTest {
+
+    private static final long FAR_FUTURE = Long.MAX_VALUE;
+
+    /**
+     * In-memory log; cursors are list positions
+     */
+    private static final class ListStore implements RevocationStore {
+        final List<Revocation> log = new ArrayList<>();
+
+        @Override
+        public synchronized void append(String digest, long expiresAtMillis) {
+            log.add(new Revocation(digest, expiresAtMillis));
+        }
+
+        @Override
+        public synchronized Batch since(String cursor, int max) {
+            final int from = START.equals(cursor) ? 0 : Integer.parseInt(cursor);
+            final int to = Math.min(log.size(), from + max);
+            return new Batch(List.copyOf(log.subList(from, to)), to == 0 ? START : Integer.toString(to));
+        }
+    }
+
+    private static TokenRevocationList list(RevocationStore store, int expectedEntries) {
+        return new TokenRevocationList(new SimpleMeterRegistry(), store, expectedEntries, Duration.ofHours(1));
+    }
+
+    private static TokenDigest random(Random random) {
+        return new TokenDigest(random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong());
+    }
+
+    @Test
+    @DisplayName("a revoked token is found, others are not, and expired entries are pruned")
+    void revoke_pruneAtExpiry() {
+        try (TokenRevocationList revocations = list(null, 16)) {
+            TokenDigest leaked = TokenDigest.of("a.b.c");
+            revocations.revoke(leaked, 1_000);
+
+            assertThat(revocations.isRevoked(leaked)).isTrue();
+            assertThat(revocations.isRevoked(TokenDigest.of("a.b.d"))).isFalse();
+
+            revocations.prune(999);
+            assertThat(revocations.isRevoked(leaked)).isTrue();
+            revocations.prune(1_000);
+            assertThat(revocations.isRevoked(leaked)).isFalse();
+            assertThat(revocations.size()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("the filter grows past its expected size and keeps false positives rare")
+    void filter_growsAndStaysSelective() {
+        Random random = new Random(7);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        try (TokenRevocationList revocations = new TokenRevocationList(registry, (RevocationStore) null, 8, Duration.ofHours(1))) {
+            List<TokenDigest> revoked = new ArrayList<>();
+            for (int i = 0; i < 1_000; i++) {
+                TokenDigest digest = random(random);
+                revoked.add(digest);
+                revocations.revoke(digest, FAR_FUTURE);
+            }
+            assertThat(revoked).allMatch(revocations::isRevoked);
+
+            for (int i = 0; i < 100_000; i++) {
+                // The exact set confirms every filter hit, so nothing unrevoked is reported
+                assertThat(revocations.isRevoked(random(random))).isFalse();
+            }
+            double falsePositives = registry.get("jwt.revocations.lookups").tag("result", "false-positive")
+                .counter().count();
+            assertThat(falsePositives).isLessThan(3_000);
+        }
+    }
+
+    @Test
+    @DisplayName("revocations reach other pods through the store, skipping expired ones")
+    void sync_appliesOtherPodsRevocations() {
+        ListStore store = new ListStore();
+        try (TokenRevocationList podA = list(store, 16); TokenRevocationList podB = list(store, 16)) {
+            TokenDigest leaked = TokenDigest.of("x.y.z");
+            podA.revoke(leaked, FAR_FUTURE);
+            store.append(TokenDigest.of("old.token.sig").hex(), 1);
+
+            assertThat(podB.isRevoked(leaked)).isFalse();
+            podB.refresh();
+            assertThat(podB.isRevoked(leaked)).isTrue();
+            assertThat(podB.isRevoked(TokenDigest.of("old.token.sig"))).isFalse();
+            assertThat(store.log).hasSize(2);
+        }
+    }
+
+    @Test
+    @DisplayName("a malformed log entry is skipped once and replication moves past it")
+    void sync_skipsMalformedEntries() {
+        ListStore store = new ListStore();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        try (TokenRevocationList revocations = new TokenRevocationList(registry, store, 16, Duration.ofHours(1))) {
+            TokenDigest leaked = TokenDigest.of("x.y.z");
+            store.append("not-a-digest", FAR_FUTURE);
+            store.append(leaked.hex(), FAR_FUTURE);
+
+            revocations.refresh();
+            revocations.refresh();
+
+            assertThat(revocations.isRevoked(leaked)).isTrue();
+            assertThat(registry.get("jwt.revocations.sync.malformed").counter().count()).isEqualTo(1.0);
+        }
+    }
+
+    @Test
+    @DisplayName("digests round-trip through their hex form")
+    void digest_hex() {
+        TokenDigest digest = TokenDigest.of("a.b.c");
+        assertThat(digest.hex()).hasSize(64);
+        assertThat(TokenDigest.ofHex(digest.hex())).isEqualTo(digest);
+    }
+}
@@ -0,0 +1,43 @@
+package hello.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VerifiedTokenCacheTest {
+
+    private static VerifiedToken token(String subject, long expiresAtMillis) {
+        return new VerifiedToken(subject, List.of("USER"), List.of(), "AAL1", "local",
+            null, Instant.ofEpochMilli(expiresAtMillis), AuthoritySet.EMPTY);
+    }
+
+    @Test
+    @DisplayName("a cached token is served until its exp and dropped from then on")
+    void get_evictsAtExpiry() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(16, 4);
+        cache.put("a.b.c", token("alice", 1_000));
+
+        assertThat(cache.get("a.b.c", 999).subject()).isEqualTo("alice");
+        assertThat(cache.get("a.b.d", 999)).isNull();
+        assertThat(cache.get("a.b.c", 1_000)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("each shard keeps its most recently used entries within the bound")
+    void put_boundedLru() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(1, 1);
+        cache.put("first", token("alice", Long.MAX_VALUE));
+        cache.put("second", token("bob", Long.MAX_VALUE));
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.get("first", 0)).isNull();
+        assertThat(cache.get("second", 0).subject()).isEqualTo("bob");
+        assertThatThrownBy(() -> new VerifiedTokenCache(16, 3)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,114 @@
+package hello.valkey;
+
+import io.valkey.AbstractPipeline;
+import io.valkey.BuilderFactory;
+import io.valkey.Pipeline;
+import io.valkey.Response;
+import io.valkey.StreamEntryID;
+import io.valkey.UnifiedJedis;
+import io.valkey.params.SetParams;
+import io.valkey.params.XAddParams;
+import io.valkey.resps.StreamEntry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * In-memory stand-in for a Valkey cluster client covering the commands used by the cache tier.
+ * Pipelined commands are queued and applied on sync, like the real client.
+ */
+final class FakeValkey {
+
+    final Map<String, byte[]> data = new ConcurrentHashMap<>();
+    final Map<String, Long> expiries = new ConcurrentHashMap<>();
+    /** Stream entries by key; ids are sequence numbers in the first part */
+    final Map<String, List<StreamEntry>> streams = new ConcurrentHashMap<>();
+    final UnifiedJedis client = mock(UnifiedJedis.class);
+    /** Runs before each pipeline sync, to interleave concurrent writers. */
+    Runnable beforeSync = () -> { };
+    int pipelines;
+
+    FakeValkey() {
+        when(client.get(any(byte[].class))).thenAnswer(inv -> data.get(key(inv.getArgument(0))));
+        when(client.setGet(any(byte[].class), any(byte[].class), any(SetParams.class)))
+            .thenAnswer(inv -> data.put(key(inv.getArgument(0)), inv.getArgument(1)));
+        when(client.getDel(any(byte[].class))).thenAnswer(inv -> data.remove(key(inv.getArgument(0))));
+        when(client.pipelined()).thenAnswer(inv -> pipeline());
+        when(client.pexpire(any(byte[].class), anyLong())).thenAnswer(inv -> {
+            if (!data.containsKey(key(inv.getArgument(0)))) {
+                return 0L;
+            }
+            expiries.put(key(inv.getArgument(0)), inv.getArgument(1));
+            return 1L;
+        });
+        when(client.xadd(anyString(), any(XAddParams.class), anyMap())).thenAnswer(inv -> {
+            final List<StreamEntry> stream = streams.computeIfAbsent(inv.getArgument(0), k -> new ArrayList<>());
+            final StreamEntryID id = new StreamEntryID(stream.size() + 1, 0);
+            stream.add(new StreamEntry(id, Map.copyOf(inv.<Map<String, String>>getArgument(2))));
+            return id;
+        });
+        when(client.xrange(anyString(), anyString(), anyString(), anyInt())).thenAnswer(inv -> {
+            final String start = inv.getArgument(1);
+            final long after = new StreamEntryID(start.substring(1)).getTime();
+            return streams.getOrDefault(inv.<String>getArgument(0), List.of()).stream()
+                .filter(entry -> entry.getID().getTime() > after)
+                .limit(inv.<Integer>getArgument(3))
+                .toList();
+        });
+    }
+
+    static String key(byte[] raw) {
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    long chunkKeys() {
+        return data.keySet().stream().filter(k -> k.endsWith(":chunk")).count();
+    }
+
+    private AbstractPipeline pipeline() {
+        pipelines++;
+        // Pipeline is the non-deprecated subtype of what UnifiedJedis.pipelined() declares
+        final AbstractPipeline pipeline = mock(Pipeline.class);
+        final List<Runnable> queued = new ArrayList<>();
+        when(pipeline.set(any(byte[].class), any(byte[].class), any(SetParams.class))).thenAnswer(inv -> {
+            final Response<String> response = new Response<>(BuilderFactory.STRING);
+            queued.add(() -> {
+                data.put(key(inv.getArgument(0)), inv.getArgument(1));
+                response.set("OK".getBytes(StandardCharsets.UTF_8));
+            });
+            return response;
+        });
+        when(pipeline.get(any(byte[].class))).thenAnswer(inv -> {
+            final Response<byte[]> response = new Response<>(BuilderFactory.BINARY);
+            queued.add(() -> response.set(data.get(key(inv.getArgument(0)))));
+            return response;
+        });
+        when(pipeline.pexpire(any(byte[].class), anyLong())).thenAnswer(inv -> {
+            final Response<Long> response = new Response<>(BuilderFactory.LONG);
+            queued.add(() -> {
+                expiries.put(key(inv.getArgument(0)), inv.getArgument(1));
+                response.set(1L);
+            });
+            return response;
+        });
+        doAnswer(inv -> {
+            beforeSync.run();
+            queued.forEach(Runnable::run);
+            queued.clear();
+            return null;
+        }).when(pipeline).sync();
+        return pipeline;
+    }
+}
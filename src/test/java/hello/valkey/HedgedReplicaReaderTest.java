@@ -0,0 +1,115 @@
+package hello.valkey;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgedReplicaReaderTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger primaryReads = new AtomicInteger();
+    private final ValkeyObjectStore.ValueReader primary = key -> {
+        primaryReads.incrementAndGet();
+        return new byte[] {0};
+    };
+    private HedgedReplicaReader reader;
+
+    @AfterEach
+    void close() {
+        reader.close();
+    }
+
+    private HedgedReplicaReader reader(List<ReplicaNode> replicas, double maxHedgeRatio) {
+        reader = new HedgedReplicaReader(key -> replicas, primary, registry,
+            Duration.ofMillis(1), Duration.ofMillis(20), maxHedgeRatio, Duration.ofSeconds(2));
+        return reader;
+    }
+
+    private static ReplicaNode replica(String name, long delayMillis, int value) {
+        return new ReplicaNode() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public byte[] get(byte[] key) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new byte[] {(byte) value};
+            }
+        };
+    }
+
+    private static ReplicaNode failing() {
+        return new ReplicaNode() {
+            @Override
+            public String name() {
+                return "failing";
+            }
+
+            @Override
+            public byte[] get(byte[] key) {
+                throw new IllegalStateException("connection reset");
+            }
+        };
+    }
+
+    private double hedges(String outcome) {
+        return registry.get("cache.valkey.replica.hedges").tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    @DisplayName("fast replicas answer without hedging")
+    void read_fastReplicaNoHedge() {
+        HedgedReplicaReader fast = reader(List.of(replica("a", 0, 1)), 1.0);
+
+        assertThat(fast.read(new byte[] {'k'})).containsExactly(1);
+        assertThat(hedges("sent")).isZero();
+        assertThat(primaryReads).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("a read past the deadline is hedged to another replica, which wins")
+    void read_slowReplicaHedged() {
+        HedgedReplicaReader hedged = reader(List.of(replica("slow", 1000, 1), replica("fast", 0, 2)), 1.0);
+
+        // whichever replica goes first, the fast one must answer
+        for (int i = 0; i < 4; i++) {
+            assertThat(hedged.read(new byte[] {'k'})).containsExactly(2);
+        }
+        assertThat(hedges("sent")).isPositive();
+        assertThat(hedges("won")).isEqualTo(hedges("sent"));
+    }
+
+    @Test
+    @DisplayName("with one replica the hedge goes to the primary; hedges respect the budget")
+    void read_singleReplicaHedgesToPrimary() {
+        HedgedReplicaReader budgeted = reader(List.of(replica("slow", 100, 1)), 0.5);
+
+        assertThat(budgeted.read(new byte[] {'k'})).containsExactly(0);
+        assertThat(budgeted.read(new byte[] {'k'})).containsExactly(1);
+        assertThat(hedges("sent")).isEqualTo(1.0);
+        assertThat(primaryReads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("shards without eligible replicas and failed replica reads use the primary")
+    void read_fallbackToPrimary() {
+        assertThat(reader(List.of(), 1.0).read(new byte[] {'k'})).containsExactly(0);
+        reader.close();
+        assertThat(reader(List.of(failing()), 1.0).read(new byte[] {'k'})).containsExactly(0);
+
+        assertThat(registry.get("cache.valkey.replica.fallbacks").counter().count()).isEqualTo(2.0);
+    }
+}
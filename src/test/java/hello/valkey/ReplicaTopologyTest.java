@@ -0,0 +1,27 @@
+package hello.valkey;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaTopologyTest {
+
+    @Test
+    @DisplayName("replication lag is read from INFO replication of a connected replica")
+    void parseLagSeconds_linkUp() {
+        String info = "# Replication\r\nrole:slave\r\nmaster_host:10.0.0.1\r\nmaster_link_status:up\r\n"
+            + "master_last_io_seconds_ago:3\r\nslave_repl_offset:1234\r\n";
+
+        assertThat(ReplicaTopology.parseLagSeconds(info)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("replicas with a broken link are treated as infinitely stale")
+    void parseLagSeconds_linkDown() {
+        String info = "# Replication\r\nrole:slave\r\nmaster_link_status:down\r\nmaster_last_io_seconds_ago:0\r\n";
+
+        assertThat(ReplicaTopology.parseLagSeconds(info)).isEqualTo(Long.MAX_VALUE);
+        assertThat(ReplicaTopology.parseLagSeconds("# Replication\r\nrole:master\r\n")).isEqualTo(Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,99 @@
+package hello.valkey;
+
+import hello.cache.InvalidationListener;
+import hello.cache.RemoteKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.valkey.ConnectionPool;
+import io.valkey.DefaultJedisClientConfig;
+import io.valkey.JedisCluster;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ValkeyInvalidationTrackerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ValkeyInvalidationTracker tracker = new ValkeyInvalidationTracker(mock(JedisCluster.class),
+        DefaultJedisClientConfig.builder().build(), registry, Duration.ofSeconds(5), Duration.ofSeconds(1));
+    private final List<String> invalidated = new ArrayList<>();
+    private int flushes;
+
+    ValkeyInvalidationTrackerTest() {
+        tracker.addListener(new InvalidationListener() {
+            @Override
+            public void invalidate(String remoteKey) {
+                invalidated.add(remoteKey);
+            }
+
+            @Override
+            public void invalidateAll() {
+                flushes++;
+            }
+        });
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("invalidation messages reach listeners and move the key's generation")
+    void handleReply_invalidatesKeys() {
+        String key = RemoteKey.encode("t", "k");
+        long before = tracker.generation(key);
+
+        tracker.handleReply(Arrays.asList(bytes("message"), bytes(ValkeyInvalidationTracker.CHANNEL),
+            List.of(bytes(key), bytes(RemoteKey.encode("t", "other")))));
+
+        assertThat(invalidated).containsExactly(key, RemoteKey.encode("t", "other"));
+        assertThat(tracker.generation(key)).isNotEqualTo(before);
+        assertThat(registry.get("cache.valkey.tracking.invalidations").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("a server flush drops every local copy; subscribe confirmations are ignored")
+    void handleReply_flushAndConfirmations() {
+        long before = tracker.generation("cache:1:t:k");
+
+        tracker.handleReply(Arrays.asList(bytes("subscribe"), bytes(ValkeyInvalidationTracker.CHANNEL), 1L));
+        assertThat(flushes).isZero();
+
+        tracker.handleReply(Arrays.asList(bytes("message"), bytes(ValkeyInvalidationTracker.CHANNEL), null));
+        assertThat(flushes).isEqualTo(1);
+        assertThat(tracker.generation("cache:1:t:k")).isNotEqualTo(before);
+    }
+
+    @Test
+    @DisplayName("a tracker without live sessions is not connected")
+    void isConnected_noSessions() {
+        assertThat(tracker.isConnected()).isFalse();
+        assertThat(registry.get("cache.valkey.tracking.connected").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("sessions of nodes that left the cluster are retired")
+    void discoverNodes_retiresDepartedNodes() {
+        JedisCluster cluster = mock(JedisCluster.class);
+        when(cluster.getClusterNodes()).thenReturn(Map.of(
+            "127.0.0.1:1", mock(ConnectionPool.class), "127.0.0.1:2", mock(ConnectionPool.class)));
+        try (ValkeyInvalidationTracker discovering = new ValkeyInvalidationTracker(cluster,
+                DefaultJedisClientConfig.builder().build(), registry, Duration.ofSeconds(5), Duration.ofSeconds(1))) {
+            discovering.discoverNodes();
+            assertThat(discovering.size()).isEqualTo(2);
+
+            when(cluster.getClusterNodes()).thenReturn(Map.of("127.0.0.1:2", mock(ConnectionPool.class)));
+            discovering.discoverNodes();
+            assertThat(discovering.size()).isEqualTo(1);
+        }
+    }
+}
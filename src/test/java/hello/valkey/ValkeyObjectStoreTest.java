@@ -0,0 +1,92 @@
+package hello.valkey;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValkeyObjectStoreTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final FakeValkey valkey = new FakeValkey();
+    private final ValkeyObjectStore store = new ValkeyObjectStore(
+        valkey.client, registry, 1024, 256, Duration.ofHours(1), Duration.ofSeconds(10));
+
+    private static byte[] randomBytes(int size, long seed) {
+        final byte[] value = new byte[size];
+        new Random(seed).nextBytes(value);
+        return value;
+    }
+
+    @Test
+    @DisplayName("small values are stored inline without chunks")
+    void put_smallValueInline() {
+        store.put("k", new byte[] {1, 2, 3});
+
+        assertThat(store.get("k")).containsExactly(1, 2, 3);
+        assertThat(valkey.chunkKeys()).isZero();
+        assertThat(valkey.pipelines).isZero();
+    }
+
+    @Test
+    @DisplayName("large values are split into chunks behind a manifest and reassembled")
+    void put_largeValueChunked() {
+        final byte[] value = randomBytes(1000 + 1024, 1);
+        store.put("k", value);
+
+        assertThat(valkey.chunkKeys()).isEqualTo(8);
+        assertThat(valkey.data.get("k")).hasSize(ValkeyObjectStore.MANIFEST_BYTES);
+        assertThat(store.get("k")).isEqualTo(value);
+        assertThat(registry.get("cache.valkey.chunked.writes").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("an expiry on a chunked value keeps the chunks alive past the manifest")
+    void expire_chunkedValue() {
+        store.put("k", randomBytes(2048, 1));
+
+        assertThat(store.expire("k", Duration.ofSeconds(5))).isTrue();
+
+        assertThat(valkey.expiries.get("k")).isEqualTo(5_000L);
+        assertThat(valkey.expiries).hasSize(9)
+            .allSatisfy((key, ttl) -> assertThat(ttl).isEqualTo(key.equals("k") ? 5_000L : 15_000L));
+        assertThat(store.expire("missing", Duration.ofSeconds(5))).isFalse();
+    }
+
+    @Test
+    @DisplayName("overwrites and deletes expire the chunks of the replaced manifest")
+    void overwriteAndDelete_releaseChunks() {
+        store.put("k", randomBytes(2048, 1));
+        store.put("k", randomBytes(2048, 2));
+        assertThat(valkey.expiries).hasSize(8).allSatisfy((key, ttl) -> assertThat(ttl).isEqualTo(10_000L));
+
+        assertThat(store.delete("k")).isTrue();
+        assertThat(valkey.expiries).hasSize(16);
+        assertThat(store.get("k")).isNull();
+        assertThat(store.delete("k")).isFalse();
+    }
+
+    @Test
+    @DisplayName("a read racing an overwrite retries instead of mixing chunks of two writes")
+    void get_tornReadRetried() {
+        final byte[] first = randomBytes(2048, 1);
+        final byte[] second = randomBytes(2048, 2);
+        store.put("k", first);
+        final byte[] firstManifest = valkey.data.get("k");
+
+        valkey.beforeSync = () -> {
+            valkey.beforeSync = () -> { };
+            store.put("k", second);
+            // the old chunks' grace period elapses while this reader is still in flight
+            valkey.data.keySet().removeIf(key -> valkey.expiries.containsKey(key));
+        };
+
+        assertThat(store.get("k")).isEqualTo(second);
+        assertThat(valkey.data.get("k")).isNotEqualTo(firstManifest);
+        assertThat(registry.get("cache.valkey.chunked.retries").counter().count()).isEqualTo(1.0);
+    }
+}
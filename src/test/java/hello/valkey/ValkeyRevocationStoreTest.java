@@ -0,0 +1,46 @@
+package hello.valkey;
+
+import hello.security.RevocationStore;
+import io.valkey.params.XAddParams;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValkeyRevocationStoreTest {
+
+    private final FakeValkey valkey = new FakeValkey();
+    private final ValkeyRevocationStore store = new ValkeyRevocationStore(valkey.client, "revocations", Duration.ofHours(24));
+
+    @Test
+    @DisplayName("revocations are read back in order from after the last cursor")
+    void since_readsIncrementally() {
+        store.append("a".repeat(64), 1_000);
+        store.append("b".repeat(64), 2_000);
+
+        RevocationStore.Batch first = store.since(RevocationStore.START, 1);
+        assertThat(first.revocations()).containsExactly(new RevocationStore.Revocation("a".repeat(64), 1_000));
+        RevocationStore.Batch second = store.since(first.cursor(), 10);
+        assertThat(second.revocations()).containsExactly(new RevocationStore.Revocation("b".repeat(64), 2_000));
+        RevocationStore.Batch idle = store.since(second.cursor(), 10);
+        assertThat(idle.revocations()).isEmpty();
+        assertThat(idle.cursor()).isEqualTo(second.cursor());
+        assertThat(valkey.streams.get("revocations")).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("unreadable entries are dropped but the cursor still moves past them")
+    void since_skipsMalformedEntries() {
+        valkey.client.xadd("revocations", XAddParams.xAddParams(), Map.of("digest", "a".repeat(64), "exp", "soon"));
+        valkey.client.xadd("revocations", XAddParams.xAddParams(), Map.of("exp", "1000"));
+        store.append("b".repeat(64), 2_000);
+
+        RevocationStore.Batch batch = store.since(RevocationStore.START, 10);
+
+        assertThat(batch.revocations()).containsExactly(new RevocationStore.Revocation("b".repeat(64), 2_000));
+        assertThat(store.since(batch.cursor(), 10).revocations()).isEmpty();
+    }
+}